@@ -0,0 +1,53 @@
+package ru.sunveil.precision_pdf.controller;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import ru.sunveil.precision_pdf.pdfparser.storage.ImageBlobStore;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves extracted images from the blob store. Range requests are handled by Spring
+ * for {@link Resource} bodies; blobs are immutable, so they are cached for a year.
+ */
+@RestController
+@RequestMapping("/api/pdf/images")
+public class ImageBlobController {
+
+    private final ImageBlobStore imageBlobStore;
+
+    public ImageBlobController(ImageBlobStore imageBlobStore) {
+        this.imageBlobStore = imageBlobStore;
+    }
+
+    @GetMapping("/{blobId}")
+    public ResponseEntity<Resource> getImage(@PathVariable("blobId") String blobId, WebRequest request) {
+        Path path = imageBlobStore.find(blobId);
+        if (path == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String etag = "\"" + blobId + "\"";
+        CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(304).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(imageBlobStore.getMimeType(blobId)))
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .body(new FileSystemResource(path));
+    }
+}
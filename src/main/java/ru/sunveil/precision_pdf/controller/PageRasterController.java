@@ -0,0 +1,88 @@
+package ru.sunveil.precision_pdf.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import ru.sunveil.precision_pdf.pdfparser.storage.PageRasterCache.ColorMode;
+import ru.sunveil.precision_pdf.pdfparser.storage.PageRasterCache.Variant;
+import ru.sunveil.precision_pdf.service.PageRasterService;
+import ru.sunveil.precision_pdf.service.PageRasterService.PageRaster;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Page previews for the viewer. The upload endpoint returns the document hash in a header;
+ * later requests for the same document can use the GET endpoint, which is served from the cache.
+ */
+@RestController
+@RequestMapping("/api/pdf/raster")
+public class PageRasterController {
+
+    private static final String DOCUMENT_HASH_HEADER = "X-Document-Hash";
+    private static final Pattern DOCUMENT_HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final PageRasterService pageRasterService;
+
+    public PageRasterController(PageRasterService pageRasterService) {
+        this.pageRasterService = pageRasterService;
+    }
+
+    @PostMapping(produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> renderPage(
+            @RequestParam("pdfFile") MultipartFile file,
+            @RequestParam(value = "page", defaultValue = "1") int page,
+            @RequestParam(value = "variant", defaultValue = "PREVIEW") String variant,
+            @RequestParam(value = "color", defaultValue = "RGB") String color) throws IOException {
+
+        PageRaster raster = pageRasterService.getPageRaster(file, page, parseVariant(variant), parseColorMode(color));
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .header(DOCUMENT_HASH_HEADER, raster.documentHash())
+                .contentLength(raster.data().length)
+                .body(raster.data());
+    }
+
+    @GetMapping(value = "/{documentHash}/{page}", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> getCachedPage(
+            @PathVariable("documentHash") String documentHash,
+            @PathVariable("page") int page,
+            @RequestParam(value = "variant", defaultValue = "PREVIEW") String variant,
+            @RequestParam(value = "color", defaultValue = "RGB") String color) throws IOException {
+
+        if (!DOCUMENT_HASH.matcher(documentHash).matches()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        byte[] data = pageRasterService.getCachedPageRaster(documentHash, page,
+                parseVariant(variant), parseColorMode(color));
+        if (data == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // The key contains the content hash, so the response never changes
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .contentLength(data.length)
+                .body(data);
+    }
+
+    private Variant parseVariant(String variant) {
+        return Variant.valueOf(variant.toUpperCase(Locale.ROOT));
+    }
+
+    private ColorMode parseColorMode(String color) {
+        return ColorMode.valueOf(color.toUpperCase(Locale.ROOT));
+    }
+}
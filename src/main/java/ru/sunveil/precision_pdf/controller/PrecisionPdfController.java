@@ -1,16 +1,21 @@
 package ru.sunveil.precision_pdf.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.BeanUtils;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import ru.sunveil.precision_pdf.controller.dto.ApiResponse;
 import ru.sunveil.precision_pdf.pdfparser.config.ExtractionConfig;
 import ru.sunveil.precision_pdf.pdfparser.export.ExportFormat;
-import ru.sunveil.precision_pdf.pdfparser.model.PdfDocument;
 import ru.sunveil.precision_pdf.pdfparser.model.PdfMetadata;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfValidationReport;
 import ru.sunveil.precision_pdf.service.PrecisionPdfExtractionService;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Arrays;
 import java.util.stream.Collectors;
@@ -20,9 +25,12 @@ import java.util.stream.Collectors;
 public class PrecisionPdfController {
 
     private final PrecisionPdfExtractionService pdfExtractionService;
+    private final ExtractionConfig extractionConfig;
 
-    public PrecisionPdfController(PrecisionPdfExtractionService pdfExtractionService) {
+    public PrecisionPdfController(PrecisionPdfExtractionService pdfExtractionService,
+                                  ExtractionConfig extractionConfig) {
         this.pdfExtractionService = pdfExtractionService;
+        this.extractionConfig = extractionConfig;
     }
 
     @GetMapping("/")
@@ -66,6 +74,34 @@ public class PrecisionPdfController {
         }
     }
 
+    @PostMapping(value = "/extract/binary", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> extractPdfBinary(
+            @RequestParam("pdfFile") MultipartFile file,
+            @RequestParam(value = "extractImages", required = false) Boolean extractImages,
+            @RequestParam(value = "extractTables", required = false) Boolean extractTables,
+            @RequestParam(value = "extractMetadata", required = false) Boolean extractMetadata) throws IOException {
+
+        ExtractionConfig config = createCustomConfig(true, extractImages, extractTables, extractMetadata);
+        config.setOutputFormat(ExportFormat.BINARY.name());
+
+        byte[] result = pdfExtractionService.processPdfBinary(file, config);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(result.length)
+                .body(result);
+    }
+
+    @PostMapping(value = "/extract/raw-text", produces = MediaType.TEXT_PLAIN_VALUE)
+    public void extractPdfRawText(
+            @RequestParam("pdfFile") MultipartFile file,
+            HttpServletResponse response) throws IOException {
+
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        pdfExtractionService.writeRawText(file, response.getWriter());
+    }
+
     @GetMapping("/formats")
     public ResponseEntity<ApiResponse<List<String>>> getSupportedFormats() {
         try {
@@ -89,16 +125,10 @@ public class PrecisionPdfController {
         long startTime = System.currentTimeMillis();
 
         try {
-            ExtractionConfig config = new ExtractionConfig();
-            config.setExtractText(false);
-            config.setExtractImages(false);
-            config.setExtractTables(false);
-            config.setExtractMetadata(true);
-
-            PdfDocument document = pdfExtractionService.parsePdf(file, config);
+            PdfMetadata metadata = pdfExtractionService.readMetadata(file);
             long processingTime = System.currentTimeMillis() - startTime;
 
-            return ResponseEntity.ok(ApiResponse.success(document.getMetadata(),
+            return ResponseEntity.ok(ApiResponse.success(metadata,
                     "Metadata extracted successfully", processingTime));
 
         } catch (Exception e) {
@@ -108,6 +138,25 @@ public class PrecisionPdfController {
         }
     }
 
+    @PostMapping("/validate")
+    public ResponseEntity<ApiResponse<PdfValidationReport>> validatePdf(
+            @RequestParam("file") MultipartFile file) {
+
+        long startTime = System.currentTimeMillis();
+
+        try {
+            PdfValidationReport report = pdfExtractionService.validatePdf(file);
+            long processingTime = System.currentTimeMillis() - startTime;
+
+            return ResponseEntity.ok(ApiResponse.success(report,
+                    report.isValid() ? "PDF is valid" : "PDF has structural errors", processingTime));
+
+        } catch (Exception e) {
+            long processingTime = System.currentTimeMillis() - startTime;
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Validation failed: " + e.getMessage(), processingTime));
+        }
+    }
 
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiResponse<String>> handleException(Exception e) {
@@ -115,9 +164,14 @@ public class PrecisionPdfController {
                 .body(ApiResponse.error("Internal server error: " + e.getMessage(), 0));
     }
 
+    /**
+     * Copy of the configured {@code pdf.extraction.*} settings with the request parameters applied,
+     * so that the deployment settings the request does not override still take effect
+     */
     private ExtractionConfig createCustomConfig(Boolean extractText, Boolean extractImages,
                                                 Boolean extractTables, Boolean extractMetadata) {
         ExtractionConfig config = new ExtractionConfig();
+        BeanUtils.copyProperties(extractionConfig, config);
         config.setExtractText(extractText != null ? extractText : true);
         config.setExtractImages(extractImages != null ? extractImages : false);
         config.setExtractTables(extractTables != null ? extractTables : false);
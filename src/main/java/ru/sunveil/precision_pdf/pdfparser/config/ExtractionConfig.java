@@ -10,10 +10,28 @@ public class ExtractionConfig {
     private boolean extractText = true;
     private boolean extractImages = true;
     private boolean extractTables = true;
+    private String tableStrategy = "AUTO";
+    private boolean extractVectorPaths = false;
+    private int maxVectorPathsPerPage = 10_000;
     private boolean extractMetadata = true;
+    private boolean classifyPages = true;
     private boolean preserveLayout = true;
+    private boolean detectReadingOrder = true;
+    private boolean detectBlocks = true;
+    private boolean useStructureTree = true;
+    private String boilerplateMode = "FLAG";
+    private boolean suppressDuplicateGlyphs = true;
+    private boolean preciseGlyphBounds = true;
+    private float duplicateGlyphTolerance = 0.33f;
     private float imageDpi = 150;
     private int maxImageSize = 2048;
+    private long maxImagePixels = 100_000_000L;
+    private int renderThreads = 0;
+    private boolean imagePassthrough = true;
+    private int pngCompressionLevel = 6;
+    private String pngFilter = "ADAPTIVE";
+    private float jpegQuality = 0.85f;
+    private boolean externalImageStorage = false;
     private String outputFormat = "JSON";
     private boolean includeBoundingBoxes = true;
     private boolean includeFontInfo = true;
@@ -11,5 +11,14 @@ public class ParserConfig {
     private int maxMemoryUsageMb = 100;
     private boolean ignoreCorrupted = false;
     private boolean enableValidation = true;
+    private long validationMaxBytes = 4L * 1024 * 1024;
+    private long validationTimeoutMs = 250;
+    private int imageCacheSizeMb = 64;
     private String tempDirectory = System.getProperty("java.io.tmpdir");
+    private String imageBlobDirectory = System.getProperty("java.io.tmpdir") + "/precision-pdf-blobs";
+    private int imageBlobDiskMb = 1024;
+    private int imageBlobMaxSources = 100_000;
+    private String rasterCacheDirectory = System.getProperty("java.io.tmpdir") + "/precision-pdf-rasters";
+    private int rasterCacheMemoryMb = 64;
+    private int rasterCacheDiskMb = 512;
 }
\ No newline at end of file
@@ -0,0 +1,414 @@
+package ru.sunveil.precision_pdf.pdfparser.export;
+
+import ru.sunveil.precision_pdf.pdfparser.model.*;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoder for the binary layout written by {@link BinaryExporter}.
+ * The header, string table and page index are read once; pages can then be decoded
+ * individually with {@link #readPage(int)} without touching the other page sections.
+ */
+public class BinaryDocumentReader {
+
+    private final byte[] data;
+    private final String[] strings;
+    private final PdfDocument header;
+    private final int[] pageOffsets;
+    private final double scale;
+    private final int version;
+
+    private int position;
+    private long prevX;
+    private long prevY;
+
+    public BinaryDocumentReader(byte[] data) {
+        if (data == null || data.length < BinaryExporter.MAGIC.length + 1
+                || !Arrays.equals(data, 0, BinaryExporter.MAGIC.length, BinaryExporter.MAGIC, 0, BinaryExporter.MAGIC.length)) {
+            throw new IllegalArgumentException("Not a binary PDF export");
+        }
+        this.data = data;
+        this.position = BinaryExporter.MAGIC.length;
+
+        this.version = data[position++] & 0xFF;
+        // Version 3 files differ in layout depending on the writer and cannot be decoded reliably
+        if (version > BinaryExporter.VERSION || version == 3) {
+            throw new IllegalArgumentException("Unsupported binary export version: " + version);
+        }
+        this.scale = readVarintInt();
+
+        this.strings = new String[readVarintInt()];
+        for (int i = 0; i < strings.length; i++) {
+            int length = readVarintInt();
+            strings[i] = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+        }
+
+        this.header = readDocumentHeader();
+
+        int pageCount = readVarintInt();
+        this.pageOffsets = new int[pageCount];
+        int indexEnd = position + pageCount * 8;
+        for (int i = 0; i < pageCount; i++) {
+            pageOffsets[i] = indexEnd + readInt();
+            position += 4; // section length, pages are located by offset only
+        }
+    }
+
+    public static PdfDocument read(byte[] data) {
+        return new BinaryDocumentReader(data).readDocument();
+    }
+
+    public int getPageCount() {
+        return pageOffsets.length;
+    }
+
+    /**
+     * Decodes the whole document including all page sections.
+     */
+    public PdfDocument readDocument() {
+        PdfDocument document = new PdfDocument();
+        document.setFilename(header.getFilename());
+        document.setTotalPages(header.getTotalPages());
+        document.setMetadata(header.getMetadata());
+        document.setBoilerplate(header.getBoilerplate());
+
+        List<PdfPage> pages = new ArrayList<>(pageOffsets.length);
+        for (int i = 0; i < pageOffsets.length; i++) {
+            pages.add(readPage(i));
+        }
+        document.setPages(pages);
+        return document;
+    }
+
+    /**
+     * Decodes a single page section by its position in the page index.
+     *
+     * @param pageIndex zero-based index of the page section
+     */
+    public PdfPage readPage(int pageIndex) {
+        if (pageIndex < 0 || pageIndex >= pageOffsets.length) {
+            throw new IndexOutOfBoundsException("Page index out of range: " + pageIndex);
+        }
+        position = pageOffsets[pageIndex];
+
+        PdfPage page = new PdfPage();
+        int pageNumber = readVarintInt();
+        page.setPageNumber(pageNumber);
+        page.setWidth(readFixed());
+        page.setHeight(readFixed());
+        if (version >= 4) {
+            page.setText(readString());
+            String pageType = readString();
+            page.setPageType(pageType != null ? PageType.valueOf(pageType) : null);
+            page.setEstimatedCost(readVarint());
+        }
+
+        int wordCount = readVarintInt();
+        List<Word> words = new ArrayList<>(wordCount);
+        resetDelta();
+        for (int i = 0; i < wordCount; i++) {
+            Word word = new Word();
+            word.setPageNumber(pageNumber);
+            word.setText(readString());
+            word.setFontName(readString());
+            word.setFontSize((float) readFixed());
+            word.setConfidence((data[position++] & 0xFF) / 255f);
+            word.setBoundingBox(readDeltaBox());
+            words.add(word);
+        }
+        page.setWords(words);
+
+        int lineCount = readVarintInt();
+        List<TextLine> lines = new ArrayList<>(lineCount);
+        resetDelta();
+        for (int i = 0; i < lineCount; i++) {
+            TextLine line = new TextLine();
+            line.setPageNumber(pageNumber);
+            line.setText(readString());
+            line.setLineHeight((float) readFixed());
+            line.setBoundingBox(readDeltaBox());
+
+            int lineWordCount = readVarintInt();
+            List<Word> lineWords = new ArrayList<>(lineWordCount);
+            int index = -1;
+            for (int j = 0; j < lineWordCount; j++) {
+                index += (int) readSigned();
+                lineWords.add(words.get(index));
+                if (j == 0) {
+                    line.setWordStart(index);
+                }
+            }
+            line.setWords(lineWords);
+            line.setWordCount(lineWordCount);
+            if (version >= 4) {
+                line.setBoilerplate((data[position++] & 1) != 0);
+            }
+            // Lines and chunks are written in reading order
+            line.setReadingOrder(i);
+            lines.add(line);
+        }
+        page.setTextLines(lines);
+
+        int chunkCount = readVarintInt();
+        List<PdfTextChunk> chunks = new ArrayList<>(chunkCount);
+        resetDelta();
+        for (int i = 0; i < chunkCount; i++) {
+            PdfTextChunk chunk = new PdfTextChunk();
+            chunk.setPageNumber(pageNumber);
+            chunk.setText(readString());
+            chunk.setStyle(readString());
+            chunk.setBoundingBox(readDeltaBox());
+            if (version >= 4) {
+                chunk.setStructureType(readString());
+                chunk.setBoilerplate((data[position++] & 1) != 0);
+                chunk.setWordStart(readVarintInt());
+                chunk.setWordCount(readVarintInt());
+                chunk.setLineStart(readVarintInt());
+                chunk.setLineCount(readVarintInt());
+                if (chunk.getLineCount() > 0) {
+                    chunk.setLines(new ArrayList<>(lines.subList(chunk.getLineStart(),
+                            chunk.getLineStart() + chunk.getLineCount())));
+                }
+            }
+            chunk.setReadingOrder(i);
+            chunks.add(chunk);
+        }
+        page.setPdfTextChunks(chunks);
+
+        int tableCount = readVarintInt();
+        List<Table> tables = new ArrayList<>(tableCount);
+        for (int i = 0; i < tableCount; i++) {
+            Table table = new Table();
+            table.setPageNumber(pageNumber);
+            table.setBoundingBox(readBox());
+            table.setRowCount(readVarintInt());
+            table.setColumnCount(readVarintInt());
+
+            int rowCount = readVarintInt();
+            List<List<TableCell>> rows = new ArrayList<>(rowCount);
+            for (int r = 0; r < rowCount; r++) {
+                int cellCount = readVarintInt();
+                List<TableCell> cells = new ArrayList<>(cellCount);
+                for (int c = 0; c < cellCount; c++) {
+                    TableCell cell = new TableCell();
+                    cell.setPageNumber(pageNumber);
+                    cell.setContent(readString());
+                    cell.setRow(readVarintInt());
+                    cell.setColumn(readVarintInt());
+                    cell.setRowSpan(readVarintInt());
+                    cell.setColSpan(readVarintInt());
+                    cell.setBoundingBox(readBox());
+                    cells.add(cell);
+                }
+                rows.add(cells);
+            }
+            table.setRows(rows);
+            tables.add(table);
+        }
+        page.setTables(tables);
+
+        int imageCount = readVarintInt();
+        List<PdfImage> images = new ArrayList<>(imageCount);
+        for (int i = 0; i < imageCount; i++) {
+            PdfImage image = new PdfImage();
+            image.setPageNumber(pageNumber);
+            image.setId(readString());
+            image.setImageFormat(readString());
+            image.setColorSpace(readString());
+            image.setWidth(readVarintInt());
+            image.setHeight(readVarintInt());
+            image.setResolution((float) readFixed());
+            image.setBoundingBox(readBox());
+            if (version >= 2) {
+                image.setDuplicate((data[position++] & 1) != 0);
+                image.setBlobId(readString());
+                image.setMimeType(readString());
+                image.setByteSize(readVarint());
+            }
+
+            int length = readVarintInt();
+            image.setImageData(Arrays.copyOfRange(data, position, position + length));
+            position += length;
+            images.add(image);
+        }
+        page.setImages(images);
+
+        if (version >= 4 && data[position++] != 0) {
+            page.setVectorPaths(readVectorPaths(pageNumber));
+        }
+
+        return page;
+    }
+
+    private PdfVectorPaths readVectorPaths(int pageNumber) {
+        PdfVectorPaths paths = new PdfVectorPaths();
+        paths.setPageNumber(pageNumber);
+        paths.setBoundingBox(readBox());
+        int pathCount = readVarintInt();
+        paths.setPathCount(pathCount);
+        paths.setTruncated(data[position++] != 0);
+
+        int[] pointStarts = new int[pathCount + 1];
+        byte[] flags = new byte[pathCount];
+        float[] lineWidths = new float[pathCount];
+        float[] points = new float[64];
+        int pointCount = 0;
+        resetDelta();
+        for (int path = 0; path < pathCount; path++) {
+            int count = readVarintInt();
+            flags[path] = data[position++];
+            lineWidths[path] = (float) readFixed();
+            if (points.length < (pointCount + count) * 2) {
+                points = Arrays.copyOf(points, Math.max(points.length * 2, (pointCount + count) * 2));
+            }
+            for (int point = 0; point < count; point++) {
+                prevX += readSigned();
+                prevY += readSigned();
+                points[pointCount * 2] = (float) (prevX / scale);
+                points[pointCount * 2 + 1] = (float) (prevY / scale);
+                pointCount++;
+            }
+            pointStarts[path + 1] = pointCount;
+        }
+        paths.setPoints(Arrays.copyOf(points, pointCount * 2));
+        paths.setPointStarts(pointStarts);
+        paths.setFlags(flags);
+        paths.setLineWidths(lineWidths);
+        return paths;
+    }
+
+    private PdfDocument readDocumentHeader() {
+        PdfDocument document = new PdfDocument();
+        document.setFilename(readString());
+        document.setTotalPages(readVarintInt());
+
+        if (data[position++] == 0) {
+            readBoilerplate(document);
+            return document;
+        }
+
+        PdfMetadata metadata = new PdfMetadata();
+        metadata.setTitle(readString());
+        metadata.setAuthor(readString());
+        metadata.setSubject(readString());
+        metadata.setKeywords(readString());
+        metadata.setCreator(readString());
+        metadata.setProducer(readString());
+        metadata.setCreationDate(readDate());
+        metadata.setModificationDate(readDate());
+
+        int customCount = readVarintInt();
+        if (customCount > 0) {
+            Map<String, String> custom = new LinkedHashMap<>();
+            for (int i = 0; i < customCount; i++) {
+                custom.put(readString(), readString());
+            }
+            metadata.setCustomMetadata(custom);
+        }
+        // Not stored: it is the page count of the document
+        metadata.setPageCount(document.getTotalPages());
+        document.setMetadata(metadata);
+        readBoilerplate(document);
+        return document;
+    }
+
+    private void readBoilerplate(PdfDocument document) {
+        if (version < 4) {
+            return;
+        }
+        int count = readVarintInt();
+        if (count == 0) {
+            return;
+        }
+        List<PdfBoilerplate> boilerplate = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PdfBoilerplate item = new PdfBoilerplate();
+            item.setText(readString());
+            item.setPattern(readString());
+            item.setPosition(readString());
+            item.setBoundingBox(readBox());
+            int pageCount = readVarintInt();
+            int pageNumber = 0;
+            for (int p = 0; p < pageCount; p++) {
+                pageNumber += (int) readSigned();
+                item.getPages().add(pageNumber);
+            }
+            boilerplate.add(item);
+        }
+        document.setBoilerplate(boilerplate);
+    }
+
+    private void resetDelta() {
+        prevX = 0;
+        prevY = 0;
+    }
+
+    private BoundingBox readDeltaBox() {
+        if (data[position++] == 0) {
+            return null;
+        }
+        prevX += readSigned();
+        prevY += readSigned();
+        return new BoundingBox((float) (prevX / scale), (float) (prevY / scale),
+                (float) (readSigned() / scale), (float) (readSigned() / scale));
+    }
+
+    private BoundingBox readBox() {
+        if (data[position++] == 0) {
+            return null;
+        }
+        return new BoundingBox((float) (readSigned() / scale), (float) (readSigned() / scale),
+                (float) (readSigned() / scale), (float) (readSigned() / scale));
+    }
+
+    private String readString() {
+        int ref = readVarintInt();
+        return ref == 0 ? null : strings[ref - 1];
+    }
+
+    private Date readDate() {
+        long value = readSigned();
+        return value == 0 ? null : new Date(value - 1);
+    }
+
+    private double readFixed() {
+        return readSigned() / scale;
+    }
+
+    private long readSigned() {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int readVarintInt() {
+        return (int) readVarint();
+    }
+
+    private long readVarint() {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = data[position++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+
+    private int readInt() {
+        int value = ((data[position] & 0xFF) << 24) | ((data[position + 1] & 0xFF) << 16)
+                | ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+        position += 4;
+        return value;
+    }
+}
@@ -0,0 +1,402 @@
+package ru.sunveil.precision_pdf.pdfparser.export;
+
+import org.springframework.stereotype.Component;
+import ru.sunveil.precision_pdf.pdfparser.model.*;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary exporter ("PPDB" layout).
+ * <p>
+ * All integers are unsigned LEB128 varints unless stated otherwise, signed values are zigzag-encoded,
+ * coordinates and sizes are fixed-point numbers in {@link #COORDINATE_SCALE} units per PDF point.
+ * <pre>
+ * File        := Header StringTable Document PageIndex PageSection*
+ * Header      := "PPDB" version:u8 coordinateScale:varint
+ * StringTable := count (byteLength utf8Bytes)*        -- string refs are index + 1, 0 means null
+ * Document    := filename:ref totalPages hasMetadata:u8 [Metadata] boilerplateCount Boilerplate*
+ * Metadata    := title author subject keywords creator producer:ref
+ *                creationDate modificationDate:zigzag(epochMillis + 1, 0 = null)
+ *                customCount (key:ref value:ref)*
+ * Boilerplate := text pattern position:ref Box pageCount (pageNumberDelta)*
+ * PageIndex   := pageCount (offset:u32be length:u32be)*   -- offsets relative to the first page section
+ * PageSection := pageNumber width height:fixed text pageType:ref estimatedCost
+ *                wordCount Word* lineCount Line* chunkCount Chunk* tableCount Table* imageCount Image*
+ *                hasVectorPaths:u8 [VectorPaths]
+ * Word        := text font:ref fontSize:fixed confidence:u8 DeltaBox
+ * Line        := text:ref lineHeight:fixed DeltaBox wordCount (wordIndexDelta:zigzag)* flags:u8
+ * Chunk       := text style:ref DeltaBox structureType:ref flags:u8 wordStart wordCount lineStart lineCount
+ * Table       := Box rowCount columnCount rows (cellCount Cell*)*
+ * Cell        := content:ref row column rowSpan colSpan Box
+ * Image       := id format colorSpace:ref width height resolution:fixed Box
+ *                flags:u8 blobId mimeType:ref byteSize dataLength bytes   -- flags bit 0: duplicate (since version 2)
+ * VectorPaths := Box pathCount truncated:u8 (pointCount flags:u8 lineWidth:fixed (dx dy:zigzag)*)*
+ *                -- points relative to the previous point of the page
+ * DeltaBox    := hasBox:u8 [dx dy:zigzag width height:zigzag]   -- x/y relative to the previous box of the same list
+ * Box         := hasBox:u8 [x y width height:zigzag]
+ * </pre>
+ * Line and chunk flags bit 0 marks boilerplate. Fields after the page size, the boilerplate list,
+ * the line and chunk fields after the boxes and the vector paths are written since version 4.
+ * Version 3 was an interim layout that {@link BinaryDocumentReader} rejects.
+ * <p>
+ * Line word references point into the word list of the same page, so every word is stored once.
+ * {@link BinaryDocumentReader} decodes the layout back into the model.
+ */
+@Component
+public class BinaryExporter implements Exporter {
+
+    static final byte[] MAGIC = {'P', 'P', 'D', 'B'};
+    static final int VERSION = 4;
+    static final int COORDINATE_SCALE = 100;
+
+    @Override
+    public String export(PdfDocument document, ExportFormat format) {
+        return Base64.getEncoder().encodeToString(exportBytes(document, format));
+    }
+
+    @Override
+    public byte[] exportBytes(PdfDocument document, ExportFormat format) {
+        try {
+            return new Writer().write(document);
+        } catch (Exception e) {
+            throw new RuntimeException("Error exporting to binary", e);
+        }
+    }
+
+    @Override
+    public boolean supportsFormat(ExportFormat format) {
+        return format == ExportFormat.BINARY;
+    }
+
+    /**
+     * Single-use writer holding the string table of one document.
+     */
+    private static final class Writer {
+
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final List<String> stringList = new ArrayList<>();
+
+        private long prevX;
+        private long prevY;
+
+        byte[] write(PdfDocument document) {
+            ByteArrayOutputStream documentSection = new ByteArrayOutputStream();
+            writeDocument(documentSection, document);
+
+            List<PdfPage> pages = document.getPages() != null ? document.getPages() : List.of();
+            List<byte[]> pageSections = new ArrayList<>(pages.size());
+            for (PdfPage page : pages) {
+                ByteArrayOutputStream pageSection = new ByteArrayOutputStream();
+                writePage(pageSection, page);
+                pageSections.add(pageSection.toByteArray());
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.writeBytes(MAGIC);
+            out.write(VERSION);
+            writeVarint(out, COORDINATE_SCALE);
+
+            writeVarint(out, stringList.size());
+            for (String value : stringList) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, bytes.length);
+                out.writeBytes(bytes);
+            }
+
+            out.writeBytes(documentSection.toByteArray());
+
+            writeVarint(out, pageSections.size());
+            int offset = 0;
+            for (byte[] section : pageSections) {
+                writeInt(out, offset);
+                writeInt(out, section.length);
+                offset += section.length;
+            }
+            for (byte[] section : pageSections) {
+                out.writeBytes(section);
+            }
+
+            return out.toByteArray();
+        }
+
+        private void writeDocument(ByteArrayOutputStream out, PdfDocument document) {
+            writeString(out, document.getFilename());
+            writeVarint(out, document.getTotalPages());
+
+            PdfMetadata metadata = document.getMetadata();
+            out.write(metadata != null ? 1 : 0);
+            if (metadata != null) {
+                writeMetadata(out, metadata);
+            }
+
+            List<PdfBoilerplate> boilerplate = nonNull(document.getBoilerplate());
+            writeVarint(out, boilerplate.size());
+            for (PdfBoilerplate item : boilerplate) {
+                writeString(out, item.getText());
+                writeString(out, item.getPattern());
+                writeString(out, item.getPosition());
+                writeBox(out, item.getBoundingBox());
+                List<Integer> pages = nonNull(item.getPages());
+                writeVarint(out, pages.size());
+                int previous = 0;
+                for (int pageNumber : pages) {
+                    writeSigned(out, pageNumber - previous);
+                    previous = pageNumber;
+                }
+            }
+        }
+
+        private void writeMetadata(ByteArrayOutputStream out, PdfMetadata metadata) {
+            writeString(out, metadata.getTitle());
+            writeString(out, metadata.getAuthor());
+            writeString(out, metadata.getSubject());
+            writeString(out, metadata.getKeywords());
+            writeString(out, metadata.getCreator());
+            writeString(out, metadata.getProducer());
+            writeDate(out, metadata.getCreationDate());
+            writeDate(out, metadata.getModificationDate());
+
+            Map<String, String> custom = metadata.getCustomMetadata();
+            writeVarint(out, custom != null ? custom.size() : 0);
+            if (custom != null) {
+                for (Map.Entry<String, String> entry : custom.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue());
+                }
+            }
+        }
+
+        private void writePage(ByteArrayOutputStream out, PdfPage page) {
+            writeVarint(out, page.getPageNumber());
+            writeFixed(out, page.getWidth());
+            writeFixed(out, page.getHeight());
+            writeString(out, page.getText());
+            writeString(out, page.getPageType() != null ? page.getPageType().name() : null);
+            writeVarint(out, page.getEstimatedCost());
+
+            List<Word> words = new ArrayList<>(nonNull(page.getWords()));
+            Map<Word, Integer> wordIndex = new IdentityHashMap<>();
+            for (int i = 0; i < words.size(); i++) {
+                wordIndex.put(words.get(i), i);
+            }
+            // Words that are referenced only by lines still have to be stored once
+            for (TextLine line : nonNull(page.getTextLines())) {
+                for (Word word : nonNull(line.getWords())) {
+                    if (!wordIndex.containsKey(word)) {
+                        wordIndex.put(word, words.size());
+                        words.add(word);
+                    }
+                }
+            }
+
+            writeVarint(out, words.size());
+            resetDelta();
+            for (Word word : words) {
+                writeString(out, word.getText());
+                writeString(out, word.getFontName());
+                writeFixed(out, word.getFontSize());
+                out.write(Math.round(Math.max(0f, Math.min(1f, word.getConfidence())) * 255));
+                writeDeltaBox(out, word.getBoundingBox());
+            }
+
+            List<TextLine> lines = nonNull(page.getTextLines());
+            writeVarint(out, lines.size());
+            resetDelta();
+            for (TextLine line : lines) {
+                writeString(out, line.getText());
+                writeFixed(out, line.getLineHeight());
+                writeDeltaBox(out, line.getBoundingBox());
+
+                List<Word> lineWords = nonNull(line.getWords());
+                writeVarint(out, lineWords.size());
+                int previous = -1;
+                for (Word word : lineWords) {
+                    int index = wordIndex.get(word);
+                    writeSigned(out, index - previous);
+                    previous = index;
+                }
+                out.write(line.isBoilerplate() ? 1 : 0);
+            }
+
+            List<PdfTextChunk> chunks = nonNull(page.getPdfTextChunks());
+            writeVarint(out, chunks.size());
+            resetDelta();
+            for (PdfTextChunk chunk : chunks) {
+                writeString(out, chunk.getText());
+                writeString(out, chunk.getStyle());
+                writeDeltaBox(out, chunk.getBoundingBox());
+                writeString(out, chunk.getStructureType());
+                out.write(chunk.isBoilerplate() ? 1 : 0);
+                writeVarint(out, chunk.getWordStart());
+                writeVarint(out, chunk.getWordCount());
+                writeVarint(out, chunk.getLineStart());
+                writeVarint(out, chunk.getLineCount());
+            }
+
+            List<Table> tables = nonNull(page.getTables());
+            writeVarint(out, tables.size());
+            for (Table table : tables) {
+                writeBox(out, table.getBoundingBox());
+                writeVarint(out, table.getRowCount());
+                writeVarint(out, table.getColumnCount());
+
+                List<List<TableCell>> rows = nonNull(table.getRows());
+                writeVarint(out, rows.size());
+                for (List<TableCell> row : rows) {
+                    List<TableCell> cells = nonNull(row);
+                    writeVarint(out, cells.size());
+                    for (TableCell cell : cells) {
+                        writeString(out, cell.getContent());
+                        writeVarint(out, cell.getRow());
+                        writeVarint(out, cell.getColumn());
+                        writeVarint(out, cell.getRowSpan());
+                        writeVarint(out, cell.getColSpan());
+                        writeBox(out, cell.getBoundingBox());
+                    }
+                }
+            }
+
+            List<PdfImage> images = nonNull(page.getImages());
+            writeVarint(out, images.size());
+            for (PdfImage image : images) {
+                writeString(out, image.getId());
+                writeString(out, image.getImageFormat());
+                writeString(out, image.getColorSpace());
+                writeVarint(out, image.getWidth());
+                writeVarint(out, image.getHeight());
+                writeFixed(out, image.getResolution());
+                writeBox(out, image.getBoundingBox());
+                out.write(image.isDuplicate() ? 1 : 0);
+                writeString(out, image.getBlobId());
+                writeString(out, image.getMimeType());
+                writeVarint(out, image.getByteSize());
+
+                byte[] data = image.getImageData() != null ? image.getImageData() : new byte[0];
+                writeVarint(out, data.length);
+                out.writeBytes(data);
+            }
+
+            PdfVectorPaths paths = page.getVectorPaths();
+            out.write(paths != null ? 1 : 0);
+            if (paths != null) {
+                writeVectorPaths(out, paths);
+            }
+        }
+
+        private void writeVectorPaths(ByteArrayOutputStream out, PdfVectorPaths paths) {
+            writeBox(out, paths.getBoundingBox());
+            writeVarint(out, paths.getPathCount());
+            out.write(paths.isTruncated() ? 1 : 0);
+            resetDelta();
+            for (int path = 0; path < paths.getPathCount(); path++) {
+                int from = paths.getPointStarts()[path];
+                int to = paths.getPointStarts()[path + 1];
+                writeVarint(out, to - from);
+                out.write(paths.getFlags()[path]);
+                writeFixed(out, paths.getLineWidths()[path]);
+                for (int point = from; point < to; point++) {
+                    long x = toFixed(paths.getPoints()[point * 2]);
+                    long y = toFixed(paths.getPoints()[point * 2 + 1]);
+                    writeSigned(out, x - prevX);
+                    writeSigned(out, y - prevY);
+                    prevX = x;
+                    prevY = y;
+                }
+            }
+        }
+
+        private void resetDelta() {
+            prevX = 0;
+            prevY = 0;
+        }
+
+        private void writeDeltaBox(ByteArrayOutputStream out, BoundingBox box) {
+            if (box == null) {
+                out.write(0);
+                return;
+            }
+            out.write(1);
+            long x = toFixed(box.getX());
+            long y = toFixed(box.getY());
+            writeSigned(out, x - prevX);
+            writeSigned(out, y - prevY);
+            writeSigned(out, toFixed(box.getWidth()));
+            writeSigned(out, toFixed(box.getHeight()));
+            prevX = x;
+            prevY = y;
+        }
+
+        private void writeBox(ByteArrayOutputStream out, BoundingBox box) {
+            if (box == null) {
+                out.write(0);
+                return;
+            }
+            out.write(1);
+            writeSigned(out, toFixed(box.getX()));
+            writeSigned(out, toFixed(box.getY()));
+            writeSigned(out, toFixed(box.getWidth()));
+            writeSigned(out, toFixed(box.getHeight()));
+        }
+
+        private void writeString(ByteArrayOutputStream out, String value) {
+            if (value == null) {
+                writeVarint(out, 0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index == null) {
+                index = stringList.size();
+                strings.put(value, index);
+                stringList.add(value);
+            }
+            writeVarint(out, index + 1);
+        }
+
+        private void writeDate(ByteArrayOutputStream out, Date date) {
+            writeSigned(out, date != null ? date.getTime() + 1 : 0);
+        }
+
+        private void writeFixed(ByteArrayOutputStream out, double value) {
+            writeSigned(out, toFixed(value));
+        }
+
+        private static <T> List<T> nonNull(List<T> list) {
+            return list != null ? list : List.of();
+        }
+    }
+
+    static long toFixed(double value) {
+        if (!Double.isFinite(value)) {
+            return 0;
+        }
+        return Math.round(value * COORDINATE_SCALE);
+    }
+
+    static void writeSigned(ByteArrayOutputStream out, long value) {
+        writeVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
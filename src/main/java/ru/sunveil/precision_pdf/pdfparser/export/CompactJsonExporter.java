@@ -0,0 +1,50 @@
+package ru.sunveil.precision_pdf.pdfparser.export;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfDocument;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfTextChunk;
+import ru.sunveil.precision_pdf.pdfparser.model.TextLine;
+
+/**
+ * Reference-based JSON output: words are written once per page (addressed by {@code id}),
+ * lines and chunks carry only {@code wordStart}/{@code wordCount} ranges into the page word list,
+ * chunks also {@code lineStart}/{@code lineCount} ranges into the page line list.
+ */
+@Component
+public class CompactJsonExporter implements Exporter {
+
+    private final ObjectMapper objectMapper;
+
+    public CompactJsonExporter() {
+        this.objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        objectMapper.addMixIn(TextLine.class, TextLineReferenceMixIn.class);
+        objectMapper.addMixIn(PdfTextChunk.class, TextChunkReferenceMixIn.class);
+    }
+
+    @Override
+    public String export(PdfDocument document, ExportFormat format) {
+        try {
+            return objectMapper.writeValueAsString(document);
+        } catch (Exception e) {
+            throw new RuntimeException("Error exporting to compact JSON", e);
+        }
+    }
+
+    @Override
+    public boolean supportsFormat(ExportFormat format) {
+        return format == ExportFormat.JSON_COMPACT;
+    }
+
+    @JsonIgnoreProperties({"words", "text"})
+    private abstract static class TextLineReferenceMixIn {
+    }
+
+    @JsonIgnoreProperties({"lines", "text"})
+    private abstract static class TextChunkReferenceMixIn {
+    }
+}
@@ -2,9 +2,11 @@ package ru.sunveil.precision_pdf.pdfparser.export;
 
 public enum ExportFormat {
     JSON,
+    JSON_COMPACT,
     XML,
     HTML,
     TEXT,
     CSV,
-    PDF
+    PDF,
+    BINARY
 }
@@ -2,7 +2,13 @@ package ru.sunveil.precision_pdf.pdfparser.export;
 
 import ru.sunveil.precision_pdf.pdfparser.model.PdfDocument;
 
+import java.nio.charset.StandardCharsets;
+
 public interface Exporter {
     String export(PdfDocument document, ExportFormat format);
     boolean supportsFormat(ExportFormat format);
+
+    default byte[] exportBytes(PdfDocument document, ExportFormat format) {
+        return export(document, format).getBytes(StandardCharsets.UTF_8);
+    }
 }
@@ -1,8 +1,10 @@
 package ru.sunveil.precision_pdf.pdfparser.export;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Component;
 import ru.sunveil.precision_pdf.pdfparser.model.PdfDocument;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfTextChunk;
 
 @Component
 public class JsonExporter implements Exporter {
@@ -12,6 +14,7 @@ public class JsonExporter implements Exporter {
     public JsonExporter() {
         this.objectMapper = new ObjectMapper();
         objectMapper.findAndRegisterModules();
+        objectMapper.addMixIn(PdfTextChunk.class, TextChunkMixIn.class);
     }
 
     @Override
@@ -27,4 +30,12 @@ public class JsonExporter implements Exporter {
     public boolean supportsFormat(ExportFormat format) {
         return format == ExportFormat.JSON;
     }
+
+    /**
+     * Chunk lines are the page's own lines, written once under {@code textLines};
+     * chunks refer to them by {@code lineStart}/{@code lineCount}
+     */
+    @JsonIgnoreProperties({"lines"})
+    private abstract static class TextChunkMixIn {
+    }
 }
\ No newline at end of file
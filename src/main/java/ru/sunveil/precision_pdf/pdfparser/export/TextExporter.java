@@ -22,6 +22,9 @@ public class TextExporter implements Exporter {
             text.append("Page ").append(page.getPageNumber()).append("\n")
                     .append("-".repeat(30)).append("\n");
 
+            if (page.getText() != null) {
+                text.append(page.getText());
+            }
             for (TextLine line : page.getTextLines()) {
                 for (Word word : line.getWords()) {
                     text.append(word.getText()).append(" ");
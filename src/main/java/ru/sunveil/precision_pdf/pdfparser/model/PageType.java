@@ -0,0 +1,28 @@
+package ru.sunveil.precision_pdf.pdfparser.model;
+
+/**
+ * Kind of content found on a page by the page classification
+ */
+public enum PageType {
+    TEXT(true, false),
+    IMAGE_ONLY(false, true),
+    VECTOR(false, false),
+    BLANK(false, false),
+    MIXED(true, true);
+
+    private final boolean text;
+    private final boolean images;
+
+    PageType(boolean text, boolean images) {
+        this.text = text;
+        this.images = images;
+    }
+
+    public boolean hasText() {
+        return text;
+    }
+
+    public boolean hasImages() {
+        return images;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.sunveil.precision_pdf.pdfparser.model;
+
+import lombok.Data;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Running header, footer or page number repeated across the pages of a document
+ */
+@Data
+public class PdfBoilerplate {
+    /**
+     * Text of the first occurrence
+     */
+    private String text;
+    /**
+     * Normalized text shared by all occurrences: lower case, single spaces, digit runs as {@code #}
+     */
+    private String pattern;
+    /**
+     * HEADER or FOOTER
+     */
+    private String position;
+    private BoundingBox boundingBox;
+    private List<Integer> pages = new ArrayList<>();
+}
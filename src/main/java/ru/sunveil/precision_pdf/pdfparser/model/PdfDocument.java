@@ -11,4 +11,5 @@ public class PdfDocument {
     private PdfMetadata metadata;
     private List<PdfPage> pages;
     private List<PdfImage> images;
+    private List<PdfBoilerplate> boilerplate;
 }
@@ -14,6 +14,10 @@ public class PdfImage implements PdfEntity {
     private String colorSpace;
     private int width;
     private int height;
+    private boolean duplicate;
+    private String blobId;
+    private long byteSize;
+    private String mimeType;
 
     @Override
     public String getType() {
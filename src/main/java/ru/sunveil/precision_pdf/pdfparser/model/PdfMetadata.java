@@ -15,4 +15,5 @@ public class PdfMetadata {
     private Date creationDate;
     private Date modificationDate;
     private Map<String, String> customMetadata;
+    private Integer pageCount;
 }
\ No newline at end of file
@@ -9,9 +9,13 @@ public class PdfPage {
     private int pageNumber;
     private double width;
     private double height;
+    private String text;
+    private PageType pageType;
+    private long estimatedCost;
     private List<Word> words = new ArrayList<>();
     private List<TextLine> textLines = new ArrayList<>();
     private List<PdfTextChunk> pdfTextChunks = new ArrayList<>();
     private List<Table> tables = new ArrayList<>();
     private List<PdfImage> images = new ArrayList<>();
+    private PdfVectorPaths vectorPaths;
 }
@@ -9,6 +9,16 @@ import java.util.List;
 public class PdfTextChunk extends TextEntity {
     private List<TextLine> lines;
     private String style;
+    private String structureType;
+    private int wordStart;
+    private int wordCount;
+    /**
+     * Range of the page line list covered by the chunk; lineCount is 0 when the chunk was not built from lines
+     */
+    private int lineStart;
+    private int lineCount;
+    private int readingOrder;
+    private boolean boilerplate;
 
     public PdfTextChunk(){
         super();
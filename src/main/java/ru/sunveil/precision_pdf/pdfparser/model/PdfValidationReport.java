@@ -0,0 +1,109 @@
+package ru.sunveil.precision_pdf.pdfparser.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of the structural validation of a PDF file
+ */
+@Data
+public class PdfValidationReport {
+    /**
+     * No error was found
+     */
+    private boolean valid;
+    /**
+     * The document is valid or all of its errors are ones the lenient parser recovers from
+     */
+    private boolean repairable;
+    /**
+     * False when the time or byte budget ran out before all checks were done
+     */
+    private boolean complete = true;
+    private String pdfVersion;
+    private long fileSize;
+    /**
+     * Page count declared by the root of the page tree
+     */
+    private Integer pageCount;
+    private int xrefSections;
+    /**
+     * Objects in use according to the cross-reference data
+     */
+    private int objectCount;
+    private boolean encrypted;
+    private long bytesRead;
+    private long elapsedMillis;
+    private List<Finding> findings = new ArrayList<>();
+
+    public enum Severity {
+        ERROR,
+        WARNING
+    }
+
+    public enum Issue {
+        EMPTY_FILE(Severity.ERROR, false),
+        NOT_PDF(Severity.ERROR, false),
+        HEADER_OFFSET(Severity.WARNING, true),
+        MISSING_EOF(Severity.WARNING, true),
+        MISSING_STARTXREF(Severity.ERROR, true),
+        INVALID_STARTXREF(Severity.ERROR, true),
+        XREF_NOT_FOUND(Severity.ERROR, true),
+        XREF_MALFORMED(Severity.ERROR, true),
+        XREF_LOOP(Severity.ERROR, true),
+        SIZE_MISMATCH(Severity.WARNING, true),
+        UNSUPPORTED_FILTER(Severity.WARNING, true),
+        OBJECT_OFFSET_MISMATCH(Severity.ERROR, true),
+        MALFORMED_OBJECT(Severity.ERROR, true),
+        STREAM_LENGTH_MISMATCH(Severity.ERROR, true),
+        NO_OBJECTS(Severity.ERROR, false),
+        MISSING_ROOT(Severity.ERROR, true),
+        MISSING_PAGES(Severity.ERROR, false),
+        PAGE_TREE_MALFORMED(Severity.ERROR, true),
+        PAGE_TREE_CYCLE(Severity.ERROR, true),
+        PAGE_COUNT_MISMATCH(Severity.ERROR, true),
+        ENCRYPTED(Severity.WARNING, true),
+        BUDGET_EXCEEDED(Severity.WARNING, true);
+
+        private final Severity severity;
+        private final boolean repairable;
+
+        Issue(Severity severity, boolean repairable) {
+            this.severity = severity;
+            this.repairable = repairable;
+        }
+
+        public Severity getSeverity() {
+            return severity;
+        }
+
+        public boolean isRepairable() {
+            return repairable;
+        }
+    }
+
+    @Data
+    public static class Finding {
+        private Issue issue;
+        private Severity severity;
+        private boolean repairable;
+        private String message;
+        /**
+         * File offset the finding refers to, -1 when it has none
+         */
+        private long offset;
+
+        public Finding() {
+        }
+
+        public Finding(Issue issue, String message, long offset) {
+            this.issue = issue;
+            this.severity = issue.getSeverity();
+            this.repairable = issue.isRepairable();
+            this.message = message;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.sunveil.precision_pdf.pdfparser.model;
+
+import lombok.Data;
+import ru.sunveil.precision_pdf.pdfparser.model.core.*;
+
+/**
+ * Stroked and filled vector paths of a page in flat arrays.
+ * <p>
+ * Every painted subpath is one polyline. The points of polyline {@code i} are the
+ * {@code x, y} pairs from {@code pointStarts[i]} to {@code pointStarts[i + 1]} (exclusive,
+ * counted in points) in {@code points}. Coordinates are in the rotated page space of all bounding boxes.
+ */
+@Data
+public class PdfVectorPaths implements PdfEntity {
+    public static final byte STROKE = 1;
+    public static final byte FILL = 2;
+    public static final byte CLOSED = 4;
+
+    private int pageNumber;
+    private BoundingBox boundingBox;
+    private int pathCount;
+    private float[] points;
+    private int[] pointStarts;
+    /**
+     * {@link #STROKE}, {@link #FILL} and {@link #CLOSED} bits of every polyline
+     */
+    private byte[] flags;
+    private float[] lineWidths;
+    /**
+     * Whether paths beyond the per-page limit were dropped
+     */
+    private boolean truncated;
+
+    @Override
+    public String getType() {
+        return "VECTOR_PATHS";
+    }
+}
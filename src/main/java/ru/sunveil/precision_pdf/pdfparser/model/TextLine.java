@@ -12,6 +12,10 @@ import java.util.List;
 public class TextLine extends TextEntity {
     private List<Word> words;
     private float lineHeight;
+    private int wordStart;
+    private int wordCount;
+    private int readingOrder;
+    private boolean boilerplate;
 
     public TextLine(){
         super();
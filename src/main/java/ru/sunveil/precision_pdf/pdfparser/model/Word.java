@@ -7,6 +7,7 @@ import ru.sunveil.precision_pdf.pdfparser.model.core.*;
 @Data
 @EqualsAndHashCode(callSuper = true)
 public class Word extends TextEntity {
+    private int id;
     private float confidence;
     private String fontName;
     private float fontSize;
@@ -0,0 +1,19 @@
+package ru.sunveil.precision_pdf.pdfparser.parser;
+
+/**
+ * What happens to lines repeated near the edges of many pages
+ */
+public enum BoilerplateMode {
+    /**
+     * No detection
+     */
+    OFF,
+    /**
+     * Lines and chunks stay on the pages and are marked as boilerplate
+     */
+    FLAG,
+    /**
+     * Lines are removed from the pages and kept only in the document-level list
+     */
+    REMOVE
+}
@@ -3,14 +3,19 @@ package ru.sunveil.precision_pdf.pdfparser.parser;
 import org.springframework.stereotype.Component;
 import ru.sunveil.precision_pdf.pdfparser.config.ParserConfig;
 import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.AbstractPdfBoxParser;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.ImageExtractionEngine;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.PdfStructureValidator;
+import ru.sunveil.precision_pdf.pdfparser.storage.ImageBlobStore;
 
 @Component
 public class PdfParseFactory {
 
     private final ParserConfig parserConfig;
+    private final ImageBlobStore imageBlobStore;
 
-    public PdfParseFactory(ParserConfig parserConfig) {
+    public PdfParseFactory(ParserConfig parserConfig, ImageBlobStore imageBlobStore) {
         this.parserConfig = parserConfig;
+        this.imageBlobStore = imageBlobStore;
     }
 
     public PdfParser createParser() {
@@ -24,19 +29,29 @@ public class PdfParseFactory {
     public PdfParser createParser(ParserType parserType, ParserConfig config) {
         switch (parserType) {
             case PRECISION:
-                return createPdfBoxParser(config);
+                return createPdfBoxParser(new PrecisionParser(), config);
             case DEFAULT:
             default:
-                return createPdfBoxParser(config);
+                return createPdfBoxParser(new SimpleParser(), config);
         }
     }
 
-    private PdfParser createPdfBoxParser(ParserConfig config) {
-        SimpleParser parser = new SimpleParser();
+    public PdfStructureValidator createValidator() {
+        return createValidator(parserConfig);
+    }
+
+    public PdfStructureValidator createValidator(ParserConfig config) {
+        return new PdfStructureValidator(config.getValidationMaxBytes(), config.getValidationTimeoutMs());
+    }
+
+    private PdfParser createPdfBoxParser(SimpleParser parser, ParserConfig config) {
+        parser.setImageBlobStore(imageBlobStore);
         configureParser(parser, config);
         return parser;
     }
 
     private void configureParser(AbstractPdfBoxParser parser, ParserConfig config) {
+        ImageExtractionEngine.getSharedCache().setMaxBytes(config.getImageCacheSizeMb() * 1024L * 1024L);
+        parser.setStructureValidator(config.isEnableValidation() ? createValidator(config) : null);
     }
 }
\ No newline at end of file
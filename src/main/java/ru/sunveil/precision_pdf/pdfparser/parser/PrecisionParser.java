@@ -0,0 +1,16 @@
+package ru.sunveil.precision_pdf.pdfparser.parser;
+
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.PrecisionTextEngine;
+
+/**
+ * Parser that groups the glyphs of the single content stream pass into lines with a histogram
+ * of baselines ({@link ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.PrecisionTextEngine})
+ * instead of a global position sort.
+ */
+public class PrecisionParser extends SimpleParser {
+
+    @Override
+    protected PrecisionTextEngine.LineGrouping getLineGrouping() {
+        return PrecisionTextEngine.LineGrouping.BASELINE_HISTOGRAM;
+    }
+}
@@ -3,50 +3,106 @@ package ru.sunveil.precision_pdf.pdfparser.parser;
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.sunveil.precision_pdf.pdfparser.config.ExtractionConfig;
 import ru.sunveil.precision_pdf.pdfparser.exceptions.PdfParseException;
 import ru.sunveil.precision_pdf.pdfparser.model.*;
 import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.AbstractPdfBoxParser;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.BlockDetectionEngine;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.BoilerplateDetector;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.ContentStreamEngine;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.ContentStreamListener;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.GlyphBuffer;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.GlyphDeduplicator;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.GlyphMetricsCache;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.ImageEncoder;
 import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.ImageExtractionEngine;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.PageClassifier;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.PageContentCollector;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.PageRenderPipeline;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.PrecisionTextEngine;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.RawTextWriter;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.ReadingOrderEngine;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.RulingCollector;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.StructureTreeIndex;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.TableExtractionEngine;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.WhitespaceTableEngine;
 import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.TextExtractionEngine;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.VectorPathCollector;
+import ru.sunveil.precision_pdf.pdfparser.storage.ImageBlobStore;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 public class SimpleParser extends AbstractPdfBoxParser {
 
     protected PDDocument currentDocument;
+    protected File currentFile;
     protected ExtractionConfig extractionConfig;
-    private final ImageExtractionEngine imageExtractionEngine;
+    private ImageExtractionEngine imageExtractionEngine;
+    private final boolean fixedImageSettings;
+    private ImageBlobStore imageBlobStore;
+    private final GlyphBuffer glyphBuffer = new GlyphBuffer();
+    private final PrecisionTextEngine precisionTextEngine = new PrecisionTextEngine();
+    private GlyphDeduplicator glyphDeduplicator;
+    private GlyphMetricsCache glyphMetrics = GlyphMetricsCache.getShared();
+    private final PageClassifier pageClassifier = new PageClassifier();
+    private final TableExtractionEngine tableExtractionEngine = new TableExtractionEngine();
+    private final WhitespaceTableEngine whitespaceTableEngine = new WhitespaceTableEngine();
+    private final ReadingOrderEngine readingOrderEngine = new ReadingOrderEngine();
+    private final BlockDetectionEngine blockDetectionEngine = new BlockDetectionEngine();
+    private StructureTreeIndex structureTree;
+    private final BoilerplateDetector boilerplateDetector = new BoilerplateDetector();
     private static final Logger logger = LoggerFactory.getLogger(SimpleParser.class);
 
     public SimpleParser() {
         this.imageExtractionEngine = new ImageExtractionEngine();
+        this.fixedImageSettings = false;
     }
 
     public SimpleParser(float imageDpi, int maxImageSize) {
         this.imageExtractionEngine = new ImageExtractionEngine(imageDpi, maxImageSize, true);
+        this.fixedImageSettings = true;
     }
 
     @Override
     public PdfDocument parse(File pdfFile, ExtractionConfig config) {
         validateFile(pdfFile);
+        validateStructure(pdfFile);
         this.extractionConfig = config != null ? config : getDefaultExtractionConfig();
+        if (!fixedImageSettings) {
+            imageExtractionEngine = new ImageExtractionEngine(
+                    extractionConfig.getImageDpi(), extractionConfig.getMaxImageSize(), true);
+        }
+        imageExtractionEngine.setImageEncoder(ImageEncoder.fromConfig(extractionConfig));
+        glyphDeduplicator = extractionConfig.isSuppressDuplicateGlyphs()
+                ? new GlyphDeduplicator(extractionConfig.getDuplicateGlyphTolerance()) : null;
+        glyphMetrics = extractionConfig.isPreciseGlyphBounds() ? GlyphMetricsCache.getShared() : null;
+        imageExtractionEngine.setMaxImagePixels(extractionConfig.getMaxImagePixels());
+        imageExtractionEngine.setPassthroughEncodedStreams(extractionConfig.isImagePassthrough());
+        imageExtractionEngine.setBlobStore(extractionConfig.isExternalImageStorage() ? imageBlobStore : null);
+        // Pages without images are rendered afterwards by the parallel pipeline
+        imageExtractionEngine.setRenderPagesWithoutImages(false);
 
         PDDocument document = null;
         try {
             document = Loader.loadPDF(pdfFile);
             this.currentDocument = document;
+            this.currentFile = pdfFile;
             return parseDocument(document, pdfFile.getName());
         } catch (IOException e) {
             throw new PdfParseException("Failed to load PDF document: " + pdfFile.getAbsolutePath(), e);
         } finally {
             closeDocument(document);
             this.currentDocument = null;
+            this.currentFile = null;
         }
     }
 
@@ -59,7 +115,23 @@ public class SimpleParser extends AbstractPdfBoxParser {
             pdfDocument.setMetadata(extractMetadata(document));
         }
 
-        pdfDocument.setPages(extractPages(document));
+        // Tagged documents are read in the order of their structure tree
+        structureTree = extractionConfig.isExtractText() && extractionConfig.isPreserveLayout()
+                && extractionConfig.isUseStructureTree() ? StructureTreeIndex.read(document) : null;
+        try {
+            pdfDocument.setPages(extractPages(document));
+        } finally {
+            structureTree = null;
+        }
+
+        // Running headers and footers are compared across all pages
+        if (extractionConfig.isExtractText() && extractionConfig.isPreserveLayout()) {
+            BoilerplateMode mode = BoilerplateMode.valueOf(
+                    extractionConfig.getBoilerplateMode().toUpperCase(Locale.ROOT));
+            if (mode != BoilerplateMode.OFF) {
+                pdfDocument.setBoilerplate(boilerplateDetector.detect(pdfDocument.getPages(), mode));
+            }
+        }
 
         return pdfDocument;
     }
@@ -78,42 +150,157 @@ public class SimpleParser extends AbstractPdfBoxParser {
             }
         }
 
-
+        if (extractionConfig.isExtractImages()) {
+            renderPagesWithoutImages(pages);
+        }
 
         return pages;
     }
 
+    /**
+     * Renders pages on which no embedded images were found, in parallel on separate document handles.
+     */
+    protected void renderPagesWithoutImages(List<PdfPage> pages) {
+        List<Integer> pageNumbers = new ArrayList<>();
+        for (PdfPage page : pages) {
+            if ((page.getImages() == null || page.getImages().isEmpty()) && page.getPageType() != PageType.BLANK) {
+                pageNumbers.add(page.getPageNumber());
+            }
+        }
+        if (pageNumbers.isEmpty() || currentFile == null) {
+            return;
+        }
+
+        PageRenderPipeline pipeline = new PageRenderPipeline(imageExtractionEngine, extractionConfig.getRenderThreads());
+        Map<Integer, PdfImage> rendered = pipeline.renderPages(currentFile, pageNumbers);
+        for (PdfPage page : pages) {
+            PdfImage image = rendered.get(page.getPageNumber());
+            if (image != null) {
+                page.setImages(new ArrayList<>(List.of(image)));
+            }
+        }
+    }
+
     protected PdfPage extractPage(PDPage page, int pageNumber) {
         PdfPage pdfPage = new PdfPage();
         pdfPage.setPageNumber(pageNumber);
 
-        if (page.getMediaBox() != null) {
-            pdfPage.setWidth(page.getMediaBox().getWidth());
-            pdfPage.setHeight(page.getMediaBox().getHeight());
+        // Content coordinates are relative to the crop box turned by the page rotation
+        PDRectangle cropBox = page.getCropBox();
+        boolean turned = page.getRotation() == 90 || page.getRotation() == 270;
+        pdfPage.setWidth(turned ? cropBox.getHeight() : cropBox.getWidth());
+        pdfPage.setHeight(turned ? cropBox.getWidth() : cropBox.getHeight());
+
+        // Content stream stages subscribe to a single pass over the page
+        boolean extractText = extractionConfig.isExtractText();
+        boolean extractTables = extractionConfig.isExtractTables();
+        boolean extractImages = extractionConfig.isExtractImages();
+        boolean extractVectorPaths = extractionConfig.isExtractVectorPaths();
+        List<ContentStreamListener> listeners = new ArrayList<>();
+        if (extractionConfig.isClassifyPages()) {
+            listeners.add(pageClassifier);
         }
-
-        if (extractionConfig.isExtractText()) {
+        boolean rawText = extractText && !extractionConfig.isPreserveLayout();
+        boolean layoutText = extractText && !rawText;
+        StructureTreeIndex.PageContent taggedContent = layoutText && structureTree != null
+                ? structureTree.getPage(page) : null;
+        StringWriter pageText = null;
+        if (rawText) {
+            // Plain text only: content order, no words, lines or geometry
+            pageText = new StringWriter();
+            listeners.add(new RawTextWriter(pageText, glyphDeduplicator));
+        } else if (layoutText) {
+            glyphBuffer.clear();
+            listeners.add(glyphBuffer);
+        }
+        RulingCollector rulingCollector = null;
+        if (extractTables) {
+            rulingCollector = new RulingCollector();
+            listeners.add(rulingCollector);
+            // Cell words come from the pass that finds the rulings, in the same coordinate space
+            if (!layoutText) {
+                glyphBuffer.clear();
+                listeners.add(glyphBuffer);
+            }
+        }
+        PageContentCollector contentCollector = null;
+        if (extractImages) {
+            contentCollector = new PageContentCollector();
+            listeners.add(contentCollector);
+        }
+        VectorPathCollector vectorPathCollector = null;
+        if (extractVectorPaths) {
+            vectorPathCollector = new VectorPathCollector(extractionConfig.getMaxVectorPathsPerPage());
+            listeners.add(vectorPathCollector);
+        }
+        ContentStreamEngine engine = new ContentStreamEngine(page);
+        engine.setGlyphMetrics(glyphMetrics);
+        if (!listeners.isEmpty()) {
             try {
-                pdfPage.setWords(extractWords(currentDocument));
-                pdfPage.setTextLines(extractTextLines(currentDocument));
-                pdfPage.setPdfTextChunks(extractTextChunks(currentDocument));
-            } catch (Exception e) {
-                System.err.println("Failed to extract text from page " + pageNumber + ": " + e.getMessage());
+                engine.process(pageNumber, listeners.toArray(new ContentStreamListener[0]));
+            } catch (IOException e) {
+                logger.warn("Failed to process content stream of page {}", pageNumber, e);
             }
         }
 
-        if (extractionConfig.isExtractTables()) {
-            try {
-                pdfPage.setTables(extractTables(currentDocument));
-            } catch (Exception e) {
-                System.err.println("Failed to extract tables from page " + pageNumber + ": " + e.getMessage());
+        // Stages that cannot produce output for the page are skipped
+        if (extractionConfig.isClassifyPages()) {
+            PageClassifier.Classification classification = pageClassifier.getClassification(engine.getOperatorCount());
+            pdfPage.setPageType(classification.type());
+            pdfPage.setEstimatedCost(classification.estimatedCost());
+            layoutText &= classification.type().hasText();
+            extractTables &= classification.type().hasText();
+            extractImages &= classification.type() != PageType.BLANK;
+            extractVectorPaths &= classification.paths() > 0;
+            logger.debug("Page {} classified as {}, estimated cost {}",
+                    pageNumber, classification.type(), classification.estimatedCost());
+        }
+
+        if (rawText) {
+            pdfPage.setText(pageText.toString());
+        } else if (layoutText) {
+            if (glyphDeduplicator != null) {
+                glyphDeduplicator.deduplicate(glyphBuffer);
             }
+            if (taggedContent != null) {
+                precisionTextEngine.extractTaggedPage(glyphBuffer, taggedContent);
+            } else {
+                precisionTextEngine.extractPage(glyphBuffer, getLineGrouping());
+            }
+            pdfPage.setWords(precisionTextEngine.getWords());
+            pdfPage.setTextLines(precisionTextEngine.getTextLines());
+            pdfPage.setPdfTextChunks(precisionTextEngine.getTextChunks());
         }
 
-        if (extractionConfig.isExtractImages()) {
+        // Tagged pages already come in reading order and structure blocks
+        boolean layoutAnalysis = layoutText && taggedContent == null;
+        if (layoutAnalysis && extractionConfig.isDetectReadingOrder()) {
+            readingOrderEngine.apply(pdfPage);
+        }
+        if (layoutAnalysis && extractionConfig.isDetectBlocks()) {
+            blockDetectionEngine.apply(pdfPage);
+        }
+
+        if (rulingCollector != null && extractTables) {
+            List<Word> tableWords = pdfPage.getWords();
+            if (!layoutText) {
+                if (glyphDeduplicator != null) {
+                    glyphDeduplicator.deduplicate(glyphBuffer);
+                }
+                precisionTextEngine.extractPage(glyphBuffer);
+                tableWords = precisionTextEngine.getWords();
+            }
+            pdfPage.setTables(extractPageTables(rulingCollector, tableWords, pageNumber));
+        }
+
+        if (vectorPathCollector != null && extractVectorPaths) {
+            pdfPage.setVectorPaths(vectorPathCollector.toVectorPaths(pageNumber));
+        }
+
+        if (contentCollector != null && extractImages) {
             try {
-                List<PdfImage> pageImages = imageExtractionEngine.extractImagesFromPage(
-                        getCurrentDocument(), pageNumber);
+                List<PdfImage> pageImages = imageExtractionEngine.extractPlacedImages(
+                        getCurrentDocument(), pageNumber, contentCollector.getImagePlacements());
                 pdfPage.setImages(pageImages);
             } catch (IOException e) {
                 logger.warn("Failed to extract images from page {}", pageNumber, e);
@@ -200,8 +387,38 @@ public class SimpleParser extends AbstractPdfBoxParser {
             throw new IllegalArgumentException("Document cannot be null");
         }
 
-        System.out.println("Table extraction not implemented in base class");
-        return new ArrayList<>();
+        List<Table> tables = new ArrayList<>();
+        RulingCollector rulingCollector = new RulingCollector();
+        GlyphBuffer glyphs = new GlyphBuffer();
+        PrecisionTextEngine textEngine = new PrecisionTextEngine();
+        for (int pageNumber = 1; pageNumber <= document.getNumberOfPages(); pageNumber++) {
+            try {
+                new ContentStreamEngine(document.getPage(pageNumber - 1)).process(pageNumber, rulingCollector, glyphs);
+            } catch (IOException e) {
+                logger.warn("Failed to process content stream of page {}", pageNumber, e);
+                continue;
+            }
+            textEngine.extractPage(glyphs);
+            tables.addAll(extractPageTables(rulingCollector, textEngine.getWords(), pageNumber));
+        }
+        return tables;
+    }
+
+    /**
+     * Detects the tables of one page with the configured strategy
+     */
+    protected List<Table> extractPageTables(RulingCollector rulingCollector, List<Word> words, int pageNumber) {
+        TableStrategy strategy = extractionConfig != null
+                ? TableStrategy.valueOf(extractionConfig.getTableStrategy().toUpperCase(Locale.ROOT))
+                : TableStrategy.AUTO;
+
+        List<Table> tables = strategy.usesRulings()
+                ? tableExtractionEngine.extractTables(rulingCollector, words, pageNumber)
+                : new ArrayList<>();
+        if (strategy.usesWhitespace()) {
+            tables.addAll(whitespaceTableEngine.extractTables(words, pageNumber, tables));
+        }
+        return tables;
     }
 
     protected ExtractionConfig getDefaultExtractionConfig() {
@@ -216,6 +433,17 @@ public class SimpleParser extends AbstractPdfBoxParser {
         return config;
     }
 
+    /**
+     * How the glyphs of the content stream pass are grouped into lines
+     */
+    protected PrecisionTextEngine.LineGrouping getLineGrouping() {
+        return PrecisionTextEngine.LineGrouping.POSITION_SORT;
+    }
+
+    public void setImageBlobStore(ImageBlobStore imageBlobStore) {
+        this.imageBlobStore = imageBlobStore;
+    }
+
     protected void setCurrentDocument(PDDocument document) {
         this.currentDocument = document;
     }
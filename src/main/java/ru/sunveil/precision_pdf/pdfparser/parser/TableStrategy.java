@@ -0,0 +1,35 @@
+package ru.sunveil.precision_pdf.pdfparser.parser;
+
+/**
+ * How tables are detected on a page
+ */
+public enum TableStrategy {
+    /**
+     * Grids formed by ruling lines
+     */
+    RULING(true, false),
+    /**
+     * Borderless tables found by whitespace projection of the page words
+     */
+    WHITESPACE(false, true),
+    /**
+     * Ruling tables first, then borderless tables among the remaining words
+     */
+    AUTO(true, true);
+
+    private final boolean rulings;
+    private final boolean whitespace;
+
+    TableStrategy(boolean rulings, boolean whitespace) {
+        this.rulings = rulings;
+        this.whitespace = whitespace;
+    }
+
+    public boolean usesRulings() {
+        return rulings;
+    }
+
+    public boolean usesWhitespace() {
+        return whitespace;
+    }
+}
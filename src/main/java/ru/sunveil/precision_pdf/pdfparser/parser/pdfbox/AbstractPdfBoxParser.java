@@ -1,46 +1,29 @@
 package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDDocumentInformation;
 import ru.sunveil.precision_pdf.pdfparser.exceptions.PdfParseException;
 import ru.sunveil.precision_pdf.pdfparser.model.PdfMetadata;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfValidationReport;
 import ru.sunveil.precision_pdf.pdfparser.parser.*;
 
 import java.io.File;
 
 public abstract class AbstractPdfBoxParser implements PdfParser, TextExtractor, TableExtractor, ImageExtractor {
 
+    private final MetadataReader metadataReader = new MetadataReader();
+    private PdfStructureValidator structureValidator;
+
     @Override
     public PdfMetadata extractMetadata(PDDocument document) {
         if (document == null) {
             throw new IllegalArgumentException("Document cannot be null");
         }
 
-        PdfMetadata metadata = new PdfMetadata();
-
         try {
-            PDDocumentInformation docInfo = document.getDocumentInformation();
-
-            if (docInfo != null) {
-                metadata.setTitle(docInfo.getTitle());
-                metadata.setAuthor(docInfo.getAuthor());
-                metadata.setSubject(docInfo.getSubject());
-                metadata.setKeywords(docInfo.getKeywords());
-                metadata.setCreator(docInfo.getCreator());
-                metadata.setProducer(docInfo.getProducer());
-            }
+            return metadataReader.read(document);
         } catch (Exception e) {
             throw new PdfParseException("Failed to extract metadata", e);
         }
-
-        return metadata;
-    }
-
-    private boolean isStandardMetadataKey(String keyName) {
-        return keyName.equals("Title") || keyName.equals("Author") ||
-                keyName.equals("Subject") || keyName.equals("Keywords") ||
-                keyName.equals("Creator") || keyName.equals("Producer") ||
-                keyName.equals("CreationDate") || keyName.equals("ModDate");
     }
 
     protected void validateFile(File file) {
@@ -61,6 +44,29 @@ public abstract class AbstractPdfBoxParser implements PdfParser, TextExtractor,
         }
     }
 
+    /**
+     * Rejects files whose structure is beyond repair before they are loaded.
+     * Errors the lenient parser recovers from are let through.
+     */
+    protected void validateStructure(File file) {
+        if (structureValidator == null) {
+            return;
+        }
+        PdfValidationReport report = structureValidator.validate(file);
+        if (!report.isRepairable()) {
+            String reason = report.getFindings().stream()
+                    .filter(finding -> !finding.isRepairable())
+                    .map(PdfValidationReport.Finding::getMessage)
+                    .findFirst()
+                    .orElse("unknown error");
+            throw new PdfParseException("Not a readable PDF: " + file.getName() + ": " + reason);
+        }
+    }
+
+    public void setStructureValidator(PdfStructureValidator structureValidator) {
+        this.structureValidator = structureValidator;
+    }
+
     protected void closeDocument(PDDocument document) {
         if (document != null) {
             try {
@@ -0,0 +1,328 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import ru.sunveil.precision_pdf.pdfparser.model.PdfPage;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfTextChunk;
+import ru.sunveil.precision_pdf.pdfparser.model.TextLine;
+import ru.sunveil.precision_pdf.pdfparser.model.Word;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups the text lines of a page into paragraph blocks.
+ * <p>
+ * A line joins the line below it when the vertical gap between them is at most
+ * {@link #LINE_GAP_RATIO} of the smaller font size, their font sizes differ by at most
+ * {@link #MAX_SIZE_RATIO} and they overlap horizontally. Candidate pairs come from a uniform grid
+ * stored as flat cell arrays, and connected lines are merged by union-find, so the cost grows with
+ * the number of lines times the cells a line covers rather than with the square of the lines.
+ * <p>
+ * Every block becomes a {@link PdfTextChunk} with its lines and bounding box. Blocks keep the
+ * order of their first line, and page words are renumbered block by block, line by line, so the
+ * word ranges of lines and chunks stay contiguous.
+ */
+public class BlockDetectionEngine {
+
+    private static final float LINE_GAP_RATIO = 0.8f;
+    private static final float MAX_SIZE_RATIO = 1.3f;
+    /**
+     * Minimum horizontal overlap of two lines, relative to the narrower one
+     */
+    private static final float MIN_OVERLAP_RATIO = 0.1f;
+    private static final float CELL_SIZE_EM = 4.0f;
+    private static final int MAX_CELLS = 1 << 16;
+    private static final float CAP_HEIGHT_RATIO = 0.7f;
+
+    private float[] left = new float[0];
+    private float[] right = new float[0];
+    private float[] bottom = new float[0];
+    private float[] top = new float[0];
+    private float[] size = new float[0];
+    private int[] parent = new int[0];
+
+    /**
+     * Replaces the chunks of the page with one chunk per detected block.
+     */
+    public void apply(PdfPage page) {
+        List<TextLine> lines = page.getTextLines();
+        List<Word> words = page.getWords();
+        if (lines == null || lines.isEmpty() || words == null) {
+            return;
+        }
+
+        int count = lines.size();
+        List<List<Word>> lineWords = new ArrayList<>(count);
+        collectLines(lines, words, lineWords);
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+        }
+        linkLines(count);
+
+        // Blocks in the order of their first line
+        int[] blockOf = new int[count];
+        int[] blockSize = new int[count];
+        int[] rootBlock = new int[count];
+        Arrays.fill(rootBlock, -1);
+        int blockCount = 0;
+        for (int i = 0; i < count; i++) {
+            int root = find(i);
+            if (rootBlock[root] < 0) {
+                rootBlock[root] = blockCount++;
+            }
+            blockOf[i] = rootBlock[root];
+            blockSize[blockOf[i]]++;
+        }
+        int[] blockStart = new int[blockCount + 1];
+        for (int b = 0; b < blockCount; b++) {
+            blockStart[b + 1] = blockStart[b] + blockSize[b];
+        }
+        int[] fill = Arrays.copyOf(blockStart, blockCount);
+        int[] ordered = new int[count];
+        for (int i = 0; i < count; i++) {
+            ordered[fill[blockOf[i]]++] = i;
+        }
+
+        List<Word> renumbered = new ArrayList<>(words.size());
+        Map<Word, Boolean> placed = new IdentityHashMap<>(words.size() * 2);
+        List<TextLine> orderedLines = new ArrayList<>(count);
+        List<PdfTextChunk> blocks = new ArrayList<>(blockCount);
+        for (int b = 0; b < blockCount; b++) {
+            List<TextLine> blockLines = new ArrayList<>(blockSize[b]);
+            int blockWordStart = renumbered.size();
+            for (int k = blockStart[b]; k < blockStart[b + 1]; k++) {
+                TextLine line = lines.get(ordered[k]);
+                List<Word> members = lineWords.get(ordered[k]);
+                int lineWordStart = renumbered.size();
+                for (Word word : members) {
+                    if (placed.put(word, Boolean.TRUE) == null) {
+                        word.setId(renumbered.size());
+                        renumbered.add(word);
+                    }
+                }
+                line.setWordStart(lineWordStart);
+                line.setWordCount(renumbered.size() - lineWordStart);
+                line.setReadingOrder(orderedLines.size());
+                orderedLines.add(line);
+                blockLines.add(line);
+            }
+            PdfTextChunk block = createBlock(blockLines, lineWords.get(ordered[blockStart[b]]), page.getPageNumber());
+            block.setWordStart(blockWordStart);
+            block.setWordCount(renumbered.size() - blockWordStart);
+            block.setLineStart(orderedLines.size() - blockLines.size());
+            block.setLineCount(blockLines.size());
+            block.setReadingOrder(b);
+            blocks.add(block);
+        }
+        // Words outside of any line keep their relative order after the blocks
+        for (Word word : words) {
+            if (placed.put(word, Boolean.TRUE) == null) {
+                word.setId(renumbered.size());
+                renumbered.add(word);
+            }
+        }
+
+        page.setWords(renumbered);
+        page.setTextLines(orderedLines);
+        page.setPdfTextChunks(blocks);
+    }
+
+    private void collectLines(List<TextLine> lines, List<Word> words, List<List<Word>> lineWords) {
+        int count = lines.size();
+        if (left.length < count) {
+            int capacity = Math.max(count, left.length * 2);
+            left = new float[capacity];
+            right = new float[capacity];
+            bottom = new float[capacity];
+            top = new float[capacity];
+            size = new float[capacity];
+            parent = new int[capacity];
+        }
+
+        for (int i = 0; i < count; i++) {
+            TextLine line = lines.get(i);
+            List<Word> members = line.getWords();
+            if (members == null) {
+                int start = Math.min(words.size(), Math.max(0, line.getWordStart()));
+                members = words.subList(start, Math.min(words.size(), start + line.getWordCount()));
+            }
+            lineWords.add(members != null ? members : Collections.emptyList());
+
+            BoundingBox box = line.getBoundingBox();
+            if (box != null) {
+                left[i] = box.getX();
+                right[i] = box.getRight();
+                bottom[i] = box.getY();
+                top[i] = box.getTop();
+            } else {
+                left[i] = right[i] = bottom[i] = top[i] = 0;
+            }
+
+            // Largest font of the line; cap height when fonts are unknown
+            float lineSize = 0;
+            for (Word word : members) {
+                lineSize = Math.max(lineSize, word.getFontSize());
+            }
+            size[i] = lineSize > 0 ? lineSize : (top[i] - bottom[i]) / CAP_HEIGHT_RATIO;
+        }
+    }
+
+    /**
+     * Unions every line with the lines below it that continue its block.
+     * The grid stores each line in all cells its box covers.
+     */
+    private void linkLines(int count) {
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        float[] sizes = Arrays.copyOf(size, count);
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, left[i]);
+            maxX = Math.max(maxX, right[i]);
+            minY = Math.min(minY, bottom[i]);
+            maxY = Math.max(maxY, top[i]);
+        }
+        Arrays.sort(sizes);
+        float cell = Math.max(1.0f, sizes[count / 2] * CELL_SIZE_EM);
+        while (((maxX - minX) / cell + 1) * ((maxY - minY) / cell + 1) > MAX_CELLS) {
+            cell *= 2;
+        }
+        int columns = (int) ((maxX - minX) / cell) + 1;
+        int rows = (int) ((maxY - minY) / cell) + 1;
+
+        // Cell lists in compressed form: cellStart[c]..cellStart[c + 1] in cellLines
+        int[] cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < count; i++) {
+            int c0 = (int) ((left[i] - minX) / cell);
+            int c1 = (int) ((right[i] - minX) / cell);
+            int r0 = (int) ((bottom[i] - minY) / cell);
+            int r1 = (int) ((top[i] - minY) / cell);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    cellStart[r * columns + c + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] cellLines = new int[cellStart[columns * rows]];
+        int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        for (int i = 0; i < count; i++) {
+            int c0 = (int) ((left[i] - minX) / cell);
+            int c1 = (int) ((right[i] - minX) / cell);
+            int r0 = (int) ((bottom[i] - minY) / cell);
+            int r1 = (int) ((top[i] - minY) / cell);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    cellLines[fill[r * columns + c]++] = i;
+                }
+            }
+        }
+
+        // Each line looks down one gap tolerance below its bottom edge
+        for (int i = 0; i < count; i++) {
+            float reach = size[i] * LINE_GAP_RATIO;
+            int c0 = (int) ((left[i] - minX) / cell);
+            int c1 = (int) ((right[i] - minX) / cell);
+            int r0 = Math.max(0, (int) ((bottom[i] - reach - minY) / cell));
+            int r1 = (int) ((bottom[i] - minY) / cell);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int cellIndex = r * columns + c;
+                    for (int k = cellStart[cellIndex]; k < cellStart[cellIndex + 1]; k++) {
+                        int j = cellLines[k];
+                        if (j != i && continues(i, j)) {
+                            union(i, j);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether line j is the next line of the block of line i
+     */
+    private boolean continues(int i, int j) {
+        if (top[j] > bottom[i] + (top[i] - bottom[i]) / 2 || bottom[j] >= bottom[i]) {
+            return false;
+        }
+        float smaller = Math.min(size[i], size[j]);
+        float larger = Math.max(size[i], size[j]);
+        if (smaller <= 0 || larger > smaller * MAX_SIZE_RATIO) {
+            return false;
+        }
+        if (bottom[i] - top[j] > smaller * LINE_GAP_RATIO) {
+            return false;
+        }
+        float overlap = Math.min(right[i], right[j]) - Math.max(left[i], left[j]);
+        float narrower = Math.min(right[i] - left[i], right[j] - left[j]);
+        return overlap > 0 && overlap >= narrower * MIN_OVERLAP_RATIO;
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA != rootB) {
+            // The earlier line stays the root, so blocks start with their first line
+            if (rootA < rootB) {
+                parent[rootB] = rootA;
+            } else {
+                parent[rootA] = rootB;
+            }
+        }
+    }
+
+    private static PdfTextChunk createBlock(List<TextLine> blockLines, List<Word> firstWords, int pageNumber) {
+        StringBuilder text = new StringBuilder();
+        BoundingBox box = null;
+        for (TextLine line : blockLines) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(lineText(line));
+            if (line.getBoundingBox() != null) {
+                box = box == null ? new BoundingBox(line.getBoundingBox()) : box.union(line.getBoundingBox());
+            }
+        }
+
+        PdfTextChunk block = new PdfTextChunk();
+        block.setPageNumber(pageNumber);
+        block.setText(text.toString());
+        block.setBoundingBox(box);
+        block.setLines(blockLines);
+        if (!firstWords.isEmpty()) {
+            Word first = firstWords.get(0);
+            block.setStyle("font-family:" + first.getFontName() + ";font-size:" + first.getFontSize() + "pt;");
+        }
+        return block;
+    }
+
+    private static String lineText(TextLine line) {
+        if (line.getText() != null) {
+            return line.getText();
+        }
+        StringBuilder text = new StringBuilder();
+        for (Word word : line.getWords() != null ? line.getWords() : List.<Word>of()) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(word.getText());
+        }
+        return text.toString();
+    }
+}
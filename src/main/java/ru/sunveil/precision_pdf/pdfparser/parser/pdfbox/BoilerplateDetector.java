@@ -0,0 +1,417 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import ru.sunveil.precision_pdf.pdfparser.model.PdfBoilerplate;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfPage;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfTextChunk;
+import ru.sunveil.precision_pdf.pdfparser.model.TextLine;
+import ru.sunveil.precision_pdf.pdfparser.model.Word;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+import ru.sunveil.precision_pdf.pdfparser.parser.BoilerplateMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds running headers, footers and page numbers repeated across the pages of a document.
+ * <p>
+ * Every line near the top or bottom edge of a page gets a 64-bit fingerprint of its normalized
+ * text (lower case, single spaces, digit runs as {@code #}), its edge and its quantized distance
+ * from that edge. Fingerprints are counted once per page in an open-addressing table, so the
+ * cost is linear in the number of edge lines. Lines whose fingerprint occurs on enough pages are
+ * boilerplate: they are flagged or removed and listed once per fingerprint for the document.
+ */
+public class BoilerplateDetector {
+
+    /**
+     * Part of the page height at the top and at the bottom searched for boilerplate
+     */
+    private static final float EDGE_RATIO = 0.12f;
+    private static final float POSITION_QUANTUM = 4.0f;
+    private static final int MIN_PAGES = 3;
+    private static final float MIN_PAGE_RATIO = 0.2f;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private long[] keys = new long[0];
+    private int[] pageCounts = new int[0];
+    private int[] lastPages = new int[0];
+    private int[] entries = new int[0];
+    private int mask;
+
+    /**
+     * Detects boilerplate lines and applies the mode to the pages.
+     *
+     * @return one entry per repeated line, in order of first occurrence; empty for {@link BoilerplateMode#OFF}
+     */
+    public List<PdfBoilerplate> detect(List<PdfPage> pages, BoilerplateMode mode) {
+        List<PdfBoilerplate> boilerplate = new ArrayList<>();
+        if (mode == BoilerplateMode.OFF || pages == null) {
+            return boilerplate;
+        }
+        int minPages = Math.max(MIN_PAGES, (int) Math.ceil(pages.size() * MIN_PAGE_RATIO));
+        if (pages.size() < minPages) {
+            return boilerplate;
+        }
+
+        // Fingerprints of all lines in page order, 0 for lines away from the edges
+        long[] lineKeys = new long[256];
+        int lineCount = 0;
+        int edgeLines = 0;
+        for (PdfPage page : pages) {
+            for (TextLine line : nonNull(page.getTextLines())) {
+                if (lineCount == lineKeys.length) {
+                    lineKeys = Arrays.copyOf(lineKeys, lineCount * 2);
+                }
+                long key = fingerprint(page, line);
+                lineKeys[lineCount++] = key;
+                edgeLines += key != 0 ? 1 : 0;
+            }
+        }
+        if (edgeLines == 0) {
+            return boilerplate;
+        }
+
+        resetTable(edgeLines);
+        int[] lineSlots = new int[lineCount];
+        int next = 0;
+        for (int p = 0; p < pages.size(); p++) {
+            for (int l = nonNull(pages.get(p).getTextLines()).size(); l > 0; l--, next++) {
+                if (lineKeys[next] == 0) {
+                    lineSlots[next] = -1;
+                    continue;
+                }
+                int slot = slot(lineKeys[next]);
+                lineSlots[next] = slot;
+                if (lastPages[slot] != p) {
+                    lastPages[slot] = p;
+                    pageCounts[slot]++;
+                }
+            }
+        }
+
+        next = 0;
+        for (PdfPage page : pages) {
+            List<TextLine> repeated = new ArrayList<>();
+            for (TextLine line : nonNull(page.getTextLines())) {
+                int slot = lineSlots[next++];
+                if (slot < 0 || pageCounts[slot] < minPages) {
+                    continue;
+                }
+                repeated.add(line);
+                PdfBoilerplate entry;
+                if (entries[slot] < 0) {
+                    entries[slot] = boilerplate.size();
+                    entry = new PdfBoilerplate();
+                    String text = lineText(line);
+                    entry.setText(text);
+                    entry.setPattern(normalize(text));
+                    entry.setPosition(isTop(page, line) ? "HEADER" : "FOOTER");
+                    entry.setBoundingBox(new BoundingBox(line.getBoundingBox()));
+                    boilerplate.add(entry);
+                } else {
+                    entry = boilerplate.get(entries[slot]);
+                }
+                List<Integer> entryPages = entry.getPages();
+                if (entryPages.isEmpty() || entryPages.get(entryPages.size() - 1) != page.getPageNumber()) {
+                    entryPages.add(page.getPageNumber());
+                }
+            }
+            if (!repeated.isEmpty()) {
+                if (mode == BoilerplateMode.REMOVE) {
+                    remove(page, repeated);
+                } else {
+                    flag(page, repeated);
+                }
+            }
+        }
+        return boilerplate;
+    }
+
+    /**
+     * @return fingerprint of an edge line, 0 for lines away from the edges or without text
+     */
+    private static long fingerprint(PdfPage page, TextLine line) {
+        BoundingBox box = line.getBoundingBox();
+        if (box == null) {
+            return 0;
+        }
+        float height = (float) page.getHeight();
+        int edge;
+        float distance;
+        if (isTop(page, line)) {
+            edge = 1;
+            distance = height - box.getTop();
+        } else if (box.getY() <= height * EDGE_RATIO) {
+            edge = 2;
+            distance = box.getY();
+        } else {
+            return 0;
+        }
+
+        String text = lineText(line);
+        long hash = FNV_OFFSET;
+        boolean empty = true;
+        boolean space = false;
+        boolean digits = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = !empty;
+                digits = false;
+                continue;
+            }
+            if (space) {
+                hash = (hash ^ ' ') * FNV_PRIME;
+                space = false;
+            }
+            if (Character.isDigit(c)) {
+                if (!digits) {
+                    hash = (hash ^ '#') * FNV_PRIME;
+                    digits = true;
+                }
+            } else {
+                hash = (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                digits = false;
+            }
+            empty = false;
+        }
+        if (empty) {
+            return 0;
+        }
+
+        long position = ((long) edge << 24) | (Math.round(distance / POSITION_QUANTUM) & 0xFFFFFF);
+        long key = (hash ^ position) * FNV_PRIME;
+        return key != 0 ? key : 1;
+    }
+
+    private static boolean isTop(PdfPage page, TextLine line) {
+        return line.getBoundingBox().getTop() >= page.getHeight() * (1 - EDGE_RATIO);
+    }
+
+    /**
+     * Same normalization as the fingerprint
+     */
+    private static String normalize(String text) {
+        StringBuilder pattern = new StringBuilder(text.length());
+        boolean space = false;
+        boolean digits = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = pattern.length() > 0;
+                digits = false;
+                continue;
+            }
+            if (space) {
+                pattern.append(' ');
+                space = false;
+            }
+            if (Character.isDigit(c)) {
+                if (!digits) {
+                    pattern.append('#');
+                    digits = true;
+                }
+            } else {
+                pattern.append(Character.toLowerCase(c));
+                digits = false;
+            }
+        }
+        return pattern.toString();
+    }
+
+    private void resetTable(int entryCount) {
+        int capacity = Integer.highestOneBit(Math.max(16, entryCount * 2 - 1)) << 1;
+        if (keys.length < capacity) {
+            keys = new long[capacity];
+            pageCounts = new int[capacity];
+            lastPages = new int[capacity];
+            entries = new int[capacity];
+        }
+        mask = capacity - 1;
+        Arrays.fill(keys, 0, capacity, 0);
+        Arrays.fill(pageCounts, 0, capacity, 0);
+        Arrays.fill(lastPages, 0, capacity, -1);
+        Arrays.fill(entries, 0, capacity, -1);
+    }
+
+    private int slot(long key) {
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        return slot;
+    }
+
+    private static void flag(PdfPage page, List<TextLine> repeated) {
+        boolean[] flagged = flaggedWords(page, repeated);
+        for (TextLine line : repeated) {
+            line.setBoilerplate(true);
+        }
+        for (PdfTextChunk chunk : nonNull(page.getPdfTextChunks())) {
+            int start = chunk.getWordStart();
+            int end = Math.min(flagged.length, start + chunk.getWordCount());
+            boolean all = end > start;
+            for (int w = start; w < end && all; w++) {
+                all = flagged[w];
+            }
+            chunk.setBoilerplate(all);
+        }
+    }
+
+    /**
+     * Removes the lines and their words, renumbering the remaining words so that line and
+     * chunk word ranges stay contiguous
+     */
+    private static void remove(PdfPage page, List<TextLine> repeated) {
+        List<Word> words = nonNull(page.getWords());
+        boolean[] removed = flaggedWords(page, repeated);
+        int[] newIndex = new int[words.size()];
+        List<Word> kept = new ArrayList<>(words.size());
+        for (int w = 0; w < words.size(); w++) {
+            if (removed[w]) {
+                newIndex[w] = -1;
+            } else {
+                newIndex[w] = kept.size();
+                words.get(w).setId(kept.size());
+                kept.add(words.get(w));
+            }
+        }
+        page.setWords(kept);
+
+        Set<TextLine> removedLines = Collections.newSetFromMap(new IdentityHashMap<>());
+        removedLines.addAll(repeated);
+        List<TextLine> pageLines = nonNull(page.getTextLines());
+        int[] newLineIndex = new int[pageLines.size()];
+        List<TextLine> lines = new ArrayList<>();
+        for (int l = 0; l < pageLines.size(); l++) {
+            TextLine line = pageLines.get(l);
+            if (removedLines.contains(line)) {
+                newLineIndex[l] = -1;
+                continue;
+            }
+            newLineIndex[l] = lines.size();
+            int[] range = remap(newIndex, line.getWordStart(), line.getWordCount());
+            line.setWordStart(range[0]);
+            line.setWordCount(range[1]);
+            line.setReadingOrder(lines.size());
+            lines.add(line);
+        }
+        page.setTextLines(lines);
+
+        List<PdfTextChunk> chunks = new ArrayList<>();
+        for (PdfTextChunk chunk : nonNull(page.getPdfTextChunks())) {
+            int[] range = remap(newIndex, chunk.getWordStart(), chunk.getWordCount());
+            if (range[1] == 0 && chunk.getWordCount() > 0) {
+                continue;
+            }
+            if (range[1] < chunk.getWordCount()) {
+                updateChunk(chunk, kept.subList(range[0], range[0] + range[1]), removedLines);
+            }
+            chunk.setWordStart(range[0]);
+            chunk.setWordCount(range[1]);
+            if (chunk.getLineCount() > 0) {
+                int[] lineRange = remap(newLineIndex, chunk.getLineStart(), chunk.getLineCount());
+                chunk.setLineStart(lineRange[0]);
+                chunk.setLineCount(lineRange[1]);
+            }
+            chunk.setReadingOrder(chunks.size());
+            chunks.add(chunk);
+        }
+        page.setPdfTextChunks(chunks);
+    }
+
+    /**
+     * @return new start and count of a word or line range after removal
+     */
+    private static int[] remap(int[] newIndex, int start, int count) {
+        int end = Math.min(newIndex.length, start + count);
+        int newStart = -1;
+        int newCount = 0;
+        for (int w = Math.max(0, start); w < end; w++) {
+            if (newIndex[w] >= 0) {
+                if (newStart < 0) {
+                    newStart = newIndex[w];
+                }
+                newCount++;
+            }
+        }
+        if (newStart < 0) {
+            // Empty range: position of the next kept word
+            newStart = 0;
+            for (int w = Math.max(0, end - 1); w >= 0 && w < newIndex.length; w--) {
+                if (newIndex[w] >= 0) {
+                    newStart = newIndex[w] + 1;
+                    break;
+                }
+            }
+        }
+        return new int[]{newStart, newCount};
+    }
+
+    private static void updateChunk(PdfTextChunk chunk, List<Word> keptWords, Set<TextLine> removedLines) {
+        StringBuilder text = new StringBuilder();
+        if (chunk.getLines() != null) {
+            List<TextLine> lines = new ArrayList<>(chunk.getLines());
+            lines.removeIf(removedLines::contains);
+            chunk.setLines(lines);
+            for (TextLine line : lines) {
+                if (text.length() > 0) {
+                    text.append('\n');
+                }
+                text.append(lineText(line));
+            }
+        } else {
+            for (Word word : keptWords) {
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                text.append(word.getText());
+            }
+        }
+        chunk.setText(text.toString());
+
+        BoundingBox box = null;
+        for (Word word : keptWords) {
+            if (word.getBoundingBox() != null) {
+                box = box == null ? new BoundingBox(word.getBoundingBox()) : box.union(word.getBoundingBox());
+            }
+        }
+        chunk.setBoundingBox(box);
+    }
+
+    private static boolean[] flaggedWords(PdfPage page, List<TextLine> repeated) {
+        List<Word> words = nonNull(page.getWords());
+        boolean[] flagged = new boolean[words.size()];
+        for (TextLine line : repeated) {
+            int end = Math.min(words.size(), line.getWordStart() + line.getWordCount());
+            for (int w = Math.max(0, line.getWordStart()); w < end; w++) {
+                flagged[w] = true;
+            }
+        }
+        return flagged;
+    }
+
+    private static String lineText(TextLine line) {
+        if (line.getText() != null) {
+            return line.getText();
+        }
+        StringBuilder text = new StringBuilder();
+        for (Word word : nonNull(line.getWords())) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(word.getText());
+        }
+        return text.toString();
+    }
+
+    private static <T> List<T> nonNull(List<T> list) {
+        return list != null ? list : List.of();
+    }
+}
@@ -0,0 +1,391 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.markedcontent.BeginMarkedContentSequence;
+import org.apache.pdfbox.contentstream.operator.markedcontent.BeginMarkedContentSequenceWithProperties;
+import org.apache.pdfbox.contentstream.operator.markedcontent.EndMarkedContentSequence;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.font.encoding.GlyphList;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.Vector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass content stream interpreter.
+ * <p>
+ * Interprets a page content stream once, including nested Form XObjects, and reports glyphs,
+ * image placements and painted paths to {@link ContentStreamListener}s. Text, image and graphics
+ * stages subscribe to the same pass instead of each parsing the content stream on its own.
+ * Coordinates are reported in display space: the crop box turned by the page rotation, so that
+ * text that reads upright on screen runs along X on rotated pages as well.
+ * <p>
+ * The class is final: its constructor registers operator processors that keep a reference to it.
+ */
+public final class ContentStreamEngine extends PDFGraphicsStreamEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentStreamEngine.class);
+
+    private static final int CURVE_STEPS = 8;
+    private static final float DEFAULT_GLYPH_HEIGHT = 0.7f;
+
+    private final float offsetX;
+    private final float offsetY;
+    private final float cropWidth;
+    private final float cropHeight;
+    private final int rotation;
+    private final Map<PDFont, Float> glyphHeights = new IdentityHashMap<>();
+    private final Map<PDFont, Long> fontKeys = new IdentityHashMap<>();
+    private GlyphMetricsCache glyphMetrics;
+    private final GlyphList glyphList = GlyphList.getAdobeGlyphList();
+
+    private ContentStreamListener[] listeners = new ContentStreamListener[0];
+
+    // Current path in page space
+    private float[] segments = new float[64];
+    private int segmentCount;
+    private float currentX;
+    private float currentY;
+    private float subpathStartX;
+    private float subpathStartY;
+    private boolean hasCurrentPoint;
+    private int operatorCount;
+
+    /**
+     * @param page the page to interpret
+     */
+    public ContentStreamEngine(PDPage page) {
+        super(page);
+        PDRectangle cropBox = page.getCropBox();
+        this.offsetX = cropBox.getLowerLeftX();
+        this.offsetY = cropBox.getLowerLeftY();
+        this.cropWidth = cropBox.getWidth();
+        this.cropHeight = cropBox.getHeight();
+        this.rotation = page.getRotation();
+
+        // Marked content carries the MCIDs that link content to the structure tree
+        addOperator(new BeginMarkedContentSequence(this));
+        addOperator(new BeginMarkedContentSequenceWithProperties(this));
+        addOperator(new EndMarkedContentSequence(this));
+    }
+
+    /**
+     * Sets the cache of glyph outline extents; with null, the default, glyph boxes span from
+     * the baseline to a height derived from the font metrics and no outline is read.
+     */
+    public void setGlyphMetrics(GlyphMetricsCache glyphMetrics) {
+        this.glyphMetrics = glyphMetrics;
+    }
+
+    /**
+     * Interprets the page content stream once and reports its content to the listeners.
+     *
+     * @param pageNumber 1-based page number
+     * @param listeners listeners to notify, in order
+     * @throws IOException if the content stream cannot be read
+     */
+    public void process(int pageNumber, ContentStreamListener... listeners) throws IOException {
+        this.listeners = listeners;
+        this.operatorCount = 0;
+        PDPage page = getPage();
+
+        for (ContentStreamListener listener : listeners) {
+            listener.startPage(pageNumber, page);
+        }
+
+        processPage(page);
+
+        for (ContentStreamListener listener : listeners) {
+            listener.endPage(pageNumber);
+        }
+    }
+
+    /**
+     * Number of operators interpreted by the last {@link #process} call, including those of nested forms
+     */
+    public int getOperatorCount() {
+        return operatorCount;
+    }
+
+    @Override
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+        operatorCount++;
+        super.processOperator(operator, operands);
+    }
+
+    @Override
+    protected void showGlyph(Matrix textRenderingMatrix, PDFont font, int code, Vector displacement)
+            throws IOException {
+        // Glyph outlines are not needed: Type3 char procs are not interpreted
+        float x = textRenderingMatrix.getTranslateX() - offsetX;
+        float y = textRenderingMatrix.getTranslateY() - offsetY;
+        Point2D.Float end = textRenderingMatrix.transformPoint(displacement.getX(), 0);
+        float width = (float) Math.hypot(end.x - offsetX - x, end.y - offsetY - y);
+        // Text turned upside down, as on pages rotated by 180 degrees, has a negative Y scale
+        float fontSize = Math.abs(textRenderingMatrix.getScalingFactorY());
+        float height = glyphHeight(font) * fontSize;
+        float depth = 0;
+        if (glyphMetrics != null) {
+            long bounds = glyphMetrics.getBounds(font, fontKey(font), code);
+            if (GlyphMetricsCache.isKnown(bounds)) {
+                height = GlyphMetricsCache.top(bounds) * fontSize;
+                depth = -GlyphMetricsCache.bottom(bounds) * fontSize;
+            }
+        }
+        String unicode = font.toUnicode(code, glyphList);
+
+        for (ContentStreamListener listener : listeners) {
+            listener.glyph(font, code, unicode, displayX(x, y), displayY(x, y), width, height, depth, fontSize);
+        }
+    }
+
+    @Override
+    public void beginMarkedContentSequence(COSName tag, COSDictionary properties) {
+        String name = tag != null ? tag.getName() : "";
+        int mcid = properties != null ? properties.getInt(COSName.MCID, -1) : -1;
+        for (ContentStreamListener listener : listeners) {
+            listener.beginMarkedContent(name, mcid);
+        }
+    }
+
+    @Override
+    public void endMarkedContentSequence() {
+        for (ContentStreamListener listener : listeners) {
+            listener.endMarkedContent();
+        }
+    }
+
+    @Override
+    public void drawImage(PDImage pdImage) throws IOException {
+        Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+
+        // Images are painted into the unit square of the current transformation
+        for (int corner = 0; corner < 4; corner++) {
+            Point2D.Float point = ctm.transformPoint(corner & 1, corner >> 1);
+            float x = displayX(point.x - offsetX, point.y - offsetY);
+            float y = displayY(point.x - offsetX, point.y - offsetY);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+
+        BoundingBox bounds = new BoundingBox(minX, minY, maxX - minX, maxY - minY);
+        for (ContentStreamListener listener : listeners) {
+            listener.image(pdImage, bounds);
+        }
+    }
+
+    @Override
+    public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) {
+        moveTo((float) p0.getX(), (float) p0.getY());
+        lineTo((float) p1.getX(), (float) p1.getY());
+        lineTo((float) p2.getX(), (float) p2.getY());
+        lineTo((float) p3.getX(), (float) p3.getY());
+        closePath();
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        currentX = x - offsetX;
+        currentY = y - offsetY;
+        subpathStartX = currentX;
+        subpathStartY = currentY;
+        hasCurrentPoint = true;
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        addSegmentTo(x - offsetX, y - offsetY);
+    }
+
+    @Override
+    public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+        float x0 = currentX;
+        float y0 = currentY;
+        float cx1 = x1 - offsetX;
+        float cy1 = y1 - offsetY;
+        float cx2 = x2 - offsetX;
+        float cy2 = y2 - offsetY;
+        float ex = x3 - offsetX;
+        float ey = y3 - offsetY;
+
+        for (int step = 1; step <= CURVE_STEPS; step++) {
+            float t = (float) step / CURVE_STEPS;
+            float u = 1 - t;
+            float px = u * u * u * x0 + 3 * u * u * t * cx1 + 3 * u * t * t * cx2 + t * t * t * ex;
+            float py = u * u * u * y0 + 3 * u * u * t * cy1 + 3 * u * t * t * cy2 + t * t * t * ey;
+            addSegmentTo(px, py);
+        }
+    }
+
+    @Override
+    public Point2D getCurrentPoint() {
+        return hasCurrentPoint ? new Point2D.Float(currentX + offsetX, currentY + offsetY) : null;
+    }
+
+    @Override
+    public void closePath() {
+        if (hasCurrentPoint && (currentX != subpathStartX || currentY != subpathStartY)) {
+            addSegmentTo(subpathStartX, subpathStartY);
+        }
+    }
+
+    @Override
+    public void endPath() {
+        segmentCount = 0;
+        hasCurrentPoint = false;
+    }
+
+    @Override
+    public void strokePath() {
+        emitPath(true, false);
+    }
+
+    @Override
+    public void fillPath(int windingRule) {
+        emitPath(false, true);
+    }
+
+    @Override
+    public void fillAndStrokePath(int windingRule) {
+        emitPath(true, true);
+    }
+
+    @Override
+    public void clip(int windingRule) {
+        // Clipping does not produce content, the path is discarded by the following endPath
+    }
+
+    @Override
+    public void shadingFill(COSName shadingName) {
+        // Shadings carry no text, image or ruling information, only that the area is painted
+        for (ContentStreamListener listener : listeners) {
+            listener.shading();
+        }
+    }
+
+    private void addSegmentTo(float x, float y) {
+        if (!hasCurrentPoint) {
+            moveTo(x + offsetX, y + offsetY);
+            return;
+        }
+        if (segments.length < (segmentCount + 1) * 4) {
+            segments = Arrays.copyOf(segments, segments.length * 2);
+        }
+        int offset = segmentCount * 4;
+        segments[offset] = displayX(currentX, currentY);
+        segments[offset + 1] = displayY(currentX, currentY);
+        segments[offset + 2] = displayX(x, y);
+        segments[offset + 3] = displayY(x, y);
+        segmentCount++;
+        currentX = x;
+        currentY = y;
+    }
+
+    /**
+     * Display X of a point given relative to the lower-left corner of the unrotated crop box
+     */
+    private float displayX(float x, float y) {
+        return switch (rotation) {
+            case 90 -> y;
+            case 180 -> cropWidth - x;
+            case 270 -> cropHeight - y;
+            default -> x;
+        };
+    }
+
+    /**
+     * Display Y of a point given relative to the lower-left corner of the unrotated crop box
+     */
+    private float displayY(float x, float y) {
+        return switch (rotation) {
+            case 90 -> cropWidth - x;
+            case 180 -> cropHeight - y;
+            case 270 -> x;
+            default -> y;
+        };
+    }
+
+    private void emitPath(boolean stroke, boolean fill) {
+        if (segmentCount > 0) {
+            Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
+            float scale = (Math.abs(ctm.getScalingFactorX()) + Math.abs(ctm.getScalingFactorY())) / 2;
+            float lineWidth = getGraphicsState().getLineWidth() * scale;
+
+            for (ContentStreamListener listener : listeners) {
+                listener.path(segments, segmentCount, stroke, fill, lineWidth);
+            }
+        }
+        endPath();
+    }
+
+    private long fontKey(PDFont font) {
+        Long key = fontKeys.get(font);
+        if (key == null) {
+            key = GlyphMetricsCache.fontKey(font);
+            fontKeys.put(font, key);
+        }
+        return key;
+    }
+
+    /**
+     * Glyph height above the baseline in text space units, derived from the font bounding box
+     * and the descriptor cap height the same way PDFTextStripper does; cached per font.
+     */
+    private float glyphHeight(PDFont font) {
+        Float cached = glyphHeights.get(font);
+        if (cached != null) {
+            return cached;
+        }
+
+        float height = DEFAULT_GLYPH_HEIGHT;
+        try {
+            float glyphHeight = font.getBoundingBox().getHeight() / 2;
+            PDFontDescriptor descriptor = font.getFontDescriptor();
+            if (descriptor != null) {
+                float capHeight = descriptor.getCapHeight();
+                if (capHeight != 0 && (capHeight < glyphHeight || glyphHeight == 0)) {
+                    glyphHeight = capHeight;
+                }
+                float ascent = descriptor.getAscent();
+                float descent = descriptor.getDescent();
+                if (capHeight == 0 && ascent > 0 && descent < 0
+                        && ((ascent - descent) / 2 < glyphHeight || glyphHeight == 0)) {
+                    glyphHeight = (ascent - descent) / 2;
+                }
+            }
+            if (glyphHeight > 0) {
+                height = font instanceof PDType3Font
+                        ? font.getFontMatrix().transformPoint(0, glyphHeight).y
+                        : glyphHeight / 1000;
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not read metrics of font {}: {}", font.getName(), e.getMessage());
+        }
+
+        glyphHeights.put(font, height);
+        return height;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+/**
+ * Receives the events of a single {@link ContentStreamEngine} pass over a page.
+ * <p>
+ * All coordinates are in display space: PDF user space with the origin moved to the lower-left
+ * corner of the crop box and turned by the page rotation, Y growing upwards as in PDF. Upright
+ * text runs along X on rotated pages too. Arrays passed to the listener are reused by the engine, listeners
+ * that keep the data must copy it.
+ */
+public interface ContentStreamListener {
+
+    /**
+     * Called before the page content stream is interpreted.
+     *
+     * @param pageNumber 1-based page number
+     * @param page the page being processed
+     */
+    default void startPage(int pageNumber, PDPage page) {
+    }
+
+    /**
+     * Called for every shown glyph, in content stream order.
+     *
+     * @param font the current font
+     * @param code character code in the font
+     * @param unicode Unicode text of the glyph, or null if the font has no mapping
+     * @param x baseline origin X
+     * @param y baseline origin Y
+     * @param width advance width of the glyph
+     * @param height glyph height above the baseline
+     * @param depth glyph extent below the baseline, 0 when the outline is not known
+     * @param fontSize effective font size in page units
+     */
+    default void glyph(PDFont font, int code, String unicode, float x, float y,
+                       float width, float height, float depth, float fontSize) {
+    }
+
+    /**
+     * Called for every painted image, including inline images.
+     *
+     * @param image the image
+     * @param bounds axis-aligned bounds of the transformed image in display space
+     */
+    default void image(PDImage image, BoundingBox bounds) {
+    }
+
+    /**
+     * Called when a path is stroked or filled. Curves are flattened into line segments.
+     *
+     * @param segments segment coordinates as x1, y1, x2, y2 quadruples
+     * @param segmentCount number of segments in the array
+     * @param stroke whether the path is stroked
+     * @param fill whether the path is filled
+     * @param lineWidth stroke width in page units
+     */
+    default void path(float[] segments, int segmentCount, boolean stroke, boolean fill, float lineWidth) {
+    }
+
+    /**
+     * Called when an area is painted with a shading ({@code sh} operator).
+     */
+    default void shading() {
+    }
+
+    /**
+     * Called when a marked-content sequence begins (BMC or BDC operator).
+     *
+     * @param tag the sequence tag, such as a structure type or {@code Artifact}
+     * @param mcid marked-content identifier from the sequence properties, or -1 if it has none
+     */
+    default void beginMarkedContent(String tag, int mcid) {
+    }
+
+    /**
+     * Called when the innermost marked-content sequence ends (EMC operator).
+     */
+    default void endMarkedContent() {
+    }
+
+    /**
+     * Called after the page content stream has been interpreted.
+     *
+     * @param pageNumber 1-based page number
+     */
+    default void endPage(int pageNumber) {
+    }
+}
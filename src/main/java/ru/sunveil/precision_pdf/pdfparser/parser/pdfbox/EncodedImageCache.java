@@ -0,0 +1,68 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш закодированных изображений по ключу содержимого, ограниченный суммарным размером в байтах.
+ * Общий для всех документов: логотипы и водяные знаки кодируются один раз.
+ */
+public class EncodedImageCache {
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long maxBytes;
+    private long currentBytes;
+
+    /**
+     * @param maxBytes максимальный суммарный размер закэшированных данных
+     */
+    public EncodedImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(String key, String format, byte[] data) {
+        if (data == null || data.length > maxBytes) {
+            return;
+        }
+
+        Entry previous = entries.put(key, new Entry(format, data));
+        if (previous != null) {
+            currentBytes -= previous.data().length;
+        }
+        currentBytes += data.length;
+        evict();
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().data().length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Закодированные байты изображения и их формат
+     */
+    public record Entry(String format, byte[] data) {
+    }
+}
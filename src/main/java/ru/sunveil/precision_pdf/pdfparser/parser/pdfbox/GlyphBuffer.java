@@ -0,0 +1,246 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Glyphs of one page in parallel primitive arrays, filled by a {@link ContentStreamEngine} pass.
+ * No object is allocated per glyph: text is appended to one shared buffer and fonts are
+ * referenced by index.
+ */
+public class GlyphBuffer implements ContentStreamListener {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int count;
+    private float[] x = new float[INITIAL_CAPACITY];
+    private float[] y = new float[INITIAL_CAPACITY];
+    private float[] width = new float[INITIAL_CAPACITY];
+    private float[] height = new float[INITIAL_CAPACITY];
+    private float[] depth = new float[INITIAL_CAPACITY];
+    private float[] fontSize = new float[INITIAL_CAPACITY];
+    private int[] fontIndex = new int[INITIAL_CAPACITY];
+    private int[] textEnd = new int[INITIAL_CAPACITY];
+    private int[] markedContent = new int[INITIAL_CAPACITY];
+    private final StringBuilder text = new StringBuilder(INITIAL_CAPACITY);
+
+    private final List<PDFont> fonts = new ArrayList<>();
+    private final Map<PDFont, Integer> fontIndexes = new IdentityHashMap<>();
+
+    // Effective MCID of every open marked-content sequence
+    private int[] markedContentStack = new int[16];
+    private int markedContentDepth;
+
+    private int pageNumber;
+    private PDPage page;
+
+    @Override
+    public void startPage(int pageNumber, PDPage page) {
+        this.pageNumber = pageNumber;
+        this.page = page;
+        clear();
+    }
+
+    @Override
+    public void glyph(PDFont font, int code, String unicode, float glyphX, float glyphY,
+                      float glyphWidth, float glyphHeight, float glyphDepth, float glyphFontSize) {
+        if (unicode == null || unicode.isEmpty()) {
+            return;
+        }
+        ensureCapacity(count + 1);
+
+        x[count] = glyphX;
+        y[count] = glyphY;
+        width[count] = glyphWidth;
+        height[count] = glyphHeight;
+        depth[count] = glyphDepth;
+        fontSize[count] = glyphFontSize;
+        fontIndex[count] = fontIndexes.computeIfAbsent(font, f -> {
+            fonts.add(f);
+            return fonts.size() - 1;
+        });
+        text.append(unicode);
+        textEnd[count] = text.length();
+        markedContent[count] = currentMarkedContent();
+        count++;
+    }
+
+    /**
+     * Nested sequences without an MCID belong to the enclosing one, artifacts to none
+     */
+    @Override
+    public void beginMarkedContent(String tag, int mcid) {
+        if (markedContentDepth == markedContentStack.length) {
+            markedContentStack = Arrays.copyOf(markedContentStack, markedContentDepth * 2);
+        }
+        int effective = "Artifact".equals(tag) ? -1 : mcid >= 0 ? mcid : currentMarkedContent();
+        markedContentStack[markedContentDepth++] = effective;
+    }
+
+    @Override
+    public void endMarkedContent() {
+        if (markedContentDepth > 0) {
+            markedContentDepth--;
+        }
+    }
+
+    private int currentMarkedContent() {
+        return markedContentDepth > 0 ? markedContentStack[markedContentDepth - 1] : -1;
+    }
+
+    /**
+     * Removes all glyphs, keeping the allocated arrays.
+     */
+    public void clear() {
+        count = 0;
+        markedContentDepth = 0;
+        text.setLength(0);
+        fonts.clear();
+        fontIndexes.clear();
+    }
+
+    /**
+     * Removes the marked glyphs, keeping the order of the remaining ones.
+     *
+     * @param removed flags indexed by glyph, at least {@link #size()} long
+     */
+    public void remove(boolean[] removed) {
+        int kept = 0;
+        int textLength = 0;
+        for (int i = 0; i < count; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            int start = getTextStart(i);
+            int end = textEnd[i];
+            for (int c = start; c < end; c++) {
+                text.setCharAt(textLength++, text.charAt(c));
+            }
+            x[kept] = x[i];
+            y[kept] = y[i];
+            width[kept] = width[i];
+            height[kept] = height[i];
+            depth[kept] = depth[i];
+            fontSize[kept] = fontSize[i];
+            fontIndex[kept] = fontIndex[i];
+            textEnd[kept] = textLength;
+            markedContent[kept] = markedContent[i];
+            kept++;
+        }
+        count = kept;
+        text.setLength(textLength);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= x.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, x.length * 2);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        width = Arrays.copyOf(width, newCapacity);
+        height = Arrays.copyOf(height, newCapacity);
+        depth = Arrays.copyOf(depth, newCapacity);
+        fontSize = Arrays.copyOf(fontSize, newCapacity);
+        fontIndex = Arrays.copyOf(fontIndex, newCapacity);
+        textEnd = Arrays.copyOf(textEnd, newCapacity);
+        markedContent = Arrays.copyOf(markedContent, newCapacity);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public float getX(int glyph) {
+        return x[glyph];
+    }
+
+    public float getY(int glyph) {
+        return y[glyph];
+    }
+
+    public float getWidth(int glyph) {
+        return width[glyph];
+    }
+
+    public float getHeight(int glyph) {
+        return height[glyph];
+    }
+
+    /**
+     * @return extent of the glyph below the baseline
+     */
+    public float getDepth(int glyph) {
+        return depth[glyph];
+    }
+
+    public float getFontSize(int glyph) {
+        return fontSize[glyph];
+    }
+
+    public int getFontIndex(int glyph) {
+        return fontIndex[glyph];
+    }
+
+    public PDFont getFont(int glyph) {
+        return fonts.get(fontIndex[glyph]);
+    }
+
+    public List<PDFont> getFonts() {
+        return fonts;
+    }
+
+    public int getTextStart(int glyph) {
+        return glyph == 0 ? 0 : textEnd[glyph - 1];
+    }
+
+    public int getTextEnd(int glyph) {
+        return textEnd[glyph];
+    }
+
+    /**
+     * First character of the glyph text
+     */
+    public char getFirstChar(int glyph) {
+        return text.charAt(getTextStart(glyph));
+    }
+
+    /**
+     * Hash of the glyph text, equal to {@link String#hashCode()} of its unicode value
+     */
+    public int getTextHash(int glyph) {
+        int hash = 0;
+        for (int c = getTextStart(glyph), end = textEnd[glyph]; c < end; c++) {
+            hash = 31 * hash + text.charAt(c);
+        }
+        return hash;
+    }
+
+    /**
+     * Appends the glyph text to the target without creating a String
+     */
+    public void appendText(int glyph, StringBuilder target) {
+        target.append(text, getTextStart(glyph), textEnd[glyph]);
+    }
+
+    /**
+     * @return MCID of the marked-content sequence the glyph was shown in, or -1 for untagged content and artifacts
+     */
+    public int getMarkedContentId(int glyph) {
+        return markedContent[glyph];
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public PDPage getPage() {
+        return page;
+    }
+}
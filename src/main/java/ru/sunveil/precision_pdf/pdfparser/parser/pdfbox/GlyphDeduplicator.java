@@ -0,0 +1,199 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import java.util.Arrays;
+
+/**
+ * Suppresses overlapping duplicate glyphs, e.g. fake-bold text drawn two or three times
+ * with a slight offset.
+ * <p>
+ * A glyph is a duplicate when a glyph with the same text was already seen closer than the
+ * tolerance on both axes, the rule PDFTextStripper applies with per-character list scans.
+ * Here seen glyphs are kept in a hashed grid keyed by text hash, tolerance level and cell,
+ * so a lookup probes nine cells regardless of how dense the page is. The cell size is the
+ * tolerance rounded up to a power of two; duplicates share font and size and therefore
+ * land on the same level.
+ */
+public class GlyphDeduplicator {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MIN_LEVEL = -8;
+    private static final int MAX_LEVEL = 15;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final float toleranceRatio;
+
+    // Hash table: grid key -> index of the last entry of its chain
+    private long[] tableKeys;
+    private int[] tableHeads;
+    private int tableSize;
+
+    // Entries in insertion order
+    private int count;
+    private int[] entryText = new int[INITIAL_CAPACITY];
+    private float[] entryX = new float[INITIAL_CAPACITY];
+    private float[] entryY = new float[INITIAL_CAPACITY];
+    private int[] entryNext = new int[INITIAL_CAPACITY];
+
+    /**
+     * @param toleranceRatio maximum offset of a duplicate as a fraction of the glyph width
+     */
+    public GlyphDeduplicator(float toleranceRatio) {
+        this.toleranceRatio = toleranceRatio;
+        this.tableKeys = new long[INITIAL_CAPACITY * 2];
+        this.tableHeads = new int[INITIAL_CAPACITY * 2];
+        Arrays.fill(tableKeys, EMPTY);
+    }
+
+    /**
+     * Forgets all seen glyphs, keeping the allocated arrays. Called per page.
+     */
+    public void reset() {
+        if (count > 0) {
+            Arrays.fill(tableKeys, EMPTY);
+        }
+        count = 0;
+        tableSize = 0;
+    }
+
+    /**
+     * Registers a glyph unless it duplicates one seen before.
+     *
+     * @param textHash hash of the glyph text, {@link String#hashCode()} of the unicode value
+     * @param width glyph width, the tolerance is derived from it
+     * @param fontSize used instead of the width for zero-width glyphs
+     * @return true if the glyph is a duplicate and should be dropped
+     */
+    public boolean isDuplicate(int textHash, float x, float y, float width, float fontSize) {
+        float tolerance = (width > 0 ? width : fontSize * 0.5f) * toleranceRatio;
+        if (!(tolerance > 0)) {
+            return false;
+        }
+
+        int level = Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, Math.getExponent(tolerance) + 1));
+        float cell = Math.scalb(1.0f, level);
+        int cellX = (int) Math.floor(x / cell);
+        int cellY = (int) Math.floor(y / cell);
+
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                int entry = head(key(textHash, level, cellX + dx, cellY + dy));
+                while (entry >= 0) {
+                    if (entryText[entry] == textHash
+                            && Math.abs(entryX[entry] - x) < tolerance
+                            && Math.abs(entryY[entry] - y) < tolerance) {
+                        return true;
+                    }
+                    entry = entryNext[entry];
+                }
+            }
+        }
+
+        add(key(textHash, level, cellX, cellY), textHash, x, y);
+        return false;
+    }
+
+    /**
+     * Removes duplicate glyphs from the buffer.
+     *
+     * @return number of removed glyphs
+     */
+    public int deduplicate(GlyphBuffer buffer) {
+        reset();
+        int size = buffer.size();
+        boolean[] duplicate = null;
+        int removed = 0;
+        for (int i = 0; i < size; i++) {
+            if (isDuplicate(buffer.getTextHash(i), buffer.getX(i), buffer.getY(i),
+                    buffer.getWidth(i), buffer.getFontSize(i))) {
+                if (duplicate == null) {
+                    duplicate = new boolean[size];
+                }
+                duplicate[i] = true;
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            buffer.remove(duplicate);
+        }
+        return removed;
+    }
+
+    private static long key(int textHash, int level, int cellX, int cellY) {
+        // Wrapped coordinates only cause extra candidates, every candidate is compared exactly
+        long key = ((long) textHash << 32)
+                ^ ((long) (level - MIN_LEVEL) << 27)
+                ^ ((long) (cellX & 0x3FFF) << 13)
+                ^ (cellY & 0x1FFF);
+        return key == EMPTY ? 0 : key;
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int head(long key) {
+        int mask = tableKeys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            long k = tableKeys[slot];
+            if (k == EMPTY) {
+                return -1;
+            }
+            if (k == key) {
+                return tableHeads[slot];
+            }
+        }
+    }
+
+    private void add(long key, int textHash, float x, float y) {
+        if (count == entryX.length) {
+            int capacity = count * 2;
+            entryText = Arrays.copyOf(entryText, capacity);
+            entryX = Arrays.copyOf(entryX, capacity);
+            entryY = Arrays.copyOf(entryY, capacity);
+            entryNext = Arrays.copyOf(entryNext, capacity);
+        }
+        if ((tableSize + 1) * 2 > tableKeys.length) {
+            rehash(tableKeys.length * 2);
+        }
+
+        int entry = count++;
+        entryText[entry] = textHash;
+        entryX[entry] = x;
+        entryY[entry] = y;
+
+        int mask = tableKeys.length - 1;
+        int slot = slot(key, mask);
+        while (tableKeys[slot] != EMPTY && tableKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (tableKeys[slot] == EMPTY) {
+            tableKeys[slot] = key;
+            tableSize++;
+            entryNext[entry] = -1;
+        } else {
+            entryNext[entry] = tableHeads[slot];
+        }
+        tableHeads[slot] = entry;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = tableKeys;
+        int[] oldHeads = tableHeads;
+        tableKeys = new long[capacity];
+        tableHeads = new int[capacity];
+        Arrays.fill(tableKeys, EMPTY);
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i], mask);
+                while (tableKeys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                tableKeys[slot] = oldKeys[i];
+                tableHeads[slot] = oldHeads[i];
+            }
+        }
+    }
+}
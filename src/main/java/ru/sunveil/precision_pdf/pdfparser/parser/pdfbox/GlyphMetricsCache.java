@@ -0,0 +1,301 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDVectorFont;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Vertical glyph extents from font outlines, cached per font and character code.
+ * <p>
+ * The outline of a glyph is read once and its bottom and top, as fractions of the font size,
+ * are stored in an open-addressing table keyed by a 64-bit font fingerprint and the code.
+ * The fingerprint is computed from the font dictionary (name, encoding, widths range) and a
+ * SHA-256 digest of the bytes of the embedded program, CMap and CIDToGIDMap streams, so the
+ * same font embedded in different documents shares entries while different subsets with the
+ * same tag do not. Stream digests are kept per stream object for as long as its document is
+ * alive. The shared instance lives for the whole application; when it is full it is cleared.
+ */
+public class GlyphMetricsCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GlyphMetricsCache.class);
+
+    private static final GlyphMetricsCache SHARED = new GlyphMetricsCache(1 << 18);
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final COSName[] FONT_FILES = {COSName.FONT_FILE, COSName.FONT_FILE2, COSName.FONT_FILE3};
+    /**
+     * Stored for glyphs without outline, such as spaces, and fonts without outlines
+     */
+    private static final long UNKNOWN = pack(0, 0);
+
+    /**
+     * Digests of the font streams, so that a stream is read once per document and not per page
+     */
+    private static final Map<COSStream, Long> STREAM_DIGESTS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final int maxEntries;
+    private long[] keys = new long[4096];
+    private long[] values = new long[4096];
+    private int size;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxEntries number of glyphs after which the cache is cleared
+     */
+    public GlyphMetricsCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the cache shared by all parsers
+     */
+    public static GlyphMetricsCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Vertical extent of a glyph. Callers keep the font key per font instance.
+     *
+     * @param fontKey fingerprint of the font from {@link #fontKey(PDFont)}
+     * @return bottom and top relative to the baseline as fractions of the font size,
+     * packed for {@link #bottom(long)} and {@link #top(long)}; check with {@link #isKnown(long)}
+     */
+    public long getBounds(PDFont font, long fontKey, int code) {
+        long key = mix(fontKey, code);
+        synchronized (this) {
+            int slot = slot(key);
+            if (keys[slot] == key) {
+                hits++;
+                return values[slot];
+            }
+        }
+
+        // Outlines are read outside of the lock; a concurrent duplicate load stores the same value
+        long bounds = readBounds(font, code);
+        synchronized (this) {
+            misses++;
+            if (size >= maxEntries) {
+                Arrays.fill(keys, 0);
+                size = 0;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int slot = slot(key);
+            if (keys[slot] != key) {
+                keys[slot] = key;
+                values[slot] = bounds;
+                size++;
+            }
+        }
+        return bounds;
+    }
+
+    public static boolean isKnown(long bounds) {
+        return top(bounds) > bottom(bounds);
+    }
+
+    public static float bottom(long bounds) {
+        return Float.intBitsToFloat((int) (bounds >>> 32));
+    }
+
+    public static float top(long bounds) {
+        return Float.intBitsToFloat((int) bounds);
+    }
+
+    private static long pack(float bottom, float top) {
+        return ((long) Float.floatToRawIntBits(bottom) << 32) | (Float.floatToRawIntBits(top) & 0xFFFFFFFFL);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return share of lookups answered from the cache
+     */
+    public synchronized double getHitRate() {
+        return hits + misses > 0 ? (double) hits / (hits + misses) : 0;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    private static long readBounds(PDFont font, int code) {
+        if (!(font instanceof PDVectorFont vectorFont)) {
+            // Type 3 glyphs are content streams, their extent comes from the font metrics
+            return UNKNOWN;
+        }
+        try {
+            GeneralPath path = vectorFont.getNormalizedPath(code);
+            if (path == null) {
+                return UNKNOWN;
+            }
+            Rectangle2D bounds = path.getBounds2D();
+            if (bounds.isEmpty()) {
+                return UNKNOWN;
+            }
+            // Normalized paths use the 1000 unit glyph space
+            return pack((float) bounds.getMinY() / 1000f, (float) bounds.getMaxY() / 1000f);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not read glyph {} of font {}: {}", code, font.getName(), e.getMessage());
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Fingerprint of a font that is equal for the same font embedded in different documents
+     */
+    public static long fontKey(PDFont font) {
+        return fingerprint(FNV_OFFSET, font.getCOSObject(), 0);
+    }
+
+    private static long fingerprint(long hash, COSDictionary font, int depth) {
+        hash = hash(hash, font.getNameAsString(COSName.SUBTYPE));
+        hash = hash(hash, font.getNameAsString(COSName.BASE_FONT));
+        hash = hash(hash, font.getInt(COSName.FIRST_CHAR, -1));
+        hash = hash(hash, font.getInt(COSName.LAST_CHAR, -1));
+
+        COSBase encoding = font.getDictionaryObject(COSName.ENCODING);
+        if (encoding instanceof COSName name) {
+            hash = hash(hash, name.getName());
+        } else if (encoding instanceof COSDictionary dictionary) {
+            hash = hash(hash, dictionary.getNameAsString(COSName.BASE_ENCODING));
+            if (dictionary.getDictionaryObject(COSName.DIFFERENCES) instanceof COSArray differences) {
+                for (COSBase entry : differences) {
+                    hash = entry instanceof COSName glyphName ? hash(hash, glyphName.getName())
+                            : entry instanceof COSNumber number ? hash(hash, number.intValue()) : hash;
+                }
+            }
+        } else if (encoding instanceof COSStream stream) {
+            hash = hash(hash, digest(stream));
+        }
+
+        COSBase cidToGid = font.getDictionaryObject(COSName.CID_TO_GID_MAP);
+        if (cidToGid instanceof COSName name) {
+            hash = hash(hash, name.getName());
+        } else if (cidToGid instanceof COSStream stream) {
+            hash = hash(hash, digest(stream));
+        }
+
+        if (font.getDictionaryObject(COSName.FONT_DESC) instanceof COSDictionary descriptor) {
+            for (COSName fontFile : FONT_FILES) {
+                if (descriptor.getDictionaryObject(fontFile) instanceof COSStream program) {
+                    hash = hash(hash, fontFile.getName());
+                    hash = hash(hash, digest(program));
+                }
+            }
+        }
+
+        if (depth == 0 && font.getDictionaryObject(COSName.DESCENDANT_FONTS) instanceof COSArray descendants
+                && descendants.size() > 0 && descendants.getObject(0) instanceof COSDictionary descendant) {
+            hash = fingerprint(hash, descendant, depth + 1);
+        }
+        return hash;
+    }
+
+    /**
+     * First 64 bits of the SHA-256 digest of the raw, still encoded stream bytes
+     */
+    private static long digest(COSStream stream) {
+        Long cached = STREAM_DIGESTS.get(stream);
+        if (cached != null) {
+            return cached;
+        }
+
+        long digest;
+        try (InputStream in = stream.createRawInputStream()) {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                sha256.update(buffer, 0, read);
+            }
+            byte[] bytes = sha256.digest();
+            digest = 0;
+            for (int i = 0; i < 8; i++) {
+                digest = (digest << 8) | (bytes[i] & 0xFF);
+            }
+        } catch (IOException e) {
+            // An unreadable program has no outlines; the identity hash keeps it apart from other fonts
+            logger.debug("Could not read font stream: {}", e.getMessage());
+            digest = System.identityHashCode(stream);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        STREAM_DIGESTS.put(stream, digest);
+        return digest;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return (hash ^ 0xFF) * FNV_PRIME;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ 0xFE) * FNV_PRIME;
+    }
+
+    private static long hash(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ (value & 0xFF)) * FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    private static long mix(long fontKey, int code) {
+        long key = (fontKey ^ code) * 0x9E3779B97F4A7C15L;
+        key ^= key >>> 29;
+        return key != 0 ? key : 1;
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
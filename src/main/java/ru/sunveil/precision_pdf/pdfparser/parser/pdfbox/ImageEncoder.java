@@ -0,0 +1,401 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import ru.sunveil.precision_pdf.pdfparser.config.ExtractionConfig;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PNG/JPEG encoder with tunable compression.
+ * <p>
+ * PNG is written directly with a {@link Deflater}, so both the deflate level and the scanline filter
+ * can be chosen; JPEG goes through an ImageIO writer with an explicit quality. Deflaters, JPEG writers,
+ * row buffers and output buffers are kept per thread and reused between images. Encoding can be
+ * offloaded to a shared bounded pool; when its queue is full the submitting thread encodes itself.
+ */
+public class ImageEncoder {
+
+    /**
+     * PNG scanline filter. ADAPTIVE picks the filter with the smallest sum of absolute
+     * differences for every row, which usually gives the smallest files.
+     */
+    public enum PngFilter {
+        NONE,
+        SUB,
+        UP,
+        AVERAGE,
+        PAETH,
+        ADAPTIVE
+    }
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024 * 1024;
+
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+    private static final ExecutorService ENCODE_EXECUTOR = createEncodeExecutor();
+
+    private static final ThreadLocal<EncoderState> STATE = ThreadLocal.withInitial(EncoderState::new);
+
+    private final int deflateLevel;
+    private final PngFilter pngFilter;
+    private final float jpegQuality;
+
+    public ImageEncoder() {
+        this(Deflater.DEFAULT_COMPRESSION, PngFilter.ADAPTIVE, 0.85f);
+    }
+
+    /**
+     * @param deflateLevel PNG deflate level 0-9, -1 for the zlib default
+     * @param pngFilter PNG scanline filter
+     * @param jpegQuality JPEG quality 0.0-1.0
+     */
+    public ImageEncoder(int deflateLevel, PngFilter pngFilter, float jpegQuality) {
+        this.deflateLevel = Math.max(-1, Math.min(9, deflateLevel));
+        this.pngFilter = pngFilter != null ? pngFilter : PngFilter.ADAPTIVE;
+        this.jpegQuality = Math.max(0f, Math.min(1f, jpegQuality));
+    }
+
+    public static ImageEncoder fromConfig(ExtractionConfig config) {
+        return new ImageEncoder(config.getPngCompressionLevel(),
+                PngFilter.valueOf(config.getPngFilter().toUpperCase(Locale.ROOT)), config.getJpegQuality());
+    }
+
+    /**
+     * Shared bounded pool for encoding work
+     */
+    public static ExecutorService getExecutor() {
+        return ENCODE_EXECUTOR;
+    }
+
+    /**
+     * Encodes the image in the given format.
+     *
+     * @param image image to encode
+     * @param format format name, e.g. PNG, JPEG, BMP
+     * @return encoded bytes, or null if there is no writer for the format
+     */
+    public byte[] encode(BufferedImage image, String format) throws IOException {
+        String normalized = format.toUpperCase(Locale.ROOT);
+        EncoderState state = STATE.get();
+        try {
+            switch (normalized) {
+                case "PNG":
+                    return encodePng(image, state);
+                case "JPG":
+                case "JPEG":
+                    return encodeJpeg(image, state);
+                default:
+                    return ImageIO.write(image, normalized, state.output) ? state.output.toByteArray() : null;
+            }
+        } finally {
+            state.output.release();
+            state.idat.release();
+        }
+    }
+
+    /**
+     * Encodes the image on the shared encoding pool
+     */
+    public CompletableFuture<byte[]> encodeAsync(BufferedImage image, String format) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return encode(image, format);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ENCODE_EXECUTOR);
+    }
+
+    /**
+     * Identifies the encoder settings, for cache keys of encoded results
+     */
+    public String getSettingsKey() {
+        return deflateLevel + "/" + pngFilter + "/" + jpegQuality;
+    }
+
+    private byte[] encodePng(BufferedImage image, EncoderState state) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean gray = image.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        int channels = gray ? 1 : image.getColorModel().hasAlpha() ? 4 : 3;
+        int rowLength = width * channels;
+
+        state.prepareRows(rowLength, width);
+        Deflater deflater = state.deflater;
+        deflater.reset();
+        deflater.setLevel(deflateLevel);
+
+        ReusableOutputStream idat = state.idat;
+        byte[] previous = state.previous;
+        byte[] current = state.current;
+        Arrays.fill(previous, 0, rowLength, (byte) 0);
+
+        for (int y = 0; y < height; y++) {
+            readRow(image, y, width, channels, current, state.pixels);
+            byte[] filtered = filterRow(current, previous, rowLength, channels, state);
+            deflater.setInput(filtered, 0, rowLength + 1);
+            while (!deflater.needsInput()) {
+                int length = deflater.deflate(state.deflateBuffer);
+                idat.write(state.deflateBuffer, 0, length);
+            }
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            int length = deflater.deflate(state.deflateBuffer);
+            idat.write(state.deflateBuffer, 0, length);
+        }
+
+        ReusableOutputStream out = state.output;
+        out.write(PNG_SIGNATURE);
+
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;
+        header[9] = (byte) (channels == 1 ? 0 : channels == 3 ? 2 : 6);
+        writeChunk(out, "IHDR", header, header.length, state.crc);
+        writeChunk(out, "IDAT", idat.buffer(), idat.size(), state.crc);
+        writeChunk(out, "IEND", new byte[0], 0, state.crc);
+
+        return out.toByteArray();
+    }
+
+    private void readRow(BufferedImage image, int y, int width, int channels, byte[] row, int[] pixels) {
+        if (channels == 1) {
+            // Raw gray samples; getRGB would apply a colour space conversion
+            image.getRaster().getDataElements(0, y, width, 1, row);
+            return;
+        }
+
+        image.getRGB(0, y, width, 1, pixels, 0, width);
+        int offset = 0;
+        for (int x = 0; x < width; x++) {
+            int argb = pixels[x];
+            row[offset++] = (byte) (argb >>> 16);
+            row[offset++] = (byte) (argb >>> 8);
+            row[offset++] = (byte) argb;
+            if (channels == 4) {
+                row[offset++] = (byte) (argb >>> 24);
+            }
+        }
+    }
+
+    /**
+     * Filters one scanline into a buffer that starts with the filter type byte
+     */
+    private byte[] filterRow(byte[] row, byte[] prior, int length, int bpp, EncoderState state) {
+        if (pngFilter != PngFilter.ADAPTIVE) {
+            byte[] target = state.candidates[0];
+            applyFilter(pngFilter.ordinal(), row, prior, length, bpp, target);
+            return target;
+        }
+
+        int best = 0;
+        long bestSum = Long.MAX_VALUE;
+        for (int type = 0; type < 5; type++) {
+            byte[] target = state.candidates[type];
+            applyFilter(type, row, prior, length, bpp, target);
+            long sum = 0;
+            for (int i = 1; i <= length && sum < bestSum; i++) {
+                sum += Math.abs(target[i]);
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = type;
+            }
+        }
+        return state.candidates[best];
+    }
+
+    private static void applyFilter(int type, byte[] row, byte[] prior, int length, int bpp, byte[] target) {
+        target[0] = (byte) type;
+        for (int i = 0; i < length; i++) {
+            int x = row[i] & 0xff;
+            int a = i >= bpp ? row[i - bpp] & 0xff : 0;
+            int b = prior[i] & 0xff;
+            int c = i >= bpp ? prior[i - bpp] & 0xff : 0;
+            int predictor = switch (type) {
+                case 1 -> a;
+                case 2 -> b;
+                case 3 -> (a + b) >>> 1;
+                case 4 -> paeth(a, b, c);
+                default -> 0;
+            };
+            target[i + 1] = (byte) (x - predictor);
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image, EncoderState state) throws IOException {
+        ImageWriter writer = state.jpegWriter();
+        if (writer == null) {
+            return null;
+        }
+
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(state.output)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(toJpegCompatible(image), null, null), param);
+        } finally {
+            writer.reset();
+        }
+        return state.output.toByteArray();
+    }
+
+    /**
+     * JPEG has no alpha channel: transparent images are flattened onto white
+     */
+    private BufferedImage toJpegCompatible(BufferedImage image) {
+        int type = image.getType();
+        if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_3BYTE_BGR
+                || type == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = rgb.createGraphics();
+        g2d.drawImage(image, 0, 0, Color.WHITE, null);
+        g2d.dispose();
+        return rgb;
+    }
+
+    private static void writeChunk(ReusableOutputStream out, String type, byte[] data, int length, CRC32 crc) {
+        byte[] header = new byte[8];
+        putInt(header, 0, length);
+        for (int i = 0; i < 4; i++) {
+            header[4 + i] = (byte) type.charAt(i);
+        }
+        out.write(header, 0, 8);
+        out.write(data, 0, length);
+
+        crc.reset();
+        crc.update(header, 4, 4);
+        crc.update(data, 0, length);
+        byte[] checksum = new byte[4];
+        putInt(checksum, 0, (int) crc.getValue());
+        out.write(checksum, 0, 4);
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static ExecutorService createEncodeExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(PROCESSORS, PROCESSORS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(PROCESSORS * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-encode-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Per-thread reusable encoding state
+     */
+    private static final class EncoderState {
+        final Deflater deflater = new Deflater();
+        final CRC32 crc = new CRC32();
+        final byte[] deflateBuffer = new byte[64 * 1024];
+        final ReusableOutputStream output = new ReusableOutputStream();
+        final ReusableOutputStream idat = new ReusableOutputStream();
+        final byte[][] candidates = new byte[5][0];
+        byte[] previous = new byte[0];
+        byte[] current = new byte[0];
+        int[] pixels = new int[0];
+        private ImageWriter jpegWriter;
+        private boolean jpegWriterResolved;
+
+        void prepareRows(int rowLength, int width) {
+            if (current.length < rowLength) {
+                previous = new byte[rowLength];
+                current = new byte[rowLength];
+                for (int i = 0; i < candidates.length; i++) {
+                    candidates[i] = new byte[rowLength + 1];
+                }
+            }
+            if (pixels.length < width) {
+                pixels = new int[width];
+            }
+        }
+
+        ImageWriter jpegWriter() {
+            if (!jpegWriterResolved) {
+                Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+                jpegWriter = writers.hasNext() ? writers.next() : null;
+                jpegWriterResolved = true;
+            }
+            return jpegWriter;
+        }
+    }
+
+    /**
+     * Output buffer that is reset instead of reallocated; oversized buffers are not retained
+     */
+    private static final class ReusableOutputStream extends ByteArrayOutputStream {
+
+        ReusableOutputStream() {
+            super(64 * 1024);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        void release() {
+            reset();
+            if (buf.length > MAX_RETAINED_BUFFER) {
+                buf = new byte[64 * 1024];
+            }
+        }
+
+        @Override
+        public void write(byte[] b) {
+            write(b, 0, b.length);
+        }
+    }
+}
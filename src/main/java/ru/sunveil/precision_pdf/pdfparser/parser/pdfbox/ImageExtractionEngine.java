@@ -1,26 +1,46 @@
 package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
 
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDInlineImage;
 import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.pattern.PDTilingPattern;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.sunveil.precision_pdf.pdfparser.model.PdfImage;
 import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+import ru.sunveil.precision_pdf.pdfparser.util.ImageUtils;
 import ru.sunveil.precision_pdf.pdfparser.parser.ImageExtractor;
+import ru.sunveil.precision_pdf.pdfparser.storage.ImageBlobStore;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Движок для извлечения изображений из PDF документов с использованием PDFBox
@@ -29,9 +49,57 @@ public class ImageExtractionEngine implements ImageExtractor {
 
     private static final Logger logger = LoggerFactory.getLogger(ImageExtractionEngine.class);
 
+    /**
+     * Фильтры, результат которых уже является самостоятельным файлом изображения.
+     * Встроенный JBIG2 поток таким файлом не является (нет заголовка файла, сегменты
+     * часто вынесены в JBIG2Globals), поэтому он декодируется в PNG.
+     */
+    private static final Set<COSName> PASSTHROUGH_FILTERS = Set.of(
+            COSName.DCT_DECODE, COSName.DCT_DECODE_ABBREVIATION, COSName.JPX_DECODE);
+
+    /**
+     * Общий для всех документов кэш закодированных изображений
+     */
+    private static final EncodedImageCache SHARED_CACHE = new EncodedImageCache(64L * 1024 * 1024);
+
     private final float imageDpi;
     private final int maxImageSize;
     private final boolean preserveQuality;
+    private final EncodedImageCache imageCache;
+    private boolean passthroughEncodedStreams = true;
+    private ImageBlobStore blobStore;
+    private boolean renderPagesWithoutImages = true;
+    private long maxImagePixels = 100_000_000L;
+    private ImageEncoder imageEncoder = new ImageEncoder();
+
+    // Состояние текущего документа: идентификаторы по COS объектам и уже выданные изображения
+    private PDDocument currentDocument;
+    private PDFRenderer currentRenderer;
+    private final Map<COSStream, String> imageIdsByObject = new IdentityHashMap<>();
+    private final Map<String, PdfImage> emittedImages = new HashMap<>();
+    // Изображения, найденные внутри форм и шаблонов, по COS объекту контейнера
+    private final Map<COSBase, List<PDImageXObject>> nestedImagesByContainer = new IdentityHashMap<>();
+    // Изображения шаблонов, достижимые из формы, по COS объекту формы
+    private final Map<COSBase, List<PDImageXObject>> patternImagesByForm = new IdentityHashMap<>();
+    private final Set<COSBase> containersInProgress = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Изображения страницы, которые кодируются в пуле ImageEncoder, по id изображения
+    private final Map<String, PendingEncode> pendingEncodes = new LinkedHashMap<>();
+
+    /**
+     * Результат кодирования и формат, в котором он получен
+     */
+    private record EncodedImage(String format, byte[] data) {
+    }
+
+    /**
+     * Изображение, кодируемое в пуле. Повторные вхождения, найденные до окончания кодирования,
+     * получают ссылку на результат вместе с ним.
+     *
+     * @param cacheKey ключ кэша закодированных изображений, null для inline изображений
+     */
+    private record PendingEncode(PdfImage image, CompletableFuture<EncodedImage> result, String cacheKey,
+                                 List<PdfImage> duplicates) {
+    }
 
     /**
      * Конструктор с параметрами по умолчанию
@@ -48,9 +116,22 @@ public class ImageExtractionEngine implements ImageExtractor {
      * @param preserveQuality сохранять ли качество изображения
      */
     public ImageExtractionEngine(float imageDpi, int maxImageSize, boolean preserveQuality) {
+        this(imageDpi, maxImageSize, preserveQuality, SHARED_CACHE);
+    }
+
+    /**
+     * Конструктор с собственным кэшем закодированных изображений
+     */
+    public ImageExtractionEngine(float imageDpi, int maxImageSize, boolean preserveQuality,
+                                 EncodedImageCache imageCache) {
         this.imageDpi = imageDpi;
         this.maxImageSize = maxImageSize;
         this.preserveQuality = preserveQuality;
+        this.imageCache = imageCache;
+    }
+
+    public static EncodedImageCache getSharedCache() {
+        return SHARED_CACHE;
     }
 
     @Override
@@ -73,6 +154,7 @@ public class ImageExtractionEngine implements ImageExtractor {
 
     @Override
     public List<PdfImage> extractImagesFromPage(PDDocument document, int pageNumber) throws IOException {
+        beginDocument(document);
         List<PdfImage> images = new ArrayList<>();
         PDPage page = document.getPage(pageNumber - 1); // PDFBox uses 0-based indexing
 
@@ -81,17 +163,66 @@ public class ImageExtractionEngine implements ImageExtractor {
             return images;
         }
 
-        // Извлечение встроенных изображений
-        images.addAll(extractInlineImages(page, pageNumber));
-
-        // Извлечение XObject изображений
-        images.addAll(extractXObjectImages(page, pageNumber));
+        try {
+            // Извлечение встроенных изображений
+            images.addAll(extractInlineImages(page, pageNumber));
+
+            // Извлечение изображений, вложенных в формы и шаблоны
+            images.addAll(extractXObjectImages(page, pageNumber));
+        } catch (IOException | RuntimeException e) {
+            discardEncodes();
+            throw e;
+        }
+        completeEncodes();
 
         // Рендеринг страницы как изображения (если нужно)
-        if (images.isEmpty()) {
+        if (images.isEmpty() && renderPagesWithoutImages) {
+            images.addAll(renderPageAsImage(document, page, pageNumber));
+        }
+
+        return images;
+    }
+
+    /**
+     * Конвертирует изображения, найденные за один проход по потоку содержимого страницы.
+     * Рамки изображений берутся из фактического размещения; изображения из шаблонов
+     * при проходе не рисуются, поэтому добавляются обходом ресурсов.
+     *
+     * @param document документ
+     * @param pageNumber номер страницы (1-based)
+     * @param placements размещения изображений в порядке отрисовки
+     */
+    public List<PdfImage> extractPlacedImages(PDDocument document, int pageNumber,
+                                              List<PageContentCollector.ImagePlacement> placements) throws IOException {
+        beginDocument(document);
+        List<PdfImage> images = new ArrayList<>();
+        PDPage page = document.getPage(pageNumber - 1);
+
+        try {
+            for (PageContentCollector.ImagePlacement placement : placements) {
+                PdfImage pdfImage = placement.image() instanceof PDImageXObject pdImage
+                        ? convertPdImageToPdfImage(pdImage, pageNumber)
+                        : convertInlineImage(placement.image(), pageNumber);
+                pdfImage.setBoundingBox(new BoundingBox(placement.bounds()));
+                images.add(pdfImage);
+            }
+
+            if (page.getResources() != null) {
+                for (PDImageXObject pdImage : collectUnplacedImages(page.getResources())) {
+                    images.add(convertPdImageToPdfImage(pdImage, pageNumber));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            discardEncodes();
+            throw e;
+        }
+        completeEncodes();
+
+        if (images.isEmpty() && renderPagesWithoutImages) {
             images.addAll(renderPageAsImage(document, page, pageNumber));
         }
 
+        logger.debug("Extracted {} placed images from page {}", images.size(), pageNumber);
         return images;
     }
 
@@ -124,16 +255,141 @@ public class ImageExtractionEngine implements ImageExtractor {
     }
 
     /**
-     * Извлекает XObject изображения со страницы
+     * Извлекает изображения, вложенные в Form XObject и шаблоны (tiling patterns) страницы.
+     * Каждая форма обходится один раз на документ, на других страницах используется найденный список.
      */
-    private List<PdfImage> extractXObjectImages(PDPage page, int pageNumber) {
+    private List<PdfImage> extractXObjectImages(PDPage page, int pageNumber) throws IOException {
         List<PdfImage> images = new ArrayList<>();
-        // Реализация извлечения XObject изображений
-        // Этот метод может быть расширен для обработки специфических типов XObject
+        PDResources resources = page.getResources();
+
+        if (resources == null) {
+            return images;
+        }
+
+        for (PDImageXObject pdImage : collectNestedImages(resources)) {
+            PdfImage pdfImage = convertPdImageToPdfImage(pdImage, pageNumber);
+            images.add(pdfImage);
+
+            logger.debug("Extracted nested image: {}x{}, format: {}",
+                    pdfImage.getWidth(), pdfImage.getHeight(), pdfImage.getImageFormat());
+        }
 
         return images;
     }
 
+    /**
+     * Собирает изображения из форм и шаблонов, на которые ссылаются ресурсы (без изображений верхнего уровня)
+     */
+    private List<PDImageXObject> collectNestedImages(PDResources resources) {
+        List<PDImageXObject> images = new ArrayList<>();
+
+        for (COSName name : resources.getXObjectNames()) {
+            try {
+                if (resources.getXObject(name) instanceof PDFormXObject form) {
+                    images.addAll(collectContainerImages(form.getCOSObject(), form.getResources()));
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to read XObject {}: {}", name.getName(), e.getMessage());
+            }
+        }
+
+        images.addAll(collectPatternImages(resources));
+        return images;
+    }
+
+    /**
+     * Собирает изображения из шаблонов (tiling patterns) ресурсов
+     */
+    private List<PDImageXObject> collectPatternImages(PDResources resources) {
+        List<PDImageXObject> images = new ArrayList<>();
+
+        for (COSName name : resources.getPatternNames()) {
+            try {
+                if (resources.getPattern(name) instanceof PDTilingPattern pattern) {
+                    images.addAll(collectContainerImages(pattern.getCOSObject(), pattern.getResources()));
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to read pattern {}: {}", name.getName(), e.getMessage());
+            }
+        }
+
+        return images;
+    }
+
+    /**
+     * Собирает изображения шаблонов ресурсов и всех достижимых из них форм. Формы рисуются
+     * при проходе по потоку содержимого, поэтому их собственные изображения уже размещены,
+     * а изображения шаблонов - нет. Результат по форме запоминается, циклы пропускаются.
+     */
+    private List<PDImageXObject> collectUnplacedImages(PDResources resources) {
+        List<PDImageXObject> images = new ArrayList<>(collectPatternImages(resources));
+
+        for (COSName name : resources.getXObjectNames()) {
+            try {
+                if (resources.getXObject(name) instanceof PDFormXObject form) {
+                    images.addAll(collectFormPatternImages(form.getCOSObject(), form.getResources()));
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to read XObject {}: {}", name.getName(), e.getMessage());
+            }
+        }
+
+        return images;
+    }
+
+    private List<PDImageXObject> collectFormPatternImages(COSBase form, PDResources resources) {
+        List<PDImageXObject> cached = patternImagesByForm.get(form);
+        if (cached != null) {
+            return cached;
+        }
+        if (resources == null || !containersInProgress.add(form)) {
+            return List.of();
+        }
+
+        List<PDImageXObject> images;
+        try {
+            images = collectUnplacedImages(resources);
+        } finally {
+            containersInProgress.remove(form);
+        }
+
+        patternImagesByForm.put(form, images);
+        return images;
+    }
+
+    /**
+     * Возвращает все изображения формы или шаблона, включая вложенные на любую глубину.
+     * Результат запоминается по COS объекту; циклические ссылки между формами пропускаются.
+     */
+    private List<PDImageXObject> collectContainerImages(COSBase container, PDResources resources) {
+        List<PDImageXObject> cached = nestedImagesByContainer.get(container);
+        if (cached != null) {
+            return cached;
+        }
+        if (resources == null || !containersInProgress.add(container)) {
+            return List.of();
+        }
+
+        List<PDImageXObject> images = new ArrayList<>();
+        try {
+            for (COSName name : resources.getXObjectNames()) {
+                try {
+                    if (resources.getXObject(name) instanceof PDImageXObject pdImage) {
+                        images.add(pdImage);
+                    }
+                } catch (IOException e) {
+                    logger.warn("Failed to read XObject {}: {}", name.getName(), e.getMessage());
+                }
+            }
+            images.addAll(collectNestedImages(resources));
+        } finally {
+            containersInProgress.remove(container);
+        }
+
+        nestedImagesByContainer.put(container, images);
+        return images;
+    }
+
     /**
      * Рендерит всю страницу как изображение
      */
@@ -141,13 +397,16 @@ public class ImageExtractionEngine implements ImageExtractor {
         List<PdfImage> images = new ArrayList<>();
 
         try {
-            PDFRenderer renderer = new PDFRenderer(document);
-            BufferedImage bufferedImage = renderer.renderImageWithDPI(pageNumber - 1, imageDpi, ImageType.RGB);
+            // Один PDFRenderer на документ: кэши шрифтов и изображений переиспользуются между страницами
+            if (currentRenderer == null) {
+                currentRenderer = new PDFRenderer(document);
+            }
 
-            // Масштабирование изображения если необходимо
-            bufferedImage = scaleImageIfNeeded(bufferedImage);
+            // DPI выбирается так, чтобы результат сразу укладывался в maxImageSize
+            float dpi = PageRenderPipeline.computeRenderDpi(page, imageDpi, maxImageSize);
+            BufferedImage bufferedImage = currentRenderer.renderImageWithDPI(pageNumber - 1, dpi, ImageType.RGB);
 
-            PdfImage pdfImage = convertBufferedImageToPdfImage(bufferedImage, pageNumber);
+            PdfImage pdfImage = createRenderedPageImage(bufferedImage, pageNumber, dpi);
             images.add(pdfImage);
 
             logger.debug("Rendered page as image: {}x{}, format: {}",
@@ -161,52 +420,266 @@ public class ImageExtractionEngine implements ImageExtractor {
     }
 
     /**
-     * Конвертирует PDImageXObject в PdfImage
+     * Сбрасывает состояние дедупликации при переходе к другому документу
+     */
+    private void beginDocument(PDDocument document) {
+        if (currentDocument != document) {
+            currentDocument = document;
+            currentRenderer = null;
+            imageIdsByObject.clear();
+            emittedImages.clear();
+            nestedImagesByContainer.clear();
+            patternImagesByForm.clear();
+            pendingEncodes.clear();
+        }
+    }
+
+    /**
+     * Конвертирует PDImageXObject в PdfImage.
+     * Каждое различное изображение кодируется один раз, повторные вхождения ссылаются на его id.
      */
     private PdfImage convertPdImageToPdfImage(PDImageXObject pdImage, int pageNumber) throws IOException {
         PdfImage pdfImage = new PdfImage();
 
         // Установка базовых свойств
+        // Размеры и цветовое пространство берутся из словаря изображения без декодирования
         pdfImage.setPageNumber(pageNumber);
         pdfImage.setWidth(pdImage.getWidth());
         pdfImage.setHeight(pdImage.getHeight());
-        pdfImage.setImageFormat(determineImageFormat(pdImage));
         pdfImage.setResolution(imageDpi);
-        pdfImage.setColorSpace(pdImage.getColorSpace().getName());
-        pdfImage.setId(generateImageId(pageNumber, pdfImage.getImageFormat()));
+        pdfImage.setColorSpace(readColorSpaceName(pdImage.getCOSObject()));
 
         // Установка ограничивающей рамки
         pdfImage.setBoundingBox(createImageBoundingBox(pdImage, pageNumber));
 
-        // Получение данных изображения
-        pdfImage.setImageData(getImageData(pdImage));
+        // Внутри документа изображение определяется COS объектом, между документами - хешем содержимого
+        COSStream stream = pdImage.getStream().getCOSObject();
+        String id = imageIdsByObject.get(stream);
+        if (id == null) {
+            id = generateContentId(pdImage);
+            imageIdsByObject.put(stream, id);
+        }
+        pdfImage.setId(id);
+
+        PdfImage canonical = emittedImages.get(id);
+        if (canonical != null) {
+            referTo(canonical, pdfImage);
+            return pdfImage;
+        }
+
+        // Декодированный результат зависит от maxImageSize, поэтому он входит в ключ
+        String cacheKey = id + (passthroughEncodedStreams ? ":raw" : ":decoded") + ":" + maxImageSize
+                + ":" + imageEncoder.getSettingsKey();
+        ImageBlobStore.StoredBlob stored = blobStore != null ? blobStore.findBySource(cacheKey) : null;
+        if (stored != null) {
+            // Уже записано во внешнее хранилище - кодировать повторно не нужно
+            applyStoredBlob(pdfImage, stored);
+            emittedImages.put(id, pdfImage);
+            return pdfImage;
+        }
+
+        emittedImages.put(id, pdfImage);
+        EncodedImageCache.Entry cached = imageCache.get(cacheKey);
+        if (cached != null) {
+            pdfImage.setImageFormat(cached.format());
+            pdfImage.setImageData(cached.data());
+            storeExternally(pdfImage, cacheKey);
+        } else {
+            // Получение данных изображения (устанавливает и итоговый формат)
+            writeImageData(pdImage, pdfImage, cacheKey);
+        }
+
+        return pdfImage;
+    }
+
+    /**
+     * Конвертирует inline изображение (BI/ID/EI). Такие изображения малы и всегда декодируются,
+     * повторные вхождения определяются по хешу исходных данных.
+     */
+    private PdfImage convertInlineImage(PDImage pdImage, int pageNumber) throws IOException {
+        PdfImage pdfImage = new PdfImage();
+        pdfImage.setPageNumber(pageNumber);
+        pdfImage.setWidth(pdImage.getWidth());
+        pdfImage.setHeight(pdImage.getHeight());
+        pdfImage.setResolution(imageDpi);
+        pdfImage.setColorSpace(readColorSpaceName(pdImage.getCOSObject()));
+
+        MessageDigest digest = newDigest();
+        if (pdImage instanceof PDInlineImage inlineImage) {
+            digest.update(inlineImage.getData());
+        }
+        String parameters = pdImage.getWidth() + "x" + pdImage.getHeight()
+                + "|" + pdImage.getBitsPerComponent()
+                + "|" + pdImage.getCOSObject();
+        digest.update(parameters.getBytes(StandardCharsets.UTF_8));
+        String id = toImageId(digest.digest());
+        pdfImage.setId(id);
+
+        PdfImage canonical = emittedImages.get(id);
+        if (canonical != null) {
+            referTo(canonical, pdfImage);
+            return pdfImage;
+        }
+
+        emittedImages.put(id, pdfImage);
+        if (!exceedsPixelLimit(pdImage, pageNumber)) {
+            pdfImage.setImageFormat("PNG");
+            encodeInPool(pdfImage, scaleImageIfNeeded(pdImage.getImage()), "PNG", null);
+        }
 
         return pdfImage;
     }
 
     /**
-     * Конвертирует BufferedImage в PdfImage
+     * Конвертирует отрендеренную страницу в PdfImage.
+     * Не использует состояние документа, поэтому может вызываться из потоков кодирования.
+     *
+     * @param bufferedImage отрендеренная страница
+     * @param pageNumber номер страницы
+     * @param dpi фактическое разрешение рендеринга
      */
-    private PdfImage convertBufferedImageToPdfImage(BufferedImage bufferedImage, int pageNumber) throws IOException {
+    public PdfImage createRenderedPageImage(BufferedImage bufferedImage, int pageNumber, float dpi) throws IOException {
+        // Страховка от округления при расчете DPI
+        bufferedImage = scaleImageIfNeeded(bufferedImage);
+
         PdfImage pdfImage = new PdfImage();
 
         pdfImage.setPageNumber(pageNumber);
         pdfImage.setWidth(bufferedImage.getWidth());
         pdfImage.setHeight(bufferedImage.getHeight());
         pdfImage.setImageFormat("PNG");
-        pdfImage.setResolution(imageDpi);
+        pdfImage.setResolution(dpi);
         pdfImage.setColorSpace("RGB");
-        pdfImage.setId(generateImageId(pageNumber, "PNG"));
 
         // Создание ограничивающей рамки для всей страницы
         pdfImage.setBoundingBox(new BoundingBox(0, 0, bufferedImage.getWidth(), bufferedImage.getHeight()));
 
         // Конвертация в байтовый массив
         pdfImage.setImageData(convertBufferedImageToByteArray(bufferedImage, "PNG"));
+        pdfImage.setId(toImageId(newDigest().digest(pdfImage.getImageData())));
+        storeExternally(pdfImage, null);
 
         return pdfImage;
     }
 
+    /**
+     * Заполняет размер и MIME тип; при наличии хранилища переносит туда данные,
+     * в модели остаются только id, размер и MIME тип
+     */
+    private void storeExternally(PdfImage pdfImage, String sourceKey) throws IOException {
+        if (pdfImage.getImageData() == null) {
+            return;
+        }
+        pdfImage.setByteSize(pdfImage.getImageData().length);
+        pdfImage.setMimeType(ImageUtils.getMimeType(pdfImage));
+        if (blobStore == null) {
+            return;
+        }
+
+        applyStoredBlob(pdfImage, blobStore.put(sourceKey, pdfImage.getImageFormat(), pdfImage.getImageData()));
+        pdfImage.setImageData(null);
+    }
+
+    /**
+     * Делает изображение ссылкой на ранее выданное. Если то еще кодируется,
+     * ссылка заполняется в {@link #completeEncodes()}.
+     */
+    private void referTo(PdfImage canonical, PdfImage pdfImage) {
+        pdfImage.setDuplicate(true);
+        PendingEncode pending = pendingEncodes.get(canonical.getId());
+        if (pending != null) {
+            pending.duplicates().add(pdfImage);
+        } else {
+            copyReference(canonical, pdfImage);
+        }
+    }
+
+    private static void copyReference(PdfImage canonical, PdfImage pdfImage) {
+        pdfImage.setImageFormat(canonical.getImageFormat());
+        pdfImage.setBlobId(canonical.getBlobId());
+        pdfImage.setByteSize(canonical.getByteSize());
+        pdfImage.setMimeType(canonical.getMimeType());
+    }
+
+    /**
+     * Отправляет декодированное изображение на кодирование в пул {@link ImageEncoder}, чтобы разбор
+     * следующих изображений страницы не ждал кодирования. Если у формата нет ImageIO writer,
+     * изображение кодируется в PNG.
+     */
+    private void encodeInPool(PdfImage pdfImage, BufferedImage image, String format, String cacheKey) {
+        CompletableFuture<EncodedImage> result = imageEncoder.encodeAsync(image, format)
+                .thenCompose(data -> data != null || "PNG".equals(format)
+                        ? CompletableFuture.completedFuture(new EncodedImage(format, data))
+                        : imageEncoder.encodeAsync(image, "PNG").thenApply(png -> new EncodedImage("PNG", png)));
+        pendingEncodes.put(pdfImage.getId(), new PendingEncode(pdfImage, result, cacheKey, new ArrayList<>()));
+    }
+
+    /**
+     * Дожидается кодирования изображений страницы, кэширует и сохраняет результаты
+     * и заполняет ссылки повторных вхождений
+     */
+    private void completeEncodes() throws IOException {
+        if (pendingEncodes.isEmpty()) {
+            return;
+        }
+        IOException failure = null;
+        for (PendingEncode pending : pendingEncodes.values()) {
+            PdfImage pdfImage = pending.image();
+            try {
+                EncodedImage encoded = join(pending.result());
+                pdfImage.setImageFormat(encoded.format());
+                pdfImage.setImageData(encoded.data());
+                if (pending.cacheKey() != null && blobStore == null) {
+                    imageCache.put(pending.cacheKey(), encoded.format(), encoded.data());
+                }
+                storeExternally(pdfImage, pending.cacheKey());
+                for (PdfImage duplicate : pending.duplicates()) {
+                    copyReference(pdfImage, duplicate);
+                }
+            } catch (IOException e) {
+                emittedImages.remove(pdfImage.getId());
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        pendingEncodes.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Отменяет ожидание кодирования после ошибки на странице; изображения страницы не выдаются
+     */
+    private void discardEncodes() {
+        for (PendingEncode pending : pendingEncodes.values()) {
+            emittedImages.remove(pending.image().getId());
+        }
+        pendingEncodes.clear();
+    }
+
+    private static EncodedImage join(CompletableFuture<EncodedImage> result) throws IOException {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Image encoding failed", e.getCause());
+        }
+    }
+
+    private void applyStoredBlob(PdfImage pdfImage, ImageBlobStore.StoredBlob blob) {
+        String blobId = blob.blobId();
+        pdfImage.setImageFormat(blobId.substring(blobId.lastIndexOf('.') + 1).toUpperCase());
+        pdfImage.setBlobId(blobId);
+        pdfImage.setByteSize(blob.size());
+        pdfImage.setMimeType(blob.mimeType());
+    }
+
     /**
      * Определяет формат изображения
      */
@@ -228,31 +701,112 @@ public class ImageExtractionEngine implements ImageExtractor {
      * Создает ограничивающую рамку для изображения
      */
     private BoundingBox createImageBoundingBox(PDImageXObject pdImage, int pageNumber) {
-        // В реальной реализации здесь должна быть логика определения позиции изображения на странице
-        // Для упрощения возвращаем рамку с размерами изображения
+        // При обходе ресурсов размещение неизвестно - рамка с размерами изображения.
+        // Фактические рамки на странице дает extractPlacedImages по результатам ContentStreamEngine
         return new BoundingBox(0, 0, pdImage.getWidth(), pdImage.getHeight());
     }
 
     /**
-     * Получает данные изображения в виде байтового массива
+     * Записывает данные изображения и их формат в PdfImage.
+     * DCT и JPX потоки копируются как есть, остальные (raw/Flate, CCITT, JBIG2) декодируются
+     * на текущем потоке и кодируются в пуле; данные появляются после {@link #completeEncodes()}.
      */
-    private byte[] getImageData(PDImageXObject pdImage) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        String format = determineImageFormat(pdImage);
+    private void writeImageData(PDImageXObject pdImage, PdfImage pdfImage, String cacheKey) throws IOException {
+        if (passthroughEncodedStreams) {
+            byte[] encoded = readEncodedStream(pdImage);
+            if (encoded != null) {
+                pdfImage.setImageFormat(determineImageFormat(pdImage));
+                pdfImage.setImageData(encoded);
+                if (blobStore == null) {
+                    imageCache.put(cacheKey, pdfImage.getImageFormat(), encoded);
+                }
+                storeExternally(pdfImage, cacheKey);
+                return;
+            }
+        }
 
-        BufferedImage bufferedImage = pdImage.getImage();
-        ImageIO.write(bufferedImage, format, baos);
+        if (exceedsPixelLimit(pdImage, pdfImage.getPageNumber())) {
+            return;
+        }
 
-        return baos.toByteArray();
+        // Для JBIG2, CCITT и т.п. стандартного ImageIO writer нет, они кодируются в PNG
+        encodeInPool(pdfImage, decodeImage(pdImage), determineImageFormat(pdImage), cacheKey);
+    }
+
+    /**
+     * Защита от "бомб": заявленный размер слишком велик даже для декодирования с прореживанием
+     */
+    private boolean exceedsPixelLimit(PDImage pdImage, int pageNumber) {
+        long pixels = (long) pdImage.getWidth() * pdImage.getHeight();
+        if (maxImagePixels > 0 && pixels > maxImagePixels) {
+            logger.warn("Skipping image {}x{} on page {}: {} pixels exceed the limit of {}",
+                    pdImage.getWidth(), pdImage.getHeight(), pageNumber, pixels, maxImagePixels);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Декодирует изображение; если оно больше maxImageSize, декодирует с прореживанием,
+     * так что полноразмерный растр не создается, и затем доводит до точного размера
+     */
+    private BufferedImage decodeImage(PDImageXObject pdImage) throws IOException {
+        int longestSide = Math.max(pdImage.getWidth(), pdImage.getHeight());
+        int subsampling = maxImageSize > 0 ? Math.max(1, longestSide / maxImageSize) : 1;
+        if (subsampling == 1) {
+            return scaleImageIfNeeded(pdImage.getImage());
+        }
+
+        logger.debug("Decoding image {}x{} with subsampling {}", pdImage.getWidth(), pdImage.getHeight(), subsampling);
+        return scaleImageIfNeeded(pdImage.getImage(null, subsampling));
+    }
+
+    /**
+     * Возвращает исходные закодированные байты изображения или null, если поток нельзя отдать без декодирования
+     */
+    private byte[] readEncodedStream(PDImageXObject pdImage) throws IOException {
+        List<COSName> filters = pdImage.getStream().getFilters();
+        if (filters.isEmpty()) {
+            return null;
+        }
+
+        COSName imageFilter = filters.get(filters.size() - 1);
+        if (!PASSTHROUGH_FILTERS.contains(imageFilter)) {
+            return null;
+        }
+
+        COSDictionary dictionary = pdImage.getCOSObject();
+        // Маски и Decode применяются только при декодировании
+        if (dictionary.containsKey(COSName.SMASK) || dictionary.containsKey(COSName.MASK)
+                || dictionary.containsKey(COSName.DECODE)) {
+            return null;
+        }
+
+        // Снимаются только внешние фильтры (например, Flate поверх DCT), сам кодек остается
+        try (InputStream in = pdImage.getStream().createInputStream(List.of(imageFilter.getName()))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Читает имя цветового пространства из словаря, не загружая ICC профили
+     */
+    private String readColorSpaceName(COSDictionary dictionary) {
+        COSBase colorSpace = dictionary.getDictionaryObject(COSName.COLORSPACE, COSName.CS);
+        if (colorSpace instanceof COSName name) {
+            return name.getName();
+        }
+        if (colorSpace instanceof COSArray array && array.size() > 0 && array.getObject(0) instanceof COSName name) {
+            return name.getName();
+        }
+        return dictionary.getBoolean(COSName.IMAGE_MASK, false) ? "DeviceGray" : null;
     }
 
     /**
      * Конвертирует BufferedImage в байтовый массив
      */
     private byte[] convertBufferedImageToByteArray(BufferedImage image, String format) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(image, format, baos);
-        return baos.toByteArray();
+        return imageEncoder.encode(image, format);
     }
 
     /**
@@ -262,7 +816,7 @@ public class ImageExtractionEngine implements ImageExtractor {
         int width = originalImage.getWidth();
         int height = originalImage.getHeight();
 
-        if (width <= maxImageSize && height <= maxImageSize) {
+        if (maxImageSize <= 0 || (width <= maxImageSize && height <= maxImageSize)) {
             return originalImage;
         }
 
@@ -271,10 +825,13 @@ public class ImageExtractionEngine implements ImageExtractor {
                 (double) maxImageSize / height
         );
 
-        int newWidth = (int) (width * scaleFactor);
-        int newHeight = (int) (height * scaleFactor);
+        int newWidth = Math.max(1, (int) (width * scaleFactor));
+        int newHeight = Math.max(1, (int) (height * scaleFactor));
 
-        BufferedImage scaledImage = new BufferedImage(newWidth, newHeight, originalImage.getType());
+        // Декодированные изображения в нестандартных цветовых пространствах имеют TYPE_CUSTOM
+        int imageType = originalImage.getType() != BufferedImage.TYPE_CUSTOM ? originalImage.getType()
+                : originalImage.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage scaledImage = new BufferedImage(newWidth, newHeight, imageType);
         java.awt.Graphics2D g2d = scaledImage.createGraphics();
 
         if (preserveQuality) {
@@ -291,10 +848,43 @@ public class ImageExtractionEngine implements ImageExtractor {
     }
 
     /**
-     * Генерирует уникальный идентификатор для изображения
+     * Генерирует идентификатор изображения по хешу исходного (не декодированного) потока
+     * и параметров словаря, влияющих на результат
      */
-    private String generateImageId(int pageNumber, String format) {
-        return String.format("img_%d_%s_%d", pageNumber, format, System.currentTimeMillis());
+    private String generateContentId(PDImageXObject pdImage) throws IOException {
+        MessageDigest digest = newDigest();
+        COSDictionary dictionary = pdImage.getCOSObject();
+
+        byte[] buffer = new byte[8192];
+        try (InputStream in = pdImage.getStream().getCOSObject().createRawInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        String parameters = pdImage.getWidth() + "x" + pdImage.getHeight()
+                + "|" + pdImage.getBitsPerComponent()
+                + "|" + readColorSpaceName(dictionary)
+                + "|" + pdImage.getStream().getFilters()
+                + "|" + dictionary.getDictionaryObject(COSName.DECODE_PARMS, COSName.DP)
+                + "|" + dictionary.getDictionaryObject(COSName.DECODE)
+                + "|" + dictionary.containsKey(COSName.SMASK) + dictionary.containsKey(COSName.MASK);
+        digest.update(parameters.getBytes(StandardCharsets.UTF_8));
+
+        return toImageId(digest.digest());
+    }
+
+    private static String toImageId(byte[] hash) {
+        return "img_" + HexFormat.of().formatHex(hash, 0, 16);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
     @Override
@@ -302,6 +892,47 @@ public class ImageExtractionEngine implements ImageExtractor {
         return true;
     }
 
+    /**
+     * Включает рендеринг страницы целиком, если на ней не найдено изображений.
+     * Отключается, когда рендеринг выполняет {@link PageRenderPipeline}.
+     */
+    public void setRenderPagesWithoutImages(boolean renderPagesWithoutImages) {
+        this.renderPagesWithoutImages = renderPagesWithoutImages;
+    }
+
+    /**
+     * @param maxImagePixels максимальное число пикселей изображения для декодирования, 0 - без ограничения
+     */
+    public void setMaxImagePixels(long maxImagePixels) {
+        this.maxImagePixels = maxImagePixels;
+    }
+
+    public void setImageEncoder(ImageEncoder imageEncoder) {
+        this.imageEncoder = imageEncoder;
+    }
+
+    public float getImageDpi() {
+        return imageDpi;
+    }
+
+    public int getMaxImageSize() {
+        return maxImageSize;
+    }
+
+    /**
+     * Задает внешнее хранилище изображений; null - данные остаются в PdfImage
+     */
+    public void setBlobStore(ImageBlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * Включает копирование исходных DCT/JPX потоков без перекодирования
+     */
+    public void setPassthroughEncodedStreams(boolean passthroughEncodedStreams) {
+        this.passthroughEncodedStreams = passthroughEncodedStreams;
+    }
+
     /**
      * Очищает ресурсы (если необходимо)
      */
@@ -0,0 +1,270 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.common.PDMetadata;
+import org.apache.pdfbox.util.DateConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sunveil.precision_pdf.pdfparser.exceptions.PdfParseException;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfMetadata;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads document metadata without parsing the page tree.
+ * <p>
+ * PDFBox resolves objects lazily, so loading a document reads only the cross-reference data and
+ * the trailer. From there the reader resolves the Info dictionary, the XMP stream of the catalog
+ * and the {@code /Count} of the root page tree node; pages, resources and content streams are
+ * never touched. Info entries take precedence, XMP fills the fields the Info dictionary lacks,
+ * and Info keys outside of the standard set go to {@code customMetadata}.
+ */
+public class MetadataReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetadataReader.class);
+
+    /**
+     * Larger XMP streams are skipped, they are not worth the parse for a few fields
+     */
+    private static final int MAX_XMP_LENGTH = 1 << 20;
+
+    private static final Set<String> STANDARD_KEYS = Set.of(
+            "Title", "Author", "Subject", "Keywords", "Creator", "Producer", "CreationDate", "ModDate");
+
+    private static final String RDF = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String DC_TITLE = key("http://purl.org/dc/elements/1.1/", "title");
+    private static final String DC_CREATOR = key("http://purl.org/dc/elements/1.1/", "creator");
+    private static final String DC_DESCRIPTION = key("http://purl.org/dc/elements/1.1/", "description");
+    private static final String PDF_KEYWORDS = key("http://ns.adobe.com/pdf/1.3/", "Keywords");
+    private static final String PDF_PRODUCER = key("http://ns.adobe.com/pdf/1.3/", "Producer");
+    private static final String XMP_CREATOR_TOOL = key("http://ns.adobe.com/xap/1.0/", "CreatorTool");
+    private static final String XMP_CREATE_DATE = key("http://ns.adobe.com/xap/1.0/", "CreateDate");
+    private static final String XMP_MODIFY_DATE = key("http://ns.adobe.com/xap/1.0/", "ModifyDate");
+    private static final Set<String> XMP_PROPERTIES = Set.of(DC_TITLE, DC_CREATOR, DC_DESCRIPTION,
+            PDF_KEYWORDS, PDF_PRODUCER, XMP_CREATOR_TOOL, XMP_CREATE_DATE, XMP_MODIFY_DATE);
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    /**
+     * Reads the metadata of a PDF file. The file is read through a fixed-size buffer, so memory
+     * does not grow with the file: only the cross-reference data, the trailer and the objects
+     * the metadata comes from are read.
+     */
+    public PdfMetadata read(File file) {
+        try (RandomAccessRead source = new RandomAccessReadBufferedFile(file);
+             PDDocument document = Loader.loadPDF(source)) {
+            return read(document);
+        } catch (IOException e) {
+            throw new PdfParseException("Failed to read metadata: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Reads the metadata of a loaded document.
+     */
+    public PdfMetadata read(PDDocument document) {
+        PdfMetadata metadata = new PdfMetadata();
+
+        PDDocumentInformation info = document.getDocumentInformation();
+        metadata.setTitle(info.getTitle());
+        metadata.setAuthor(info.getAuthor());
+        metadata.setSubject(info.getSubject());
+        metadata.setKeywords(info.getKeywords());
+        metadata.setCreator(info.getCreator());
+        metadata.setProducer(info.getProducer());
+        metadata.setCreationDate(toDate(info.getCreationDate()));
+        metadata.setModificationDate(toDate(info.getModificationDate()));
+        metadata.setCustomMetadata(readCustomMetadata(info.getCOSObject()));
+
+        readXmp(document, metadata);
+        metadata.setPageCount(document.getNumberOfPages());
+        return metadata;
+    }
+
+    public static boolean isStandardMetadataKey(String keyName) {
+        return STANDARD_KEYS.contains(keyName);
+    }
+
+    private static Map<String, String> readCustomMetadata(COSDictionary info) {
+        Map<String, String> custom = new LinkedHashMap<>();
+        for (COSName key : info.keySet()) {
+            if (isStandardMetadataKey(key.getName())) {
+                continue;
+            }
+            String value = toText(info.getDictionaryObject(key));
+            if (value != null) {
+                custom.put(key.getName(), value);
+            }
+        }
+        return custom.isEmpty() ? null : custom;
+    }
+
+    /**
+     * Text of a scalar Info value; dictionaries and arrays are not metadata values
+     */
+    private static String toText(COSBase value) {
+        if (value instanceof COSString string) {
+            return string.getString();
+        } else if (value instanceof COSName name) {
+            return name.getName();
+        } else if (value instanceof COSInteger integer) {
+            return String.valueOf(integer.longValue());
+        } else if (value instanceof COSNumber number) {
+            return String.valueOf(number.floatValue());
+        } else if (value instanceof COSBoolean bool) {
+            return String.valueOf(bool.getValue());
+        }
+        return null;
+    }
+
+    private void readXmp(PDDocument document, PdfMetadata metadata) {
+        PDMetadata xmp = document.getDocumentCatalog().getMetadata();
+        if (xmp == null) {
+            return;
+        }
+        if (xmp.getCOSObject().getLength() > MAX_XMP_LENGTH) {
+            logger.debug("XMP stream of {} bytes skipped", xmp.getCOSObject().getLength());
+            return;
+        }
+
+        Map<String, String> values;
+        try (InputStream in = xmp.exportXMPMetadata()) {
+            values = parseXmp(in);
+        } catch (IOException | XMLStreamException e) {
+            logger.debug("Could not read XMP metadata: {}", e.getMessage());
+            return;
+        }
+
+        metadata.setTitle(orElse(metadata.getTitle(), values.get(DC_TITLE)));
+        metadata.setAuthor(orElse(metadata.getAuthor(), values.get(DC_CREATOR)));
+        metadata.setSubject(orElse(metadata.getSubject(), values.get(DC_DESCRIPTION)));
+        metadata.setKeywords(orElse(metadata.getKeywords(), values.get(PDF_KEYWORDS)));
+        metadata.setCreator(orElse(metadata.getCreator(), values.get(XMP_CREATOR_TOOL)));
+        metadata.setProducer(orElse(metadata.getProducer(), values.get(PDF_PRODUCER)));
+        if (metadata.getCreationDate() == null && values.containsKey(XMP_CREATE_DATE)) {
+            metadata.setCreationDate(toDate(DateConverter.toCalendar(values.get(XMP_CREATE_DATE))));
+        }
+        if (metadata.getModificationDate() == null && values.containsKey(XMP_MODIFY_DATE)) {
+            metadata.setModificationDate(toDate(DateConverter.toCalendar(values.get(XMP_MODIFY_DATE))));
+        }
+    }
+
+    /**
+     * Collects the known properties of the XMP packet, written either as attributes of
+     * {@code rdf:Description} or as elements. Language alternatives yield the {@code x-default}
+     * or first entry, ordered and unordered arrays their entries joined by commas.
+     */
+    private static Map<String, String> parseXmp(InputStream in) throws XMLStreamException {
+        Map<String, String> values = new HashMap<>();
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            String property = null;
+            int propertyDepth = 0;
+            int depth = 0;
+            boolean alternative = false;
+            String itemLanguage = null;
+            StringBuilder text = new StringBuilder();
+            List<String> items = new ArrayList<>();
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String namespace = reader.getNamespaceURI();
+                    String name = reader.getLocalName();
+                    if (property != null) {
+                        if (RDF.equals(namespace) && "Alt".equals(name)) {
+                            alternative = true;
+                        } else if (RDF.equals(namespace) && "li".equals(name)) {
+                            itemLanguage = reader.getAttributeValue(XMLConstants.XML_NS_URI, "lang");
+                            text.setLength(0);
+                        }
+                    } else if (RDF.equals(namespace) && "Description".equals(name)) {
+                        for (int a = 0; a < reader.getAttributeCount(); a++) {
+                            String attribute = key(reader.getAttributeNamespace(a), reader.getAttributeLocalName(a));
+                            if (XMP_PROPERTIES.contains(attribute)) {
+                                values.putIfAbsent(attribute, reader.getAttributeValue(a).trim());
+                            }
+                        }
+                    } else if (XMP_PROPERTIES.contains(key(namespace, name))) {
+                        property = key(namespace, name);
+                        propertyDepth = depth;
+                        alternative = false;
+                        text.setLength(0);
+                        items.clear();
+                    }
+                } else if (property != null && (event == XMLStreamConstants.CHARACTERS
+                        || event == XMLStreamConstants.CDATA)) {
+                    text.append(reader.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (property != null && depth == propertyDepth) {
+                        String value = items.isEmpty() ? text.toString().trim()
+                                : alternative ? items.get(0) : String.join(", ", items);
+                        if (!value.isEmpty()) {
+                            values.putIfAbsent(property, value);
+                        }
+                        property = null;
+                    } else if (property != null && RDF.equals(reader.getNamespaceURI())
+                            && "li".equals(reader.getLocalName())) {
+                        String item = text.toString().trim();
+                        if (!item.isEmpty()) {
+                            // The default language goes first so that alternatives pick it
+                            items.add("x-default".equals(itemLanguage) ? 0 : items.size(), item);
+                        }
+                        text.setLength(0);
+                    }
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return values;
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+
+    private static String key(String namespace, String name) {
+        return namespace + name;
+    }
+
+    private static String orElse(String infoValue, String xmpValue) {
+        return (infoValue == null || infoValue.isBlank()) && xmpValue != null ? xmpValue : infoValue;
+    }
+
+    private static Date toDate(Calendar calendar) {
+        return calendar != null ? calendar.getTime() : null;
+    }
+}
@@ -0,0 +1,92 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import ru.sunveil.precision_pdf.pdfparser.model.PageType;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+/**
+ * Page classification from the shared content stream pass.
+ * <p>
+ * Counts the glyphs, images and painted paths that {@link ContentStreamEngine} reports, to tell
+ * which of the stages run after the pass can produce output for the page. The page is not
+ * tokenized a second time for this.
+ */
+public class PageClassifier implements ContentStreamListener {
+
+    private static final long PIXELS_PER_COST_UNIT = 10_000;
+
+    /**
+     * Result of the classification
+     *
+     * @param estimatedCost relative extraction cost: one unit per operator and per glyph, and one
+     *                      for every {@value #PIXELS_PER_COST_UNIT} image pixels
+     */
+    public record Classification(PageType type, long estimatedCost, int glyphs, int images, int paths) {
+    }
+
+    private int glyphs;
+    private int images;
+    private int paths;
+    private long imagePixels;
+    private boolean complete;
+
+    @Override
+    public void startPage(int pageNumber, PDPage page) {
+        glyphs = 0;
+        images = 0;
+        paths = 0;
+        imagePixels = 0;
+        complete = false;
+    }
+
+    @Override
+    public void glyph(PDFont font, int code, String unicode, float x, float y,
+                      float width, float height, float depth, float fontSize) {
+        glyphs++;
+    }
+
+    @Override
+    public void image(PDImage image, BoundingBox bounds) {
+        images++;
+        imagePixels += (long) image.getWidth() * image.getHeight();
+    }
+
+    @Override
+    public void path(float[] segments, int segmentCount, boolean stroke, boolean fill, float lineWidth) {
+        paths++;
+    }
+
+    @Override
+    public void shading() {
+        paths++;
+    }
+
+    @Override
+    public void endPage(int pageNumber) {
+        complete = true;
+    }
+
+    /**
+     * Classifies the page of the last pass. Pages whose content could not be read to the end are
+     * reported as {@link PageType#MIXED}, so that no stage is skipped for them.
+     *
+     * @param operators number of operators interpreted by the pass
+     */
+    public Classification getClassification(int operators) {
+        PageType type = complete ? typeOf() : PageType.MIXED;
+        long cost = operators + glyphs + imagePixels / PIXELS_PER_COST_UNIT;
+        return new Classification(type, cost, glyphs, images, paths);
+    }
+
+    private PageType typeOf() {
+        if (glyphs > 0) {
+            return images > 0 ? PageType.MIXED : PageType.TEXT;
+        }
+        if (images > 0) {
+            return PageType.IMAGE_ONLY;
+        }
+        return paths > 0 ? PageType.VECTOR : PageType.BLANK;
+    }
+}
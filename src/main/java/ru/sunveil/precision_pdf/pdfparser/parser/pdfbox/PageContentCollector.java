@@ -0,0 +1,33 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects image placements of a page from a {@link ContentStreamEngine} pass.
+ */
+public class PageContentCollector implements ContentStreamListener {
+
+    /**
+     * An image together with the page area it is painted into
+     */
+    public record ImagePlacement(PDImage image, BoundingBox bounds) {
+    }
+
+    private final List<ImagePlacement> imagePlacements = new ArrayList<>();
+
+    @Override
+    public void image(PDImage image, BoundingBox bounds) {
+        imagePlacements.add(new ImagePlacement(image, bounds));
+    }
+
+    /**
+     * @return image placements in painting order
+     */
+    public List<ImagePlacement> getImagePlacements() {
+        return imagePlacements;
+    }
+}
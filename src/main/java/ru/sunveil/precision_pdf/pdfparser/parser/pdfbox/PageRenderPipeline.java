@@ -0,0 +1,154 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfImage;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel page rendering pipeline.
+ * <p>
+ * PDDocument is not thread-safe, so every render worker opens its own document handle and keeps
+ * one {@link PDFRenderer} for all pages it renders. The DPI is derived from the target pixel size
+ * before rendering, and rendered rasters are handed to the shared {@link ImageEncoder} pool, so PNG
+ * encoding of one page overlaps with rendering of the next ones.
+ */
+public class PageRenderPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageRenderPipeline.class);
+
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+    private static final ExecutorService RENDER_EXECUTOR =
+            Executors.newFixedThreadPool(PROCESSORS, daemonThreads("pdf-render"));
+
+    private final ImageExtractionEngine imageExtractionEngine;
+    private final int workers;
+
+    /**
+     * @param imageExtractionEngine engine that converts rendered rasters into PdfImage
+     * @param workers number of parallel render workers, 0 or less means one per processor
+     */
+    public PageRenderPipeline(ImageExtractionEngine imageExtractionEngine, int workers) {
+        this.imageExtractionEngine = imageExtractionEngine;
+        this.workers = workers > 0 ? Math.min(workers, PROCESSORS) : PROCESSORS;
+    }
+
+    /**
+     * Computes the DPI at which the page's longest side fits into {@code maxImageSize} pixels.
+     *
+     * @param page page to render
+     * @param maxDpi upper DPI bound
+     * @param maxImageSize maximum raster side in pixels
+     * @return DPI to pass to the renderer
+     */
+    public static float computeRenderDpi(PDPage page, float maxDpi, int maxImageSize) {
+        PDRectangle cropBox = page.getCropBox();
+        float longestSide = Math.max(cropBox.getWidth(), cropBox.getHeight());
+        if (longestSide <= 0 || maxImageSize <= 0) {
+            return maxDpi;
+        }
+        return Math.min(maxDpi, maxImageSize * 72f / longestSide);
+    }
+
+    /**
+     * Renders the given pages of a PDF file in parallel.
+     *
+     * @param pdfFile the source PDF file
+     * @param pageNumbers 1-based page numbers to render
+     * @return rendered page images by page number; pages that failed to render are absent
+     */
+    public Map<Integer, PdfImage> renderPages(File pdfFile, List<Integer> pageNumbers) {
+        Map<Integer, PdfImage> result = new TreeMap<>();
+        if (pageNumbers.isEmpty()) {
+            return result;
+        }
+
+        int workerCount = Math.min(workers, pageNumbers.size());
+        // Limits rasters waiting for encoding, so fast renderers cannot exhaust the heap
+        Semaphore pendingRasters = new Semaphore(workerCount * 2);
+        List<CompletableFuture<List<CompletableFuture<PdfImage>>>> renderTasks = new ArrayList<>();
+
+        for (int worker = 0; worker < workerCount; worker++) {
+            List<Integer> assigned = new ArrayList<>();
+            for (int i = worker; i < pageNumbers.size(); i += workerCount) {
+                assigned.add(pageNumbers.get(i));
+            }
+            renderTasks.add(CompletableFuture.supplyAsync(
+                    () -> renderAssigned(pdfFile, assigned, pendingRasters), RENDER_EXECUTOR));
+        }
+
+        for (CompletableFuture<List<CompletableFuture<PdfImage>>> renderTask : renderTasks) {
+            for (CompletableFuture<PdfImage> encodeTask : renderTask.join()) {
+                PdfImage image = encodeTask.join();
+                if (image != null) {
+                    result.put(image.getPageNumber(), image);
+                }
+            }
+        }
+
+        logger.debug("Rendered {} of {} pages with {} workers", result.size(), pageNumbers.size(), workerCount);
+        return result;
+    }
+
+    private List<CompletableFuture<PdfImage>> renderAssigned(File pdfFile, List<Integer> pageNumbers,
+                                                             Semaphore pendingRasters) {
+        List<CompletableFuture<PdfImage>> encodeTasks = new ArrayList<>(pageNumbers.size());
+
+        try (PDDocument document = Loader.loadPDF(pdfFile)) {
+            PDFRenderer renderer = new PDFRenderer(document);
+
+            for (int pageNumber : pageNumbers) {
+                try {
+                    float dpi = computeRenderDpi(document.getPage(pageNumber - 1),
+                            imageExtractionEngine.getImageDpi(), imageExtractionEngine.getMaxImageSize());
+                    BufferedImage raster = renderer.renderImageWithDPI(pageNumber - 1, dpi, ImageType.RGB);
+
+                    pendingRasters.acquireUninterruptibly();
+                    encodeTasks.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return imageExtractionEngine.createRenderedPageImage(raster, pageNumber, dpi);
+                        } catch (Exception e) {
+                            logger.warn("Failed to encode rendered page {}: {}", pageNumber, e.getMessage());
+                            return null;
+                        } finally {
+                            pendingRasters.release();
+                        }
+                    }, ImageEncoder.getExecutor()));
+                } catch (Exception e) {
+                    logger.warn("Failed to render page {} as image: {}", pageNumber, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to open render worker document {}: {}", pdfFile.getName(), e.getMessage());
+        }
+
+        return encodeTasks;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
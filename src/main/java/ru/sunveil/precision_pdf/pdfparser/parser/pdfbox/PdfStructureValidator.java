@@ -0,0 +1,1272 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import ru.sunveil.precision_pdf.pdfparser.exceptions.PdfParseException;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfValidationReport;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfValidationReport.Finding;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfValidationReport.Issue;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfValidationReport.Severity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Structural check of a PDF file within a fixed byte and time budget.
+ * <p>
+ * Only a few parts of the file are read: the head for the header, the tail for {@code startxref}
+ * and {@code %%EOF}, every cross-reference section of the {@code /Prev} chain, an evenly spread
+ * sample of objects whose offsets and stream lengths are verified, and the page tree from the
+ * catalog down. Cross-reference and object streams are inflated when they use FlateDecode.
+ * Every read is charged to the budget; when it runs out the report is returned as incomplete
+ * with the findings so far. Errors that the lenient PDFBox parser recovers from, such as wrong
+ * offsets or a lost cross-reference table, are marked repairable.
+ * <p>
+ * Instances are thread-safe, every call keeps its state in its own {@code Validation}.
+ */
+public class PdfStructureValidator {
+
+    private static final int HEAD_LENGTH = 1024;
+    private static final int TAIL_LENGTH = 1024;
+    private static final int OBJECT_CHUNK = 512;
+    private static final int XREF_CHUNK = 16 * 1024;
+    private static final int SCAN_CHUNK = 64 * 1024;
+    private static final int MAX_XREF_SECTIONS = 64;
+    private static final int MAX_OBJECT_NUMBER = 1 << 23;
+    private static final int MAX_NESTING = 32;
+    private static final int MAX_TOKEN_LENGTH = 256;
+    private static final int MAX_RESOLVE_DEPTH = 8;
+    private static final int MAX_FINDINGS = 100;
+    private static final int SAMPLED_OBJECTS = 32;
+
+    private static final byte FREE = 3;
+    private static final byte IN_USE = 1;
+    private static final byte COMPRESSED = 2;
+
+    private static final byte[] HEADER = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EOF_MARKER = "%%EOF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STARTXREF = "startxref".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OBJ = "obj".getBytes(StandardCharsets.US_ASCII);
+
+    private final long maxBytes;
+    private final long timeoutMillis;
+
+    /**
+     * @param maxBytes      bytes that may be read from the file and inflated from its streams
+     * @param timeoutMillis time after which the validation stops
+     */
+    public PdfStructureValidator(long maxBytes, long timeoutMillis) {
+        this.maxBytes = maxBytes;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public PdfValidationReport validate(File file) {
+        try (RandomAccessRead source = new RandomAccessReadBufferedFile(file)) {
+            return validate(source);
+        } catch (IOException e) {
+            throw new PdfParseException("Failed to read PDF file: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public PdfValidationReport validate(byte[] data) {
+        try (RandomAccessRead source = new RandomAccessReadBuffer(data)) {
+            return validate(source);
+        } catch (IOException e) {
+            throw new PdfParseException("Failed to read PDF data", e);
+        }
+    }
+
+    public PdfValidationReport validate(RandomAccessRead source) throws IOException {
+        try {
+            return new Validation(source).run();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private record Name(String value) {
+    }
+
+    private record Keyword(String value) {
+    }
+
+    private record Ref(int number, int generation) {
+        @Override
+        public String toString() {
+            return number + " " + generation + " R";
+        }
+    }
+
+    /**
+     * Indirect object read from the file; {@code streamOffset} is -1 for objects without a stream
+     */
+    private record PdfObject(int number, Object value, long streamOffset) {
+    }
+
+    private record ObjectStream(byte[] data, int first, int[] numbers, int[] offsets) {
+    }
+
+    private static final ObjectStream UNREADABLE = new ObjectStream(new byte[0], 0, new int[0], new int[0]);
+
+    /**
+     * Stops the validation when the budget is spent
+     */
+    private static final class BudgetExceeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BudgetExceeded(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private static final class Malformed extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final long offset;
+
+        Malformed(String message, long offset) {
+            super(message, null, false, false);
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * State of one validation call
+     */
+    private final class Validation {
+        private final RandomAccessRead source;
+        private final long fileSize;
+        private final long startNanos = System.nanoTime();
+        private final long deadline = startNanos + timeoutMillis * 1_000_000L;
+        private final PdfValidationReport report = new PdfValidationReport();
+
+        private long bytesRead;
+        private long budgetUsed;
+        private boolean hasError;
+        private boolean hasUnrepairableError;
+
+        private long headerOffset;
+        /**
+         * Added to cross-reference offsets when they count from the header instead of the file start
+         */
+        private long shift;
+        private Map<String, Object> trailer;
+        private byte[] entryType = new byte[1024];
+        private long[] entryOffset = new long[1024];
+        private int[] entryIndex = new int[1024];
+        private int entryCount;
+        private final Map<Integer, ObjectStream> objectStreams = new HashMap<>();
+        private final BitSet reportedObjects = new BitSet();
+        private int resolveDepth;
+        /**
+         * The last resolve found an object it may not check, such as one in an encrypted object stream
+         */
+        private boolean skipped;
+
+        private Validation(RandomAccessRead source) throws IOException {
+            this.source = source;
+            this.fileSize = source.length();
+        }
+
+        private PdfValidationReport run() {
+            report.setFileSize(fileSize);
+            try {
+                if (fileSize == 0) {
+                    add(Issue.EMPTY_FILE, "File is empty", -1);
+                } else if (checkHeader()) {
+                    long startxref = checkTail();
+                    if (startxref >= 0 && readXrefChain(startxref)) {
+                        checkObjects();
+                        checkPageTree();
+                    } else if (!scanForObjects()) {
+                        add(Issue.NO_OBJECTS, "No indirect object found in the file", -1);
+                    }
+                }
+            } catch (BudgetExceeded e) {
+                report.setComplete(false);
+                add(Issue.BUDGET_EXCEEDED, e.getMessage(), -1);
+            }
+
+            report.setValid(!hasError);
+            report.setRepairable(!hasUnrepairableError);
+            report.setBytesRead(bytesRead);
+            report.setElapsedMillis((System.nanoTime() - startNanos) / 1_000_000L);
+            return report;
+        }
+
+        private boolean checkHeader() {
+            byte[] head = readBytes(0, (int) Math.min(HEAD_LENGTH, fileSize));
+            int index = indexOf(head, head.length, HEADER, 0);
+            if (index < 0) {
+                add(Issue.NOT_PDF, "No %PDF- header in the first " + HEAD_LENGTH + " bytes", 0);
+                return false;
+            }
+            headerOffset = index;
+            if (index > 0) {
+                add(Issue.HEADER_OFFSET, index + " bytes before the header", 0);
+            }
+
+            int end = index + HEADER.length;
+            while (end < head.length && (isDigit(head[end]) || head[end] == '.') && end < index + HEADER.length + 4) {
+                end++;
+            }
+            report.setPdfVersion(new String(head, index + HEADER.length, end - index - HEADER.length,
+                    StandardCharsets.US_ASCII));
+            return true;
+        }
+
+        /**
+         * @return the startxref offset, or -1 if it is missing or invalid
+         */
+        private long checkTail() {
+            long start = Math.max(0, fileSize - TAIL_LENGTH);
+            byte[] tail = readBytes(start, (int) (fileSize - start));
+            if (lastIndexOf(tail, EOF_MARKER) < 0) {
+                add(Issue.MISSING_EOF, "No %%EOF marker at the end of the file, it may be truncated", fileSize);
+            }
+
+            int index = lastIndexOf(tail, STARTXREF);
+            if (index < 0) {
+                add(Issue.MISSING_STARTXREF, "No startxref in the last " + TAIL_LENGTH + " bytes", start);
+                return -1;
+            }
+            Cursor cursor = new Cursor(tail, index + STARTXREF.length);
+            try {
+                long startxref = readLong(cursor);
+                if (startxref < 0 || startxref >= fileSize) {
+                    add(Issue.INVALID_STARTXREF, "startxref " + startxref + " is outside of the file", start + index);
+                    return -1;
+                }
+                return startxref;
+            } catch (Malformed e) {
+                add(Issue.INVALID_STARTXREF, "startxref is not followed by an offset", start + index);
+                return -1;
+            }
+        }
+
+        /**
+         * Reads the newest cross-reference section and the older ones it links to.
+         * Entries of newer sections take precedence.
+         *
+         * @return whether the newest section and its trailer could be read
+         */
+        private boolean readXrefChain(long startxref) {
+            if (headerOffset > 0 && !looksLikeXref(startxref) && looksLikeXref(startxref + headerOffset)) {
+                shift = headerOffset;
+            }
+
+            Set<Long> visited = new HashSet<>();
+            Deque<Long> pending = new ArrayDeque<>();
+            pending.add(startxref);
+            while (!pending.isEmpty()) {
+                long offset = pending.poll();
+                if (!visited.add(offset)) {
+                    add(Issue.XREF_LOOP, "Cross-reference section at " + (offset + shift) + " is linked twice",
+                            offset + shift);
+                    break;
+                }
+                if (visited.size() > MAX_XREF_SECTIONS) {
+                    add(Issue.XREF_LOOP, "More than " + MAX_XREF_SECTIONS + " cross-reference sections", -1);
+                    break;
+                }
+
+                Map<String, Object> sectionTrailer = readXrefSection(offset + shift);
+                if (sectionTrailer == null) {
+                    break;
+                }
+                report.setXrefSections(report.getXrefSections() + 1);
+                if (trailer == null) {
+                    trailer = sectionTrailer;
+                }
+                // Hybrid files keep the entries of the stream in XRefStm, ahead of the previous section
+                long xrefStream = number(sectionTrailer.get("XRefStm"), -1);
+                if (xrefStream >= 0) {
+                    pending.addFirst(xrefStream);
+                }
+                long previous = number(sectionTrailer.get("Prev"), -1);
+                if (previous >= 0) {
+                    pending.addLast(previous);
+                }
+            }
+            return trailer != null;
+        }
+
+        private boolean looksLikeXref(long position) {
+            if (position >= fileSize) {
+                return false;
+            }
+            Cursor cursor = new Cursor(position, 64);
+            cursor.skipWhitespace();
+            int c = cursor.peek();
+            return c == 'x' || isDigit(c);
+        }
+
+        /**
+         * @return the trailer dictionary of the section, or null if the section cannot be read
+         */
+        private Map<String, Object> readXrefSection(long position) {
+            if (position >= fileSize) {
+                add(Issue.XREF_NOT_FOUND, "Cross-reference section at " + position + " is outside of the file", position);
+                return null;
+            }
+            try {
+                Cursor cursor = new Cursor(position, XREF_CHUNK);
+                cursor.skipWhitespace();
+                if (cursor.peek() == 'x') {
+                    if ("xref".equals(cursor.readToken())) {
+                        return readXrefTable(cursor);
+                    }
+                } else {
+                    PdfObject object = readIndirectObject(cursor, -1);
+                    if (object != null && object.streamOffset() >= 0 && object.value() instanceof Map<?, ?> dictionary
+                            && "XRef".equals(nameOf(dictionary.get("Type")))) {
+                        return readXrefStream(object);
+                    }
+                }
+            } catch (Malformed e) {
+                add(Issue.XREF_MALFORMED, "Cross-reference section at " + position + ": " + e.getMessage(),
+                        e.offset >= 0 ? e.offset : position);
+                return null;
+            }
+            add(Issue.XREF_NOT_FOUND, "No cross-reference section at " + position, position);
+            return null;
+        }
+
+        private Map<String, Object> readXrefTable(Cursor cursor) {
+            while (true) {
+                cursor.skipWhitespace();
+                if (!isDigit(cursor.peek())) {
+                    break;
+                }
+                long start = readLong(cursor);
+                long count = readLong(cursor);
+                if (start < 0 || count < 0 || start + count > MAX_OBJECT_NUMBER) {
+                    throw new Malformed("subsection " + start + " " + count + " is out of range", cursor.offset());
+                }
+                for (int i = 0; i < count; i++) {
+                    long offset = readLong(cursor);
+                    readLong(cursor);
+                    String type = cursor.readToken();
+                    if ("n".equals(type)) {
+                        setEntry((int) (start + i), IN_USE, offset, 0);
+                    } else if ("f".equals(type)) {
+                        setEntry((int) (start + i), FREE, 0, 0);
+                    } else {
+                        throw new Malformed("invalid entry type '" + type + "'", cursor.offset());
+                    }
+                }
+            }
+            if (!"trailer".equals(cursor.readToken())) {
+                throw new Malformed("no trailer after the table", cursor.offset());
+            }
+            if (!(cursor.readObject(0) instanceof Map<?, ?> dictionary)) {
+                throw new Malformed("trailer is not a dictionary", cursor.offset());
+            }
+            return asDictionary(dictionary);
+        }
+
+        private Map<String, Object> readXrefStream(PdfObject object) {
+            Map<String, Object> dictionary = asDictionary(object.value());
+            if (!(dictionary.get("W") instanceof List<?> w) || w.size() < 3) {
+                throw new Malformed("stream has no /W array", object.streamOffset());
+            }
+            int[] widths = new int[3];
+            for (int i = 0; i < 3; i++) {
+                widths[i] = (int) number(w.get(i), -1);
+                if (widths[i] < 0 || widths[i] > 8) {
+                    throw new Malformed("invalid /W entry " + w.get(i), object.streamOffset());
+                }
+            }
+            long size = number(dictionary.get("Size"), -1);
+            if (size < 0) {
+                throw new Malformed("stream has no /Size", object.streamOffset());
+            }
+            List<?> index = dictionary.get("Index") instanceof List<?> list ? list : List.of(0L, size);
+
+            byte[] data = readStreamData(object);
+            if (data == null) {
+                // The trailer entries are still usable
+                return dictionary;
+            }
+            int entryLength = widths[0] + widths[1] + widths[2];
+            int position = 0;
+            for (int s = 0; s + 1 < index.size(); s += 2) {
+                long start = number(index.get(s), -1);
+                long count = number(index.get(s + 1), -1);
+                if (start < 0 || count < 0 || start + count > MAX_OBJECT_NUMBER) {
+                    throw new Malformed("subsection " + start + " " + count + " is out of range", object.streamOffset());
+                }
+                for (int i = 0; i < count; i++) {
+                    if (position + entryLength > data.length) {
+                        throw new Malformed("stream data ends after " + i + " entries of subsection " + start,
+                                object.streamOffset());
+                    }
+                    long type = widths[0] == 0 ? 1 : field(data, position, widths[0]);
+                    long second = field(data, position + widths[0], widths[1]);
+                    long third = field(data, position + widths[0] + widths[1], widths[2]);
+                    position += entryLength;
+                    if (type == 0) {
+                        setEntry((int) (start + i), FREE, 0, 0);
+                    } else if (type == 1) {
+                        setEntry((int) (start + i), IN_USE, second, 0);
+                    } else if (type == 2) {
+                        setEntry((int) (start + i), COMPRESSED, second, (int) third);
+                    }
+                }
+            }
+            return dictionary;
+        }
+
+        private void setEntry(int number, byte type, long offset, int index) {
+            if (number >= entryType.length) {
+                int capacity = Math.max(number + 1, entryType.length * 2);
+                entryType = Arrays.copyOf(entryType, capacity);
+                entryOffset = Arrays.copyOf(entryOffset, capacity);
+                entryIndex = Arrays.copyOf(entryIndex, capacity);
+            }
+            if (entryType[number] == 0) {
+                entryType[number] = type;
+                entryOffset[number] = offset;
+                entryIndex[number] = index;
+                entryCount = Math.max(entryCount, number + 1);
+            }
+        }
+
+        /**
+         * Checks the trailer against the entries, then the offsets and stream lengths of a sample of objects
+         */
+        private void checkObjects() {
+            int inUse = 0;
+            int compressed = 0;
+            int highest = 0;
+            for (int i = 1; i < entryCount; i++) {
+                if (entryType[i] == IN_USE || entryType[i] == COMPRESSED) {
+                    inUse += entryType[i] == IN_USE ? 1 : 0;
+                    compressed += entryType[i] == COMPRESSED ? 1 : 0;
+                    highest = i;
+                }
+            }
+            report.setObjectCount(inUse + compressed);
+
+            long size = number(trailer.get("Size"), -1);
+            if (size < 0) {
+                add(Issue.SIZE_MISMATCH, "Trailer has no /Size", -1);
+            } else if (size <= highest) {
+                add(Issue.SIZE_MISMATCH, "Trailer /Size " + size + " does not cover object " + highest, -1);
+            }
+            if (trailer.containsKey("Encrypt")) {
+                report.setEncrypted(true);
+                add(Issue.ENCRYPTED, "Document is encrypted, objects in object streams are not checked", -1);
+            }
+
+            if (inUse == 0) {
+                add(scanForObjects() ? Issue.XREF_MALFORMED : Issue.NO_OBJECTS,
+                        "Cross-reference data lists no objects", -1);
+                return;
+            }
+            int step = Math.max(1, inUse / SAMPLED_OBJECTS);
+            int seen = 0;
+            for (int i = 1; i < entryCount; i++) {
+                if (entryType[i] != IN_USE || seen++ % step != 0) {
+                    continue;
+                }
+                try {
+                    PdfObject object = readObject(i);
+                    if (object != null && object.streamOffset() >= 0) {
+                        streamLength(object);
+                    }
+                } catch (Malformed e) {
+                    reportObject(i, Issue.MALFORMED_OBJECT, "Object " + i + ": " + e.getMessage(), e.offset);
+                }
+            }
+        }
+
+        /**
+         * Walks the page tree from the catalog and compares the leaves with the declared count
+         */
+        private void checkPageTree() {
+            if (!(trailer.get("Root") instanceof Ref root)) {
+                add(Issue.MISSING_ROOT, "Trailer has no /Root reference", -1);
+                return;
+            }
+            Map<String, Object> catalog = asDictionary(resolve(root));
+            if (catalog == null) {
+                if (!skipped) {
+                    add(Issue.MISSING_ROOT, "Catalog " + root + " cannot be read", -1);
+                }
+                return;
+            }
+            if (!(catalog.get("Pages") instanceof Ref pages)) {
+                add(Issue.MISSING_PAGES, "Catalog has no /Pages reference", -1);
+                return;
+            }
+            Map<String, Object> pagesRoot = asDictionary(resolve(pages));
+            if (pagesRoot == null) {
+                // Like an unreadable catalog: the lenient parser finds the object by its header
+                // when the cross-reference data is stale, unless there are no objects at all
+                if (!skipped) {
+                    add(scanForObjects() ? Issue.PAGE_TREE_MALFORMED : Issue.NO_OBJECTS,
+                            "Page tree root " + pages + " cannot be read", -1);
+                }
+                return;
+            }
+            long declared = number(pagesRoot.get("Count"), -1);
+            if (declared < 0) {
+                add(Issue.PAGE_TREE_MALFORMED, "Page tree root has no /Count", -1);
+            } else {
+                report.setPageCount((int) Math.min(Integer.MAX_VALUE, declared));
+            }
+
+            BitSet visited = new BitSet();
+            visited.set(pages.number());
+            Deque<Object> stack = new ArrayDeque<>();
+            stack.push(pagesRoot);
+            long leaves = 0;
+            boolean broken = false;
+            while (!stack.isEmpty()) {
+                Object entry = stack.pop();
+                Map<String, Object> node = entry instanceof Ref ref ? asDictionary(resolve(ref)) : asDictionary(entry);
+                if (node == null) {
+                    if (!skipped) {
+                        add(Issue.PAGE_TREE_MALFORMED, "Page tree node " + entry + " cannot be read", -1);
+                    }
+                    broken = true;
+                    continue;
+                }
+                Object kidsValue = node.get("Kids");
+                if (kidsValue instanceof Ref kidsRef) {
+                    kidsValue = resolve(kidsRef);
+                    if (kidsValue == null) {
+                        if (!skipped) {
+                            add(Issue.PAGE_TREE_MALFORMED, "Kids array " + kidsRef + " cannot be read", -1);
+                        }
+                        broken = true;
+                        continue;
+                    }
+                }
+                if (!(kidsValue instanceof List<?> kids) || "Page".equals(nameOf(node.get("Type")))) {
+                    leaves++;
+                    continue;
+                }
+                for (int k = kids.size() - 1; k >= 0; k--) {
+                    if (!(kids.get(k) instanceof Ref kid)) {
+                        add(Issue.PAGE_TREE_MALFORMED, "Page tree kid " + kids.get(k) + " is not a reference", -1);
+                        broken = true;
+                    } else if (visited.get(kid.number())) {
+                        add(Issue.PAGE_TREE_CYCLE, "Page tree node " + kid + " is referenced twice", -1);
+                        broken = true;
+                    } else {
+                        visited.set(kid.number());
+                        stack.push(kid);
+                    }
+                }
+            }
+            if (!broken && declared >= 0 && declared != leaves) {
+                add(Issue.PAGE_COUNT_MISMATCH, "Page tree declares " + declared + " pages, " + leaves + " found", -1);
+            }
+        }
+
+        /**
+         * Looks for at least one {@code N G obj} header, which a parser rebuilding the
+         * cross-reference data would start from
+         */
+        private boolean scanForObjects() {
+            byte[] chunk = new byte[SCAN_CHUNK];
+            long position = headerOffset;
+            while (position < fileSize) {
+                int length = readChunk(position, chunk);
+                for (int i = indexOf(chunk, length, OBJ, 0); i >= 0; i = indexOf(chunk, length, OBJ, i + 1)) {
+                    if (isObjectHeader(chunk, length, i)) {
+                        return true;
+                    }
+                }
+                if (length < chunk.length) {
+                    break;
+                }
+                // Overlap so that a header split between chunks is seen
+                position += length - 32;
+            }
+            return false;
+        }
+
+        private Object resolve(Ref ref) {
+            skipped = false;
+            int number = ref.number();
+            if (number <= 0 || number >= entryCount || resolveDepth >= MAX_RESOLVE_DEPTH) {
+                return null;
+            }
+            resolveDepth++;
+            try {
+                if (entryType[number] == IN_USE) {
+                    PdfObject object = readObject(number);
+                    return object != null ? object.value() : null;
+                } else if (entryType[number] == COMPRESSED) {
+                    if (report.isEncrypted()) {
+                        skipped = true;
+                        return null;
+                    }
+                    return readCompressed(number);
+                }
+                return null;
+            } catch (Malformed e) {
+                reportObject(number, Issue.MALFORMED_OBJECT, "Object " + number + ": " + e.getMessage(), e.offset);
+                return null;
+            } finally {
+                resolveDepth--;
+            }
+        }
+
+        private PdfObject readObject(int number) {
+            long position = entryOffset[number] + shift;
+            PdfObject object = position < fileSize ? readIndirectObject(new Cursor(position, OBJECT_CHUNK), number) : null;
+            if (object == null) {
+                reportObject(number, Issue.OBJECT_OFFSET_MISMATCH,
+                        "Object " + number + " is not at its cross-reference offset " + position, position);
+            }
+            return object;
+        }
+
+        /**
+         * @return the object, or null if the cursor is not at the header of the expected object
+         */
+        private PdfObject readIndirectObject(Cursor cursor, int expectedNumber) {
+            String number = cursor.readToken();
+            String generation = cursor.readToken();
+            if (!isDigits(number) || number.length() > 9 || !isDigits(generation) || !"obj".equals(cursor.readToken())) {
+                return null;
+            }
+            int objectNumber = Integer.parseInt(number);
+            if (expectedNumber >= 0 && objectNumber != expectedNumber) {
+                return null;
+            }
+
+            Object value = cursor.readObject(0);
+            long streamOffset = -1;
+            if (value instanceof Map && "stream".equals(cursor.readToken())) {
+                // The data starts after the end of line following the keyword
+                if (cursor.peek() == '\r') {
+                    cursor.read();
+                }
+                if (cursor.peek() == '\n') {
+                    cursor.read();
+                }
+                streamOffset = cursor.offset();
+            }
+            return new PdfObject(objectNumber, value, streamOffset);
+        }
+
+        private Object readCompressed(int number) {
+            int streamNumber = (int) entryOffset[number];
+            ObjectStream stream = objectStreams.get(streamNumber);
+            if (stream == null) {
+                stream = streamNumber > 0 && streamNumber < entryCount && entryType[streamNumber] == IN_USE
+                        ? loadObjectStream(streamNumber) : UNREADABLE;
+                objectStreams.put(streamNumber, stream);
+            }
+
+            int index = entryIndex[number];
+            if (index < 0 || index >= stream.numbers().length || stream.numbers()[index] != number) {
+                index = -1;
+                for (int i = 0; i < stream.numbers().length; i++) {
+                    if (stream.numbers()[i] == number) {
+                        index = i;
+                        break;
+                    }
+                }
+            }
+            if (index < 0) {
+                reportObject(number, Issue.OBJECT_OFFSET_MISMATCH,
+                        "Object " + number + " is not in object stream " + streamNumber, -1);
+                return null;
+            }
+            return new Cursor(stream.data(), stream.first() + stream.offsets()[index]).readObject(0);
+        }
+
+        private ObjectStream loadObjectStream(int streamNumber) {
+            PdfObject object = readObject(streamNumber);
+            if (object == null || object.streamOffset() < 0) {
+                return UNREADABLE;
+            }
+            Map<String, Object> dictionary = asDictionary(object.value());
+            long count = number(dictionary.get("N"), -1);
+            long first = number(dictionary.get("First"), -1);
+            byte[] data = readStreamData(object);
+            if (data == null) {
+                return UNREADABLE;
+            }
+            if (count < 0 || first < 0 || first > data.length || count > data.length / 2) {
+                throw new Malformed("object stream has invalid /N or /First", object.streamOffset());
+            }
+
+            int[] numbers = new int[(int) count];
+            int[] offsets = new int[(int) count];
+            Cursor header = new Cursor(data, 0);
+            for (int i = 0; i < count; i++) {
+                numbers[i] = (int) readLong(header);
+                offsets[i] = (int) readLong(header);
+                if (offsets[i] < 0 || first + offsets[i] >= data.length) {
+                    throw new Malformed("object stream offset " + offsets[i] + " is out of range", object.streamOffset());
+                }
+            }
+            return new ObjectStream(data, (int) first, numbers, offsets);
+        }
+
+        /**
+         * @return the decoded stream data, or null if its length is wrong or its filter is not supported
+         */
+        private byte[] readStreamData(PdfObject object) {
+            long length = streamLength(object);
+            if (length < 0) {
+                return null;
+            }
+            Map<String, Object> dictionary = asDictionary(object.value());
+            Object filter = dictionary.get("Filter");
+            if (filter instanceof List<?> filters && filters.size() == 1) {
+                filter = filters.get(0);
+            }
+            if (filter != null && !"FlateDecode".equals(nameOf(filter)) && !"Fl".equals(nameOf(filter))) {
+                add(Issue.UNSUPPORTED_FILTER, "Stream of object " + object.number() + " uses " + filter
+                        + ", its entries are not checked", object.streamOffset());
+                return null;
+            }
+            if (length > maxBytes) {
+                throw new BudgetExceeded("Stream of object " + object.number() + " is larger than the byte budget");
+            }
+
+            byte[] data = readBytes(object.streamOffset(), (int) length);
+            if (filter == null) {
+                return data;
+            }
+            Object parameters = dictionary.get("DecodeParms");
+            if (parameters instanceof List<?> list && list.size() == 1) {
+                parameters = list.get(0);
+            }
+            return unpredict(inflate(data), parameters, object.streamOffset());
+        }
+
+        /**
+         * @return the /Length of the stream, or -1 if it does not end at the endstream keyword
+         */
+        private long streamLength(PdfObject object) {
+            Object value = asDictionary(object.value()).get("Length");
+            long length = value instanceof Ref ref ? number(resolve(ref), -1) : number(value, -1);
+            if (length < 0) {
+                add(Issue.STREAM_LENGTH_MISMATCH, "Stream of object " + object.number() + " has no valid /Length",
+                        object.streamOffset());
+                return -1;
+            }
+            long end = object.streamOffset() + length;
+            boolean endstream = false;
+            if (end < fileSize) {
+                Cursor cursor = new Cursor(end, 32);
+                endstream = cursor.readToken().startsWith("endstream");
+            }
+            if (!endstream) {
+                add(Issue.STREAM_LENGTH_MISMATCH, "Stream of object " + object.number() + " with /Length " + length
+                        + " does not end at endstream", end);
+                return -1;
+            }
+            return length;
+        }
+
+        private byte[] inflate(byte[] data) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data);
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+                byte[] buffer = new byte[8192];
+                while (!inflater.finished()) {
+                    int count = inflater.inflate(buffer);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    charge(count);
+                    out.write(buffer, 0, count);
+                }
+                return out.toByteArray();
+            } catch (DataFormatException e) {
+                throw new Malformed("corrupt FlateDecode data: " + e.getMessage(), -1);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        /**
+         * Reverses PNG predictors; TIFF predictors do not occur in cross-reference and object streams
+         */
+        private byte[] unpredict(byte[] data, Object parameters, long offset) {
+            if (!(parameters instanceof Map<?, ?> map)) {
+                return data;
+            }
+            long predictor = number(map.get("Predictor"), 1);
+            if (predictor == 1) {
+                return data;
+            }
+            if (predictor < 10) {
+                throw new Malformed("predictor " + predictor + " is not supported", offset);
+            }
+            long colors = number(map.get("Colors"), 1);
+            long bits = number(map.get("BitsPerComponent"), 8);
+            long columns = number(map.get("Columns"), 1);
+            if (colors < 1 || bits < 1 || columns < 1 || colors * bits * columns > 1 << 20) {
+                throw new Malformed("invalid predictor parameters", offset);
+            }
+            int pixelLength = (int) Math.max(1, colors * bits / 8);
+            int rowLength = (int) ((colors * bits * columns + 7) / 8);
+            int rows = data.length / (rowLength + 1);
+
+            byte[] out = new byte[rows * rowLength];
+            for (int r = 0; r < rows; r++) {
+                int in = r * (rowLength + 1) + 1;
+                int row = r * rowLength;
+                int type = data[in - 1];
+                for (int i = 0; i < rowLength; i++) {
+                    int left = i >= pixelLength ? out[row + i - pixelLength] & 0xFF : 0;
+                    int up = r > 0 ? out[row - rowLength + i] & 0xFF : 0;
+                    int upLeft = r > 0 && i >= pixelLength ? out[row - rowLength + i - pixelLength] & 0xFF : 0;
+                    int predicted = switch (type) {
+                        case 0 -> 0;
+                        case 1 -> left;
+                        case 2 -> up;
+                        case 3 -> (left + up) / 2;
+                        case 4 -> paeth(left, up, upLeft);
+                        default -> throw new Malformed("invalid PNG filter type " + type, offset);
+                    };
+                    out[row + i] = (byte) (data[in + i] + predicted);
+                }
+            }
+            return out;
+        }
+
+        private void reportObject(int number, Issue issue, String message, long offset) {
+            if (!reportedObjects.get(number)) {
+                reportedObjects.set(number);
+                add(issue, message, offset);
+            }
+        }
+
+        private void add(Issue issue, String message, long offset) {
+            if (issue.getSeverity() == Severity.ERROR) {
+                hasError = true;
+                hasUnrepairableError |= !issue.isRepairable();
+            }
+            if (report.getFindings().size() < MAX_FINDINGS) {
+                report.getFindings().add(new Finding(issue, message, offset));
+            }
+        }
+
+        private byte[] readBytes(long position, int length) {
+            byte[] data = new byte[length];
+            int count = readChunk(position, data);
+            return count == length ? data : Arrays.copyOf(data, count);
+        }
+
+        /**
+         * Reads up to the length of the buffer, charged to the budget
+         *
+         * @return number of bytes read, less than the buffer at the end of the file
+         */
+        private int readChunk(long position, byte[] buffer) {
+            if (position >= fileSize) {
+                return 0;
+            }
+            int length = (int) Math.min(buffer.length, fileSize - position);
+            charge(length);
+            try {
+                source.seek(position);
+                int total = 0;
+                while (total < length) {
+                    int count = source.read(buffer, total, length - total);
+                    if (count <= 0) {
+                        break;
+                    }
+                    total += count;
+                }
+                bytesRead += total;
+                return total;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void charge(long bytes) {
+            budgetUsed += bytes;
+            if (budgetUsed > maxBytes) {
+                throw new BudgetExceeded("Byte budget of " + maxBytes + " bytes exhausted");
+            }
+            if (System.nanoTime() > deadline) {
+                throw new BudgetExceeded("Time budget of " + timeoutMillis + " ms exhausted");
+            }
+        }
+
+        /**
+         * Sequential reader over the file, refilled chunk by chunk, or over decoded stream data
+         */
+        private final class Cursor {
+            private final byte[] buffer;
+            private final boolean fromFile;
+            private long bufferStart;
+            private int bufferLength;
+            private int position;
+
+            private Cursor(long offset, int chunkSize) {
+                this.buffer = new byte[chunkSize];
+                this.fromFile = true;
+                this.bufferStart = offset;
+                this.bufferLength = readChunk(offset, buffer);
+            }
+
+            private Cursor(byte[] data, int offset) {
+                this.buffer = data;
+                this.fromFile = false;
+                this.bufferLength = data.length;
+                this.position = offset;
+            }
+
+            private long offset() {
+                return bufferStart + position;
+            }
+
+            private void seek(long offset) {
+                if (offset >= bufferStart && offset <= bufferStart + bufferLength) {
+                    position = (int) (offset - bufferStart);
+                } else if (fromFile) {
+                    bufferStart = offset;
+                    bufferLength = readChunk(offset, buffer);
+                    position = 0;
+                }
+            }
+
+            private int peek() {
+                if (position >= bufferLength) {
+                    if (!fromFile || bufferLength < buffer.length) {
+                        return -1;
+                    }
+                    bufferStart += bufferLength;
+                    bufferLength = readChunk(bufferStart, buffer);
+                    position = 0;
+                    if (bufferLength == 0) {
+                        return -1;
+                    }
+                }
+                return buffer[position] & 0xFF;
+            }
+
+            private int read() {
+                int c = peek();
+                if (c >= 0) {
+                    position++;
+                }
+                return c;
+            }
+
+            private void skipWhitespace() {
+                int c;
+                while ((c = peek()) >= 0) {
+                    if (c == '%') {
+                        while ((c = peek()) >= 0 && c != '\n' && c != '\r') {
+                            position++;
+                        }
+                    } else if (isWhitespace(c)) {
+                        position++;
+                    } else {
+                        return;
+                    }
+                }
+            }
+
+            /**
+             * @return the next run of regular characters after whitespace, empty at a delimiter
+             */
+            private String readToken() {
+                skipWhitespace();
+                return readRegular();
+            }
+
+            private String readRegular() {
+                StringBuilder token = new StringBuilder();
+                int c;
+                while ((c = peek()) >= 0 && !isWhitespace(c) && !isDelimiter(c)) {
+                    if (token.length() >= MAX_TOKEN_LENGTH) {
+                        throw new Malformed("token longer than " + MAX_TOKEN_LENGTH + " characters", offset());
+                    }
+                    token.append((char) c);
+                    position++;
+                }
+                return token.toString();
+            }
+
+            /**
+             * Reads a direct object. Strings are skipped and returned empty, they are not checked.
+             */
+            private Object readObject(int depth) {
+                if (depth > MAX_NESTING) {
+                    throw new Malformed("objects nested deeper than " + MAX_NESTING, offset());
+                }
+                skipWhitespace();
+                int c = peek();
+                if (c == '/') {
+                    position++;
+                    return new Name(readRegular());
+                } else if (c == '<') {
+                    position++;
+                    if (peek() == '<') {
+                        position++;
+                        return readDictionary(depth);
+                    }
+                    skipHexString();
+                    return "";
+                } else if (c == '[') {
+                    position++;
+                    List<Object> array = new ArrayList<>();
+                    while (true) {
+                        skipWhitespace();
+                        if (peek() == ']') {
+                            position++;
+                            return array;
+                        }
+                        array.add(readObject(depth + 1));
+                    }
+                } else if (c == '(') {
+                    skipLiteralString();
+                    return "";
+                } else if (c == '+' || c == '-' || c == '.' || isDigit(c)) {
+                    return readNumberOrReference();
+                }
+
+                long start = offset();
+                String keyword = readRegular();
+                if (keyword.isEmpty()) {
+                    throw new Malformed(c < 0 ? "unexpected end of data" : "unexpected character '" + (char) c + "'", start);
+                }
+                return switch (keyword) {
+                    case "true" -> Boolean.TRUE;
+                    case "false" -> Boolean.FALSE;
+                    default -> new Keyword(keyword);
+                };
+            }
+
+            private Map<String, Object> readDictionary(int depth) {
+                Map<String, Object> dictionary = new LinkedHashMap<>();
+                while (true) {
+                    skipWhitespace();
+                    if (peek() == '>') {
+                        position++;
+                        if (read() != '>') {
+                            throw new Malformed("dictionary does not end with >>", offset());
+                        }
+                        return dictionary;
+                    }
+                    long keyOffset = offset();
+                    if (!(readObject(depth + 1) instanceof Name key)) {
+                        throw new Malformed("dictionary key is not a name", keyOffset);
+                    }
+                    dictionary.put(key.value(), readObject(depth + 1));
+                }
+            }
+
+            private Object readNumberOrReference() {
+                long start = offset();
+                String token = readRegular();
+                if (isDigits(token) && token.length() <= 9) {
+                    // Object number, generation and R form a reference
+                    long mark = offset();
+                    skipWhitespace();
+                    if (isDigit(peek())) {
+                        String generation = readRegular();
+                        skipWhitespace();
+                        if (isDigits(generation) && generation.length() <= 5 && peek() == 'R') {
+                            position++;
+                            int next = peek();
+                            if (next < 0 || isWhitespace(next) || isDelimiter(next)) {
+                                return new Ref(Integer.parseInt(token), Integer.parseInt(generation));
+                            }
+                        }
+                    }
+                    seek(mark);
+                    return Long.parseLong(token);
+                }
+                try {
+                    return token.indexOf('.') < 0 ? (Object) Long.parseLong(token) : (Object) Double.parseDouble(token);
+                } catch (NumberFormatException e) {
+                    throw new Malformed("invalid number '" + token + "'", start);
+                }
+            }
+
+            private void skipLiteralString() {
+                long start = offset();
+                position++;
+                int depth = 1;
+                while (depth > 0) {
+                    int c = read();
+                    if (c < 0) {
+                        throw new Malformed("unterminated string", start);
+                    } else if (c == '\\') {
+                        read();
+                    } else if (c == '(') {
+                        depth++;
+                    } else if (c == ')') {
+                        depth--;
+                    }
+                }
+            }
+
+            private void skipHexString() {
+                long start = offset();
+                int c;
+                while ((c = read()) != '>') {
+                    if (c < 0) {
+                        throw new Malformed("unterminated hex string", start);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long readLong(Validation.Cursor cursor) {
+        long start = cursor.offset();
+        String token = cursor.readToken();
+        try {
+            return Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            throw new Malformed("expected an integer, found '" + token + "'", start);
+        }
+    }
+
+    private static long number(Object value, long fallback) {
+        if (value instanceof Long integer) {
+            return integer;
+        } else if (value instanceof Double real) {
+            return real.longValue();
+        }
+        return fallback;
+    }
+
+    private static String nameOf(Object value) {
+        return value instanceof Name name ? name.value() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asDictionary(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    /**
+     * Big-endian field of a cross-reference stream entry
+     */
+    private static long field(byte[] data, int offset, int width) {
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int distanceLeft = Math.abs(estimate - left);
+        int distanceUp = Math.abs(estimate - up);
+        int distanceUpLeft = Math.abs(estimate - upLeft);
+        if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft) {
+            return left;
+        }
+        return distanceUp <= distanceUpLeft ? up : upLeft;
+    }
+
+    /**
+     * Whether the {@code obj} keyword at {@code index} follows an object number and generation
+     */
+    private static boolean isObjectHeader(byte[] data, int length, int index) {
+        int end = index + OBJ.length;
+        if (end < length && !isWhitespace(data[end]) && !isDelimiter(data[end])) {
+            return false;
+        }
+        // Whitespace and generation, then whitespace and object number, read backwards
+        int i = index - 1;
+        for (int part = 0; part < 2; part++) {
+            int stop = i;
+            while (i >= 0 && isWhitespace(data[i])) {
+                i--;
+            }
+            if (i == stop) {
+                return false;
+            }
+            stop = i;
+            while (i >= 0 && isDigit(data[i])) {
+                i--;
+            }
+            if (i == stop) {
+                return false;
+            }
+        }
+        return i < 0 || isWhitespace(data[i]) || isDelimiter(data[i]);
+    }
+
+    private static int indexOf(byte[] data, int length, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = data.length - pattern.length; i >= 0; i--) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean isDigits(String token) {
+        if (token.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (!isDigit(token.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0;
+    }
+
+    private static boolean isDelimiter(int c) {
+        return c == '(' || c == ')' || c == '<' || c == '>' || c == '[' || c == ']'
+                || c == '{' || c == '}' || c == '/' || c == '%';
+    }
+}
@@ -0,0 +1,555 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfTextChunk;
+import ru.sunveil.precision_pdf.pdfparser.model.TextLine;
+import ru.sunveil.precision_pdf.pdfparser.model.Word;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds words, lines and chunks directly from a {@link GlyphBuffer}, without PDFTextStripper.
+ * <p>
+ * Lines are found with a histogram of quantized baselines: glyphs are bucketed into lines in
+ * linear time and only the glyphs of each line are sorted, by a primitive key that packs the
+ * X position and the glyph index. {@link LineGrouping#POSITION_SORT} instead sorts all glyphs
+ * of the page by position and groups them like PDFTextStripper does. Words are split at whitespace glyphs and at gaps wider than
+ * half a space, like in {@link TextExtractionEngine}. Each line becomes one text chunk.
+ * <p>
+ * Tagged pages can instead be built in the logical order of the structure tree, see
+ * {@link #extractTaggedPage(GlyphBuffer, StructureTreeIndex.PageContent)}.
+ */
+public class PrecisionTextEngine {
+
+    /**
+     * Baseline histogram bin size in page units
+     */
+    private static final float BIN_SIZE = 0.5f;
+    private static final int MAX_BINS = 1 << 20;
+    private static final int FONT_SIZE_BINS = 400;
+    private static final float DEFAULT_SPACE_WIDTH = 0.25f;
+    /**
+     * Baselines closer than this are on one line whatever the glyph heights
+     */
+    private static final float SAME_BASELINE = 0.1f;
+
+    /**
+     * How glyphs are grouped into lines
+     */
+    public enum LineGrouping {
+        /**
+         * Histogram of quantized baselines, linear in the number of glyphs
+         */
+        BASELINE_HISTOGRAM,
+        /**
+         * Glyphs sorted by position over the whole page; a line ends at the first glyph whose
+         * baseline lies below the line by more than the glyph or line height, as with
+         * PDFTextStripper sorting by position
+         */
+        POSITION_SORT
+    }
+
+    private List<Word> words = new ArrayList<>();
+    private List<TextLine> textLines = new ArrayList<>();
+    private List<PdfTextChunk> textChunks = new ArrayList<>();
+
+    // Scratch arrays reused between pages
+    private int[] binCounts = new int[0];
+    private int[] binLines = new int[0];
+    private int[] glyphLines = new int[0];
+    private int[] lineStarts = new int[0];
+    private long[] sortKeys = new long[0];
+    private float[] spaceWidths = new float[0];
+    private final StringBuilder wordText = new StringBuilder();
+
+    /**
+     * Builds the text structure of the page held by the buffer, grouping lines with the
+     * baseline histogram.
+     *
+     * @param glyphs glyphs of one page
+     */
+    public void extractPage(GlyphBuffer glyphs) {
+        extractPage(glyphs, LineGrouping.BASELINE_HISTOGRAM);
+    }
+
+    /**
+     * Builds the text structure of the page held by the buffer.
+     *
+     * @param glyphs glyphs of one page
+     * @param grouping how glyphs are grouped into lines
+     */
+    public void extractPage(GlyphBuffer glyphs, LineGrouping grouping) {
+        words = new ArrayList<>();
+        textLines = new ArrayList<>();
+        textChunks = new ArrayList<>();
+
+        int count = glyphs.size();
+        if (count == 0) {
+            return;
+        }
+
+        int lineCount = grouping == LineGrouping.POSITION_SORT ? sortLines(glyphs) : bucketLines(glyphs);
+        sortWithinLines(glyphs, lineCount);
+        resolveSpaceWidths(glyphs);
+
+        for (int line = 0; line < lineCount; line++) {
+            TextLine textLine = buildLine(glyphs, lineStarts[line], lineStarts[line + 1]);
+            if (textLine != null) {
+                textChunks.add(createChunk(List.of(textLine), null));
+            }
+        }
+    }
+
+    /**
+     * Builds the text structure of a tagged page in the logical order of its structure tree.
+     * <p>
+     * Glyphs are ordered by the position of their marked content in the tree with a counting
+     * sort; untagged content and artifacts follow in content stream order. Every run of glyphs
+     * of one block-level structure element becomes a chunk. Lines break where the baseline
+     * moves or the text jumps back, no geometric sorting is done.
+     *
+     * @param glyphs glyphs of one page
+     * @param content marked content of the page from the structure tree
+     */
+    public void extractTaggedPage(GlyphBuffer glyphs, StructureTreeIndex.PageContent content) {
+        words = new ArrayList<>();
+        textLines = new ArrayList<>();
+        textChunks = new ArrayList<>();
+
+        int count = glyphs.size();
+        if (count == 0) {
+            return;
+        }
+        resolveSpaceWidths(glyphs);
+
+        int untagged = content.getMarkedContentCount();
+        lineStarts = ensure(lineStarts, untagged + 2);
+        Arrays.fill(lineStarts, 0, untagged + 2, 0);
+        glyphLines = ensure(glyphLines, count);
+        for (int i = 0; i < count; i++) {
+            int order = content.getOrder(glyphs.getMarkedContentId(i));
+            glyphLines[i] = order >= 0 ? order : untagged;
+            lineStarts[glyphLines[i] + 1]++;
+        }
+        for (int order = 0; order <= untagged; order++) {
+            lineStarts[order + 1] += lineStarts[order];
+        }
+        sortKeys = ensure(sortKeys, count);
+        for (int i = 0; i < count; i++) {
+            sortKeys[lineStarts[glyphLines[i]]++] = i;
+        }
+
+        int runStart = 0;
+        int runBlock = blockOf(glyphs, content, (int) sortKeys[0]);
+        for (int k = 1; k <= count; k++) {
+            int block = k < count ? blockOf(glyphs, content, (int) sortKeys[k]) : Integer.MIN_VALUE;
+            if (block == runBlock) {
+                continue;
+            }
+            List<TextLine> runLines = buildContentOrderLines(glyphs, runStart, k);
+            if (!runLines.isEmpty()) {
+                PdfTextChunk chunk = createChunk(runLines, runBlock >= 0 ? content.getBlockType(runBlock) : null);
+                chunk.setLines(runLines);
+                chunk.setLineStart(textLines.size() - runLines.size());
+                chunk.setLineCount(runLines.size());
+                textChunks.add(chunk);
+            }
+            runStart = k;
+            runBlock = block;
+        }
+
+        for (int i = 0; i < textLines.size(); i++) {
+            textLines.get(i).setReadingOrder(i);
+        }
+        for (int i = 0; i < textChunks.size(); i++) {
+            textChunks.get(i).setReadingOrder(i);
+        }
+    }
+
+    private static int blockOf(GlyphBuffer glyphs, StructureTreeIndex.PageContent content, int glyph) {
+        int mcid = glyphs.getMarkedContentId(glyph);
+        return content.getOrder(mcid) >= 0 ? content.getBlock(mcid) : -1;
+    }
+
+    /**
+     * Splits ordered glyphs sortKeys[from, to) into lines where the baseline moves by more than
+     * half the font size or the text continues left of the previous glyph.
+     */
+    private List<TextLine> buildContentOrderLines(GlyphBuffer glyphs, int from, int to) {
+        List<TextLine> lines = new ArrayList<>();
+        int lineStart = from;
+        for (int k = from + 1; k <= to; k++) {
+            if (k < to) {
+                int glyph = (int) sortKeys[k];
+                int previous = (int) sortKeys[k - 1];
+                float fontSize = Math.max(glyphs.getFontSize(glyph), glyphs.getFontSize(previous));
+                boolean sameLine = Math.abs(glyphs.getY(glyph) - glyphs.getY(previous)) <= fontSize * 0.5f
+                        && glyphs.getX(glyph) >= glyphs.getX(previous) - fontSize;
+                if (sameLine) {
+                    continue;
+                }
+            }
+            TextLine line = buildLine(glyphs, lineStart, k);
+            if (line != null) {
+                lines.add(line);
+            }
+            lineStart = k;
+        }
+        return lines;
+    }
+
+    /**
+     * Assigns every glyph to a line using a histogram of baselines. Lines are numbered from
+     * the top of the page; neighbouring non-empty bins belong to one line while they stay
+     * within a fraction of the typical font size.
+     *
+     * @return number of lines
+     */
+    private int bucketLines(GlyphBuffer glyphs) {
+        int count = glyphs.size();
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            minY = Math.min(minY, glyphs.getY(i));
+            maxY = Math.max(maxY, glyphs.getY(i));
+        }
+
+        float binSize = BIN_SIZE;
+        while ((maxY - minY) / binSize + 1 > MAX_BINS) {
+            binSize *= 2;
+        }
+        int bins = (int) ((maxY - minY) / binSize) + 1;
+        if (binCounts.length < bins) {
+            binCounts = new int[bins];
+            binLines = new int[bins];
+        } else {
+            Arrays.fill(binCounts, 0, bins, 0);
+        }
+
+        glyphLines = ensure(glyphLines, count);
+        for (int i = 0; i < count; i++) {
+            binCounts[(int) ((glyphs.getY(i) - minY) / binSize)]++;
+        }
+
+        float typicalFontSize = typicalFontSize(glyphs);
+        int maxGapBins = Math.max(1, Math.round(typicalFontSize * 0.2f / binSize));
+        int maxSpanBins = Math.max(1, Math.round(typicalFontSize * 0.5f / binSize));
+
+        // Top of the page first: PDF Y grows upwards
+        int lineCount = 0;
+        int lineFirstBin = -1;
+        int previousBin = -1;
+        for (int bin = bins - 1; bin >= 0; bin--) {
+            if (binCounts[bin] == 0) {
+                continue;
+            }
+            if (lineFirstBin < 0 || previousBin - bin > maxGapBins || lineFirstBin - bin > maxSpanBins) {
+                lineCount++;
+                lineFirstBin = bin;
+            }
+            binLines[bin] = lineCount - 1;
+            previousBin = bin;
+        }
+
+        // Counting sort of glyph indices by line, content order is kept within a line
+        lineStarts = ensure(lineStarts, lineCount + 1);
+        Arrays.fill(lineStarts, 0, lineCount + 1, 0);
+        for (int i = 0; i < count; i++) {
+            int line = binLines[(int) ((glyphs.getY(i) - minY) / binSize)];
+            glyphLines[i] = line;
+            lineStarts[line + 1]++;
+        }
+        for (int line = 0; line < lineCount; line++) {
+            lineStarts[line + 1] += lineStarts[line];
+        }
+
+        sortKeys = ensure(sortKeys, count);
+        int[] next = Arrays.copyOf(lineStarts, lineCount);
+        for (int i = 0; i < count; i++) {
+            sortKeys[next[glyphLines[i]]++] = i;
+        }
+        return lineCount;
+    }
+
+    /**
+     * Sorts all glyphs from the top of the page down and starts a new line where a glyph's
+     * baseline lies below the first baseline of the current line by more than both the glyph
+     * and the line height, so that sub- and superscripts stay on their line.
+     *
+     * @return number of lines
+     */
+    private int sortLines(GlyphBuffer glyphs) {
+        int count = glyphs.size();
+        sortKeys = ensure(sortKeys, count);
+        for (int i = 0; i < count; i++) {
+            // Negated Y puts the top of the page first in an ascending sort
+            sortKeys[i] = ((long) sortableBits(-glyphs.getY(i)) << 32) | i;
+        }
+        Arrays.sort(sortKeys, 0, count);
+
+        lineStarts = ensure(lineStarts, count + 1);
+        int lineCount = 0;
+        float lineY = 0;
+        float lineHeight = 0;
+        for (int k = 0; k < count; k++) {
+            int glyph = (int) sortKeys[k];
+            sortKeys[k] = glyph;
+            float y = glyphs.getY(glyph);
+            float height = glyphs.getHeight(glyph);
+            if (lineCount == 0 || lineY - y > Math.max(SAME_BASELINE, Math.max(lineHeight, height))) {
+                lineStarts[lineCount++] = k;
+                lineY = y;
+                lineHeight = height;
+            } else {
+                lineHeight = Math.max(lineHeight, height);
+            }
+        }
+        lineStarts[lineCount] = count;
+        return lineCount;
+    }
+
+    /**
+     * Sorts the glyphs of each line by X. The key packs the order-preserving bits of X into
+     * the high half and the glyph index into the low half, so a primitive sort is enough.
+     */
+    private void sortWithinLines(GlyphBuffer glyphs, int lineCount) {
+        for (int line = 0; line < lineCount; line++) {
+            int from = lineStarts[line];
+            int to = lineStarts[line + 1];
+            for (int k = from; k < to; k++) {
+                int glyph = (int) sortKeys[k];
+                sortKeys[k] = ((long) sortableBits(glyphs.getX(glyph)) << 32) | glyph;
+            }
+            Arrays.sort(sortKeys, from, to);
+        }
+    }
+
+    /**
+     * Builds a line from the glyphs sortKeys[from, to), which must be in reading order
+     *
+     * @return the line, or null if it has no words
+     */
+    private TextLine buildLine(GlyphBuffer glyphs, int from, int to) {
+        List<Word> lineWords = new ArrayList<>();
+        Word word = null;
+        float wordRight = 0;
+
+        for (int k = from; k < to; k++) {
+            int glyph = (int) sortKeys[k];
+
+            if (Character.isWhitespace(glyphs.getFirstChar(glyph))) {
+                word = finishWord(word, lineWords);
+                continue;
+            }
+
+            float x = glyphs.getX(glyph);
+            if (word != null && x - wordRight > spaceWidths[glyphs.getFontIndex(glyph)] * glyphs.getFontSize(glyph) * 0.5f) {
+                word = finishWord(word, lineWords);
+            }
+
+            if (word == null) {
+                word = startWord(glyphs, glyph);
+                wordRight = x + glyphs.getWidth(glyph);
+            } else {
+                extend(word.getBoundingBox(), glyphs, glyph);
+                wordRight = Math.max(wordRight, x + glyphs.getWidth(glyph));
+            }
+            glyphs.appendText(glyph, wordText);
+        }
+        finishWord(word, lineWords);
+
+        if (lineWords.isEmpty()) {
+            return null;
+        }
+
+        TextLine line = new TextLine();
+        line.setPageNumber(lineWords.get(0).getPageNumber());
+        line.setWords(lineWords);
+        line.setWordStart(lineWords.get(0).getId());
+        line.setWordCount(lineWords.size());
+
+        StringBuilder lineText = new StringBuilder();
+        BoundingBox lineBox = new BoundingBox(lineWords.get(0).getBoundingBox());
+        float totalHeight = 0;
+        for (Word lineWord : lineWords) {
+            if (lineText.length() > 0) {
+                lineText.append(' ');
+            }
+            lineText.append(lineWord.getText());
+            union(lineBox, lineWord.getBoundingBox());
+            totalHeight += lineWord.getBoundingBox().getHeight();
+        }
+        line.setText(lineText.toString());
+        line.setBoundingBox(lineBox);
+        line.setLineHeight(totalHeight / lineWords.size());
+        textLines.add(line);
+        return line;
+    }
+
+    /**
+     * Creates a chunk of consecutive lines
+     *
+     * @param structureType structure type of the chunk, null for untagged content
+     */
+    private PdfTextChunk createChunk(List<TextLine> lines, String structureType) {
+        TextLine firstLine = lines.get(0);
+        TextLine lastLine = lines.get(lines.size() - 1);
+        Word first = firstLine.getWords().get(0);
+
+        PdfTextChunk chunk = new PdfTextChunk();
+        chunk.setPageNumber(firstLine.getPageNumber());
+        chunk.setStyle("font-family:" + first.getFontName() + ";font-size:" + first.getFontSize() + "pt;");
+        chunk.setWordStart(firstLine.getWordStart());
+        chunk.setWordCount(lastLine.getWordStart() + lastLine.getWordCount() - firstLine.getWordStart());
+        chunk.setStructureType(structureType);
+        if (lines.size() == 1) {
+            chunk.setText(firstLine.getText());
+            chunk.setBoundingBox(new BoundingBox(firstLine.getBoundingBox()));
+            return chunk;
+        }
+
+        StringBuilder text = new StringBuilder();
+        BoundingBox box = new BoundingBox(firstLine.getBoundingBox());
+        for (TextLine line : lines) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(line.getText());
+            union(box, line.getBoundingBox());
+        }
+        chunk.setText(text.toString());
+        chunk.setBoundingBox(box);
+        return chunk;
+    }
+
+    private Word startWord(GlyphBuffer glyphs, int glyph) {
+        PDFont font = glyphs.getFont(glyph);
+        Word word = new Word();
+        word.setPageNumber(glyphs.getPageNumber());
+        word.setBoundingBox(new BoundingBox(glyphs.getX(glyph), glyphs.getY(glyph) - glyphs.getDepth(glyph),
+                glyphs.getWidth(glyph), glyphs.getHeight(glyph) + glyphs.getDepth(glyph)));
+        word.setFontName(font.getName());
+        word.setFontSize(glyphs.getFontSize(glyph));
+        word.setConfidence(calculateConfidence(font, glyphs.getFontSize(glyph)));
+        wordText.setLength(0);
+        return word;
+    }
+
+    private Word finishWord(Word word, List<Word> lineWords) {
+        if (word != null && wordText.length() > 0) {
+            word.setText(wordText.toString());
+            word.setId(words.size());
+            words.add(word);
+            lineWords.add(word);
+        }
+        wordText.setLength(0);
+        return null;
+    }
+
+    private void extend(BoundingBox box, GlyphBuffer glyphs, int glyph) {
+        float x = Math.min(box.getX(), glyphs.getX(glyph));
+        float y = Math.min(box.getY(), glyphs.getY(glyph) - glyphs.getDepth(glyph));
+        float right = Math.max(box.getRight(), glyphs.getX(glyph) + glyphs.getWidth(glyph));
+        float top = Math.max(box.getTop(), glyphs.getY(glyph) + glyphs.getHeight(glyph));
+        box.setX(x);
+        box.setY(y);
+        box.setWidth(right - x);
+        box.setHeight(top - y);
+    }
+
+    private void union(BoundingBox box, BoundingBox other) {
+        float x = Math.min(box.getX(), other.getX());
+        float y = Math.min(box.getY(), other.getY());
+        float right = Math.max(box.getRight(), other.getRight());
+        float top = Math.max(box.getTop(), other.getTop());
+        box.setX(x);
+        box.setY(y);
+        box.setWidth(right - x);
+        box.setHeight(top - y);
+    }
+
+    /**
+     * Most frequent font size, from a histogram with half-point bins
+     */
+    private float typicalFontSize(GlyphBuffer glyphs) {
+        int[] histogram = new int[FONT_SIZE_BINS];
+        for (int i = 0; i < glyphs.size(); i++) {
+            int bin = Math.min(FONT_SIZE_BINS - 1, Math.max(0, Math.round(glyphs.getFontSize(i) * 2)));
+            histogram[bin]++;
+        }
+        int best = 0;
+        for (int bin = 1; bin < FONT_SIZE_BINS; bin++) {
+            if (histogram[bin] > histogram[best]) {
+                best = bin;
+            }
+        }
+        return best > 0 ? best / 2f : 10f;
+    }
+
+    /**
+     * Space width of every font of the page, as a fraction of the font size
+     */
+    private void resolveSpaceWidths(GlyphBuffer glyphs) {
+        List<PDFont> fonts = glyphs.getFonts();
+        spaceWidths = ensure(spaceWidths, fonts.size());
+        for (int i = 0; i < fonts.size(); i++) {
+            float spaceWidth = 0;
+            try {
+                spaceWidth = fonts.get(i).getSpaceWidth() / 1000f;
+            } catch (RuntimeException e) {
+                // Broken width tables: fall back to the default
+            }
+            spaceWidths[i] = spaceWidth > 0 ? spaceWidth : DEFAULT_SPACE_WIDTH;
+        }
+    }
+
+    private float calculateConfidence(PDFont font, float fontSize) {
+        float confidence = 1.0f;
+
+        if (fontSize < 6) {
+            confidence *= 0.8f;
+        }
+
+        String fontName = font.getName() != null ? font.getName().toLowerCase() : "";
+        if (fontName.contains("symbol") || fontName.contains("zapf")) {
+            confidence *= 0.9f;
+        }
+
+        return Math.max(0.1f, Math.min(1.0f, confidence));
+    }
+
+    /**
+     * Maps a float to an int whose signed order matches the float order
+     */
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+
+    private static int[] ensure(int[] array, int size) {
+        return array.length >= size ? array : new int[Math.max(size, array.length * 2)];
+    }
+
+    private static long[] ensure(long[] array, int size) {
+        return array.length >= size ? array : new long[Math.max(size, array.length * 2)];
+    }
+
+    private static float[] ensure(float[] array, int size) {
+        return array.length >= size ? array : new float[Math.max(size, array.length * 2)];
+    }
+
+    public List<Word> getWords() {
+        return words;
+    }
+
+    public List<TextLine> getTextLines() {
+        return textLines;
+    }
+
+    public List<PdfTextChunk> getTextChunks() {
+        return textChunks;
+    }
+}
@@ -0,0 +1,142 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Layout-free text output: writes glyph text to a {@link Writer} in content stream order.
+ * <p>
+ * Nothing is sorted and no geometry is kept. A line break is written when the baseline
+ * moves by more than half the font size, a space when the horizontal gap to the previous
+ * glyph exceeds {@link #WORD_GAP} of the font size. Intended for consumers that only need
+ * plain text, e.g. for search indexing.
+ */
+public class RawTextWriter implements ContentStreamListener {
+
+    private static final float WORD_GAP = 0.15f;
+    private static final float LINE_SHIFT = 0.5f;
+
+    private final GlyphDeduplicator glyphDeduplicator;
+    private Writer writer;
+    private IOException error;
+
+    private boolean lineStarted;
+    private boolean pageStarted;
+    private boolean lastWhitespace;
+    private float lastY;
+    private float lastEnd;
+    private float lastFontSize;
+
+    /**
+     * @param writer target of the text, may be replaced with {@link #setWriter(Writer)}
+     * @param glyphDeduplicator suppresses overlapping duplicate glyphs, or null to keep them
+     */
+    public RawTextWriter(Writer writer, GlyphDeduplicator glyphDeduplicator) {
+        this.writer = writer;
+        this.glyphDeduplicator = glyphDeduplicator;
+    }
+
+    public void setWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the text of all pages, pages are separated by an empty line.
+     *
+     * @throws IOException if a content stream cannot be read or the writer fails
+     */
+    public void writeDocument(PDDocument document) throws IOException {
+        int pages = document.getNumberOfPages();
+        for (int pageNumber = 1; pageNumber <= pages; pageNumber++) {
+            if (pageNumber > 1) {
+                writer.write('\n');
+            }
+            writePage(document.getPage(pageNumber - 1), pageNumber);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes the text of one page.
+     *
+     * @throws IOException if the content stream cannot be read or the writer fails
+     */
+    public void writePage(PDPage page, int pageNumber) throws IOException {
+        new ContentStreamEngine(page).process(pageNumber, this);
+        checkError();
+    }
+
+    /**
+     * Rethrows the first write error of the last page. Listener callbacks cannot throw,
+     * so the error is kept until the pass is over.
+     */
+    public void checkError() throws IOException {
+        IOException e = error;
+        error = null;
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    @Override
+    public void startPage(int pageNumber, PDPage page) {
+        lineStarted = false;
+        pageStarted = false;
+        error = null;
+        if (glyphDeduplicator != null) {
+            glyphDeduplicator.reset();
+        }
+    }
+
+    @Override
+    public void glyph(PDFont font, int code, String unicode, float x, float y,
+                      float width, float height, float depth, float fontSize) {
+        if (unicode == null || unicode.isEmpty() || error != null) {
+            return;
+        }
+        if (glyphDeduplicator != null
+                && glyphDeduplicator.isDuplicate(unicode.hashCode(), x, y, width, fontSize)) {
+            return;
+        }
+
+        boolean whitespace = Character.isWhitespace(unicode.charAt(0));
+        try {
+            if (lineStarted) {
+                float size = Math.max(Math.abs(lastFontSize), Math.abs(fontSize));
+                if (Math.abs(y - lastY) > size * LINE_SHIFT) {
+                    writer.write('\n');
+                    lineStarted = false;
+                } else if (!whitespace && !lastWhitespace
+                        && (x - lastEnd > size * WORD_GAP || x < lastEnd - size)) {
+                    writer.write(' ');
+                }
+            }
+            writer.write(unicode);
+        } catch (IOException e) {
+            error = e;
+            return;
+        }
+
+        lineStarted = true;
+        pageStarted = true;
+        lastWhitespace = whitespace;
+        lastY = y;
+        lastEnd = x + width;
+        lastFontSize = fontSize;
+    }
+
+    @Override
+    public void endPage(int pageNumber) {
+        if (pageStarted && error == null) {
+            try {
+                writer.write('\n');
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import ru.sunveil.precision_pdf.pdfparser.model.PdfPage;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfTextChunk;
+import ru.sunveil.precision_pdf.pdfparser.model.TextLine;
+import ru.sunveil.precision_pdf.pdfparser.model.Word;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+import ru.sunveil.precision_pdf.pdfparser.model.core.TextEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reading order of a page by recursive XY-cut over the word boxes.
+ * <p>
+ * A region is cut at every empty band of its X or Y projection that is wide enough: column
+ * gutters of at least {@link #COLUMN_GAP_EM} em, block gaps of at least {@link #BLOCK_GAP_EM} em.
+ * The direction with the relatively wider gap is cut first, parts are visited top to bottom or
+ * left to right, and regions without such gaps become blocks. Projections are difference arrays
+ * over the region and parts are formed by a counting sort, so each level is linear in its words.
+ * <p>
+ * Lines and chunks that run across blocks, as position-sorted text does for side-by-side
+ * columns, are split at block boundaries. Both lists are then sorted into reading order and
+ * numbered. Words keep their ids, no content stream is read.
+ */
+public class ReadingOrderEngine {
+
+    private static final float BIN_SIZE = 1.0f;
+    private static final int MAX_BINS = 1 << 14;
+    private static final float COLUMN_GAP_EM = 1.0f;
+    private static final float BLOCK_GAP_EM = 1.0f;
+    /**
+     * Parts of a vertical cut narrower than this are kept together, so that list numbers
+     * or short labels are not read as columns of their own
+     */
+    private static final float MIN_COLUMN_EM = 4.0f;
+    private static final float CAP_HEIGHT_RATIO = 0.7f;
+
+    private int count;
+    private float[] left = new float[0];
+    private float[] right = new float[0];
+    private float[] bottom = new float[0];
+    private float[] top = new float[0];
+    private int[] wordBlock = new int[0];
+    private int[] indexes = new int[0];
+    private int[] scratch = new int[0];
+    private int blockCount;
+    private float em;
+
+    /**
+     * Splits the lines and chunks of the page at block boundaries, sorts them into reading order
+     * and sets their reading order index.
+     */
+    public void apply(PdfPage page) {
+        List<Word> words = page.getWords();
+        if (words == null || words.isEmpty()) {
+            return;
+        }
+        collectWords(words);
+
+        blockCount = 0;
+        cut(0, count, 0);
+
+        page.setTextLines(orderLines(page.getTextLines(), words));
+        page.setPdfTextChunks(orderChunks(page.getPdfTextChunks(), words));
+    }
+
+    /**
+     * Block of each word of the last page, in reading order
+     */
+    public int getWordBlock(int wordId) {
+        return wordBlock[wordId];
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    private void collectWords(List<Word> words) {
+        count = words.size();
+        if (left.length < count) {
+            int capacity = Math.max(count, left.length * 2);
+            left = new float[capacity];
+            right = new float[capacity];
+            bottom = new float[capacity];
+            top = new float[capacity];
+            wordBlock = new int[capacity];
+            indexes = new int[capacity];
+            scratch = new int[capacity];
+        }
+
+        float[] sizes = new float[count];
+        for (int w = 0; w < count; w++) {
+            Word word = words.get(w);
+            BoundingBox box = word.getBoundingBox();
+            if (box != null) {
+                left[w] = box.getX();
+                right[w] = box.getRight();
+                bottom[w] = box.getY();
+                top[w] = box.getTop();
+            } else {
+                left[w] = right[w] = bottom[w] = top[w] = 0;
+            }
+            sizes[w] = word.getFontSize() > 0 ? word.getFontSize()
+                    : (box != null ? box.getHeight() / CAP_HEIGHT_RATIO : 0);
+            indexes[w] = w;
+        }
+        Arrays.sort(sizes);
+        em = Math.max(1.0f, sizes[count / 2]);
+    }
+
+    /**
+     * Cuts the region formed by indexes[from, to)
+     */
+    private void cut(int from, int to, int depth) {
+        float minX = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int k = from; k < to; k++) {
+            int w = indexes[k];
+            minX = Math.min(minX, left[w]);
+            maxX = Math.max(maxX, right[w]);
+            minY = Math.min(minY, bottom[w]);
+            maxY = Math.max(maxY, top[w]);
+        }
+
+        float columnGap = em * COLUMN_GAP_EM;
+        float blockGap = em * BLOCK_GAP_EM;
+        float[] columnCuts = to - from > 1 && depth < 64
+                ? findCuts(from, to, minX, maxX, true, columnGap, em * MIN_COLUMN_EM) : null;
+        float[] blockCuts = to - from > 1 && depth < 64
+                ? findCuts(from, to, minY, maxY, false, blockGap, 0) : null;
+
+        boolean vertical;
+        if (columnCuts != null && blockCuts != null) {
+            vertical = columnCuts[0] / columnGap >= blockCuts[0] / blockGap;
+        } else if (columnCuts != null || blockCuts != null) {
+            vertical = columnCuts != null;
+        } else {
+            for (int k = from; k < to; k++) {
+                wordBlock[indexes[k]] = blockCount;
+            }
+            blockCount++;
+            return;
+        }
+
+        float[] cuts = vertical ? columnCuts : blockCuts;
+        int parts = cuts.length;
+        int[] partStart = new int[parts + 1];
+        for (int k = from; k < to; k++) {
+            int w = indexes[k];
+            int part = part(cuts, vertical ? (left[w] + right[w]) / 2 : (bottom[w] + top[w]) / 2, vertical);
+            scratch[k] = part;
+            partStart[part + 1]++;
+        }
+        for (int p = 0; p < parts; p++) {
+            partStart[p + 1] += partStart[p];
+        }
+
+        // Stable counting sort of the region by part
+        int[] fill = Arrays.copyOf(partStart, parts);
+        int[] sorted = new int[to - from];
+        for (int k = from; k < to; k++) {
+            sorted[fill[scratch[k]]++] = indexes[k];
+        }
+        System.arraycopy(sorted, 0, indexes, from, sorted.length);
+
+        for (int p = 0; p < parts; p++) {
+            cut(from + partStart[p], from + partStart[p + 1], depth + 1);
+        }
+    }
+
+    /**
+     * Finds the empty bands of the projection that are at least minGap wide.
+     *
+     * @return null if there are none, otherwise the widest gap followed by the cut positions
+     * in reading order: left to right for vertical cuts, top to bottom for horizontal ones
+     */
+    private float[] findCuts(int from, int to, float min, float max, boolean vertical, float minGap, float minPart) {
+        float binSize = Math.max(BIN_SIZE, (max - min) / (MAX_BINS - 2));
+        int bins = (int) ((max - min) / binSize) + 2;
+        int[] occupancy = new int[bins + 1];
+        for (int k = from; k < to; k++) {
+            int w = indexes[k];
+            float start = vertical ? left[w] : bottom[w];
+            float end = vertical ? right[w] : top[w];
+            occupancy[(int) ((start - min) / binSize)]++;
+            occupancy[(int) ((end - min) / binSize) + 1]--;
+        }
+
+        float[] cuts = new float[8];
+        int cutCount = 0;
+        float widest = 0;
+        float partStart = min;
+        int running = 0;
+        int emptyStart = -1;
+        for (int b = 0; b < bins; b++) {
+            running += occupancy[b];
+            if (running == 0) {
+                if (emptyStart < 0) {
+                    emptyStart = b;
+                }
+                continue;
+            }
+            if (emptyStart > 0) {
+                float gap = (b - emptyStart) * binSize;
+                float gapStart = min + emptyStart * binSize;
+                float position = gapStart + gap / 2;
+                if (gap >= minGap && gapStart - partStart >= minPart && max - (gapStart + gap) >= minPart) {
+                    if (cutCount + 1 >= cuts.length) {
+                        cuts = Arrays.copyOf(cuts, cuts.length * 2);
+                    }
+                    cuts[++cutCount] = position;
+                    widest = Math.max(widest, gap);
+                    partStart = gapStart + gap;
+                }
+            }
+            emptyStart = -1;
+        }
+        if (cutCount == 0) {
+            return null;
+        }
+
+        cuts[0] = widest;
+        float[] result = Arrays.copyOf(cuts, cutCount + 1);
+        if (!vertical) {
+            // Top to bottom
+            for (int i = 1, j = cutCount; i < j; i++, j--) {
+                float tmp = result[i];
+                result[i] = result[j];
+                result[j] = tmp;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Part of the region a coordinate falls into; cuts[1..] hold the cut positions in reading order
+     */
+    private static int part(float[] cuts, float value, boolean vertical) {
+        int part = 0;
+        for (int c = 1; c < cuts.length; c++) {
+            if (vertical ? value > cuts[c] : value < cuts[c]) {
+                part = c;
+            } else {
+                break;
+            }
+        }
+        return part;
+    }
+
+    private List<TextLine> orderLines(List<TextLine> lines, List<Word> words) {
+        if (lines == null || lines.isEmpty()) {
+            return lines;
+        }
+
+        List<TextLine> split = new ArrayList<>(lines.size());
+        int[] blocks = new int[lines.size() * 2];
+        for (TextLine line : lines) {
+            List<Word> lineWords = line.getWords() != null ? line.getWords()
+                    : words.subList(line.getWordStart(), line.getWordStart() + line.getWordCount());
+            int start = 0;
+            for (int i = 1; i <= lineWords.size(); i++) {
+                if (i < lineWords.size() && blockOf(lineWords.get(i)) == blockOf(lineWords.get(start))) {
+                    continue;
+                }
+                TextLine part = start == 0 && i == lineWords.size() ? line : splitLine(line, lineWords, start, i);
+                blocks = ensure(blocks, split.size());
+                blocks[split.size()] = lineWords.isEmpty() ? 0 : blockOf(lineWords.get(start));
+                split.add(part);
+                start = i;
+            }
+            if (lineWords.isEmpty()) {
+                blocks = ensure(blocks, split.size());
+                blocks[split.size()] = 0;
+                split.add(line);
+            }
+        }
+
+        List<TextLine> ordered = sortByReadingOrder(split, blocks);
+        for (int i = 0; i < ordered.size(); i++) {
+            ordered.get(i).setReadingOrder(i);
+        }
+        return ordered;
+    }
+
+    private List<PdfTextChunk> orderChunks(List<PdfTextChunk> chunks, List<Word> words) {
+        if (chunks == null || chunks.isEmpty()) {
+            return chunks;
+        }
+
+        List<PdfTextChunk> split = new ArrayList<>(chunks.size());
+        int[] blocks = new int[chunks.size() * 2];
+        int previousBlock = 0;
+        for (PdfTextChunk chunk : chunks) {
+            int wordStart = chunk.getWordStart();
+            int wordEnd = Math.min(words.size(), wordStart + chunk.getWordCount());
+            if (wordEnd <= wordStart) {
+                // Whitespace-only chunks stay with the text before them
+                blocks = ensure(blocks, split.size());
+                blocks[split.size()] = previousBlock;
+                split.add(chunk);
+                continue;
+            }
+
+            int start = wordStart;
+            for (int i = wordStart + 1; i <= wordEnd; i++) {
+                if (i < wordEnd && wordBlock[i] == wordBlock[start]) {
+                    continue;
+                }
+                PdfTextChunk part = start == wordStart && i == wordEnd ? chunk : splitChunk(chunk, words, start, i);
+                blocks = ensure(blocks, split.size());
+                blocks[split.size()] = wordBlock[start];
+                split.add(part);
+                previousBlock = wordBlock[start];
+                start = i;
+            }
+        }
+
+        List<PdfTextChunk> ordered = sortByReadingOrder(split, blocks);
+        for (int i = 0; i < ordered.size(); i++) {
+            ordered.get(i).setReadingOrder(i);
+        }
+        return ordered;
+    }
+
+    private int blockOf(Word word) {
+        int id = word.getId();
+        return id >= 0 && id < count ? wordBlock[id] : 0;
+    }
+
+    private static TextLine splitLine(TextLine line, List<Word> lineWords, int from, int to) {
+        List<Word> partWords = new ArrayList<>(lineWords.subList(from, to));
+        TextLine part = new TextLine();
+        part.setPageNumber(line.getPageNumber());
+        part.setWords(partWords);
+        part.setWordStart(partWords.get(0).getId());
+        part.setWordCount(partWords.size());
+        part.setLineHeight(line.getLineHeight());
+        part.setBoundingBox(unionOf(partWords));
+        if (line.getText() != null) {
+            part.setText(joinText(partWords));
+        }
+        return part;
+    }
+
+    private static PdfTextChunk splitChunk(PdfTextChunk chunk, List<Word> words, int from, int to) {
+        List<Word> partWords = words.subList(from, to);
+        PdfTextChunk part = new PdfTextChunk();
+        part.setPageNumber(chunk.getPageNumber());
+        part.setStyle(chunk.getStyle());
+        part.setWordStart(from);
+        part.setWordCount(to - from);
+        part.setBoundingBox(unionOf(partWords));
+        part.setText(joinText(partWords));
+        return part;
+    }
+
+    private static BoundingBox unionOf(List<Word> words) {
+        BoundingBox box = null;
+        for (Word word : words) {
+            if (word.getBoundingBox() != null) {
+                box = box == null ? new BoundingBox(word.getBoundingBox()) : box.union(word.getBoundingBox());
+            }
+        }
+        return box;
+    }
+
+    private static String joinText(List<Word> words) {
+        StringBuilder text = new StringBuilder();
+        for (Word word : words) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(word.getText());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Sorts by block, then top edge descending, then the original position
+     */
+    private static <T extends TextEntity> List<T> sortByReadingOrder(List<T> items, int[] blocks) {
+        int size = items.size();
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            BoundingBox box = items.get(i).getBoundingBox();
+            long top = box != null ? Math.max(0, Math.min((1 << 20) - 1, Math.round(box.getTop() * 2))) : 0;
+            keys[i] = ((long) blocks[i] << 40) | (((1 << 20) - 1 - top) << 20) | i;
+        }
+        Arrays.sort(keys);
+
+        List<T> ordered = new ArrayList<>(size);
+        for (long key : keys) {
+            ordered.add(items.get((int) (key & 0xFFFFF)));
+        }
+        return ordered;
+    }
+
+    private static int[] ensure(int[] array, int size) {
+        return array.length > size ? array : Arrays.copyOf(array, Math.max(size + 1, array.length * 2));
+    }
+}
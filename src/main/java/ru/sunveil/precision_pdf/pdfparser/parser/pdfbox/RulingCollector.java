@@ -0,0 +1,130 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+
+import java.util.Arrays;
+
+/**
+ * Collects horizontal and vertical ruling lines of a page from a {@link ContentStreamEngine} pass.
+ * <p>
+ * Stroked axis-aligned segments and thin filled rectangles, which many generators use
+ * instead of strokes, become rulings. Rulings are kept in flat float arrays:
+ * horizontal ones as {@code y, x1, x2}, vertical ones as {@code x, y1, y2}, with start &lt;= end.
+ */
+public class RulingCollector implements ContentStreamListener {
+
+    /**
+     * Maximum deviation from the axis of a segment end point
+     */
+    private static final float AXIS_TOLERANCE = 1.0f;
+    /**
+     * Filled shapes at most this thick are treated as rulings
+     */
+    private static final float MAX_FILL_THICKNESS = 3.0f;
+    private static final float MIN_LENGTH = 2.0f;
+
+    private float[] horizontal = new float[3 * 256];
+    private int horizontalCount;
+    private float[] vertical = new float[3 * 256];
+    private int verticalCount;
+
+    @Override
+    public void startPage(int pageNumber, PDPage page) {
+        clear();
+    }
+
+    public void clear() {
+        horizontalCount = 0;
+        verticalCount = 0;
+    }
+
+    @Override
+    public void path(float[] segments, int segmentCount, boolean stroke, boolean fill, float lineWidth) {
+        if (stroke) {
+            for (int s = 0; s < segmentCount; s++) {
+                int offset = s * 4;
+                addSegment(segments[offset], segments[offset + 1], segments[offset + 2], segments[offset + 3]);
+            }
+        } else if (fill) {
+            addThinFills(segments, segmentCount);
+        }
+    }
+
+    /**
+     * Turns thin filled subpaths into rulings along their long side
+     */
+    private void addThinFills(float[] segments, int segmentCount) {
+        int start = 0;
+        while (start < segmentCount) {
+            float minX = Float.MAX_VALUE;
+            float minY = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE;
+            float maxY = -Float.MAX_VALUE;
+
+            // A subpath continues while a segment starts where the previous one ended
+            int end = start;
+            do {
+                int offset = end * 4;
+                minX = Math.min(minX, Math.min(segments[offset], segments[offset + 2]));
+                maxX = Math.max(maxX, Math.max(segments[offset], segments[offset + 2]));
+                minY = Math.min(minY, Math.min(segments[offset + 1], segments[offset + 3]));
+                maxY = Math.max(maxY, Math.max(segments[offset + 1], segments[offset + 3]));
+                end++;
+            } while (end < segmentCount
+                    && segments[end * 4] == segments[end * 4 - 2]
+                    && segments[end * 4 + 1] == segments[end * 4 - 1]);
+
+            float width = maxX - minX;
+            float height = maxY - minY;
+            if (height <= MAX_FILL_THICKNESS && width >= MIN_LENGTH && width > height) {
+                horizontal = add(horizontal, horizontalCount++, (minY + maxY) / 2, minX, maxX);
+            } else if (width <= MAX_FILL_THICKNESS && height >= MIN_LENGTH && height > width) {
+                vertical = add(vertical, verticalCount++, (minX + maxX) / 2, minY, maxY);
+            }
+            start = end;
+        }
+    }
+
+    private void addSegment(float x1, float y1, float x2, float y2) {
+        float dx = Math.abs(x2 - x1);
+        float dy = Math.abs(y2 - y1);
+        if (dy <= AXIS_TOLERANCE && dx >= MIN_LENGTH) {
+            horizontal = add(horizontal, horizontalCount++, (y1 + y2) / 2, Math.min(x1, x2), Math.max(x1, x2));
+        } else if (dx <= AXIS_TOLERANCE && dy >= MIN_LENGTH) {
+            vertical = add(vertical, verticalCount++, (x1 + x2) / 2, Math.min(y1, y2), Math.max(y1, y2));
+        }
+    }
+
+    private static float[] add(float[] lines, int index, float position, float start, float end) {
+        int offset = index * 3;
+        if (offset + 3 > lines.length) {
+            lines = Arrays.copyOf(lines, lines.length * 2);
+        }
+        lines[offset] = position;
+        lines[offset + 1] = start;
+        lines[offset + 2] = end;
+        return lines;
+    }
+
+    /**
+     * @return horizontal rulings as {@code y, x1, x2} triples, valid up to {@link #getHorizontalCount()}
+     */
+    public float[] getHorizontal() {
+        return horizontal;
+    }
+
+    public int getHorizontalCount() {
+        return horizontalCount;
+    }
+
+    /**
+     * @return vertical rulings as {@code x, y1, y2} triples, valid up to {@link #getVerticalCount()}
+     */
+    public float[] getVertical() {
+        return vertical;
+    }
+
+    public int getVerticalCount() {
+        return verticalCount;
+    }
+}
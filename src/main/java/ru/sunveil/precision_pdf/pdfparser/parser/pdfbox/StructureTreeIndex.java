@@ -0,0 +1,184 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDMarkInfo;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDMarkedContentReference;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureElement;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureTreeRoot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Marked content of a tagged document, indexed by page and MCID.
+ * <p>
+ * The structure tree is walked once in logical order. Every marked-content reference gets its
+ * position in that order and the block-level structure element it belongs to: inline elements
+ * such as {@code Span} or {@code Link} are merged into the nearest block-level ancestor.
+ * Lookups during text extraction are then plain array reads.
+ */
+public class StructureTreeIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(StructureTreeIndex.class);
+
+    private static final int MAX_DEPTH = 256;
+    private static final int MAX_MCID = 1 << 20;
+    private static final COSName STM = COSName.getPDFName("Stm");
+    private static final Set<String> INLINE_TYPES = Set.of(
+            "Span", "Quote", "Note", "Reference", "BibEntry", "Code", "Link", "Annot",
+            "Ruby", "RB", "RT", "RP", "Warichu", "WT", "WP", "Lbl", "LBody");
+
+    /**
+     * Marked content of one page
+     */
+    public static final class PageContent {
+        private int[] order = new int[0];
+        private int[] block = new int[0];
+        private int markedContentCount;
+        private final List<String> blockTypes = new ArrayList<>();
+        private final Map<COSDictionary, Integer> blockIndexes = new IdentityHashMap<>();
+
+        private void add(int mcid, COSDictionary element, String type) {
+            if (mcid < order.length && order[mcid] >= 0) {
+                // Referenced twice: the first position in the tree wins
+                return;
+            }
+            if (mcid >= order.length) {
+                int capacity = Math.max(mcid + 1, order.length * 2);
+                int previous = order.length;
+                order = Arrays.copyOf(order, capacity);
+                block = Arrays.copyOf(block, capacity);
+                Arrays.fill(order, previous, capacity, -1);
+            }
+            order[mcid] = markedContentCount++;
+            block[mcid] = blockIndexes.computeIfAbsent(element, e -> {
+                blockTypes.add(type);
+                return blockTypes.size() - 1;
+            });
+        }
+
+        /**
+         * @return position of the marked content in the logical order of the page, or -1 if it is not in the tree
+         */
+        public int getOrder(int mcid) {
+            return mcid >= 0 && mcid < order.length ? order[mcid] : -1;
+        }
+
+        /**
+         * @return page-local index of the block-level structure element, valid only for MCIDs with an order
+         */
+        public int getBlock(int mcid) {
+            return block[mcid];
+        }
+
+        public String getBlockType(int blockIndex) {
+            return blockTypes.get(blockIndex);
+        }
+
+        /**
+         * @return number of marked-content sequences of the page referenced by the tree
+         */
+        public int getMarkedContentCount() {
+            return markedContentCount;
+        }
+    }
+
+    private final Map<COSDictionary, PageContent> pages = new IdentityHashMap<>();
+    private final Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private StructureTreeIndex() {
+    }
+
+    /**
+     * Indexes the structure tree of the document.
+     *
+     * @return the index, or null if the document is not tagged or its tree cannot be read
+     */
+    public static StructureTreeIndex read(PDDocument document) {
+        PDDocumentCatalog catalog = document.getDocumentCatalog();
+        PDMarkInfo markInfo = catalog.getMarkInfo();
+        if (markInfo != null && !markInfo.isMarked()) {
+            return null;
+        }
+        PDStructureTreeRoot root = catalog.getStructureTreeRoot();
+        if (root == null) {
+            return null;
+        }
+
+        StructureTreeIndex index = new StructureTreeIndex();
+        try {
+            for (Object kid : root.getKids()) {
+                if (kid instanceof PDStructureElement element) {
+                    index.visit(element, null, null, null, 0);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Could not read structure tree: {}", e.getMessage());
+            return null;
+        }
+        index.visited.clear();
+        return index.pages.isEmpty() ? null : index;
+    }
+
+    /**
+     * @return marked content of the page, or null if the tree references none of it
+     */
+    public PageContent getPage(PDPage page) {
+        return pages.get(page.getCOSObject());
+    }
+
+    private void visit(PDStructureElement element, COSDictionary inheritedPage,
+                       COSDictionary block, String blockType, int depth) {
+        COSDictionary dictionary = element.getCOSObject();
+        if (depth > MAX_DEPTH || !visited.add(dictionary)) {
+            return;
+        }
+
+        COSDictionary page = pageOf(dictionary, inheritedPage);
+        String type = element.getStandardStructureType();
+        if (type == null) {
+            type = element.getStructureType();
+        }
+        if (block == null || !INLINE_TYPES.contains(type)) {
+            block = dictionary;
+            blockType = type;
+        }
+
+        for (Object kid : element.getKids()) {
+            if (kid instanceof Integer mcid) {
+                add(page, mcid, block, blockType);
+            } else if (kid instanceof PDMarkedContentReference reference) {
+                // References into Form XObject streams cannot be matched to page MCIDs
+                if (reference.getCOSObject().getDictionaryObject(STM) == null) {
+                    add(pageOf(reference.getCOSObject(), page), reference.getMCID(), block, blockType);
+                }
+            } else if (kid instanceof PDStructureElement child) {
+                visit(child, page, block, blockType, depth + 1);
+            }
+        }
+    }
+
+    private void add(COSDictionary page, int mcid, COSDictionary block, String blockType) {
+        if (page == null || mcid < 0 || mcid >= MAX_MCID) {
+            return;
+        }
+        pages.computeIfAbsent(page, p -> new PageContent()).add(mcid, block, blockType);
+    }
+
+    private static COSDictionary pageOf(COSDictionary dictionary, COSDictionary inheritedPage) {
+        COSBase page = dictionary.getDictionaryObject(COSName.PG);
+        return page instanceof COSDictionary pageDictionary ? pageDictionary : inheritedPage;
+    }
+}
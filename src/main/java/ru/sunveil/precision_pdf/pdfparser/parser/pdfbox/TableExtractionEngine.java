@@ -0,0 +1,484 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import ru.sunveil.precision_pdf.pdfparser.model.Table;
+import ru.sunveil.precision_pdf.pdfparser.model.TableCell;
+import ru.sunveil.precision_pdf.pdfparser.model.Word;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Builds tables from the ruling lines of a page.
+ * <p>
+ * No step compares rulings pairwise:
+ * <ol>
+ *     <li>collinear rulings are merged after sorting them by position and start;</li>
+ *     <li>intersections are found by sweeping over X: horizontal rulings are active between
+ *     their ends, each vertical ruling queries the active ones in its Y range through a
+ *     binary search over the Y-sorted horizontals;</li>
+ *     <li>intersecting rulings are grouped into tables with union-find;</li>
+ *     <li>distinct ruling positions of a table give its grid, missing borders give spans;</li>
+ *     <li>words are assigned to cells by a binary search over the grid of the table containing them.</li>
+ * </ol>
+ * Coordinates are page coordinates with the origin in the lower left corner, the same as in
+ * {@link ContentStreamEngine} and the word bounding boxes.
+ */
+public class TableExtractionEngine {
+
+    /**
+     * Rulings closer than this are merged, ends closer than this still intersect
+     */
+    private static final float SNAP_TOLERANCE = 2.0f;
+
+    private static final int EVENT_START = 0;
+    private static final int EVENT_QUERY = 1;
+    private static final int EVENT_END = 2;
+
+    /**
+     * Merged rulings of one orientation, sorted by position
+     */
+    private static final class Rulings {
+        final float[] position;
+        final float[] start;
+        final float[] end;
+        final int count;
+
+        Rulings(float[] position, float[] start, float[] end, int count) {
+            this.position = position;
+            this.start = start;
+            this.end = end;
+            this.count = count;
+        }
+    }
+
+    /**
+     * A table under construction: grid lines and the cell owning each grid position
+     */
+    private static final class Grid {
+        float[] xs;
+        float[] ys;
+        int[][] owner;
+        List<TableCell> cells;
+        StringBuilder[] content;
+        Table table;
+    }
+
+    /**
+     * Extracts the tables of one page.
+     *
+     * @param rulings rulings collected from the page
+     * @param words words of the page, assigned to the cells containing their centers
+     * @param pageNumber 1-based page number
+     * @return tables in the order of their top edge, top first
+     */
+    public List<Table> extractTables(RulingCollector rulings, List<Word> words, int pageNumber) {
+        Rulings horizontal = merge(rulings.getHorizontal(), rulings.getHorizontalCount());
+        Rulings vertical = merge(rulings.getVertical(), rulings.getVerticalCount());
+        if (horizontal.count < 2 || vertical.count < 2) {
+            return new ArrayList<>();
+        }
+
+        int[] parent = new int[horizontal.count + vertical.count];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        sweepIntersections(horizontal, vertical, parent);
+
+        List<Grid> grids = buildGrids(horizontal, vertical, parent, pageNumber);
+        if (grids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (words != null) {
+            assignWords(grids, words);
+        }
+
+        grids.sort((a, b) -> Float.compare(b.ys[b.ys.length - 1], a.ys[a.ys.length - 1]));
+        List<Table> tables = new ArrayList<>(grids.size());
+        for (Grid grid : grids) {
+            for (int c = 0; c < grid.cells.size(); c++) {
+                grid.cells.get(c).setContent(grid.content[c] != null ? grid.content[c].toString() : "");
+            }
+            tables.add(grid.table);
+        }
+        return tables;
+    }
+
+    /**
+     * Sorts rulings by position, then merges overlapping or touching collinear ones
+     */
+    private static Rulings merge(float[] lines, int count) {
+        float[] position = new float[count];
+        float[] start = new float[count];
+        float[] end = new float[count];
+        if (count == 0) {
+            return new Rulings(position, start, end, 0);
+        }
+
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) sortableBits(lines[i * 3]) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int merged = 0;
+        long[] groupKeys = new long[count];
+        int group = 0;
+        while (group < count) {
+            // Rulings within the tolerance of the first one of the group are collinear
+            float groupPosition = lines[(int) keys[group] * 3];
+            int groupEnd = group;
+            double positionSum = 0;
+            while (groupEnd < count && lines[(int) keys[groupEnd] * 3] - groupPosition <= SNAP_TOLERANCE) {
+                int line = (int) keys[groupEnd];
+                positionSum += lines[line * 3];
+                groupKeys[groupEnd - group] = ((long) sortableBits(lines[line * 3 + 1]) << 32) | line;
+                groupEnd++;
+            }
+            int groupSize = groupEnd - group;
+            Arrays.sort(groupKeys, 0, groupSize);
+            float mergedPosition = (float) (positionSum / groupSize);
+
+            float runStart = Float.NaN;
+            float runEnd = Float.NaN;
+            for (int k = 0; k < groupSize; k++) {
+                int line = (int) groupKeys[k];
+                float lineStart = lines[line * 3 + 1];
+                float lineEnd = lines[line * 3 + 2];
+                if (k > 0 && lineStart <= runEnd + SNAP_TOLERANCE) {
+                    runEnd = Math.max(runEnd, lineEnd);
+                    continue;
+                }
+                if (k > 0) {
+                    position[merged] = mergedPosition;
+                    start[merged] = runStart;
+                    end[merged++] = runEnd;
+                }
+                runStart = lineStart;
+                runEnd = lineEnd;
+            }
+            position[merged] = mergedPosition;
+            start[merged] = runStart;
+            end[merged++] = runEnd;
+
+            group = groupEnd;
+        }
+        return new Rulings(position, start, end, merged);
+    }
+
+    /**
+     * Sweeps over X and unions every vertical ruling with the horizontal ones it crosses
+     */
+    private static void sweepIntersections(Rulings horizontal, Rulings vertical, int[] parent) {
+        int eventCount = horizontal.count * 2 + vertical.count;
+        long[] events = new long[eventCount];
+        int e = 0;
+        for (int h = 0; h < horizontal.count; h++) {
+            events[e++] = event(horizontal.start[h] - SNAP_TOLERANCE, EVENT_START, h);
+            events[e++] = event(horizontal.end[h] + SNAP_TOLERANCE, EVENT_END, h);
+        }
+        for (int v = 0; v < vertical.count; v++) {
+            events[e++] = event(vertical.position[v], EVENT_QUERY, v);
+        }
+        Arrays.sort(events);
+
+        BitSet active = new BitSet(horizontal.count);
+        for (long event : events) {
+            int type = (int) (event >>> 30) & 3;
+            int index = (int) event & 0x3FFFFFFF;
+            switch (type) {
+                case EVENT_START -> active.set(index);
+                case EVENT_END -> active.clear(index);
+                default -> {
+                    int from = lowerBound(horizontal.position, horizontal.count,
+                            vertical.start[index] - SNAP_TOLERANCE);
+                    int to = lowerBound(horizontal.position, horizontal.count,
+                            Math.nextUp(vertical.end[index] + SNAP_TOLERANCE));
+                    for (int h = active.nextSetBit(from); h >= 0 && h < to; h = active.nextSetBit(h + 1)) {
+                        union(parent, h, horizontal.count + index);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Event key: X position, then starts before queries before ends, then the ruling index
+     */
+    private static long event(float x, int type, int index) {
+        return ((long) sortableBits(x) << 32) | ((long) type << 30) | index;
+    }
+
+    private List<Grid> buildGrids(Rulings horizontal, Rulings vertical, int[] parent, int pageNumber) {
+        int horizontalCount = horizontal.count;
+        int nodes = parent.length;
+
+        // Rulings of each component, horizontals first, both in position order
+        int[] componentSizes = new int[nodes];
+        int[] horizontalSizes = new int[nodes];
+        for (int node = 0; node < nodes; node++) {
+            int root = find(parent, node);
+            componentSizes[root]++;
+            if (node < horizontalCount) {
+                horizontalSizes[root]++;
+            }
+        }
+        int[] offsets = new int[nodes + 1];
+        for (int node = 0; node < nodes; node++) {
+            offsets[node + 1] = offsets[node] + componentSizes[node];
+        }
+        int[] members = new int[nodes];
+        int[] fill = Arrays.copyOf(offsets, nodes);
+        for (int node = 0; node < nodes; node++) {
+            members[fill[find(parent, node)]++] = node;
+        }
+
+        List<Grid> grids = new ArrayList<>();
+        for (int root = 0; root < nodes; root++) {
+            int horizontals = horizontalSizes[root];
+            int verticals = componentSizes[root] - horizontals;
+            if (horizontals >= 2 && verticals >= 2) {
+                Grid grid = buildGrid(horizontal, vertical, members, offsets[root],
+                        offsets[root] + horizontals, offsets[root + 1], pageNumber);
+                if (grid != null) {
+                    grids.add(grid);
+                }
+            }
+        }
+        return grids;
+    }
+
+    /**
+     * Builds the grid of one component: members[from, split) are horizontal rulings,
+     * members[split, to) vertical ones
+     */
+    private Grid buildGrid(Rulings horizontal, Rulings vertical, int[] members,
+                           int from, int split, int to, int pageNumber) {
+        int horizontalCount = horizontal.count;
+        float[] ys = distinctPositions(horizontal.position, members, from, split, 0);
+        float[] xs = distinctPositions(vertical.position, members, split, to, horizontalCount);
+        int rows = ys.length - 1;
+        int columns = xs.length - 1;
+        if (rows < 1 || columns < 1 || rows * columns < 2) {
+            return null;
+        }
+
+        // Borders present in the rulings: below each row (top first) and right of each column
+        boolean[][] borderBelow = new boolean[rows][columns];
+        for (int m = from; m < split; m++) {
+            int h = members[m];
+            int boundary = nearest(ys, horizontal.position[h]);
+            int row = rows - 1 - boundary;
+            if (row < 0 || row >= rows) {
+                continue;
+            }
+            markCovered(borderBelow[row], xs, horizontal.start[h], horizontal.end[h]);
+        }
+        boolean[][] borderRight = new boolean[columns][rows];
+        float[] rowMiddles = new float[rows];
+        for (int r = 0; r < rows; r++) {
+            rowMiddles[r] = (ys[rows - r] + ys[rows - r - 1]) / 2;
+        }
+        for (int m = split; m < to; m++) {
+            int v = members[m] - horizontalCount;
+            int column = nearest(xs, vertical.position[v]) - 1;
+            if (column < 0 || column >= columns) {
+                continue;
+            }
+            for (int r = 0; r < rows; r++) {
+                if (rowMiddles[r] >= vertical.start[v] - SNAP_TOLERANCE
+                        && rowMiddles[r] <= vertical.end[v] + SNAP_TOLERANCE) {
+                    borderRight[column][r] = true;
+                }
+            }
+        }
+
+        Grid grid = new Grid();
+        grid.xs = xs;
+        grid.ys = ys;
+        grid.owner = new int[rows][columns];
+        grid.cells = new ArrayList<>();
+        for (int[] ownerRow : grid.owner) {
+            Arrays.fill(ownerRow, -1);
+        }
+
+        List<List<TableCell>> tableRows = new ArrayList<>(rows);
+        for (int r = 0; r < rows; r++) {
+            List<TableCell> rowCells = new ArrayList<>();
+            for (int c = 0; c < columns; c++) {
+                if (grid.owner[r][c] >= 0) {
+                    continue;
+                }
+                int colSpan = 1;
+                while (c + colSpan < columns && !borderRight[c + colSpan - 1][r]
+                        && grid.owner[r][c + colSpan] < 0) {
+                    colSpan++;
+                }
+                int rowSpan = 1;
+                while (r + rowSpan < rows && isOpenBelow(borderBelow[r + rowSpan - 1], grid.owner[r + rowSpan],
+                        c, colSpan)) {
+                    rowSpan++;
+                }
+
+                int cellIndex = grid.cells.size();
+                for (int rr = r; rr < r + rowSpan; rr++) {
+                    Arrays.fill(grid.owner[rr], c, c + colSpan, cellIndex);
+                }
+
+                TableCell cell = new TableCell();
+                cell.setPageNumber(pageNumber);
+                cell.setRow(r);
+                cell.setColumn(c);
+                cell.setRowSpan(rowSpan);
+                cell.setColSpan(colSpan);
+                cell.setBoundingBox(BoundingBox.fromCorners(xs[c], ys[rows - r - rowSpan],
+                        xs[c + colSpan], ys[rows - r]));
+                grid.cells.add(cell);
+                rowCells.add(cell);
+            }
+            tableRows.add(rowCells);
+        }
+        grid.content = new StringBuilder[grid.cells.size()];
+
+        Table table = new Table();
+        table.setPageNumber(pageNumber);
+        table.setBoundingBox(BoundingBox.fromCorners(xs[0], ys[0], xs[columns], ys[rows]));
+        table.setRows(tableRows);
+        table.setRowCount(rows);
+        table.setColumnCount(columns);
+        grid.table = table;
+        return grid;
+    }
+
+    private static boolean isOpenBelow(boolean[] border, int[] ownersBelow, int column, int colSpan) {
+        for (int c = column; c < column + colSpan; c++) {
+            if (border[c] || ownersBelow[c] >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks the grid columns whose middle lies on the ruling
+     */
+    private static void markCovered(boolean[] covered, float[] xs, float start, float end) {
+        int columns = covered.length;
+        int c = Math.max(0, lowerBound(xs, xs.length, start - SNAP_TOLERANCE) - 1);
+        for (; c < columns; c++) {
+            float middle = (xs[c] + xs[c + 1]) / 2;
+            if (middle > end + SNAP_TOLERANCE) {
+                break;
+            }
+            if (middle >= start - SNAP_TOLERANCE) {
+                covered[c] = true;
+            }
+        }
+    }
+
+    /**
+     * Distinct ruling positions of a component in ascending order, closer ones merged
+     */
+    private static float[] distinctPositions(float[] positions, int[] members, int from, int to, int indexOffset) {
+        float[] values = new float[to - from];
+        for (int m = from; m < to; m++) {
+            values[m - from] = positions[members[m] - indexOffset];
+        }
+        Arrays.sort(values);
+
+        int distinct = 0;
+        for (float value : values) {
+            if (distinct == 0 || value - values[distinct - 1] > SNAP_TOLERANCE) {
+                values[distinct++] = value;
+            }
+        }
+        return Arrays.copyOf(values, distinct);
+    }
+
+    private static void assignWords(List<Grid> grids, List<Word> words) {
+        for (Word word : words) {
+            BoundingBox box = word.getBoundingBox();
+            if (box == null || word.getText() == null) {
+                continue;
+            }
+            float x = box.getCenterX();
+            float y = box.getCenterY();
+
+            for (Grid grid : grids) {
+                int columns = grid.xs.length - 1;
+                int rows = grid.ys.length - 1;
+                if (x < grid.xs[0] || x > grid.xs[columns] || y < grid.ys[0] || y > grid.ys[rows]) {
+                    continue;
+                }
+                int column = Math.min(columns - 1, Math.max(0, lowerBound(grid.xs, grid.xs.length, x) - 1));
+                int boundary = Math.min(rows - 1, Math.max(0, lowerBound(grid.ys, grid.ys.length, y) - 1));
+                int cell = grid.owner[rows - 1 - boundary][column];
+
+                StringBuilder content = grid.content[cell];
+                if (content == null) {
+                    grid.content[cell] = new StringBuilder(word.getText());
+                } else {
+                    content.append(' ').append(word.getText());
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Index of the first element not less than the value
+     */
+    private static int lowerBound(float[] values, int count, float value) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Index of the element closest to the value
+     */
+    private static int nearest(float[] values, float value) {
+        int index = lowerBound(values, values.length, value);
+        if (index == values.length) {
+            return index - 1;
+        }
+        if (index > 0 && value - values[index - 1] < values[index] - value) {
+            return index - 1;
+        }
+        return index;
+    }
+
+    private static int find(int[] parent, int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Maps a float to an int whose signed order matches the float order
+     */
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+}
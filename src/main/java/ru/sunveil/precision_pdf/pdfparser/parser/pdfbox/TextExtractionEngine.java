@@ -3,6 +3,7 @@ package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 
@@ -13,8 +14,10 @@ import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Comparator;
+import java.util.Map;
 
 /**
  * Engine for extracting text content from PDF documents using PDFBox library.
@@ -28,7 +31,9 @@ public class TextExtractionEngine extends PDFTextStripper {
 
     private int currentPageNumber;
     private PDPage currentPage;
+    private float pageWidth;
     private float pageHeight;
+    private int pageWordStart;
 
     private TextLine currentLine;
     private StringBuilder currentLineText;
@@ -38,6 +43,10 @@ public class TextExtractionEngine extends PDFTextStripper {
     private StringBuilder currentWordText;
     private List<TextPosition> currentWordPositions;
 
+    private GlyphDeduplicator glyphDeduplicator;
+    private GlyphMetricsCache glyphMetrics = GlyphMetricsCache.getShared();
+    private final Map<PDFont, Long> fontKeys = new IdentityHashMap<>();
+
     /**
      * Constructs a new TextExtractionEngine instance.
      * Initializes data structures for storing extracted text elements.
@@ -73,23 +82,96 @@ public class TextExtractionEngine extends PDFTextStripper {
     public List<PdfTextChunk> extractTextChunks(PDDocument document) throws IOException {
         resetExtractionState();
 
-        int i = 0;
-        for (PDPage page: document.getPages()) {
-            currentPageNumber = i + 1;
-            PDRectangle pageSize = page.getMediaBox();
-            pageHeight = pageSize.getHeight();
-            setStartPage(currentPageNumber);
-            setEndPage(currentPageNumber);
+        for (int i = 0; i < document.getNumberOfPages(); i++) {
+            processPage(document, i + 1);
+        }
 
-            // Process the page text content
-            super.getText(document);
+        return new ArrayList<>(textChunks);
+    }
 
-            // Finalize any remaining line and word
-            finalizeCurrentWord();
-            finalizeCurrentLine();
+    /**
+     * Extracts words, lines and chunks of a single page in one pass.
+     * Lines and chunks share the word instances returned by {@link #getWords()}
+     * and refer to them through page-relative word ranges.
+     *
+     * @param document the PDF document to extract text from
+     * @param pageNumber the 1-based page number
+     * @throws IOException if an error occurs during page processing
+     */
+    public void extractPage(PDDocument document, int pageNumber) throws IOException {
+        resetExtractionState();
+        processPage(document, pageNumber);
+    }
+
+    private void processPage(PDDocument document, int pageNumber) throws IOException {
+        currentPageNumber = pageNumber;
+        // Text positions are relative to the crop box, like the ContentStreamEngine coordinates
+        PDRectangle pageSize = document.getPage(pageNumber - 1).getCropBox();
+        pageWidth = pageSize.getWidth();
+        pageHeight = pageSize.getHeight();
+        pageWordStart = words.size();
+        // Font instances belong to the document, their keys are not kept across pages
+        fontKeys.clear();
+        setStartPage(currentPageNumber);
+        setEndPage(currentPageNumber);
+
+        if (glyphDeduplicator != null) {
+            glyphDeduplicator.reset();
         }
 
-        return new ArrayList<>(textChunks);
+        // Process the page text content
+        super.getText(document);
+
+        // Finalize any remaining line and word
+        finalizeCurrentWord();
+        finalizeCurrentLine();
+    }
+
+    /**
+     * Replaces PDFTextStripper's duplicate overlapping text suppression, which scans
+     * all earlier characters of the same text, with a grid based one.
+     *
+     * @param glyphDeduplicator the deduplicator to use, or null to keep the stripper's own suppression
+     */
+    public void setGlyphDeduplicator(GlyphDeduplicator glyphDeduplicator) {
+        this.glyphDeduplicator = glyphDeduplicator;
+        setSuppressDuplicateOverlappingText(glyphDeduplicator == null);
+    }
+
+    /**
+     * Sets the cache of glyph outline extents used for character boxes.
+     *
+     * @param glyphMetrics the cache, or null to use the stripper's approximate glyph height
+     */
+    public void setGlyphMetrics(GlyphMetricsCache glyphMetrics) {
+        this.glyphMetrics = glyphMetrics;
+    }
+
+    /**
+     * Returns the words extracted by the last operation.
+     *
+     * @return list of extracted Word objects, a new list is started by the next extraction
+     */
+    public List<Word> getWords() {
+        return words;
+    }
+
+    /**
+     * Returns the text lines extracted by the last operation.
+     *
+     * @return list of extracted TextLine objects
+     */
+    public List<TextLine> getTextLines() {
+        return textLines;
+    }
+
+    /**
+     * Returns the text chunks extracted by the last operation.
+     *
+     * @return list of extracted PdfTextChunk objects
+     */
+    public List<PdfTextChunk> getTextChunks() {
+        return textChunks;
     }
 
     /**
@@ -123,9 +205,11 @@ public class TextExtractionEngine extends PDFTextStripper {
      * Clears all temporary data structures and prepares for new extraction.
      */
     private void resetExtractionState() {
-        textChunks.clear();
-        textLines.clear();
-        words.clear();
+        // Fresh lists: the previous ones may already be referenced by extracted pages
+        textChunks = new ArrayList<>();
+        textLines = new ArrayList<>();
+        words = new ArrayList<>();
+        pageWordStart = 0;
 
         currentLineText.setLength(0);
         currentLineWords.clear();
@@ -151,22 +235,45 @@ public class TextExtractionEngine extends PDFTextStripper {
             return;
         }
 
+        // A word still in progress belongs to the previous chunk
+        int chunkWordStart = words.size() - pageWordStart + (currentWord != null ? 1 : 0);
+
         // Process each text position for word and line extraction
         for (TextPosition textPosition : textPositions) {
-            processTextPosition(textPosition);
+            processCharacter(textPosition);
         }
 
+        // Words of the chunk: finalized ones plus the word still in progress
+        int chunkWordEnd = words.size() - pageWordStart + (currentWord != null ? 1 : 0);
+
         // Create text chunk for the entire string
-        createTextChunk(text, textPositions);
+        createTextChunk(text, textPositions, chunkWordStart, chunkWordEnd - chunkWordStart);
+    }
+
+    /**
+     * Drops duplicate glyphs before the stripper sorts and groups them.
+     *
+     * @param textPosition the character as reported by the stripper
+     */
+    @Override
+    protected void processTextPosition(TextPosition textPosition) {
+        if (glyphDeduplicator != null && glyphDeduplicator.isDuplicate(
+                textPosition.getUnicode().hashCode(), textPosition.getX(), textPosition.getY(),
+                textPosition.getWidth(), textPosition.getFontSizeInPt())) {
+            return;
+        }
+        super.processTextPosition(textPosition);
     }
 
     /**
      * Processes an individual text position for word and line extraction.
-     * Handles word boundaries and line transitions.
+     * Handles word boundaries and line transitions. Must not override
+     * {@link PDFTextStripper#processTextPosition}, otherwise the stripper never
+     * receives the characters and no lines or chunks are produced.
      *
      * @param textPosition the TextPosition object to process
      */
-    public void processTextPosition(TextPosition textPosition) {
+    private void processCharacter(TextPosition textPosition) {
         String character = textPosition.getUnicode();
 
         // Handle whitespace characters as word separators
@@ -246,6 +353,7 @@ public class TextExtractionEngine extends PDFTextStripper {
     private void finalizeCurrentWord() {
         if (currentWord != null && currentWordText.length() > 0) {
             currentWord.setText(currentWordText.toString());
+            currentWord.setId(words.size() - pageWordStart);
 
             // Add word to current line
             currentLineWords.add(currentWord);
@@ -302,8 +410,11 @@ public class TextExtractionEngine extends PDFTextStripper {
         // Calculate line bounding box from constituent words
         BoundingBox lineBbox = calculateLineBoundingBox(currentLineWords);
 
+        // The line takes over the word list, words stay shared with the page word list
         currentLine = new TextLine();
-        currentLine.setWords(new ArrayList<>(currentLineWords));
+        currentLine.setWords(currentLineWords);
+        currentLine.setWordStart(currentLineWords.get(0).getId());
+        currentLine.setWordCount(currentLineWords.size());
         currentLine.setLineHeight(calculateLineHeight(currentLineWords));
         currentLine.setBoundingBox(lineBbox);
         currentLine.setPageNumber(currentPageNumber);
@@ -312,7 +423,7 @@ public class TextExtractionEngine extends PDFTextStripper {
 
         // Reset line state
         currentLineText.setLength(0);
-        currentLineWords.clear();
+        currentLineWords = new ArrayList<>();
         currentLine = null;
     }
 
@@ -321,8 +432,10 @@ public class TextExtractionEngine extends PDFTextStripper {
      *
      * @param text the complete text string
      * @param textPositions the list of TextPosition objects
+     * @param wordStart page-relative id of the first word of the chunk
+     * @param wordCount number of words covered by the chunk
      */
-    private void createTextChunk(String text, List<TextPosition> textPositions) {
+    private void createTextChunk(String text, List<TextPosition> textPositions, int wordStart, int wordCount) {
         if (textPositions.isEmpty()) {
             return;
         }
@@ -335,6 +448,8 @@ public class TextExtractionEngine extends PDFTextStripper {
         textChunk.setText(text);
         textChunk.setPageNumber(currentPageNumber);
         textChunk.setStyle(extractTextStyle(textPositions.get(0)));
+        textChunk.setWordStart(wordStart);
+        textChunk.setWordCount(wordCount);
 
         textChunks.add(textChunk);
     }
@@ -347,12 +462,31 @@ public class TextExtractionEngine extends PDFTextStripper {
      * @return BoundingBox object with converted coordinates
      */
     private BoundingBox createBoundingBox(TextPosition textPosition) {
-        // Convert PDF coordinates (bottom-left origin) to top-left origin
+        // Direction adjusted positions count Y from the top of the text direction frame,
+        // which is the crop box turned by the text direction; flip back to a bottom-left origin
+        float dir = textPosition.getDir();
         float x = textPosition.getXDirAdj();
-        float y = pageHeight - textPosition.getYDirAdj(); // Flip Y coordinate
+        float y = (dir == 90 || dir == 270 ? pageWidth : pageHeight) - textPosition.getYDirAdj();
         float width = textPosition.getWidthDirAdj();
         float height = textPosition.getHeightDir();
 
+        // Outline extents of the glyph, from the shared cache
+        PDFont font = textPosition.getFont();
+        int[] codes = textPosition.getCharacterCodes();
+        if (glyphMetrics != null && font != null && codes != null && codes.length > 0) {
+            Long fontKey = fontKeys.get(font);
+            if (fontKey == null) {
+                fontKey = GlyphMetricsCache.fontKey(font);
+                fontKeys.put(font, fontKey);
+            }
+            long bounds = glyphMetrics.getBounds(font, fontKey, codes[0]);
+            if (GlyphMetricsCache.isKnown(bounds)) {
+                float fontSize = textPosition.getTextMatrix().getScalingFactorY();
+                return new BoundingBox(x, y + GlyphMetricsCache.bottom(bounds) * fontSize, width,
+                        (GlyphMetricsCache.top(bounds) - GlyphMetricsCache.bottom(bounds)) * fontSize);
+            }
+        }
+
         return new BoundingBox(x, y, width, height);
     }
 
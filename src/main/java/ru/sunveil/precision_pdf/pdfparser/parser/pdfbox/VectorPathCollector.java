@@ -0,0 +1,236 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfVectorPaths;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+import java.util.Arrays;
+
+/**
+ * Records the stroked and filled paths of a page from a {@link ContentStreamEngine} pass.
+ * <p>
+ * Every subpath becomes a polyline in flat arrays. Points that lie on the line through their
+ * neighbours are dropped, and single segments continuing the previous collinear segment with
+ * the same paint are merged into it, so dashed or piecewise drawn rulings end up as one line.
+ * At most {@code maxPaths} polylines are kept per page.
+ */
+public class VectorPathCollector implements ContentStreamListener {
+
+    /**
+     * Maximum distance of a dropped point from the simplified line
+     */
+    private static final float COLLINEAR_TOLERANCE = 0.25f;
+    /**
+     * Maximum gap between collinear segments that are merged
+     */
+    private static final float JOIN_TOLERANCE = 0.5f;
+
+    private final int maxPaths;
+
+    private int pathCount;
+    private float[] points = new float[2 * 256];
+    private int pointCount;
+    private int[] pointStarts = new int[65];
+    private byte[] flags = new byte[64];
+    private float[] lineWidths = new float[64];
+    private boolean truncated;
+
+    /**
+     * @param maxPaths maximum number of polylines per page
+     */
+    public VectorPathCollector(int maxPaths) {
+        this.maxPaths = maxPaths;
+    }
+
+    @Override
+    public void startPage(int pageNumber, PDPage page) {
+        clear();
+    }
+
+    public void clear() {
+        pathCount = 0;
+        pointCount = 0;
+        truncated = false;
+    }
+
+    @Override
+    public void path(float[] segments, int segmentCount, boolean stroke, boolean fill, float lineWidth) {
+        byte paint = (byte) ((stroke ? PdfVectorPaths.STROKE : 0) | (fill ? PdfVectorPaths.FILL : 0));
+        int start = 0;
+        while (start < segmentCount) {
+            // A subpath continues while a segment starts where the previous one ended
+            int end = start + 1;
+            while (end < segmentCount
+                    && segments[end * 4] == segments[end * 4 - 2]
+                    && segments[end * 4 + 1] == segments[end * 4 - 1]) {
+                end++;
+            }
+            addPolyline(segments, start, end, paint, lineWidth);
+            start = end;
+        }
+    }
+
+    private void addPolyline(float[] segments, int from, int to, byte paint, float lineWidth) {
+        if (pathCount >= maxPaths) {
+            truncated = true;
+            return;
+        }
+        ensureCapacity(pointCount + (to - from) + 1, pathCount + 1);
+
+        int first = pointCount;
+        appendPoint(first, segments[from * 4], segments[from * 4 + 1]);
+        for (int s = from; s < to; s++) {
+            appendPoint(first, segments[s * 4 + 2], segments[s * 4 + 3]);
+        }
+        int count = pointCount - first;
+        if (count < 2) {
+            pointCount = first;
+            return;
+        }
+
+        byte pathFlags = paint;
+        int last = (pointCount - 1) * 2;
+        if (count > 2 && points[last] == points[first * 2] && points[last + 1] == points[first * 2 + 1]) {
+            pathFlags |= PdfVectorPaths.CLOSED;
+            pointCount--;
+        }
+
+        if (count == 2 && pathFlags == PdfVectorPaths.STROKE && mergeWithPrevious(first, lineWidth)) {
+            pointCount = first;
+            return;
+        }
+
+        flags[pathCount] = pathFlags;
+        lineWidths[pathCount] = lineWidth;
+        pathCount++;
+        pointStarts[pathCount] = pointCount;
+    }
+
+    /**
+     * Appends a point to the polyline starting at {@code first}, replacing the last point
+     * when it lies on the segment from the one before it to the new point
+     */
+    private void appendPoint(int first, float x, float y) {
+        if (pointCount > first) {
+            float lastX = points[(pointCount - 1) * 2];
+            float lastY = points[(pointCount - 1) * 2 + 1];
+            if (lastX == x && lastY == y) {
+                return;
+            }
+            if (pointCount - first >= 2) {
+                float startX = points[(pointCount - 2) * 2];
+                float startY = points[(pointCount - 2) * 2 + 1];
+                if (isBetween(startX, startY, x, y, lastX, lastY)) {
+                    pointCount--;
+                }
+            }
+        }
+        points[pointCount * 2] = x;
+        points[pointCount * 2 + 1] = y;
+        pointCount++;
+    }
+
+    /**
+     * Whether point p lies within the tolerance of the segment a-b, between its ends
+     */
+    private static boolean isBetween(float ax, float ay, float bx, float by, float px, float py) {
+        float dx = bx - ax;
+        float dy = by - ay;
+        float length = (float) Math.hypot(dx, dy);
+        if (length == 0) {
+            return false;
+        }
+        float distance = Math.abs((px - ax) * dy - (py - ay) * dx) / length;
+        float along = ((px - ax) * dx + (py - ay) * dy) / length;
+        return distance <= COLLINEAR_TOLERANCE && along >= 0 && along <= length;
+    }
+
+    /**
+     * Merges the stroked segment at {@code first} into the previous polyline when that is a
+     * collinear stroked segment of the same width that it touches or overlaps
+     */
+    private boolean mergeWithPrevious(int first, float lineWidth) {
+        if (pathCount == 0 || flags[pathCount - 1] != PdfVectorPaths.STROKE
+                || lineWidths[pathCount - 1] != lineWidth || pointStarts[pathCount] - pointStarts[pathCount - 1] != 2) {
+            return false;
+        }
+        int previous = pointStarts[pathCount - 1] * 2;
+        float ax = points[previous];
+        float ay = points[previous + 1];
+        float bx = points[previous + 2];
+        float by = points[previous + 3];
+        float length = (float) Math.hypot(bx - ax, by - ay);
+        if (length == 0) {
+            return false;
+        }
+        float ux = (bx - ax) / length;
+        float uy = (by - ay) / length;
+
+        float cx = points[first * 2];
+        float cy = points[first * 2 + 1];
+        float dx = points[first * 2 + 2];
+        float dy = points[first * 2 + 3];
+        if (Math.abs((cx - ax) * uy - (cy - ay) * ux) > COLLINEAR_TOLERANCE
+                || Math.abs((dx - ax) * uy - (dy - ay) * ux) > COLLINEAR_TOLERANCE) {
+            return false;
+        }
+        float tc = (cx - ax) * ux + (cy - ay) * uy;
+        float td = (dx - ax) * ux + (dy - ay) * uy;
+        float min = Math.min(tc, td);
+        float max = Math.max(tc, td);
+        if (min > length + JOIN_TOLERANCE || max < -JOIN_TOLERANCE) {
+            return false;
+        }
+
+        float start = Math.min(0, min);
+        float end = Math.max(length, max);
+        points[previous] = ax + ux * start;
+        points[previous + 1] = ay + uy * start;
+        points[previous + 2] = ax + ux * end;
+        points[previous + 3] = ay + uy * end;
+        return true;
+    }
+
+    private void ensureCapacity(int pointCapacity, int pathCapacity) {
+        if (points.length < pointCapacity * 2) {
+            points = Arrays.copyOf(points, Math.max(pointCapacity * 2, points.length * 2));
+        }
+        if (flags.length < pathCapacity) {
+            int capacity = Math.max(pathCapacity, flags.length * 2);
+            flags = Arrays.copyOf(flags, capacity);
+            lineWidths = Arrays.copyOf(lineWidths, capacity);
+            pointStarts = Arrays.copyOf(pointStarts, capacity + 1);
+        }
+    }
+
+    /**
+     * @return paths of the current page, or null if it has none
+     */
+    public PdfVectorPaths toVectorPaths(int pageNumber) {
+        if (pathCount == 0) {
+            return null;
+        }
+
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int p = 0; p < pointCount; p++) {
+            minX = Math.min(minX, points[p * 2]);
+            maxX = Math.max(maxX, points[p * 2]);
+            minY = Math.min(minY, points[p * 2 + 1]);
+            maxY = Math.max(maxY, points[p * 2 + 1]);
+        }
+
+        PdfVectorPaths paths = new PdfVectorPaths();
+        paths.setPageNumber(pageNumber);
+        paths.setBoundingBox(new BoundingBox(minX, minY, maxX - minX, maxY - minY));
+        paths.setPathCount(pathCount);
+        paths.setPoints(Arrays.copyOf(points, pointCount * 2));
+        paths.setPointStarts(Arrays.copyOf(pointStarts, pathCount + 1));
+        paths.setFlags(Arrays.copyOf(flags, pathCount));
+        paths.setLineWidths(Arrays.copyOf(lineWidths, pathCount));
+        paths.setTruncated(truncated);
+        return paths;
+    }
+}
@@ -0,0 +1,468 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import ru.sunveil.precision_pdf.pdfparser.model.Table;
+import ru.sunveil.precision_pdf.pdfparser.model.TableCell;
+import ru.sunveil.precision_pdf.pdfparser.model.Word;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds borderless tables in the words of a page by whitespace projection.
+ * <p>
+ * Works on already extracted words only, the PDF is not read again:
+ * <ol>
+ *     <li>word boxes are projected onto the Y axis, occupied runs of the histogram are row bands;</li>
+ *     <li>a band is tabular when its words are split by at least one gap wider than {@link #GUTTER_EM} em;</li>
+ *     <li>consecutive tabular bands form a table candidate, a single full-width band between them
+ *     is kept as a spanning row;</li>
+ *     <li>words of the tabular bands are projected onto the X axis, empty runs are column gutters;</li>
+ *     <li>words crossing a gutter give column spans, rows without a value in the first column
+ *     continue the record above it and give row spans.</li>
+ * </ol>
+ * Both projections are built with difference arrays, so they are linear in words and bins.
+ */
+public class WhitespaceTableEngine {
+
+    private static final float BIN_SIZE = 1.0f;
+    private static final int MAX_BINS = 1 << 16;
+    /**
+     * Minimum column gutter width relative to the font size
+     */
+    private static final float GUTTER_EM = 1.0f;
+    /**
+     * Maximum vertical gap between rows relative to the row height
+     */
+    private static final float MAX_ROW_GAP = 2.5f;
+    /**
+     * Candidates whose cells fill more of their columns on average are prose columns
+     */
+    private static final float MAX_AVERAGE_FILL = 0.85f;
+    private static final float CAP_HEIGHT_RATIO = 0.7f;
+
+    // Eligible words in parallel arrays
+    private int count;
+    private float[] left = new float[0];
+    private float[] right = new float[0];
+    private float[] bottom = new float[0];
+    private float[] top = new float[0];
+    private float[] em = new float[0];
+    private Word[] source = new Word[0];
+
+    /**
+     * Detects tables among the words of one page.
+     *
+     * @param words words of the page
+     * @param pageNumber 1-based page number
+     * @param excluded tables already found on the page, their words are skipped
+     * @return tables top first
+     */
+    public List<Table> extractTables(List<Word> words, int pageNumber, List<Table> excluded) {
+        List<Table> tables = new ArrayList<>();
+        if (words == null || !collectWords(words, excluded)) {
+            return tables;
+        }
+
+        // Row bands from the Y projection, numbered top first
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int w = 0; w < count; w++) {
+            minY = Math.min(minY, bottom[w]);
+            maxY = Math.max(maxY, top[w]);
+        }
+        float binSize = Math.max(BIN_SIZE, (maxY - minY) / (MAX_BINS - 2));
+        int bins = (int) ((maxY - minY) / binSize) + 2;
+        int[] occupancy = new int[bins + 1];
+        for (int w = 0; w < count; w++) {
+            occupancy[bin(bottom[w], minY, binSize)]++;
+            occupancy[bin(top[w], minY, binSize) + 1]--;
+        }
+
+        int[] bandOfBin = new int[bins];
+        int bandCount = 0;
+        int running = 0;
+        for (int b = 0; b < bins; b++) {
+            running += occupancy[b];
+            if (running > 0) {
+                if (b == 0 || bandOfBin[b - 1] < 0) {
+                    bandCount++;
+                }
+                bandOfBin[b] = bandCount - 1;
+            } else {
+                bandOfBin[b] = -1;
+            }
+        }
+        if (bandCount < 2) {
+            return tables;
+        }
+
+        // Counting sort of words by band, top band first
+        int[] wordBand = new int[count];
+        int[] bandStart = new int[bandCount + 1];
+        for (int w = 0; w < count; w++) {
+            int band = bandOfBin[bin((bottom[w] + top[w]) / 2, minY, binSize)];
+            wordBand[w] = band < 0 ? -1 : bandCount - 1 - band;
+            if (wordBand[w] >= 0) {
+                bandStart[wordBand[w] + 1]++;
+            }
+        }
+        for (int band = 0; band < bandCount; band++) {
+            bandStart[band + 1] += bandStart[band];
+        }
+        int[] bandWords = new int[bandStart[bandCount]];
+        int[] fill = Arrays.copyOf(bandStart, bandCount);
+        for (int w = 0; w < count; w++) {
+            if (wordBand[w] >= 0) {
+                bandWords[fill[wordBand[w]]++] = w;
+            }
+        }
+
+        // Words of each band left to right, band extents and segment counts
+        float[] bandBottom = new float[bandCount];
+        float[] bandTop = new float[bandCount];
+        float[] bandEm = new float[bandCount];
+        int[] segments = new int[bandCount];
+        long[] keys = new long[0];
+        for (int band = 0; band < bandCount; band++) {
+            int from = bandStart[band];
+            int to = bandStart[band + 1];
+            keys = sortByLeft(bandWords, from, to, keys);
+
+            bandBottom[band] = Float.MAX_VALUE;
+            bandTop[band] = -Float.MAX_VALUE;
+            for (int k = from; k < to; k++) {
+                int w = bandWords[k];
+                bandBottom[band] = Math.min(bandBottom[band], bottom[w]);
+                bandTop[band] = Math.max(bandTop[band], top[w]);
+                bandEm[band] = Math.max(bandEm[band], em[w]);
+            }
+
+            segments[band] = to > from ? 1 : 0;
+            float segmentRight = -Float.MAX_VALUE;
+            for (int k = from; k < to; k++) {
+                int w = bandWords[k];
+                if (k > from && left[w] - segmentRight > bandEm[band] * GUTTER_EM) {
+                    segments[band]++;
+                }
+                segmentRight = Math.max(segmentRight, right[w]);
+            }
+        }
+
+        // Runs of tabular bands
+        int band = 0;
+        while (band < bandCount) {
+            if (segments[band] < 2) {
+                band++;
+                continue;
+            }
+            int runEnd = band + 1;
+            int tabular = 1;
+            while (runEnd < bandCount && closeBelow(bandBottom, bandTop, runEnd - 1, runEnd)) {
+                if (segments[runEnd] >= 2) {
+                    tabular++;
+                    runEnd++;
+                } else if (runEnd + 1 < bandCount && segments[runEnd + 1] >= 2
+                        && closeBelow(bandBottom, bandTop, runEnd, runEnd + 1)) {
+                    // A single-segment band between tabular ones is a spanning row
+                    runEnd++;
+                } else {
+                    break;
+                }
+            }
+            if (tabular >= 2) {
+                Table table = buildTable(band, runEnd, bandStart, bandWords, segments,
+                        bandBottom, bandTop, bandEm, pageNumber);
+                if (table != null) {
+                    tables.add(table);
+                }
+            }
+            band = runEnd;
+        }
+        return tables;
+    }
+
+    private boolean collectWords(List<Word> words, List<Table> excluded) {
+        int size = words.size();
+        if (left.length < size) {
+            left = new float[size];
+            right = new float[size];
+            bottom = new float[size];
+            top = new float[size];
+            em = new float[size];
+            source = new Word[size];
+        }
+
+        count = 0;
+        for (Word word : words) {
+            BoundingBox box = word.getBoundingBox();
+            if (box == null || word.getText() == null || word.getText().isBlank()
+                    || isExcluded(box.getCenterX(), box.getCenterY(), excluded)) {
+                continue;
+            }
+            left[count] = box.getX();
+            right[count] = box.getRight();
+            bottom[count] = box.getY();
+            top[count] = box.getTop();
+            em[count] = word.getFontSize() > 0 ? word.getFontSize() : box.getHeight() / CAP_HEIGHT_RATIO;
+            source[count] = word;
+            count++;
+        }
+        return count >= 4;
+    }
+
+    private static boolean isExcluded(float x, float y, List<Table> excluded) {
+        if (excluded != null) {
+            for (Table table : excluded) {
+                if (table.getBoundingBox() != null && table.getBoundingBox().contains(x, y)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean closeBelow(float[] bandBottom, float[] bandTop, int upper, int lower) {
+        float rowHeight = Math.max(bandTop[upper] - bandBottom[upper], bandTop[lower] - bandBottom[lower]);
+        return bandBottom[upper] - bandTop[lower] <= rowHeight * MAX_ROW_GAP;
+    }
+
+    /**
+     * Builds a table from bands [from, to): columns from the X projection of the tabular bands,
+     * cells from the words of every band
+     */
+    private Table buildTable(int from, int to, int[] bandStart, int[] bandWords, int[] segments,
+                             float[] bandBottom, float[] bandTop, float[] bandEm, int pageNumber) {
+        float minX = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float gutter = 0;
+        for (int band = from; band < to; band++) {
+            for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+                int w = bandWords[k];
+                minX = Math.min(minX, left[w]);
+                maxX = Math.max(maxX, right[w]);
+            }
+            gutter = Math.max(gutter, bandEm[band] * GUTTER_EM);
+        }
+
+        float binSize = Math.max(BIN_SIZE, (maxX - minX) / (MAX_BINS - 2));
+        int bins = (int) ((maxX - minX) / binSize) + 2;
+        int[] occupancy = new int[bins + 1];
+        for (int band = from; band < to; band++) {
+            if (segments[band] < 2) {
+                continue;
+            }
+            for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+                int w = bandWords[k];
+                occupancy[bin(left[w], minX, binSize)]++;
+                occupancy[bin(right[w], minX, binSize) + 1]--;
+            }
+        }
+
+        // Empty runs at least a gutter wide split columns at their middle
+        int minGutterBins = Math.max(1, (int) Math.ceil(gutter / binSize));
+        int[] columnOfBin = new int[bins];
+        float[] bounds = new float[bins + 1];
+        bounds[0] = minX;
+        int columns = 0;
+        int running = 0;
+        int emptyStart = -1;
+        for (int b = 0; b < bins; b++) {
+            running += occupancy[b];
+            if (running == 0) {
+                if (emptyStart < 0) {
+                    emptyStart = b;
+                }
+                continue;
+            }
+            if (emptyStart > 0 && b - emptyStart >= minGutterBins) {
+                int middle = (emptyStart + b) / 2;
+                for (int g = middle; g < b; g++) {
+                    columnOfBin[g] = columns + 1;
+                }
+                columns++;
+                bounds[columns] = minX + middle * binSize;
+                for (int g = emptyStart; g < middle; g++) {
+                    columnOfBin[g] = columns - 1;
+                }
+            } else if (emptyStart >= 0) {
+                for (int g = emptyStart; g < b; g++) {
+                    columnOfBin[g] = columns;
+                }
+            }
+            emptyStart = -1;
+            columnOfBin[b] = columns;
+        }
+        if (emptyStart >= 0) {
+            for (int g = emptyStart; g < bins; g++) {
+                columnOfBin[g] = columns;
+            }
+        }
+        columns++;
+        bounds[columns] = maxX;
+        if (columns < 2) {
+            return null;
+        }
+
+        int rows = to - from;
+        int[][] owner = new int[rows][columns];
+        for (int[] ownerRow : owner) {
+            Arrays.fill(ownerRow, -1);
+        }
+        List<TableCell> cells = new ArrayList<>();
+        List<StringBuilder> contents = new ArrayList<>();
+        List<List<TableCell>> tableRows = new ArrayList<>(rows);
+        double fillSum = 0;
+        int filledCells = 0;
+
+        int firstColumnCell = -1;
+        for (int r = 0; r < rows; r++) {
+            int band = from + r;
+            List<TableCell> rowCells = new ArrayList<>();
+            tableRows.add(rowCells);
+
+            // Words left to right, overlapping column ranges form one cell
+            TableCell cell = null;
+            StringBuilder content = null;
+            int cellLastColumn = -1;
+            float textLeft = 0;
+            float textRight = 0;
+            for (int k = bandStart[band]; k <= bandStart[band + 1]; k++) {
+                int w = k < bandStart[band + 1] ? bandWords[k] : -1;
+                int firstColumn = w >= 0 ? columnOfBin[bin(left[w], minX, binSize)] : -1;
+                if (cell != null && (w < 0 || firstColumn > cellLastColumn)) {
+                    int span = cellLastColumn - cell.getColumn() + 1;
+                    cell.setColSpan(span);
+                    cell.setBoundingBox(BoundingBox.fromCorners(bounds[cell.getColumn()], bandBottom[band],
+                            bounds[cellLastColumn + 1], bandTop[band]));
+                    Arrays.fill(owner[r], cell.getColumn(), cellLastColumn + 1, cells.size());
+                    if (span == 1) {
+                        fillSum += (textRight - textLeft) / Math.max(1e-3f, bounds[cell.getColumn() + 1] - bounds[cell.getColumn()]);
+                        filledCells++;
+                    }
+                    cells.add(cell);
+                    contents.add(content);
+                    rowCells.add(cell);
+                    cell = null;
+                }
+                if (w < 0) {
+                    break;
+                }
+
+                int lastColumn = columnOfBin[bin(right[w], minX, binSize)];
+                if (cell == null) {
+                    cell = new TableCell();
+                    cell.setPageNumber(pageNumber);
+                    cell.setRow(r);
+                    cell.setColumn(firstColumn);
+                    cell.setRowSpan(1);
+                    content = new StringBuilder(source[w].getText());
+                    cellLastColumn = lastColumn;
+                    textLeft = left[w];
+                    textRight = right[w];
+                } else {
+                    content.append(' ').append(source[w].getText());
+                    cellLastColumn = Math.max(cellLastColumn, lastColumn);
+                    textRight = Math.max(textRight, right[w]);
+                }
+            }
+
+            // A record row without a first column value continues the record above,
+            // rows with column spans are headings and end the record
+            boolean spanningRow = false;
+            for (TableCell rowCell : rowCells) {
+                spanningRow |= rowCell.getColSpan() > 1;
+            }
+            if (spanningRow) {
+                firstColumnCell = -1;
+            } else if (owner[r][0] < 0 && firstColumnCell >= 0 && !rowCells.isEmpty()) {
+                TableCell spanned = cells.get(firstColumnCell);
+                int lastColumn = spanned.getColumn() + spanned.getColSpan();
+                if (isFree(owner[r], 0, lastColumn)) {
+                    spanned.setRowSpan(spanned.getRowSpan() + 1);
+                    BoundingBox box = spanned.getBoundingBox();
+                    spanned.setBoundingBox(BoundingBox.fromCorners(box.getX(), bandBottom[band],
+                            box.getRight(), box.getTop()));
+                    Arrays.fill(owner[r], 0, lastColumn, firstColumnCell);
+                }
+            } else {
+                firstColumnCell = owner[r][0];
+            }
+
+            // Empty grid positions become empty cells
+            for (int c = 0; c < columns; c++) {
+                if (owner[r][c] < 0) {
+                    TableCell empty = new TableCell();
+                    empty.setPageNumber(pageNumber);
+                    empty.setRow(r);
+                    empty.setColumn(c);
+                    empty.setRowSpan(1);
+                    empty.setColSpan(1);
+                    empty.setBoundingBox(BoundingBox.fromCorners(bounds[c], bandBottom[band],
+                            bounds[c + 1], bandTop[band]));
+                    owner[r][c] = cells.size();
+                    cells.add(empty);
+                    contents.add(null);
+                    rowCells.add(empty);
+                }
+            }
+            rowCells.sort((a, b) -> Integer.compare(a.getColumn(), b.getColumn()));
+        }
+
+        if (filledCells > 0 && fillSum / filledCells > MAX_AVERAGE_FILL) {
+            return null;
+        }
+        for (int c = 0; c < cells.size(); c++) {
+            cells.get(c).setContent(contents.get(c) != null ? contents.get(c).toString() : "");
+        }
+
+        Table table = new Table();
+        table.setPageNumber(pageNumber);
+        table.setBoundingBox(BoundingBox.fromCorners(minX, bandBottom[to - 1], maxX, bandTop[from]));
+        table.setRows(tableRows);
+        table.setRowCount(rows);
+        table.setColumnCount(columns);
+        return table;
+    }
+
+    private static boolean isFree(int[] owners, int from, int to) {
+        for (int c = from; c < to; c++) {
+            if (owners[c] >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the word indexes of a band by their left edge
+     */
+    private long[] sortByLeft(int[] bandWords, int from, int to, long[] keys) {
+        int size = to - from;
+        if (keys.length < size) {
+            keys = new long[Math.max(size, keys.length * 2)];
+        }
+        for (int k = 0; k < size; k++) {
+            int w = bandWords[from + k];
+            keys[k] = ((long) sortableBits(left[w]) << 32) | w;
+        }
+        Arrays.sort(keys, 0, size);
+        for (int k = 0; k < size; k++) {
+            bandWords[from + k] = (int) keys[k];
+        }
+        return keys;
+    }
+
+    private static int bin(float value, float origin, float binSize) {
+        return Math.max(0, (int) ((value - origin) / binSize));
+    }
+
+    /**
+     * Maps a float to an int whose signed order matches the float order
+     */
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+}
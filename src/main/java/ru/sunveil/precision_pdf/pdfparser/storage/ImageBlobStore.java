@@ -0,0 +1,226 @@
+package ru.sunveil.precision_pdf.pdfparser.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import ru.sunveil.precision_pdf.pdfparser.config.ParserConfig;
+import ru.sunveil.precision_pdf.pdfparser.util.ImageUtils;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Local content-addressed store for extracted image bytes.
+ * A blob id is the SHA-256 of the stored bytes plus the file extension, blobs are
+ * written once and never modified, so they can be cached by clients while they exist.
+ * The directory is bounded by bytes and evicts least recently stored or served blobs,
+ * the source key index is bounded by entries; a request for an evicted blob simply misses.
+ */
+@Component
+public class ImageBlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageBlobStore.class);
+    private static final Pattern BLOB_ID = Pattern.compile("[0-9a-f]{64}\\.[a-z0-9]{1,5}");
+
+    private final Path root;
+    private final long maxDiskBytes;
+    private final Map<String, Long> blobSizes = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, StoredBlob> blobsBySource;
+    private long diskBytes;
+
+    public ImageBlobStore(ParserConfig parserConfig) {
+        this(Paths.get(parserConfig.getImageBlobDirectory()),
+                parserConfig.getImageBlobDiskMb() * 1024L * 1024L,
+                parserConfig.getImageBlobMaxSources());
+    }
+
+    public ImageBlobStore(Path root, long maxDiskBytes, int maxSources) {
+        this.root = root;
+        this.maxDiskBytes = maxDiskBytes;
+        this.blobsBySource = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredBlob> eldest) {
+                return size() > maxSources;
+            }
+        };
+        loadDiskIndex();
+    }
+
+    /**
+     * Stores encoded image bytes unless an identical blob already exists.
+     *
+     * @param sourceKey key of the source image and encoding options, used to skip re-encoding later
+     * @param format image format (file extension)
+     * @param data encoded image bytes
+     * @return description of the stored blob
+     */
+    public StoredBlob put(String sourceKey, String format, byte[] data) throws IOException {
+        String extension = format.toLowerCase(Locale.ROOT);
+        String blobId = HexFormat.of().formatHex(sha256(data)) + "." + extension;
+        Path target = resolve(blobId);
+
+        if (!Files.exists(target)) {
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), "blob_", ".tmp");
+            try {
+                Files.write(temp, data);
+                moveIntoPlace(temp, target);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            logger.debug("Stored image blob {} ({} bytes)", blobId, data.length);
+        }
+
+        StoredBlob blob = new StoredBlob(blobId, data.length, ImageUtils.getMimeType(extension));
+        List<String> evicted;
+        synchronized (this) {
+            Long previous = blobSizes.put(blobId, (long) data.length);
+            diskBytes += data.length - (previous != null ? previous : 0);
+            if (sourceKey != null) {
+                blobsBySource.put(sourceKey, blob);
+            }
+            evicted = evictDisk(blobId);
+        }
+        for (String evictedId : evicted) {
+            Files.deleteIfExists(resolve(evictedId));
+            logger.debug("Evicted image blob {}", evictedId);
+        }
+        return blob;
+    }
+
+    /**
+     * Returns a blob previously stored for the given source key, if it is still on disk.
+     */
+    public synchronized StoredBlob findBySource(String sourceKey) {
+        StoredBlob blob = blobsBySource.get(sourceKey);
+        if (blob != null && (blobSizes.get(blob.blobId()) == null || !Files.exists(resolve(blob.blobId())))) {
+            blobsBySource.remove(sourceKey);
+            return null;
+        }
+        return blob;
+    }
+
+    /**
+     * Resolves a blob id to its file, or returns null for malformed or unknown ids.
+     */
+    public Path find(String blobId) {
+        if (blobId == null || !BLOB_ID.matcher(blobId).matches()) {
+            return null;
+        }
+        synchronized (this) {
+            if (blobSizes.get(blobId) == null) {
+                return null;
+            }
+        }
+        Path path = resolve(blobId);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    public String getMimeType(String blobId) {
+        return ImageUtils.getMimeType(blobId.substring(blobId.lastIndexOf('.') + 1));
+    }
+
+    private Path resolve(String blobId) {
+        return root.resolve(blobId.substring(0, 2)).resolve(blobId);
+    }
+
+    /**
+     * Drops least recently used blobs until the directory fits the limit, never the blob just stored.
+     */
+    private List<String> evictDisk(String keep) {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> iterator = blobSizes.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            diskBytes -= entry.getValue();
+            evicted.add(entry.getKey());
+            iterator.remove();
+        }
+        return evicted;
+    }
+
+    /**
+     * Restores the blob index after a restart, oldest files first so they are evicted first.
+     */
+    private void loadDiskIndex() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> BLOB_ID.matcher(file.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingLong(this::lastModified))
+                    .forEach(this::indexFile);
+        } catch (IOException e) {
+            logger.warn("Failed to index image blob directory {}: {}", root, e.getMessage());
+        }
+
+        List<String> evicted = evictDisk(null);
+        for (String evictedId : evicted) {
+            try {
+                Files.deleteIfExists(resolve(evictedId));
+            } catch (IOException e) {
+                logger.debug("Failed to delete image blob {}", evictedId);
+            }
+        }
+    }
+
+    private void indexFile(Path file) {
+        try {
+            long size = Files.size(file);
+            blobSizes.put(file.getFileName().toString(), size);
+            diskBytes += size;
+        } catch (IOException e) {
+            logger.debug("Skipping image blob file {}", file);
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Id, size and MIME type of a stored blob
+     */
+    public record StoredBlob(String blobId, long size, String mimeType) {
+    }
+}
@@ -0,0 +1,222 @@
+package ru.sunveil.precision_pdf.pdfparser.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import ru.sunveil.precision_pdf.pdfparser.config.ParserConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier cache of encoded page rasters keyed by document hash, page, size variant and colour mode.
+ * The memory tier is an LRU bounded by bytes; evicted entries stay in the disk tier, which is
+ * bounded separately and evicts least recently used files.
+ */
+@Component
+public class PageRasterCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageRasterCache.class);
+    private static final Pattern FILE_NAME = Pattern.compile("(\\d+)_([A-Z]+)_([A-Z]+)\\.png");
+
+    /**
+     * Raster size variants, ordered from the smallest to the largest
+     */
+    public enum Variant {
+        THUMBNAIL(256),
+        PREVIEW(1024),
+        FULL(4096);
+
+        private final int maxSize;
+
+        Variant(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+    }
+
+    public enum ColorMode {
+        RGB,
+        GRAY
+    }
+
+    public record Key(String documentHash, int pageNumber, Variant variant, ColorMode colorMode) {
+    }
+
+    private final Map<Key, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Key, Long> disk = new LinkedHashMap<>(256, 0.75f, true);
+    private final Path directory;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private long memoryBytes;
+    private long diskBytes;
+
+    public PageRasterCache(ParserConfig parserConfig) {
+        this(Paths.get(parserConfig.getRasterCacheDirectory()),
+                parserConfig.getRasterCacheMemoryMb() * 1024L * 1024L,
+                parserConfig.getRasterCacheDiskMb() * 1024L * 1024L);
+    }
+
+    public PageRasterCache(Path directory, long maxMemoryBytes, long maxDiskBytes) {
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        loadDiskIndex();
+    }
+
+    /**
+     * Returns the cached raster, promoting disk hits into the memory tier.
+     */
+    public byte[] get(Key key) {
+        synchronized (this) {
+            byte[] cached = memory.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            if (disk.get(key) == null) {
+                return null;
+            }
+        }
+
+        try {
+            byte[] data = Files.readAllBytes(resolve(key));
+            putInMemory(key, data);
+            return data;
+        } catch (IOException e) {
+            synchronized (this) {
+                Long size = disk.remove(key);
+                if (size != null) {
+                    diskBytes -= size;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Finds the smallest cached raster of the same page and colour mode that is larger than the variant,
+     * so smaller variants can be derived from it instead of rendering the page again.
+     */
+    public Key findLargerVariant(Key key) {
+        Variant[] variants = Variant.values();
+        for (int i = key.variant().ordinal() + 1; i < variants.length; i++) {
+            Key candidate = new Key(key.documentHash(), key.pageNumber(), variants[i], key.colorMode());
+            synchronized (this) {
+                if (memory.containsKey(candidate) || disk.containsKey(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    public void put(Key key, byte[] data) {
+        putInMemory(key, data);
+
+        Path path = resolve(key);
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = Files.createTempFile(path.getParent(), "raster_", ".tmp");
+            Files.write(temp, data);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+
+            List<Key> evicted;
+            synchronized (this) {
+                Long previous = disk.put(key, (long) data.length);
+                diskBytes += data.length - (previous != null ? previous : 0);
+                evicted = evictDisk();
+            }
+            for (Key evictedKey : evicted) {
+                Files.deleteIfExists(resolve(evictedKey));
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write page raster to disk cache: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void putInMemory(Key key, byte[] data) {
+        if (data.length > maxMemoryBytes) {
+            return;
+        }
+        byte[] previous = memory.put(key, data);
+        memoryBytes += data.length - (previous != null ? previous.length : 0);
+
+        Iterator<byte[]> iterator = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+            memoryBytes -= iterator.next().length;
+            iterator.remove();
+        }
+    }
+
+    private List<Key> evictDisk() {
+        List<Key> evicted = new ArrayList<>();
+        Iterator<Map.Entry<Key, Long>> iterator = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+            Map.Entry<Key, Long> entry = iterator.next();
+            diskBytes -= entry.getValue();
+            evicted.add(entry.getKey());
+            iterator.remove();
+        }
+        return evicted;
+    }
+
+    private Path resolve(Key key) {
+        return directory.resolve(key.documentHash())
+                .resolve(key.pageNumber() + "_" + key.variant() + "_" + key.colorMode() + ".png");
+    }
+
+    /**
+     * Restores the disk tier index after a restart, oldest files first so they are evicted first.
+     */
+    private void loadDiskIndex() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            files.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparingLong(this::lastModified))
+                    .forEach(this::indexFile);
+        } catch (IOException e) {
+            logger.warn("Failed to index page raster cache directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private void indexFile(Path file) {
+        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {
+            return;
+        }
+        try {
+            Key key = new Key(file.getParent().getFileName().toString(), Integer.parseInt(matcher.group(1)),
+                    Variant.valueOf(matcher.group(2)), ColorMode.valueOf(matcher.group(3)));
+            long size = Files.size(file);
+            disk.put(key, size);
+            diskBytes += size;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.debug("Skipping page raster cache file {}", file);
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -32,7 +32,18 @@ public class ImageUtils {
      * Получает MIME тип изображения
      */
     public static String getMimeType(PdfImage pdfImage) {
-        String format = pdfImage.getImageFormat().toLowerCase();
+        return getMimeType(pdfImage.getImageFormat());
+    }
+
+    /**
+     * Получает MIME тип по формату (расширению) изображения
+     */
+    public static String getMimeType(String imageFormat) {
+        if (imageFormat == null) {
+            return "application/octet-stream";
+        }
+
+        String format = imageFormat.toLowerCase();
 
         switch (format) {
             case "jpg":
@@ -47,6 +58,11 @@ public class ImageUtils {
             case "tiff":
             case "tif":
                 return "image/tiff";
+            case "jpx":
+            case "jp2":
+                return "image/jp2";
+            case "jb2":
+                return "image/x-jbig2";
             default:
                 return "application/octet-stream";
         }
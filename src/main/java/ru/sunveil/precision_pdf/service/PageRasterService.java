@@ -0,0 +1,176 @@
+package ru.sunveil.precision_pdf.service;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import ru.sunveil.precision_pdf.pdfparser.config.ExtractionConfig;
+import ru.sunveil.precision_pdf.pdfparser.exceptions.PdfParseException;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.ImageEncoder;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.PageRenderPipeline;
+import ru.sunveil.precision_pdf.pdfparser.storage.PageRasterCache;
+import ru.sunveil.precision_pdf.pdfparser.storage.PageRasterCache.ColorMode;
+import ru.sunveil.precision_pdf.pdfparser.storage.PageRasterCache.Key;
+import ru.sunveil.precision_pdf.pdfparser.storage.PageRasterCache.Variant;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Serves page rasters in several size variants. Results are cached by document hash, so repeated
+ * requests are answered without opening the PDF, and smaller variants are downscaled from a cached
+ * larger raster instead of rendering the page again.
+ */
+@Service
+public class PageRasterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageRasterService.class);
+    private static final float MAX_RENDER_DPI = 600f;
+
+    private final PageRasterCache pageRasterCache;
+    private final ImageEncoder imageEncoder;
+
+    public PageRasterService(PageRasterCache pageRasterCache, ExtractionConfig extractionConfig) {
+        this.pageRasterCache = pageRasterCache;
+        this.imageEncoder = ImageEncoder.fromConfig(extractionConfig);
+    }
+
+    /**
+     * Rendered page raster together with the hash of the source document
+     */
+    public record PageRaster(String documentHash, byte[] data) {
+    }
+
+    /**
+     * Returns the page raster for an uploaded PDF, rendering it only on a cache miss.
+     *
+     * @param multipartFile uploaded PDF
+     * @param pageNumber 1-based page number
+     */
+    public PageRaster getPageRaster(MultipartFile multipartFile, int pageNumber, Variant variant,
+                                    ColorMode colorMode) throws IOException {
+        File tempFile = File.createTempFile("pdf_raster_", ".pdf");
+        try {
+            String documentHash = copyAndHash(multipartFile, tempFile);
+            Key key = new Key(documentHash, pageNumber, variant, colorMode);
+
+            byte[] data = findCached(key);
+            if (data == null) {
+                data = render(tempFile, key);
+                pageRasterCache.put(key, data);
+            }
+            return new PageRaster(documentHash, data);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Returns a cached page raster of a previously uploaded document, or null if it is not cached
+     * and cannot be derived from a cached larger variant.
+     */
+    public byte[] getCachedPageRaster(String documentHash, int pageNumber, Variant variant,
+                                      ColorMode colorMode) throws IOException {
+        return findCached(new Key(documentHash, pageNumber, variant, colorMode));
+    }
+
+    private byte[] findCached(Key key) throws IOException {
+        byte[] data = pageRasterCache.get(key);
+        if (data != null) {
+            logger.debug("Page raster cache hit: {}", key);
+            return data;
+        }
+
+        Key largerKey = pageRasterCache.findLargerVariant(key);
+        byte[] larger = largerKey != null ? pageRasterCache.get(largerKey) : null;
+        if (larger == null) {
+            return null;
+        }
+
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(larger));
+        if (source == null) {
+            return null;
+        }
+        data = encodePng(downscale(source, key.variant().getMaxSize(), key.colorMode()));
+        pageRasterCache.put(key, data);
+        logger.debug("Derived page raster {} from {}", key, largerKey.variant());
+        return data;
+    }
+
+    private byte[] render(File pdfFile, Key key) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdfFile)) {
+            if (key.pageNumber() < 1 || key.pageNumber() > document.getNumberOfPages()) {
+                throw new PdfParseException("Page " + key.pageNumber() + " does not exist, document has "
+                        + document.getNumberOfPages() + " pages");
+            }
+
+            int maxSize = key.variant().getMaxSize();
+            float dpi = PageRenderPipeline.computeRenderDpi(
+                    document.getPage(key.pageNumber() - 1), MAX_RENDER_DPI, maxSize);
+            ImageType imageType = key.colorMode() == ColorMode.GRAY ? ImageType.GRAY : ImageType.RGB;
+            BufferedImage raster = new PDFRenderer(document)
+                    .renderImageWithDPI(key.pageNumber() - 1, dpi, imageType);
+
+            logger.debug("Rendered page raster {} at {} dpi", key, dpi);
+            return encodePng(downscale(raster, maxSize, key.colorMode()));
+        }
+    }
+
+    private BufferedImage downscale(BufferedImage source, int maxSize, ColorMode colorMode) {
+        int imageType = colorMode == ColorMode.GRAY ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (width <= maxSize && height <= maxSize && source.getType() == imageType) {
+            return source;
+        }
+
+        double scale = Math.min(1.0, Math.min((double) maxSize / width, (double) maxSize / height));
+        int newWidth = Math.max(1, (int) Math.round(width * scale));
+        int newHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage scaled = new BufferedImage(newWidth, newHeight, imageType);
+        Graphics2D g2d = scaled.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(source, 0, 0, newWidth, newHeight, null);
+        g2d.dispose();
+        return scaled;
+    }
+
+    private byte[] encodePng(BufferedImage image) throws IOException {
+        return imageEncoder.encode(image, "PNG");
+    }
+
+    /**
+     * Copies the upload to a temporary file and hashes it in the same pass
+     */
+    private String copyAndHash(MultipartFile multipartFile, File target) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        try (InputStream in = multipartFile.getInputStream();
+             OutputStream out = new DigestOutputStream(Files.newOutputStream(target.toPath()), digest)) {
+            in.transferTo(out);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
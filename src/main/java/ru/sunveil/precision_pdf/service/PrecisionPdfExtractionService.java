@@ -1,5 +1,9 @@
 package ru.sunveil.precision_pdf.service;
 
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.tomcat.jni.FileInfo;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.stereotype.Service;
@@ -9,13 +13,19 @@ import ru.sunveil.precision_pdf.pdfparser.export.ExportFormat;
 import ru.sunveil.precision_pdf.pdfparser.export.Exporter;
 import ru.sunveil.precision_pdf.pdfparser.export.ExporterFactory;
 import ru.sunveil.precision_pdf.pdfparser.model.PdfDocument;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfMetadata;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfValidationReport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.sunveil.precision_pdf.pdfparser.parser.PdfParseFactory;
 import ru.sunveil.precision_pdf.pdfparser.parser.PdfParser;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.GlyphDeduplicator;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.MetadataReader;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.RawTextWriter;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -26,6 +36,7 @@ public class PrecisionPdfExtractionService {
     private final PdfParseFactory pdfParseFactory;
     private final ExtractionConfig extractionConfig;
     private final ExporterFactory exporterFactory;
+    private final MetadataReader metadataReader = new MetadataReader();
     private static final Logger logger = LoggerFactory.getLogger(PrecisionPdfExtractionService.class);
 
     public PrecisionPdfExtractionService(PdfParseFactory pdfParseFactory,
@@ -79,6 +90,65 @@ public class PrecisionPdfExtractionService {
         }
     }
 
+    public byte[] processPdfBinary(MultipartFile multipartFile, ExtractionConfig extractionConfig) throws IOException {
+
+        long startTime = System.currentTimeMillis();
+        PdfDocument document = parsePdf(multipartFile, extractionConfig);
+
+        byte[] result = exporterFactory.getExporter(ExportFormat.BINARY).exportBytes(document, ExportFormat.BINARY);
+        long processingTime = System.currentTimeMillis() - startTime;
+
+        logger.info("PDF binary export completed. Processing time: {}ms, Result size: {} bytes",
+                processingTime, result.length);
+
+        return result;
+    }
+
+    /**
+     * Streams layout-free text of the whole document to the writer page by page,
+     * without building the document model.
+     */
+    public void writeRawText(MultipartFile multipartFile, Writer writer) throws IOException {
+
+        long startTime = System.currentTimeMillis();
+        File tempFile = null;
+
+        try {
+            tempFile = convertMultipartFileToTempFile(multipartFile);
+            try (PDDocument document = Loader.loadPDF(tempFile)) {
+                GlyphDeduplicator deduplicator = extractionConfig.isSuppressDuplicateGlyphs()
+                        ? new GlyphDeduplicator(extractionConfig.getDuplicateGlyphTolerance()) : null;
+                new RawTextWriter(writer, deduplicator).writeDocument(document);
+
+                logger.info("Raw text streamed. Time: {}ms, Pages: {}",
+                        System.currentTimeMillis() - startTime, document.getNumberOfPages());
+            }
+        } finally {
+            cleanupTempFile(tempFile);
+        }
+    }
+
+    /**
+     * Reads document metadata and the page count only: the stored upload is opened without
+     * loading it into memory and without parsing the page tree.
+     */
+    public PdfMetadata readMetadata(MultipartFile multipartFile) throws IOException {
+        long startTime = System.currentTimeMillis();
+        File tempFile = null;
+        PdfMetadata metadata;
+        try {
+            tempFile = convertMultipartFileToTempFile(multipartFile);
+            metadata = metadataReader.read(tempFile);
+        } finally {
+            cleanupTempFile(tempFile);
+        }
+
+        logger.info("Metadata read. Time: {}ms, Pages: {}",
+                System.currentTimeMillis() - startTime, metadata.getPageCount());
+
+        return metadata;
+    }
+
     public PdfDocument parsePdf(MultipartFile multipartFile, ExtractionConfig extractionConfig)
             throws IOException {
 
@@ -162,20 +232,25 @@ public class PrecisionPdfExtractionService {
         return config;
     }
 
-    public boolean validatePdf(MultipartFile multipartFile) {
+    /**
+     * Structural check of the upload within the configured byte and time budget, without
+     * loading the document: the validator reads only the parts of the stored file it checks.
+     */
+    public PdfValidationReport validatePdf(MultipartFile multipartFile) throws IOException {
         File tempFile = null;
+        PdfValidationReport report;
         try {
             tempFile = convertMultipartFileToTempFile(multipartFile);
-            // Простая проверка - пытаемся создать парсер и проверить файл
-            PdfParser parser = pdfParseFactory.createParser();
-            // Если не выброшено исключение, считаем файл валидным
-            return true;
-        } catch (Exception e) {
-            logger.warn("PDF validation failed: {}", e.getMessage());
-            return false;
+            try (RandomAccessRead source = new RandomAccessReadBufferedFile(tempFile)) {
+                report = pdfParseFactory.createValidator().validate(source);
+            }
         } finally {
             cleanupTempFile(tempFile);
         }
+        logger.info("PDF validated: {}, valid: {}, repairable: {}, findings: {}, time: {}ms",
+                multipartFile.getOriginalFilename(), report.isValid(), report.isRepairable(),
+                report.getFindings().size(), report.getElapsedMillis());
+        return report;
     }
 
     public FileInfo getFileInfo(MultipartFile multipartFile) throws IOException {
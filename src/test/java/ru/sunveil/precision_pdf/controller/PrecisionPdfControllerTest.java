@@ -0,0 +1,75 @@
+package ru.sunveil.precision_pdf.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.multipart.MultipartFile;
+import ru.sunveil.precision_pdf.pdfparser.config.ExtractionConfig;
+import ru.sunveil.precision_pdf.service.PrecisionPdfExtractionService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrecisionPdfControllerTest {
+
+    /**
+     * Records the configuration a request is processed with
+     */
+    private static final class RecordingService extends PrecisionPdfExtractionService {
+        ExtractionConfig config;
+
+        RecordingService() {
+            super(null, null, null);
+        }
+
+        @Override
+        public byte[] processPdfBinary(MultipartFile multipartFile, ExtractionConfig extractionConfig) {
+            this.config = extractionConfig;
+            return new byte[0];
+        }
+
+        @Override
+        public String processPdf(MultipartFile multipartFile, ExtractionConfig extractionConfig) {
+            this.config = extractionConfig;
+            return "";
+        }
+    }
+
+    @Test
+    void requestsStartFromConfiguredSettings() throws Exception {
+        ExtractionConfig configured = new ExtractionConfig();
+        configured.setPngCompressionLevel(1);
+        configured.setBoilerplateMode("REMOVE");
+        configured.setExternalImageStorage(true);
+        RecordingService service = new RecordingService();
+        PrecisionPdfController controller = new PrecisionPdfController(service, configured);
+
+        controller.extractPdfBinary(null, true, null, false);
+
+        ExtractionConfig used = service.config;
+        assertNotSame(configured, used);
+        assertEquals(1, used.getPngCompressionLevel());
+        assertEquals("REMOVE", used.getBoilerplateMode());
+        assertTrue(used.isExternalImageStorage());
+        assertTrue(used.isExtractImages());
+        assertFalse(used.isExtractTables());
+        assertFalse(used.isExtractMetadata());
+        assertEquals("BINARY", used.getOutputFormat());
+    }
+
+    @Test
+    void requestParametersDoNotChangeConfiguredSettings() {
+        ExtractionConfig configured = new ExtractionConfig();
+        configured.setSuppressDuplicateGlyphs(false);
+        RecordingService service = new RecordingService();
+        PrecisionPdfController controller = new PrecisionPdfController(service, configured);
+
+        controller.extractPdfSimple(null, null, null, null, false, "TEXT");
+
+        assertFalse(service.config.isSuppressDuplicateGlyphs());
+        assertEquals("TEXT", service.config.getOutputFormat());
+        assertTrue(configured.isExtractMetadata());
+        assertTrue(configured.isExtractImages());
+        assertEquals("JSON", configured.getOutputFormat());
+    }
+}
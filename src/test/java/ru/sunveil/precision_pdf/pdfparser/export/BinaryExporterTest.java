@@ -0,0 +1,297 @@
+package ru.sunveil.precision_pdf.pdfparser.export;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.util.Matrix;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.sunveil.precision_pdf.pdfparser.config.ExtractionConfig;
+import ru.sunveil.precision_pdf.pdfparser.model.*;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+import ru.sunveil.precision_pdf.pdfparser.parser.SimpleParser;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryExporterTest {
+
+    /**
+     * Coordinates are stored in hundredths of a point
+     */
+    private static final double DELTA = 0.011;
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Parses a generated document with running headers, a ruled table and vector paths
+     */
+    private PdfDocument parsedDocument() throws Exception {
+        File file = tempDir.resolve("source.pdf").toFile();
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        try (PDDocument document = new PDDocument()) {
+            for (int p = 1; p <= 3; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.addRect(50, 500, 200, 40);
+                    content.moveTo(150, 500);
+                    content.lineTo(150, 540);
+                    content.moveTo(50, 520);
+                    content.lineTo(250, 520);
+                    content.stroke();
+                    content.beginText();
+                    content.setFont(font, 10);
+                    content.setTextMatrix(Matrix.getTranslateInstance(72, 760));
+                    content.showText("Running header");
+                    content.setTextMatrix(Matrix.getTranslateInstance(72, 650));
+                    content.showText("Body of page " + p + " with some words");
+                    content.setTextMatrix(Matrix.getTranslateInstance(72, 638));
+                    content.showText("and a second line");
+                    content.setTextMatrix(Matrix.getTranslateInstance(55, 525));
+                    content.showText("cell a" + p);
+                    content.setTextMatrix(Matrix.getTranslateInstance(155, 505));
+                    content.showText("cell d" + p);
+                    content.endText();
+                }
+            }
+            document.getDocumentInformation().setTitle("Round trip");
+            document.save(file);
+        }
+
+        ExtractionConfig config = new ExtractionConfig();
+        config.setExtractImages(false);
+        config.setExtractVectorPaths(true);
+        return new SimpleParser().parse(file, config);
+    }
+
+    private static void assertBox(BoundingBox expected, BoundingBox actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertEquals(expected.getX(), actual.getX(), DELTA);
+        assertEquals(expected.getY(), actual.getY(), DELTA);
+        assertEquals(expected.getWidth(), actual.getWidth(), DELTA);
+        assertEquals(expected.getHeight(), actual.getHeight(), DELTA);
+    }
+
+    private static void assertPage(PdfPage expected, PdfPage actual) {
+        assertEquals(expected.getPageNumber(), actual.getPageNumber());
+        assertEquals(expected.getWidth(), actual.getWidth(), DELTA);
+        assertEquals(expected.getHeight(), actual.getHeight(), DELTA);
+        assertEquals(expected.getText(), actual.getText());
+        assertEquals(expected.getPageType(), actual.getPageType());
+        assertEquals(expected.getEstimatedCost(), actual.getEstimatedCost());
+
+        assertEquals(expected.getWords().size(), actual.getWords().size());
+        for (int i = 0; i < expected.getWords().size(); i++) {
+            Word word = expected.getWords().get(i);
+            Word read = actual.getWords().get(i);
+            assertEquals(word.getText(), read.getText());
+            assertEquals(word.getFontName(), read.getFontName());
+            assertEquals(word.getFontSize(), read.getFontSize(), DELTA);
+            assertBox(word.getBoundingBox(), read.getBoundingBox());
+        }
+
+        assertEquals(expected.getTextLines().size(), actual.getTextLines().size());
+        for (int i = 0; i < expected.getTextLines().size(); i++) {
+            TextLine line = expected.getTextLines().get(i);
+            TextLine read = actual.getTextLines().get(i);
+            assertEquals(line.getText(), read.getText());
+            assertEquals(line.isBoilerplate(), read.isBoilerplate());
+            assertEquals(line.getWordStart(), read.getWordStart());
+            assertEquals(line.getWordCount(), read.getWordCount());
+            assertBox(line.getBoundingBox(), read.getBoundingBox());
+            for (int k = 0; k < read.getWords().size(); k++) {
+                assertSame(actual.getWords().get(read.getWordStart() + k), read.getWords().get(k));
+            }
+        }
+
+        assertEquals(expected.getPdfTextChunks().size(), actual.getPdfTextChunks().size());
+        for (int i = 0; i < expected.getPdfTextChunks().size(); i++) {
+            PdfTextChunk chunk = expected.getPdfTextChunks().get(i);
+            PdfTextChunk read = actual.getPdfTextChunks().get(i);
+            assertEquals(chunk.getText(), read.getText());
+            assertEquals(chunk.getStructureType(), read.getStructureType());
+            assertEquals(chunk.isBoilerplate(), read.isBoilerplate());
+            assertEquals(chunk.getWordStart(), read.getWordStart());
+            assertEquals(chunk.getWordCount(), read.getWordCount());
+            assertEquals(chunk.getLineStart(), read.getLineStart());
+            assertEquals(chunk.getLineCount(), read.getLineCount());
+            for (int k = 0; k < read.getLineCount(); k++) {
+                assertSame(actual.getTextLines().get(read.getLineStart() + k), read.getLines().get(k));
+            }
+        }
+
+        assertEquals(expected.getTables().size(), actual.getTables().size());
+        for (int i = 0; i < expected.getTables().size(); i++) {
+            Table table = expected.getTables().get(i);
+            Table read = actual.getTables().get(i);
+            assertEquals(table.getRowCount(), read.getRowCount());
+            assertEquals(table.getColumnCount(), read.getColumnCount());
+            assertBox(table.getBoundingBox(), read.getBoundingBox());
+            for (int r = 0; r < table.getRows().size(); r++) {
+                for (int c = 0; c < table.getRows().get(r).size(); c++) {
+                    TableCell cell = table.getRows().get(r).get(c);
+                    TableCell readCell = read.getRows().get(r).get(c);
+                    assertEquals(cell.getContent(), readCell.getContent());
+                    assertEquals(cell.getRowSpan(), readCell.getRowSpan());
+                    assertEquals(cell.getColSpan(), readCell.getColSpan());
+                }
+            }
+        }
+
+        PdfVectorPaths paths = expected.getVectorPaths();
+        PdfVectorPaths readPaths = actual.getVectorPaths();
+        if (paths == null) {
+            assertNull(readPaths);
+        } else {
+            assertEquals(paths.getPathCount(), readPaths.getPathCount());
+            assertEquals(paths.isTruncated(), readPaths.isTruncated());
+            assertArrayEquals(paths.getFlags(), readPaths.getFlags());
+            assertArrayEquals(paths.getPointStarts(), readPaths.getPointStarts());
+            assertEquals(paths.getPoints().length, readPaths.getPoints().length);
+            for (int i = 0; i < paths.getPoints().length; i++) {
+                assertEquals(paths.getPoints()[i], readPaths.getPoints()[i], DELTA);
+            }
+        }
+    }
+
+    @Test
+    void roundTripsParsedDocument() throws Exception {
+        PdfDocument document = parsedDocument();
+        PdfPage first = document.getPages().get(0);
+        assertFalse(document.getBoilerplate().isEmpty());
+        assertEquals(1, first.getTables().size());
+        assertTrue(first.getVectorPaths().getPathCount() > 0);
+
+        PdfDocument read = BinaryDocumentReader.read(new BinaryExporter().exportBytes(document, ExportFormat.BINARY));
+
+        assertEquals(document.getTotalPages(), read.getTotalPages());
+        assertEquals("Round trip", read.getMetadata().getTitle());
+        assertEquals(document.getBoilerplate().size(), read.getBoilerplate().size());
+        for (int i = 0; i < document.getBoilerplate().size(); i++) {
+            PdfBoilerplate entry = document.getBoilerplate().get(i);
+            PdfBoilerplate readEntry = read.getBoilerplate().get(i);
+            assertEquals(entry.getText(), readEntry.getText());
+            assertEquals(entry.getPattern(), readEntry.getPattern());
+            assertEquals(entry.getPosition(), readEntry.getPosition());
+            assertEquals(entry.getPages(), readEntry.getPages());
+            assertBox(entry.getBoundingBox(), readEntry.getBoundingBox());
+        }
+        assertEquals(document.getPages().size(), read.getPages().size());
+        for (int i = 0; i < document.getPages().size(); i++) {
+            assertPage(document.getPages().get(i), read.getPages().get(i));
+        }
+    }
+
+    @Test
+    void readsSinglePageByIndex() throws Exception {
+        PdfDocument document = parsedDocument();
+        BinaryDocumentReader reader = new BinaryDocumentReader(
+                new BinaryExporter().exportBytes(document, ExportFormat.BINARY));
+
+        assertEquals(3, reader.getPageCount());
+        assertPage(document.getPages().get(2), reader.readPage(2));
+        assertPage(document.getPages().get(0), reader.readPage(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> reader.readPage(3));
+    }
+
+    @Test
+    void roundTripsMetadataAndImages() {
+        PdfDocument document = new PdfDocument();
+        document.setFilename("images.pdf");
+        document.setTotalPages(1);
+        PdfMetadata metadata = new PdfMetadata();
+        metadata.setAuthor("Author");
+        metadata.setCreationDate(new Date(1_600_000_000_000L));
+        metadata.setCustomMetadata(Map.of("Department", "R&D"));
+        document.setMetadata(metadata);
+
+        PdfPage page = new PdfPage();
+        page.setPageNumber(1);
+        page.setWidth(595.28);
+        page.setHeight(841.89);
+        PdfImage image = new PdfImage();
+        image.setId("img-1");
+        image.setImageFormat("png");
+        image.setWidth(2);
+        image.setHeight(3);
+        image.setResolution(72);
+        image.setBoundingBox(new BoundingBox(10.25f, 20.5f, 30, 40));
+        image.setImageData(new byte[]{1, 2, 3, 4});
+        PdfImage duplicate = new PdfImage();
+        duplicate.setId("img-2");
+        duplicate.setDuplicate(true);
+        duplicate.setBlobId("blob-1");
+        page.setImages(new ArrayList<>(List.of(image, duplicate)));
+        document.setPages(List.of(page));
+
+        PdfDocument read = BinaryDocumentReader.read(new BinaryExporter().exportBytes(document, ExportFormat.BINARY));
+
+        assertEquals("images.pdf", read.getFilename());
+        assertEquals("Author", read.getMetadata().getAuthor());
+        assertNull(read.getMetadata().getTitle());
+        assertEquals(metadata.getCreationDate(), read.getMetadata().getCreationDate());
+        assertNull(read.getMetadata().getModificationDate());
+        assertEquals("R&D", read.getMetadata().getCustomMetadata().get("Department"));
+
+        PdfPage readPage = read.getPages().get(0);
+        assertEquals(595.28, readPage.getWidth(), DELTA);
+        assertNull(readPage.getVectorPaths());
+        PdfImage readImage = readPage.getImages().get(0);
+        assertEquals("img-1", readImage.getId());
+        assertEquals(2, readImage.getWidth());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, readImage.getImageData());
+        assertBox(image.getBoundingBox(), readImage.getBoundingBox());
+        assertTrue(readPage.getImages().get(1).isDuplicate());
+        assertEquals("blob-1", readPage.getImages().get(1).getBlobId());
+    }
+
+    @Test
+    void roundTripsDocumentWithoutMetadata() throws Exception {
+        PdfDocument document = parsedDocument();
+        document.setMetadata(null);
+
+        PdfDocument read = BinaryDocumentReader.read(new BinaryExporter().exportBytes(document, ExportFormat.BINARY));
+
+        assertNull(read.getMetadata());
+        assertEquals(document.getBoilerplate().size(), read.getBoilerplate().size());
+        assertEquals(document.getBoilerplate().get(0).getText(), read.getBoilerplate().get(0).getText());
+        for (int i = 0; i < document.getPages().size(); i++) {
+            assertPage(document.getPages().get(i), read.getPages().get(i));
+        }
+    }
+
+    @Test
+    void rejectsInterimVersionThree() {
+        PdfDocument document = new PdfDocument();
+        document.setPages(List.of());
+        byte[] bytes = new BinaryExporter().exportBytes(document, ExportFormat.BINARY);
+        bytes[BinaryExporter.MAGIC.length] = 3;
+
+        assertThrows(IllegalArgumentException.class, () -> new BinaryDocumentReader(bytes));
+    }
+
+    @Test
+    void rejectsOtherData() {
+        assertThrows(IllegalArgumentException.class, () -> new BinaryDocumentReader(new byte[]{'%', 'P', 'D', 'F', '-'}));
+        assertThrows(IllegalArgumentException.class, () -> new BinaryDocumentReader(new byte[0]));
+    }
+}
@@ -0,0 +1,71 @@
+package ru.sunveil.precision_pdf.pdfparser.parser;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.sunveil.precision_pdf.pdfparser.config.ExtractionConfig;
+import ru.sunveil.precision_pdf.pdfparser.config.ParserConfig;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfImage;
+import ru.sunveil.precision_pdf.pdfparser.storage.ImageBlobStore;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PdfParseFactoryTest {
+
+    @TempDir
+    Path directory;
+
+    private File pdfWithImage() throws Exception {
+        File file = directory.resolve("image.pdf").toFile();
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            BufferedImage image = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    image.setRGB(x, y, x * 0x0801 + y * 0x100000);
+                }
+            }
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.drawImage(LosslessFactory.createFromImage(document, image), 100, 500, 64, 48);
+            }
+            document.save(file);
+        }
+        return file;
+    }
+
+    private static List<PdfImage> parseImages(PdfParseFactory factory, File file, boolean externalImageStorage)
+            throws Exception {
+        ExtractionConfig config = new ExtractionConfig();
+        config.setExternalImageStorage(externalImageStorage);
+        return factory.createParser().parse(file, config).getPages().get(0).getImages();
+    }
+
+    @Test
+    void storesImagesExternallyWhenConfigured() throws Exception {
+        ImageBlobStore store = new ImageBlobStore(directory.resolve("blobs"), 1 << 20, 16);
+        PdfParseFactory factory = new PdfParseFactory(new ParserConfig(), store);
+        File file = pdfWithImage();
+
+        List<PdfImage> stored = parseImages(factory, file, true);
+        assertEquals(1, stored.size());
+        PdfImage image = stored.get(0);
+        assertNull(image.getImageData());
+        assertNotNull(image.getBlobId());
+        assertNotNull(store.find(image.getBlobId()));
+
+        PdfImage inline = parseImages(factory, file, false).get(0);
+        assertNull(inline.getBlobId());
+        assertEquals(image.getByteSize(), inline.getImageData().length);
+    }
+}
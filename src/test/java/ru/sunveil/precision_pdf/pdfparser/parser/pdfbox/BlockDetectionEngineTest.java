@@ -0,0 +1,64 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.Test;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfPage;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfTextChunk;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BlockDetectionEngineTest {
+
+    @Test
+    void splitsParagraphsAtGapsAndFontSizeChanges() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = TestPages.addPage(document,
+                    new TestPages.Text(72, 720, 18, "Heading"),
+                    new TestPages.Text(72, 690, 10, "first paragraph line one"),
+                    new TestPages.Text(72, 678, 10, "first paragraph line two"),
+                    new TestPages.Text(72, 640, 10, "second paragraph line one"),
+                    new TestPages.Text(72, 628, 10, "second paragraph line two"),
+                    new TestPages.Text(72, 616, 10, "second paragraph line three"));
+            PdfPage result = TestPages.extract(page, null);
+            new ReadingOrderEngine().apply(result);
+
+            new BlockDetectionEngine().apply(result);
+
+            List<PdfTextChunk> chunks = result.getPdfTextChunks();
+            assertEquals(3, chunks.size());
+            assertEquals(List.of(1, 2, 3), chunks.stream().map(PdfTextChunk::getLineCount).toList());
+            assertEquals(List.of(0, 1, 3), chunks.stream().map(PdfTextChunk::getLineStart).toList());
+            assertEquals("Heading", chunks.get(0).getText());
+            assertEquals("first paragraph line one\nfirst paragraph line two", chunks.get(1).getText());
+        }
+    }
+
+    @Test
+    void chunkRangesReferToPageLinesAndWords() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = TestPages.addPage(document,
+                    new TestPages.Text(72, 700, 10, "left block one"),
+                    new TestPages.Text(72, 688, 10, "left block two"),
+                    new TestPages.Text(350, 700, 10, "right block one"),
+                    new TestPages.Text(350, 688, 10, "right block two"));
+            PdfPage result = TestPages.extract(page, null);
+            new ReadingOrderEngine().apply(result);
+
+            new BlockDetectionEngine().apply(result);
+
+            assertEquals(2, result.getPdfTextChunks().size());
+            for (PdfTextChunk chunk : result.getPdfTextChunks()) {
+                for (int i = 0; i < chunk.getLineCount(); i++) {
+                    assertSame(result.getTextLines().get(chunk.getLineStart() + i), chunk.getLines().get(i));
+                }
+                for (int i = 0; i < chunk.getWordCount(); i++) {
+                    assertEquals(chunk.getWordStart() + i, result.getWords().get(chunk.getWordStart() + i).getId());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfBoilerplate;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfPage;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfTextChunk;
+import ru.sunveil.precision_pdf.pdfparser.model.TextLine;
+import ru.sunveil.precision_pdf.pdfparser.parser.BoilerplateMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoilerplateDetectorTest {
+
+    private static final int PAGES = 4;
+
+    /**
+     * Pages with a running header, a numbered footer and a different body on each page
+     */
+    private static List<PdfPage> pages(PDDocument document) throws Exception {
+        ReadingOrderEngine readingOrder = new ReadingOrderEngine();
+        BlockDetectionEngine blocks = new BlockDetectionEngine();
+        List<PdfPage> pages = new ArrayList<>();
+        for (int p = 1; p <= PAGES; p++) {
+            TestPages.addPage(document,
+                    new TestPages.Text(72, 760, 9, "ACME Annual Report"),
+                    new TestPages.Text(72, 500, 11, "Body text of page " + "abcd".charAt(p - 1)),
+                    new TestPages.Text(72, 486, 11, "continues here on page " + "abcd".charAt(p - 1)),
+                    new TestPages.Text(280, 30, 9, "Page " + p + " of " + PAGES));
+            PdfPage page = TestPages.extract(document.getPage(p - 1), null);
+            page.setPageNumber(p);
+            readingOrder.apply(page);
+            blocks.apply(page);
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    @Test
+    void detectsRunningHeaderAndPageNumbers() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            List<PdfBoilerplate> boilerplate = new BoilerplateDetector().detect(pages(document), BoilerplateMode.FLAG);
+
+            assertEquals(2, boilerplate.size());
+            assertEquals("HEADER", boilerplate.get(0).getPosition());
+            assertEquals("ACME Annual Report", boilerplate.get(0).getText());
+            assertEquals("FOOTER", boilerplate.get(1).getPosition());
+            assertEquals("page # of #", boilerplate.get(1).getPattern());
+            assertEquals(List.of(1, 2, 3, 4), boilerplate.get(1).getPages());
+        }
+    }
+
+    @Test
+    void flagModeMarksLinesAndChunks() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            List<PdfPage> pages = pages(document);
+
+            new BoilerplateDetector().detect(pages, BoilerplateMode.FLAG);
+
+            for (PdfPage page : pages) {
+                List<TextLine> lines = page.getTextLines();
+                assertEquals(4, lines.size());
+                assertEquals(List.of(true, false, false, true), lines.stream().map(TextLine::isBoilerplate).toList());
+                for (PdfTextChunk chunk : page.getPdfTextChunks()) {
+                    assertEquals(lines.get(chunk.getLineStart()).isBoilerplate(), chunk.isBoilerplate());
+                }
+            }
+        }
+    }
+
+    @Test
+    void removeModeDropsLinesAndRemapsRanges() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            List<PdfPage> pages = pages(document);
+
+            new BoilerplateDetector().detect(pages, BoilerplateMode.REMOVE);
+
+            for (PdfPage page : pages) {
+                assertEquals(2, page.getTextLines().size());
+                assertFalse(page.getTextLines().stream().anyMatch(TextLine::isBoilerplate));
+                assertTrue(page.getWords().stream().noneMatch(w -> w.getText().equals("ACME")));
+                for (PdfTextChunk chunk : page.getPdfTextChunks()) {
+                    for (int i = 0; i < chunk.getLineCount(); i++) {
+                        assertSame(page.getTextLines().get(chunk.getLineStart() + i), chunk.getLines().get(i));
+                    }
+                    for (int i = 0; i < chunk.getWordCount(); i++) {
+                        assertEquals(chunk.getWordStart() + i, page.getWords().get(chunk.getWordStart() + i).getId());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void needsAtLeastThreePages() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            List<PdfPage> pages = pages(document);
+
+            assertTrue(new BoilerplateDetector().detect(pages.subList(0, 2), BoilerplateMode.FLAG).isEmpty());
+            assertTrue(new BoilerplateDetector().detect(pages, BoilerplateMode.OFF).isEmpty());
+            assertFalse(pages.get(0).getTextLines().get(0).isBoilerplate());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.Test;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfPage;
+import ru.sunveil.precision_pdf.pdfparser.model.Word;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GlyphDeduplicatorTest {
+
+    @Test
+    void detectsGlyphsWithinTolerance() {
+        GlyphDeduplicator deduplicator = new GlyphDeduplicator(0.33f);
+        int a = "a".hashCode();
+
+        assertFalse(deduplicator.isDuplicate(a, 100, 100, 6, 12));
+        assertTrue(deduplicator.isDuplicate(a, 101, 100.5f, 6, 12));
+        // Farther than a third of the width
+        assertFalse(deduplicator.isDuplicate(a, 103, 100, 6, 12));
+        // Same position, other text
+        assertFalse(deduplicator.isDuplicate("b".hashCode(), 100, 100, 6, 12));
+    }
+
+    @Test
+    void detectsDuplicatesAcrossGridCells() {
+        GlyphDeduplicator deduplicator = new GlyphDeduplicator(0.33f);
+        int a = "a".hashCode();
+
+        // Tolerance 1.98 gives cells of 2 units, the glyphs lie on both sides of a cell border
+        assertFalse(deduplicator.isDuplicate(a, 63.9f, 63.9f, 6, 12));
+        assertTrue(deduplicator.isDuplicate(a, 64.1f, 64.1f, 6, 12));
+    }
+
+    @Test
+    void resetForgetsSeenGlyphs() {
+        GlyphDeduplicator deduplicator = new GlyphDeduplicator(0.33f);
+        int a = "a".hashCode();
+
+        assertFalse(deduplicator.isDuplicate(a, 10, 10, 6, 12));
+        deduplicator.reset();
+        assertFalse(deduplicator.isDuplicate(a, 10, 10, 6, 12));
+    }
+
+    @Test
+    void zeroWidthGlyphsUseFontSize() {
+        GlyphDeduplicator deduplicator = new GlyphDeduplicator(0.33f);
+        int a = "a".hashCode();
+
+        assertFalse(deduplicator.isDuplicate(a, 10, 10, 0, 12));
+        assertTrue(deduplicator.isDuplicate(a, 11, 10, 0, 12));
+    }
+
+    @Test
+    void removesFakeBoldFromPage() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = TestPages.addPage(document,
+                    new TestPages.Text(72, 700, 12, "Bold heading"),
+                    new TestPages.Text(72.3f, 700, 12, "Bold heading"),
+                    new TestPages.Text(72, 680, 12, "Regular text"));
+
+            PdfPage doubled = TestPages.extract(page, null);
+            PdfPage deduplicated = TestPages.extract(page, new GlyphDeduplicator(0.33f));
+
+            assertEquals("BBoolldd", doubled.getWords().get(0).getText());
+            assertEquals(List.of("Bold", "heading", "Regular", "text"),
+                    deduplicated.getWords().stream().map(Word::getText).toList());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GlyphMetricsCacheTest {
+
+    private static final String LIBERATION_SANS = "/org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf";
+
+    /**
+     * Saves a page showing the text with Liberation Sans embedded as a subset and returns the saved bytes
+     */
+    private static byte[] documentWithText(String text) throws IOException {
+        try (PDDocument document = new PDDocument();
+             InputStream font = GlyphMetricsCacheTest.class.getResourceAsStream(LIBERATION_SANS)) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.beginText();
+                content.setFont(PDType0Font.load(document, font), 12);
+                content.newLineAtOffset(72, 700);
+                content.showText(text);
+                content.endText();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static PDFont firstFont(PDDocument document) throws IOException {
+        PDPage page = document.getPage(0);
+        return page.getResources().getFont(page.getResources().getFontNames().iterator().next());
+    }
+
+    private static int code(PDFont font, String character) throws IOException {
+        return font.readCode(new ByteArrayInputStream(font.encode(character)));
+    }
+
+    @Test
+    void cachesGlyphExtents() throws Exception {
+        try (PDDocument document = Loader.loadPDF(documentWithText("Hg "))) {
+            PDFont font = firstFont(document);
+            long fontKey = GlyphMetricsCache.fontKey(font);
+            GlyphMetricsCache cache = new GlyphMetricsCache(1024);
+
+            long capital = cache.getBounds(font, fontKey, code(font, "H"));
+            assertTrue(GlyphMetricsCache.isKnown(capital));
+            assertEquals(0, GlyphMetricsCache.bottom(capital), 0.01f);
+            assertEquals(0.69f, GlyphMetricsCache.top(capital), 0.03f);
+            long descender = cache.getBounds(font, fontKey, code(font, "g"));
+            assertTrue(GlyphMetricsCache.bottom(descender) < -0.15f);
+            // A space has no outline
+            assertFalse(GlyphMetricsCache.isKnown(cache.getBounds(font, fontKey, code(font, " "))));
+            assertEquals(3, cache.size());
+            assertEquals(0, cache.getHitRate());
+
+            assertEquals(capital, cache.getBounds(font, fontKey, code(font, "H")));
+            assertEquals(3, cache.size());
+            assertEquals(0.25, cache.getHitRate(), 1e-9);
+        }
+    }
+
+    @Test
+    void clearsWhenFull() throws Exception {
+        try (PDDocument document = Loader.loadPDF(documentWithText("abc"))) {
+            PDFont font = firstFont(document);
+            long fontKey = GlyphMetricsCache.fontKey(font);
+            GlyphMetricsCache cache = new GlyphMetricsCache(2);
+
+            cache.getBounds(font, fontKey, code(font, "a"));
+            cache.getBounds(font, fontKey, code(font, "b"));
+            cache.getBounds(font, fontKey, code(font, "c"));
+
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    void fingerprintsFontsByContent() throws Exception {
+        byte[] bytes = documentWithText("Heading");
+        try (PDDocument first = Loader.loadPDF(bytes);
+             PDDocument second = Loader.loadPDF(bytes);
+             PDDocument otherSubset = Loader.loadPDF(documentWithText("Other text"))) {
+            PDFont font = firstFont(first);
+            PDFont sameFont = firstFont(second);
+            PDFont otherFont = firstFont(otherSubset);
+
+            // The same embedded font in another document, not the same objects
+            assertEquals(GlyphMetricsCache.fontKey(font), GlyphMetricsCache.fontKey(sameFont));
+
+            // Another subset under the same name differs by its program
+            otherFont.getCOSObject().setItem(COSName.BASE_FONT, font.getCOSObject().getItem(COSName.BASE_FONT));
+            ((PDType0Font) otherFont).getDescendantFont().getCOSObject().setItem(COSName.BASE_FONT,
+                    ((PDType0Font) font).getDescendantFont().getCOSObject().getItem(COSName.BASE_FONT));
+            assertNotEquals(GlyphMetricsCache.fontKey(font), GlyphMetricsCache.fontKey(otherFont));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.jupiter.api.Test;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfImage;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageExtractionEngineTest {
+
+    private static PDImageXObject image(PDDocument document, int width, int height, int rgb) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, rgb ^ (x * 7 + y * 13));
+            }
+        }
+        return LosslessFactory.createFromImage(document, image);
+    }
+
+    private static List<PageContentCollector.ImagePlacement> placements(PDPage page) throws Exception {
+        PageContentCollector collector = new PageContentCollector();
+        new ContentStreamEngine(page).process(1, collector);
+        return collector.getImagePlacements();
+    }
+
+    @Test
+    void encodesDecodedImagesAndFillsPendingDuplicates() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            PDImageXObject first = image(document, 40, 30, 0x336699);
+            PDImageXObject second = image(document, 20, 50, 0x996633);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.drawImage(first, 50, 600, 40, 30);
+                content.drawImage(second, 150, 600, 20, 50);
+                content.drawImage(first, 50, 400, 80, 60);
+            }
+
+            ImageExtractionEngine engine = new ImageExtractionEngine(150, 2048, true, new EncodedImageCache(1 << 20));
+            List<PdfImage> images = engine.extractPlacedImages(document, 1, placements(page));
+
+            assertEquals(3, images.size());
+            for (int i = 0; i < 2; i++) {
+                PdfImage image = images.get(i);
+                assertFalse(image.isDuplicate());
+                assertEquals("PNG", image.getImageFormat());
+                assertEquals(image.getImageData().length, image.getByteSize());
+                BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(image.getImageData()));
+                assertEquals(image.getWidth(), decoded.getWidth());
+                assertEquals(image.getHeight(), decoded.getHeight());
+            }
+
+            PdfImage duplicate = images.get(2);
+            assertTrue(duplicate.isDuplicate());
+            assertEquals(images.get(0).getId(), duplicate.getId());
+            assertNull(duplicate.getImageData());
+            assertEquals("PNG", duplicate.getImageFormat());
+            assertEquals(images.get(0).getByteSize(), duplicate.getByteSize());
+            assertEquals(images.get(0).getMimeType(), duplicate.getMimeType());
+            assertEquals(new BoundingBox(50, 400, 80, 60), duplicate.getBoundingBox());
+        }
+    }
+
+    @Test
+    void reusesEncodedImagesOnLaterPages() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            PDImageXObject shared = image(document, 16, 16, 0x123456);
+            for (int p = 0; p < 2; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.drawImage(shared, 100, 100);
+                }
+            }
+
+            EncodedImageCache cache = new EncodedImageCache(1 << 20);
+            ImageExtractionEngine engine = new ImageExtractionEngine(150, 2048, true, cache);
+            PdfImage onFirst = engine.extractImagesFromPage(document, 1).get(0);
+            PdfImage onSecond = engine.extractImagesFromPage(document, 2).get(0);
+
+            assertNotNull(onFirst.getImageData());
+            assertTrue(cache.getCurrentBytes() > 0);
+            assertTrue(onSecond.isDuplicate());
+            assertEquals(onFirst.getByteSize(), onSecond.getByteSize());
+        }
+    }
+}
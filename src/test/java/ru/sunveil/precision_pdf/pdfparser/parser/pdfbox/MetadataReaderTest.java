@@ -0,0 +1,114 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.sunveil.precision_pdf.pdfparser.exceptions.PdfParseException;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfMetadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MetadataReaderTest {
+
+    private static final String XMP = "<?xpacket begin='' id='W5M0MpCehiHzreSzNTczkc9d'?>"
+            + "<x:xmpmeta xmlns:x='adobe:ns:meta/'>"
+            + "<rdf:RDF xmlns:rdf='http://www.w3.org/1999/02/22-rdf-syntax-ns#'>"
+            + "<rdf:Description rdf:about='' xmlns:pdf='http://ns.adobe.com/pdf/1.3/'"
+            + " xmlns:xmp='http://ns.adobe.com/xap/1.0/' pdf:Producer='XMP Producer'"
+            + " xmp:CreateDate='2021-03-04T05:06:07Z'>"
+            + "<xmp:CreatorTool>XMP Tool</xmp:CreatorTool></rdf:Description>"
+            + "<rdf:Description rdf:about='' xmlns:dc='http://purl.org/dc/elements/1.1/'>"
+            + "<dc:title><rdf:Alt><rdf:li xml:lang='de'>Titel</rdf:li>"
+            + "<rdf:li xml:lang='x-default'>Title</rdf:li></rdf:Alt></dc:title>"
+            + "<dc:creator><rdf:Seq><rdf:li>First</rdf:li><rdf:li>Second</rdf:li></rdf:Seq></dc:creator>"
+            + "</rdf:Description></rdf:RDF></x:xmpmeta><?xpacket end='w'?>";
+
+    @TempDir
+    Path tempDir;
+
+    private File save(PDDocument document) throws Exception {
+        File file = tempDir.resolve("metadata.pdf").toFile();
+        document.save(file);
+        return file;
+    }
+
+    @Test
+    void readsInfoDictionaryAndCustomKeys() throws Exception {
+        File file;
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < 3; i++) {
+                document.addPage(new PDPage());
+            }
+            PDDocumentInformation info = document.getDocumentInformation();
+            info.setTitle("Info Title");
+            info.setAuthor("Info Author");
+            info.setCustomMetadataValue("Department", "R&D");
+            info.getCOSObject().setInt(COSName.getPDFName("Revision"), 7);
+            info.getCOSObject().setName(COSName.TRAPPED, "False");
+            file = save(document);
+        }
+
+        PdfMetadata metadata = new MetadataReader().read(file);
+
+        assertEquals("Info Title", metadata.getTitle());
+        assertEquals("Info Author", metadata.getAuthor());
+        assertEquals(3, metadata.getPageCount());
+        assertEquals("R&D", metadata.getCustomMetadata().get("Department"));
+        assertEquals("7", metadata.getCustomMetadata().get("Revision"));
+        assertEquals("False", metadata.getCustomMetadata().get("Trapped"));
+    }
+
+    @Test
+    void fillsMissingFieldsFromXmp() throws Exception {
+        File file;
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            document.getDocumentInformation().setAuthor("Info Author");
+            document.getDocumentCatalog().setMetadata(
+                    new PDMetadata(document, new ByteArrayInputStream(XMP.getBytes(StandardCharsets.UTF_8))));
+            file = save(document);
+        }
+
+        PdfMetadata metadata = new MetadataReader().read(file);
+
+        assertEquals("Title", metadata.getTitle());
+        assertEquals("Info Author", metadata.getAuthor());
+        assertEquals("XMP Tool", metadata.getCreator());
+        assertEquals(Instant.parse("2021-03-04T05:06:07Z"), metadata.getCreationDate().toInstant());
+        assertNull(metadata.getCustomMetadata());
+    }
+
+    @Test
+    void joinsXmpCreatorsWhenInfoHasNoAuthor() throws Exception {
+        File file;
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            document.getDocumentCatalog().setMetadata(
+                    new PDMetadata(document, new ByteArrayInputStream(XMP.getBytes(StandardCharsets.UTF_8))));
+            file = save(document);
+        }
+
+        assertEquals("First, Second", new MetadataReader().read(file).getAuthor());
+    }
+
+    @Test
+    void failsWithParseExceptionOnBrokenFile() throws Exception {
+        File file = tempDir.resolve("broken.pdf").toFile();
+        Files.writeString(file.toPath(), "not a pdf");
+
+        assertThrows(PdfParseException.class, () -> new MetadataReader().read(file));
+    }
+}
@@ -0,0 +1,118 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.sunveil.precision_pdf.pdfparser.config.ExtractionConfig;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfValidationReport;
+import ru.sunveil.precision_pdf.pdfparser.parser.SimpleParser;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PdfStructureValidatorTest {
+
+    private static final String CATALOG = "<< /Type /Catalog /Pages 2 0 R >>";
+    private static final String PAGE = "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 200 200] >>";
+
+    @TempDir
+    Path tempDir;
+
+    private final PdfStructureValidator validator = new PdfStructureValidator(1 << 20, 5000);
+
+    /**
+     * Builds a PDF with a classic cross-reference table. Objects are numbered from 1 in the
+     * given order; the offset of {@code staleObject} is written 7 bytes too far when it is above 0.
+     */
+    private static byte[] pdf(int staleObject, String... objects) {
+        StringBuilder out = new StringBuilder("%PDF-1.7\n");
+        long[] offsets = new long[objects.length + 1];
+        for (int i = 0; i < objects.length; i++) {
+            offsets[i + 1] = out.length();
+            out.append(i + 1).append(" 0 obj\n").append(objects[i]).append("\nendobj\n");
+        }
+        if (staleObject > 0) {
+            offsets[staleObject] += 7;
+        }
+        long xref = out.length();
+        out.append("xref\n0 ").append(objects.length + 1).append("\n0000000000 65535 f \n");
+        for (int i = 1; i <= objects.length; i++) {
+            out.append(String.format("%010d 00000 n \n", offsets[i]));
+        }
+        out.append("trailer\n<< /Size ").append(objects.length + 1).append(" /Root 1 0 R >>\n")
+                .append("startxref\n").append(xref).append("\n%%EOF\n");
+        return out.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean hasIssue(PdfValidationReport report, PdfValidationReport.Issue issue) {
+        return report.getFindings().stream().anyMatch(f -> f.getIssue() == issue);
+    }
+
+    @Test
+    void wellFormedFileIsValid() {
+        PdfValidationReport report = validator.validate(
+                pdf(0, CATALOG, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>", PAGE));
+
+        assertTrue(report.isValid(), () -> report.getFindings().toString());
+        assertTrue(report.isComplete());
+        assertEquals("1.7", report.getPdfVersion());
+        assertEquals(1, report.getPageCount());
+        assertEquals(3, report.getObjectCount());
+    }
+
+    @Test
+    void resolvesIndirectKidsArray() {
+        PdfValidationReport report = validator.validate(
+                pdf(0, CATALOG, "<< /Type /Pages /Kids 4 0 R /Count 1 >>", PAGE, "[3 0 R]"));
+
+        assertTrue(report.isValid(), () -> report.getFindings().toString());
+        assertFalse(hasIssue(report, PdfValidationReport.Issue.PAGE_COUNT_MISMATCH));
+    }
+
+    @Test
+    void staleOffsetOfPageTreeRootIsRepairable() {
+        PdfValidationReport report = validator.validate(
+                pdf(2, CATALOG, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>", PAGE));
+
+        assertFalse(report.isValid());
+        assertTrue(report.isRepairable(), () -> report.getFindings().toString());
+        assertTrue(hasIssue(report, PdfValidationReport.Issue.OBJECT_OFFSET_MISMATCH));
+        assertFalse(hasIssue(report, PdfValidationReport.Issue.NO_OBJECTS));
+    }
+
+    @Test
+    void parserAcceptsFileWithStaleOffset() throws Exception {
+        File file = tempDir.resolve("stale.pdf").toFile();
+        Files.write(file.toPath(), pdf(2, CATALOG, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>", PAGE));
+
+        SimpleParser parser = new SimpleParser();
+        parser.setStructureValidator(validator);
+
+        assertEquals(1, parser.parse(file, new ExtractionConfig()).getTotalPages());
+    }
+
+    @Test
+    void reportsPageCountMismatch() {
+        PdfValidationReport report = validator.validate(
+                pdf(0, CATALOG, "<< /Type /Pages /Kids [3 0 R] /Count 2 >>", PAGE));
+
+        assertTrue(hasIssue(report, PdfValidationReport.Issue.PAGE_COUNT_MISMATCH));
+        assertTrue(report.isRepairable());
+    }
+
+    @Test
+    void rejectsNonPdfAndEmptyInput() {
+        PdfValidationReport notPdf = validator.validate("plain text".getBytes(StandardCharsets.US_ASCII));
+        assertTrue(hasIssue(notPdf, PdfValidationReport.Issue.NOT_PDF));
+        assertFalse(notPdf.isRepairable());
+
+        PdfValidationReport empty = validator.validate(new byte[0]);
+        assertTrue(hasIssue(empty, PdfValidationReport.Issue.EMPTY_FILE));
+        assertFalse(empty.isRepairable());
+    }
+}
@@ -0,0 +1,65 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.Test;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfPage;
+import ru.sunveil.precision_pdf.pdfparser.model.TextLine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ReadingOrderEngineTest {
+
+    private static PDPage twoColumnPage(PDDocument document) throws Exception {
+        List<TestPages.Text> texts = new ArrayList<>();
+        texts.add(new TestPages.Text(50, 740, 10, "A title spanning both of the columns of this page"));
+        for (int i = 0; i < 4; i++) {
+            texts.add(new TestPages.Text(50, 700 - i * 12, 10, "left column line " + i));
+            texts.add(new TestPages.Text(320, 700 - i * 12, 10, "right column line " + i));
+        }
+        texts.add(new TestPages.Text(50, 600, 10, "A footer spanning both of the columns of this page"));
+        return TestPages.addPage(document, texts.toArray(TestPages.Text[]::new));
+    }
+
+    @Test
+    void readsColumnsOneAfterAnother() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            PdfPage page = TestPages.extract(twoColumnPage(document), null);
+
+            ReadingOrderEngine engine = new ReadingOrderEngine();
+            engine.apply(page);
+
+            assertEquals(List.of(
+                    "A title spanning both of the columns of this page",
+                    "left column line 0", "left column line 1", "left column line 2", "left column line 3",
+                    "right column line 0", "right column line 1", "right column line 2", "right column line 3",
+                    "A footer spanning both of the columns of this page"), TestPages.lineTexts(page));
+            assertEquals(4, engine.getBlockCount());
+        }
+    }
+
+    @Test
+    void numbersLinesAndKeepsWordRanges() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            PdfPage page = TestPages.extract(twoColumnPage(document), null);
+
+            new ReadingOrderEngine().apply(page);
+
+            List<TextLine> lines = page.getTextLines();
+            int words = 0;
+            for (int i = 0; i < lines.size(); i++) {
+                TextLine line = lines.get(i);
+                assertEquals(i, line.getReadingOrder());
+                for (int k = 0; k < line.getWordCount(); k++) {
+                    assertSame(page.getWords().get(line.getWordStart() + k), line.getWords().get(k));
+                }
+                words += line.getWordCount();
+            }
+            assertEquals(page.getWords().size(), words);
+        }
+    }
+}
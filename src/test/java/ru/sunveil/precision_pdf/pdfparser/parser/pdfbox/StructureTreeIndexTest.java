@@ -0,0 +1,164 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDMarkInfo;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureElement;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureTreeRoot;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDPropertyList;
+import org.apache.pdfbox.util.Matrix;
+import org.junit.jupiter.api.Test;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfTextChunk;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StructureTreeIndexTest {
+
+    private static void beginMarkedContent(PDPageContentStream content, String tag, int mcid) throws IOException {
+        COSDictionary properties = new COSDictionary();
+        properties.setInt(COSName.MCID, mcid);
+        content.beginMarkedContent(COSName.getPDFName(tag), PDPropertyList.create(properties));
+    }
+
+    private static void showText(PDPageContentStream content, float x, float y, String text) throws IOException {
+        content.setTextMatrix(Matrix.getTranslateInstance(x, y));
+        content.showText(text);
+    }
+
+    private static PDStructureElement element(PDStructureElement parent, String type, PDPage page, int mcid) {
+        PDStructureElement element = new PDStructureElement(type, parent);
+        element.setPage(page);
+        element.appendKid(mcid);
+        parent.appendKid(element);
+        return element;
+    }
+
+    /**
+     * Page whose content stream draws the last paragraph first, followed by the heading,
+     * the first paragraph with an inline span and an untagged page number
+     */
+    private static PDPage taggedPage(PDDocument document) throws IOException {
+        PDPage page = new PDPage();
+        document.addPage(page);
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            content.beginText();
+            content.setFont(TestPages.HELVETICA, 10);
+            beginMarkedContent(content, "P", 2);
+            showText(content, 50, 600, "second paragraph line one");
+            showText(content, 50, 588, "second paragraph line two");
+            content.endMarkedContent();
+            beginMarkedContent(content, "H1", 0);
+            showText(content, 50, 740, "Heading");
+            content.endMarkedContent();
+            beginMarkedContent(content, "P", 1);
+            showText(content, 50, 700, "first paragraph with ");
+            content.endMarkedContent();
+            beginMarkedContent(content, "Span", 3);
+            content.showText("a span inside");
+            content.endMarkedContent();
+            showText(content, 300, 30, "page 1");
+            content.endText();
+        }
+
+        PDStructureTreeRoot root = new PDStructureTreeRoot();
+        document.getDocumentCatalog().setStructureTreeRoot(root);
+        PDStructureElement body = new PDStructureElement("Document", root);
+        root.appendKid(body);
+        element(body, "H1", page, 0);
+        PDStructureElement paragraph = element(body, "P", page, 1);
+        element(paragraph, "Span", page, 3);
+        element(body, "P", page, 2);
+        PDMarkInfo markInfo = new PDMarkInfo();
+        markInfo.setMarked(true);
+        document.getDocumentCatalog().setMarkInfo(markInfo);
+        return page;
+    }
+
+    private static List<PdfTextChunk> extractTagged(PDPage page, StructureTreeIndex.PageContent content)
+            throws IOException {
+        GlyphBuffer glyphs = new GlyphBuffer();
+        new ContentStreamEngine(page).process(1, glyphs);
+        PrecisionTextEngine engine = new PrecisionTextEngine();
+        engine.extractTaggedPage(glyphs, content);
+        return engine.getTextChunks();
+    }
+
+    @Test
+    void indexesMarkedContentInStructureOrder() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = taggedPage(document);
+
+            StructureTreeIndex.PageContent content = StructureTreeIndex.read(document).getPage(page);
+
+            assertEquals(4, content.getMarkedContentCount());
+            assertEquals(0, content.getOrder(0));
+            assertEquals(1, content.getOrder(1));
+            assertEquals(2, content.getOrder(3));
+            assertEquals(3, content.getOrder(2));
+            assertEquals(-1, content.getOrder(7));
+            // The span belongs to its paragraph
+            assertEquals(content.getBlock(1), content.getBlock(3));
+            assertEquals("P", content.getBlockType(content.getBlock(3)));
+            assertEquals("H1", content.getBlockType(content.getBlock(0)));
+        }
+    }
+
+    @Test
+    void buildsChunksInStructureOrder() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = taggedPage(document);
+
+            List<PdfTextChunk> chunks = extractTagged(page, StructureTreeIndex.read(document).getPage(page));
+
+            assertEquals(4, chunks.size());
+            assertEquals("H1", chunks.get(0).getStructureType());
+            assertEquals("Heading", chunks.get(0).getText());
+            assertEquals("P", chunks.get(1).getStructureType());
+            assertEquals("first paragraph with a span inside", chunks.get(1).getText());
+            assertEquals("P", chunks.get(2).getStructureType());
+            assertEquals(2, chunks.get(2).getLines().size());
+            // Content outside the tree comes last
+            assertNull(chunks.get(3).getStructureType());
+            assertEquals("page 1", chunks.get(3).getText());
+            for (int i = 0; i < chunks.size(); i++) {
+                assertEquals(i, chunks.get(i).getReadingOrder());
+            }
+        }
+    }
+
+    @Test
+    void untaggedPagesFallBackToGeometry() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            taggedPage(document);
+            PDPage untagged = TestPages.addPage(document,
+                    new TestPages.Text(50, 600, 10, "lower line"),
+                    new TestPages.Text(50, 700, 10, "upper line"));
+
+            StructureTreeIndex index = StructureTreeIndex.read(document);
+            assertNotNull(index);
+            assertNull(index.getPage(untagged));
+            assertEquals(List.of("upper line", "lower line"), TestPages.lineTexts(TestPages.extract(untagged, null)));
+        }
+    }
+
+    @Test
+    void ignoresDocumentsWithoutUsableTree() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            TestPages.addPage(document, new TestPages.Text(50, 700, 10, "plain"));
+            assertNull(StructureTreeIndex.read(document));
+        }
+        try (PDDocument document = new PDDocument()) {
+            taggedPage(document);
+            document.getDocumentCatalog().getMarkInfo().setMarked(false);
+            assertNull(StructureTreeIndex.read(document));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.util.Matrix;
+import org.junit.jupiter.api.Test;
+import ru.sunveil.precision_pdf.pdfparser.model.Table;
+import ru.sunveil.precision_pdf.pdfparser.model.TableCell;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TableExtractionEngineTest {
+
+    private static final float LEFT = 50;
+    private static final float TOP = 700;
+    private static final float CELL_WIDTH = 80;
+    private static final float CELL_HEIGHT = 16;
+
+    /**
+     * Draws a ruled grid with the text "r{row}c{column}" in every cell. With a spanning header
+     * the first row has one cell across all columns; the grid is drawn either as separate
+     * lines or as one rectangle per cell.
+     */
+    private static PDPage grid(PDDocument document, int rows, int columns,
+                               boolean spanningHeader, boolean cellRectangles) throws Exception {
+        PDPage page = new PDPage();
+        document.addPage(page);
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            content.setLineWidth(0.5f);
+            if (cellRectangles) {
+                for (int r = 0; r < rows; r++) {
+                    for (int c = 0; c < columns; c++) {
+                        if (spanningHeader && r == 0 && c > 0) {
+                            continue;
+                        }
+                        float width = spanningHeader && r == 0 ? columns * CELL_WIDTH : CELL_WIDTH;
+                        content.addRect(LEFT + c * CELL_WIDTH, TOP - (r + 1) * CELL_HEIGHT, width, CELL_HEIGHT);
+                    }
+                }
+            } else {
+                for (int r = 0; r <= rows; r++) {
+                    content.moveTo(LEFT, TOP - r * CELL_HEIGHT);
+                    content.lineTo(LEFT + columns * CELL_WIDTH, TOP - r * CELL_HEIGHT);
+                }
+                for (int c = 0; c <= columns; c++) {
+                    boolean inner = c > 0 && c < columns;
+                    content.moveTo(LEFT + c * CELL_WIDTH, spanningHeader && inner ? TOP - CELL_HEIGHT : TOP);
+                    content.lineTo(LEFT + c * CELL_WIDTH, TOP - rows * CELL_HEIGHT);
+                }
+            }
+            content.stroke();
+
+            content.beginText();
+            content.setFont(TestPages.HELVETICA, 9);
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    if (spanningHeader && r == 0 && c > 0) {
+                        continue;
+                    }
+                    content.setTextMatrix(Matrix.getTranslateInstance(
+                            LEFT + c * CELL_WIDTH + 3, TOP - (r + 1) * CELL_HEIGHT + 4));
+                    content.showText("r" + r + "c" + c);
+                }
+            }
+            content.endText();
+        }
+        return page;
+    }
+
+    private static List<Table> extract(PDPage page) throws Exception {
+        RulingCollector rulings = new RulingCollector();
+        GlyphBuffer glyphs = new GlyphBuffer();
+        new ContentStreamEngine(page).process(1, rulings, glyphs);
+        PrecisionTextEngine text = new PrecisionTextEngine();
+        text.extractPage(glyphs);
+        return new TableExtractionEngine().extractTables(rulings, text.getWords(), 1);
+    }
+
+    @Test
+    void reconstructsGridFromLines() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            List<Table> tables = extract(grid(document, 3, 4, false, false));
+
+            assertEquals(1, tables.size());
+            Table table = tables.get(0);
+            assertEquals(3, table.getRowCount());
+            assertEquals(4, table.getColumnCount());
+            for (int r = 0; r < 3; r++) {
+                List<TableCell> row = table.getRows().get(r);
+                assertEquals(4, row.size());
+                for (int c = 0; c < 4; c++) {
+                    assertEquals(r, row.get(c).getRow());
+                    assertEquals(c, row.get(c).getColumn());
+                    assertEquals("r" + r + "c" + c, row.get(c).getContent());
+                }
+            }
+            assertEquals(LEFT, table.getBoundingBox().getX(), 1);
+            assertEquals(4 * CELL_WIDTH, table.getBoundingBox().getWidth(), 1);
+            assertEquals(3 * CELL_HEIGHT, table.getBoundingBox().getHeight(), 1);
+        }
+    }
+
+    @Test
+    void detectsSpanningCellsFromLinesAndRectangles() throws Exception {
+        for (boolean cellRectangles : new boolean[]{false, true}) {
+            try (PDDocument document = new PDDocument()) {
+                List<Table> tables = extract(grid(document, 4, 3, true, cellRectangles));
+
+                assertEquals(1, tables.size());
+                Table table = tables.get(0);
+                assertEquals(4, table.getRowCount());
+                assertEquals(3, table.getColumnCount());
+                TableCell header = table.getRows().get(0).get(0);
+                assertEquals(1, table.getRows().get(0).size());
+                assertEquals(3, header.getColSpan());
+                assertEquals(1, header.getRowSpan());
+                assertEquals("r0c0", header.getContent());
+                assertEquals("r3c2", table.getRows().get(3).get(2).getContent());
+            }
+        }
+    }
+
+    @Test
+    void findsNoTableWithoutRulings() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = TestPages.addPage(document, new TestPages.Text(72, 700, 10, "no table here"));
+
+            assertTrue(extract(page).isEmpty());
+        }
+    }
+}
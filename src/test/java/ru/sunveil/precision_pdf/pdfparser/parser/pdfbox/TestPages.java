@@ -0,0 +1,73 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.util.Matrix;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfPage;
+import ru.sunveil.precision_pdf.pdfparser.model.TextLine;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Builds single page test documents and runs them through the content stream pass
+ */
+final class TestPages {
+
+    static final PDType1Font HELVETICA = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+
+    /**
+     * Text drawn at a position in PDF user space
+     */
+    record Text(float x, float y, float fontSize, String text) {
+    }
+
+    private TestPages() {
+        // Utility class
+    }
+
+    static PDPage addPage(PDDocument document, Text... texts) throws IOException {
+        PDPage page = new PDPage();
+        document.addPage(page);
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            content.beginText();
+            for (Text text : texts) {
+                content.setFont(HELVETICA, text.fontSize());
+                content.setTextMatrix(Matrix.getTranslateInstance(text.x(), text.y()));
+                content.showText(text.text());
+            }
+            content.endText();
+        }
+        return page;
+    }
+
+    /**
+     * Extracts the words, lines and chunks of a page the way {@code SimpleParser} does
+     * without a structure tree
+     */
+    static PdfPage extract(PDPage page, GlyphDeduplicator deduplicator) throws IOException {
+        GlyphBuffer glyphs = new GlyphBuffer();
+        new ContentStreamEngine(page).process(1, glyphs);
+        if (deduplicator != null) {
+            deduplicator.deduplicate(glyphs);
+        }
+        PrecisionTextEngine engine = new PrecisionTextEngine();
+        engine.extractPage(glyphs);
+
+        PdfPage result = new PdfPage();
+        result.setPageNumber(1);
+        result.setWidth(page.getCropBox().getWidth());
+        result.setHeight(page.getCropBox().getHeight());
+        result.setWords(engine.getWords());
+        result.setTextLines(engine.getTextLines());
+        result.setPdfTextChunks(engine.getTextChunks());
+        return result;
+    }
+
+    static List<String> lineTexts(PdfPage page) {
+        return page.getTextLines().stream().map(TextLine::getText).toList();
+    }
+}
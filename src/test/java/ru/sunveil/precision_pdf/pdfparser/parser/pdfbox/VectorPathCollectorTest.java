@@ -0,0 +1,97 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.junit.jupiter.api.Test;
+import ru.sunveil.precision_pdf.pdfparser.model.PdfVectorPaths;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VectorPathCollectorTest {
+
+    private static void stroke(VectorPathCollector collector, float lineWidth, float... segments) {
+        collector.path(segments, segments.length / 4, true, false, lineWidth);
+    }
+
+    private static float[] points(PdfVectorPaths paths, int path) {
+        int[] starts = paths.getPointStarts();
+        return Arrays.copyOfRange(paths.getPoints(), starts[path] * 2, starts[path + 1] * 2);
+    }
+
+    @Test
+    void mergesCollinearStrokedSegments() {
+        VectorPathCollector collector = new VectorPathCollector(100);
+        // A dashed ruling: touching, overlapping and slightly gapped pieces
+        stroke(collector, 1, 50, 500, 70, 500);
+        stroke(collector, 1, 70, 500, 90, 500);
+        stroke(collector, 1, 85, 500, 110, 500);
+        stroke(collector, 1, 110.4f, 500, 130, 500);
+
+        PdfVectorPaths paths = collector.toVectorPaths(1);
+
+        assertEquals(1, paths.getPathCount());
+        assertArrayEquals(new float[]{50, 500, 130, 500}, points(paths, 0), 1e-3f);
+        assertEquals(PdfVectorPaths.STROKE, paths.getFlags()[0]);
+    }
+
+    @Test
+    void keepsSegmentsWithGapsOtherWidthsOrDirections() {
+        VectorPathCollector collector = new VectorPathCollector(100);
+        stroke(collector, 1, 50, 500, 70, 500);
+        stroke(collector, 1, 80, 500, 100, 500);
+        stroke(collector, 2, 100, 500, 120, 500);
+        stroke(collector, 2, 120, 500, 120, 520);
+
+        assertEquals(4, collector.toVectorPaths(1).getPathCount());
+    }
+
+    @Test
+    void dropsCollinearPointsAndMarksClosedPaths() {
+        VectorPathCollector collector = new VectorPathCollector(100);
+        stroke(collector, 1, 50, 400, 100, 400, 100, 400, 150, 400.1f, 150, 400.1f, 150, 450);
+        collector.path(new float[]{0, 0, 10, 0, 10, 0, 10, 10, 10, 10, 0, 10, 0, 10, 0, 0}, 4, false, true, 0);
+
+        PdfVectorPaths paths = collector.toVectorPaths(1);
+
+        assertEquals(2, paths.getPathCount());
+        assertArrayEquals(new float[]{50, 400, 150, 400.1f, 150, 450}, points(paths, 0), 1e-3f);
+        assertEquals(PdfVectorPaths.FILL | PdfVectorPaths.CLOSED, paths.getFlags()[1]);
+        assertEquals(4, points(paths, 1).length / 2);
+    }
+
+    @Test
+    void capsPathsPerPage() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                for (int i = 0; i < 5; i++) {
+                    content.moveTo(50, 500 - i * 20);
+                    content.lineTo(200, 500 - i * 20);
+                    content.stroke();
+                }
+            }
+
+            VectorPathCollector capped = new VectorPathCollector(3);
+            new ContentStreamEngine(page).process(1, capped);
+            PdfVectorPaths paths = capped.toVectorPaths(1);
+            assertEquals(3, paths.getPathCount());
+            assertTrue(paths.isTruncated());
+
+            VectorPathCollector all = new VectorPathCollector(100);
+            new ContentStreamEngine(page).process(1, all);
+            assertEquals(5, all.toVectorPaths(1).getPathCount());
+            assertFalse(all.toVectorPaths(1).isTruncated());
+
+            capped.startPage(2, page);
+            assertNull(capped.toVectorPaths(2));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ru.sunveil.precision_pdf.pdfparser.parser.pdfbox;
+
+import org.junit.jupiter.api.Test;
+import ru.sunveil.precision_pdf.pdfparser.model.Table;
+import ru.sunveil.precision_pdf.pdfparser.model.TableCell;
+import ru.sunveil.precision_pdf.pdfparser.model.Word;
+import ru.sunveil.precision_pdf.pdfparser.model.core.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WhitespaceTableEngineTest {
+
+    private static void word(List<Word> words, float x, float y, float width, String text) {
+        words.add(new Word(1, new BoundingBox(x, y, width, 8), text, 1, "Helvetica", 10));
+    }
+
+    /**
+     * Three columns at x 50, 200 and 300 with a spanning row and a record continued on the next row
+     */
+    private static List<Word> layout() {
+        List<Word> words = new ArrayList<>();
+        word(words, 50, 700, 40, "Name");
+        word(words, 200, 700, 25, "Qty");
+        word(words, 300, 700, 35, "Price");
+        word(words, 50, 685, 45, "Apple");
+        word(words, 200, 685, 10, "3");
+        word(words, 300, 685, 30, "1.20");
+        word(words, 50, 670, 280, "Seasonal");
+        word(words, 50, 655, 35, "Pear");
+        word(words, 200, 655, 10, "5");
+        word(words, 300, 655, 30, "0.80");
+        word(words, 200, 640, 10, "2");
+        word(words, 300, 640, 30, "0.50");
+        return words;
+    }
+
+    private static List<String> contents(List<TableCell> row) {
+        return row.stream().map(TableCell::getContent).toList();
+    }
+
+    @Test
+    void splitsColumnsAtGuttersAndRowsAtBands() {
+        List<Table> tables = new WhitespaceTableEngine().extractTables(layout(), 1, null);
+
+        assertEquals(1, tables.size());
+        Table table = tables.get(0);
+        assertEquals(5, table.getRowCount());
+        assertEquals(3, table.getColumnCount());
+        assertEquals(List.of("Name", "Qty", "Price"), contents(table.getRows().get(0)));
+        assertEquals(List.of("Apple", "3", "1.20"), contents(table.getRows().get(1)));
+
+        // Column bounds lie inside the gutters, row bounds follow the bands
+        TableCell quantity = table.getRows().get(1).get(1);
+        assertTrue(quantity.getBoundingBox().getX() > 95 && quantity.getBoundingBox().getX() < 200);
+        assertTrue(quantity.getBoundingBox().getRight() > 210 && quantity.getBoundingBox().getRight() < 300);
+        assertEquals(685, quantity.getBoundingBox().getY(), 1e-3);
+        assertEquals(693, quantity.getBoundingBox().getTop(), 1e-3);
+    }
+
+    @Test
+    void detectsColumnAndRowSpans() {
+        Table table = new WhitespaceTableEngine().extractTables(layout(), 1, null).get(0);
+
+        List<TableCell> heading = table.getRows().get(2);
+        assertEquals(1, heading.size());
+        assertEquals("Seasonal", heading.get(0).getContent());
+        assertEquals(3, heading.get(0).getColSpan());
+
+        TableCell pear = table.getRows().get(3).get(0);
+        assertEquals("Pear", pear.getContent());
+        assertEquals(2, pear.getRowSpan());
+        assertEquals(640, pear.getBoundingBox().getY(), 1e-3);
+        assertEquals(List.of("2", "0.50"), contents(table.getRows().get(4)));
+        assertEquals(1, table.getRows().get(4).get(0).getColumn());
+    }
+
+    @Test
+    void ignoresProseAndExcludedRegions() {
+        List<Word> prose = new ArrayList<>();
+        for (int line = 0; line < 4; line++) {
+            float x = 50;
+            for (String text : List.of("plain", "running", "text", "without", "gutters")) {
+                word(prose, x, 700 - line * 12, text.length() * 5, text);
+                x += text.length() * 5 + 3;
+            }
+        }
+        assertTrue(new WhitespaceTableEngine().extractTables(prose, 1, null).isEmpty());
+
+        Table ruled = new Table();
+        ruled.setBoundingBox(BoundingBox.fromCorners(40, 630, 400, 710));
+        assertTrue(new WhitespaceTableEngine().extractTables(layout(), 1, List.of(ruled)).isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package ru.sunveil.precision_pdf.pdfparser.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ImageBlobStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private static byte[] data(int size, int seed) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+
+    @Test
+    void storesIdenticalBytesOnce() throws Exception {
+        ImageBlobStore store = new ImageBlobStore(directory, 1 << 20, 16);
+
+        ImageBlobStore.StoredBlob first = store.put("a", "PNG", data(100, 1));
+        ImageBlobStore.StoredBlob second = store.put("b", "PNG", data(100, 1));
+
+        assertEquals(first.blobId(), second.blobId());
+        assertEquals("image/png", first.mimeType());
+        assertNotNull(store.find(first.blobId()));
+        assertEquals(first, store.findBySource("b"));
+        assertNull(store.find("../" + first.blobId()));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBlobsOverDiskLimit() throws Exception {
+        ImageBlobStore store = new ImageBlobStore(directory, 250, 16);
+
+        ImageBlobStore.StoredBlob first = store.put("a", "png", data(100, 1));
+        ImageBlobStore.StoredBlob second = store.put("b", "png", data(100, 2));
+        // Serving the first blob makes the second one the eviction candidate
+        assertNotNull(store.find(first.blobId()));
+        ImageBlobStore.StoredBlob third = store.put("c", "png", data(100, 3));
+
+        assertNull(store.find(second.blobId()));
+        assertNull(store.findBySource("b"));
+        assertNotNull(store.find(first.blobId()));
+        assertEquals(third, store.findBySource("c"));
+        try (Stream<Path> files = Files.walk(directory)) {
+            assertEquals(2, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void boundsSourceIndex() throws Exception {
+        ImageBlobStore store = new ImageBlobStore(directory, 1 << 20, 2);
+
+        ImageBlobStore.StoredBlob blob = store.put("a", "png", data(10, 1));
+        store.put("b", "png", data(10, 1));
+        store.put("c", "png", data(10, 1));
+
+        assertNull(store.findBySource("a"));
+        assertEquals(blob, store.findBySource("c"));
+        assertNotNull(store.find(blob.blobId()));
+    }
+
+    @Test
+    void appliesLimitToBlobsFromEarlierRuns() throws Exception {
+        ImageBlobStore.StoredBlob old = new ImageBlobStore(directory, 1 << 20, 16).put("a", "png", data(100, 1));
+        try (Stream<Path> files = Files.walk(directory)) {
+            Files.setLastModifiedTime(files.filter(Files::isRegularFile).findFirst().orElseThrow(), FileTime.fromMillis(0));
+        }
+
+        ImageBlobStore restarted = new ImageBlobStore(directory, 150, 16);
+        assertNotNull(restarted.find(old.blobId()));
+        ImageBlobStore.StoredBlob fresh = restarted.put("b", "png", data(100, 2));
+
+        assertNull(restarted.find(old.blobId()));
+        assertNotNull(restarted.find(fresh.blobId()));
+    }
+}
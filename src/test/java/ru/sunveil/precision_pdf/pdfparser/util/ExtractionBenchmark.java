@@ -0,0 +1,320 @@
+package ru.sunveil.precision_pdf.pdfparser.util;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.util.Matrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sunveil.precision_pdf.pdfparser.config.ExtractionConfig;
+import ru.sunveil.precision_pdf.pdfparser.model.TextLine;
+import ru.sunveil.precision_pdf.pdfparser.model.Word;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.ContentStreamEngine;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.GlyphBuffer;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.GlyphDeduplicator;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.GlyphMetricsCache;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.PrecisionTextEngine;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.RawTextWriter;
+import ru.sunveil.precision_pdf.pdfparser.parser.pdfbox.TextExtractionEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares the PDFTextStripper based {@link TextExtractionEngine} with {@link PrecisionTextEngine}:
+ * throughput in pages per second and agreement of the extracted words and lines. Duplicate glyph
+ * suppression is compared separately, on fake-bold pages when no files are given.
+ * <p>
+ * Usage: {@code ExtractionBenchmark [file.pdf ...]}; without arguments a synthetic document is used.
+ * The number of timed iterations is set with {@code -Dbenchmark.iterations}.
+ */
+public final class ExtractionBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionBenchmark.class);
+
+    private ExtractionBenchmark() {
+        // Utility class
+    }
+
+    /**
+     * Throughput and agreement of the two text engines on one document, with the throughput
+     * of the layout-free {@link RawTextWriter} for reference
+     *
+     * @param wordAgreement share of words found by both engines, 0-1
+     * @param lineAgreement share of line texts found by both engines, 0-1
+     */
+    public record Result(int pages, double stripperPagesPerSecond, double precisionPagesPerSecond,
+                         double rawTextPagesPerSecond, double wordAgreement, double lineAgreement) {
+    }
+
+    /**
+     * Throughput and agreement of the duplicate glyph suppression strategies on one document.
+     * Agreement is measured against the words of PDFTextStripper's own suppression.
+     *
+     * @param gridWordAgreement share of words the stripper with grid suppression agrees on, 0-1
+     * @param precisionWordAgreement share of words the precision engine with grid suppression agrees on, 0-1
+     */
+    public record SuppressionResult(int pages, double stripperPagesPerSecond, double gridPagesPerSecond,
+                                    double precisionGridPagesPerSecond, double gridWordAgreement,
+                                    double precisionWordAgreement) {
+    }
+
+    /**
+     * Extracts one page and leaves its words and lines in the engine
+     */
+    @FunctionalInterface
+    private interface PageExtraction {
+        void extract(int pageNumber) throws IOException;
+    }
+
+    private record Run(double pagesPerSecond, List<List<Word>> words, List<List<TextLine>> lines) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int iterations = Integer.getInteger("benchmark.iterations", 5);
+
+        if (args.length == 0) {
+            try (PDDocument document = createSyntheticDocument(20, 60)) {
+                report("synthetic", compareTextEngines(document, iterations));
+            }
+            try (PDDocument document = createFakeBoldDocument(10, 80, 3)) {
+                report("synthetic fake-bold", compareDuplicateSuppression(document, iterations));
+            }
+            return;
+        }
+
+        for (String path : args) {
+            try (PDDocument document = Loader.loadPDF(new File(path))) {
+                report(path, compareTextEngines(document, iterations));
+                report(path, compareDuplicateSuppression(document, iterations));
+            }
+        }
+    }
+
+    /**
+     * Runs both engines over all pages of the document, one untimed warm-up round first.
+     */
+    public static Result compareTextEngines(PDDocument document, int iterations) throws IOException {
+        TextExtractionEngine stripperEngine = new TextExtractionEngine();
+        PrecisionTextEngine precisionEngine = new PrecisionTextEngine();
+        GlyphBuffer glyphBuffer = new GlyphBuffer();
+
+        Run stripper = run(document, iterations, page -> stripperEngine.extractPage(document, page),
+                stripperEngine::getWords, stripperEngine::getTextLines);
+        Run precision = run(document, iterations, page -> {
+            // Same glyph boxes as the stripper engine, which uses the shared cache by default
+            ContentStreamEngine engine = new ContentStreamEngine(document.getPage(page - 1));
+            engine.setGlyphMetrics(GlyphMetricsCache.getShared());
+            engine.process(page, glyphBuffer);
+            precisionEngine.extractPage(glyphBuffer);
+        }, precisionEngine::getWords, precisionEngine::getTextLines);
+        RawTextWriter rawTextWriter = new RawTextWriter(Writer.nullWriter(), null);
+        Run rawText = run(document, iterations, page -> rawTextWriter.writePage(document.getPage(page - 1), page),
+                List::of, List::of);
+
+        return new Result(document.getNumberOfPages(), stripper.pagesPerSecond(), precision.pagesPerSecond(),
+                rawText.pagesPerSecond(),
+                agreement(wordTexts(stripper.words()), wordTexts(precision.words())),
+                agreement(lineTexts(stripper.lines()), lineTexts(precision.lines())));
+    }
+
+    /**
+     * Compares PDFTextStripper's duplicate overlapping text suppression with {@link GlyphDeduplicator}
+     * in the stripper and in the precision engine.
+     */
+    public static SuppressionResult compareDuplicateSuppression(PDDocument document, int iterations)
+            throws IOException {
+        ExtractionConfig config = new ExtractionConfig();
+        TextExtractionEngine stripperEngine = new TextExtractionEngine();
+        TextExtractionEngine gridEngine = new TextExtractionEngine();
+        gridEngine.setGlyphDeduplicator(new GlyphDeduplicator(config.getDuplicateGlyphTolerance()));
+        PrecisionTextEngine precisionEngine = new PrecisionTextEngine();
+        GlyphDeduplicator deduplicator = new GlyphDeduplicator(config.getDuplicateGlyphTolerance());
+        GlyphBuffer glyphBuffer = new GlyphBuffer();
+
+        Run stripper = run(document, iterations, page -> stripperEngine.extractPage(document, page),
+                stripperEngine::getWords, stripperEngine::getTextLines);
+        Run grid = run(document, iterations, page -> gridEngine.extractPage(document, page),
+                gridEngine::getWords, gridEngine::getTextLines);
+        Run precision = run(document, iterations, page -> {
+            ContentStreamEngine engine = new ContentStreamEngine(document.getPage(page - 1));
+            engine.setGlyphMetrics(GlyphMetricsCache.getShared());
+            engine.process(page, glyphBuffer);
+            deduplicator.deduplicate(glyphBuffer);
+            precisionEngine.extractPage(glyphBuffer);
+        }, precisionEngine::getWords, precisionEngine::getTextLines);
+
+        List<String> expected = wordTexts(stripper.words());
+        return new SuppressionResult(document.getNumberOfPages(), stripper.pagesPerSecond(),
+                grid.pagesPerSecond(), precision.pagesPerSecond(),
+                agreement(expected, wordTexts(grid.words())),
+                agreement(expected, wordTexts(precision.words())));
+    }
+
+    private static Run run(PDDocument document, int iterations, PageExtraction extraction,
+                           Supplier<List<Word>> words, Supplier<List<TextLine>> lines) throws IOException {
+        int pages = document.getNumberOfPages();
+        List<List<Word>> pageWords = new ArrayList<>();
+        List<List<TextLine>> pageLines = new ArrayList<>();
+
+        long nanos = 0;
+        for (int iteration = 0; iteration <= iterations; iteration++) {
+            long start = System.nanoTime();
+            for (int page = 1; page <= pages; page++) {
+                extraction.extract(page);
+                if (iteration == 0) {
+                    pageWords.add(words.get());
+                    pageLines.add(lines.get());
+                }
+            }
+            if (iteration > 0) {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        return new Run(pagesPerSecond(pages * Math.max(1, iterations), nanos), pageWords, pageLines);
+    }
+
+    /**
+     * Creates a text-only document with lines of random words
+     */
+    public static PDDocument createSyntheticDocument(int pages, int linesPerPage) throws IOException {
+        return createDocument(pages, linesPerPage, 1);
+    }
+
+    /**
+     * Creates a dense text document where every line is drawn several times with a small
+     * horizontal offset, the way fake-bold text is produced
+     */
+    public static PDDocument createFakeBoldDocument(int pages, int linesPerPage, int overprints) throws IOException {
+        return createDocument(pages, linesPerPage, overprints);
+    }
+
+    private static PDDocument createDocument(int pages, int linesPerPage, int overprints) throws IOException {
+        PDDocument document = new PDDocument();
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        Random random = new Random(42);
+        float fontSize = linesPerPage > 60 ? 8 : 10;
+        float leading = fontSize * 1.2f;
+
+        for (int p = 0; p < pages; p++) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.beginText();
+                content.setFont(font, fontSize);
+                for (int line = 0; line < linesPerPage; line++) {
+                    String text = randomLine(random);
+                    for (int copy = 0; copy < overprints; copy++) {
+                        content.setTextMatrix(Matrix.getTranslateInstance(
+                                50 + copy * 0.25f, 750 - line * leading));
+                        content.showText(text);
+                    }
+                }
+                content.endText();
+            }
+        }
+        return document;
+    }
+
+    private static String randomLine(Random random) {
+        StringBuilder line = new StringBuilder();
+        int words = 6 + random.nextInt(6);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                line.append(' ');
+            }
+            int length = 2 + random.nextInt(8);
+            for (int c = 0; c < length; c++) {
+                line.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return line.toString();
+    }
+
+    private static List<String> wordTexts(List<List<Word>> pages) {
+        List<String> texts = new ArrayList<>();
+        for (int page = 0; page < pages.size(); page++) {
+            for (Word word : pages.get(page)) {
+                texts.add(page + ":" + word.getText());
+            }
+        }
+        return texts;
+    }
+
+    private static List<String> lineTexts(List<List<TextLine>> pages) {
+        List<String> texts = new ArrayList<>();
+        for (int page = 0; page < pages.size(); page++) {
+            for (TextLine line : pages.get(page)) {
+                StringBuilder text = new StringBuilder();
+                for (Word word : line.getWords()) {
+                    if (text.length() > 0) {
+                        text.append(' ');
+                    }
+                    text.append(word.getText());
+                }
+                texts.add(page + ":" + text);
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * Multiset overlap of the two lists relative to the larger one
+     */
+    private static double agreement(List<String> expected, List<String> actual) {
+        if (expected.isEmpty() && actual.isEmpty()) {
+            return 1.0;
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        for (String text : expected) {
+            counts.merge(text, 1, Integer::sum);
+        }
+        int matched = 0;
+        for (String text : actual) {
+            Integer count = counts.get(text);
+            if (count != null && count > 0) {
+                counts.put(text, count - 1);
+                matched++;
+            }
+        }
+        return (double) matched / Math.max(expected.size(), actual.size());
+    }
+
+    private static double pagesPerSecond(int pages, long nanos) {
+        return nanos > 0 ? pages * 1_000_000_000.0 / nanos : 0;
+    }
+
+    private static void report(String name, SuppressionResult result) {
+        logger.info("{}: {} pages, stripper suppression {} pages/s, grid suppression {} pages/s, "
+                        + "precision with grid {} pages/s, word agreement {}% / {}%",
+                name, result.pages(),
+                String.format("%.1f", result.stripperPagesPerSecond()),
+                String.format("%.1f", result.gridPagesPerSecond()),
+                String.format("%.1f", result.precisionGridPagesPerSecond()),
+                String.format("%.1f", result.gridWordAgreement() * 100),
+                String.format("%.1f", result.precisionWordAgreement() * 100));
+    }
+
+    private static void report(String name, Result result) {
+        logger.info("{}: {} pages, stripper {} pages/s, precision {} pages/s, raw text {} pages/s, "
+                        + "word agreement {}%, line agreement {}%, glyph metrics hit rate {}%",
+                name, result.pages(),
+                String.format("%.1f", result.stripperPagesPerSecond()),
+                String.format("%.1f", result.precisionPagesPerSecond()),
+                String.format("%.1f", result.rawTextPagesPerSecond()),
+                String.format("%.1f", result.wordAgreement() * 100),
+                String.format("%.1f", result.lineAgreement() * 100),
+                String.format("%.1f", GlyphMetricsCache.getShared().getHitRate() * 100));
+    }
+}